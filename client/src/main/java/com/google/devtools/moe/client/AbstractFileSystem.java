@@ -23,12 +23,21 @@ import java.io.IOException;
 public abstract class AbstractFileSystem implements FileSystem {
   @Override
   public void copyDirectory(File src, File dest) throws IOException {
+    copyDirectory(src, dest, false);
+  }
+
+  @Override
+  public void shareDirectory(File src, File dest) throws IOException {
+    copyDirectory(src, dest, true);
+  }
+
+  private void copyDirectory(File src, File dest, boolean share) throws IOException {
     if (src == null) {
       return; // TODO(cgruber): Should this be an error?
     }
     this.makeDirsForFile(dest);
     if (this.isFile(src)) {
-      this.copyFile(src, dest);
+      copyFile(src, dest, share);
       return;
     }
     File[] files = this.listFiles(src);
@@ -38,11 +47,19 @@ public abstract class AbstractFileSystem implements FileSystem {
     for (File subFile : files) {
       File newFile = new File(dest, this.getName(subFile));
       if (this.isDirectory(subFile)) {
-        this.copyDirectory(subFile, newFile);
+        this.copyDirectory(subFile, newFile, share);
       } else {
         this.makeDirsForFile(newFile);
-        this.copyFile(subFile, newFile);
+        copyFile(subFile, newFile, share);
       }
     }
   }
+
+  private void copyFile(File src, File dest, boolean share) throws IOException {
+    if (share) {
+      this.shareFile(src, dest);
+    } else {
+      this.copyFile(src, dest);
+    }
+  }
 }
@@ -16,6 +16,17 @@
 
 package com.google.devtools.moe.client;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.FileBackedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 
@@ -24,6 +35,9 @@ import java.util.List;
  */
 public interface CommandRunner {
 
+  /** The default size above which {@link #runCommandSpooled} moves output to a temporary file. */
+  int DEFAULT_SPILL_THRESHOLD_BYTES = 4 * 1024 * 1024;
+
   public static class CommandException extends Exception {
     public final String cmd;
     public final List<String> args;
@@ -94,4 +108,171 @@ public interface CommandRunner {
    */
   CommandOutput runCommandWithFullOutput(String workingDirectory, String command, List<String> args)
       throws CommandException;
+
+  /**
+   * Runs a command, handing its stdout to {@code stdout} in chunks as it is produced, rather than
+   * accumulating it in memory. The stream is not closed.
+   *
+   * <p>Stderr is captured in full. If the command fails, the {@link CommandException} carries the
+   * stderr as usual, but an empty stdout, since that has already been handed to {@code stdout}.
+   * If {@code stdout} throws, the rest of the output is discarded and the failure is rethrown
+   * (wrapped in a {@link MoeProblem} if it was an {@link IOException}) once the command completes.
+   *
+   * @param workingDirectory the directory to run in
+   * @param command the binary to invoke. If not a path, it will be resolved.
+   * @param args the arguments to pass to the binary
+   * @param stdout the stream to which the command's stdout is written
+   * @throws CommandException
+   */
+  default void runCommandStreaming(
+      String workingDirectory, String command, List<String> args, OutputStream stdout)
+      throws CommandException {
+    String output = runCommandWithFullOutput(workingDirectory, command, args).getStdout();
+    try {
+      stdout.write(output.getBytes(UTF_8));
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Failed to consume output of %s %s", command, args);
+    }
+  }
+
+  /**
+   * Runs a command, handing each line of its stdout (decoded as UTF-8, without the terminating
+   * newline) to {@code lines} as it is produced.
+   *
+   * @see #runCommandStreaming(String, String, List, OutputStream)
+   */
+  default void runCommandForLines(
+      String workingDirectory, String command, List<String> args, LineConsumer lines)
+      throws CommandException {
+    LineSplittingOutputStream splitter = new LineSplittingOutputStream(lines);
+    runCommandStreaming(workingDirectory, command, args, splitter);
+    try {
+      splitter.close();
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Failed to consume output of %s %s", command, args);
+    }
+  }
+
+  /**
+   * Runs a command, keeping its stdout in memory up to {@code spillThresholdBytes}, and in a
+   * temporary file beyond that. The caller must close the result to release the temporary file.
+   *
+   * @see #runCommandStreaming(String, String, List, OutputStream)
+   */
+  default SpooledOutput runCommandSpooled(
+      String workingDirectory, String command, List<String> args, int spillThresholdBytes)
+      throws CommandException {
+    SpooledOutput output = new SpooledOutput(spillThresholdBytes);
+    try {
+      runCommandStreaming(workingDirectory, command, args, output.sink);
+    } catch (CommandException | RuntimeException e) {
+      output.close();
+      throw e;
+    }
+    return output;
+  }
+
+  /** Receives the output of a command one line at a time. */
+  @FunctionalInterface
+  interface LineConsumer {
+    void accept(String line) throws IOException;
+  }
+
+  /**
+   * An {@link OutputStream} which hands each complete line written to it to a {@link
+   * LineConsumer}, decoded as UTF-8 and without the terminating newline. A final line with no
+   * newline is handed over on {@link #close()}. Lines may be terminated by another ASCII character
+   * instead, e.g. NUL for the output of {@code git log -z}.
+   */
+  final class LineSplittingOutputStream extends OutputStream {
+    private final byte terminator;
+    private final LineConsumer consumer;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+    public LineSplittingOutputStream(LineConsumer consumer) {
+      this('\n', consumer);
+    }
+
+    public LineSplittingOutputStream(char terminator, LineConsumer consumer) {
+      checkArgument(terminator < 0x80, "Not an ASCII terminator: %s", (int) terminator);
+      this.terminator = (byte) terminator;
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if ((byte) b == terminator) {
+        emitLine();
+      } else {
+        line.write(b);
+      }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      // An ASCII byte never occurs inside a multi-byte UTF-8 sequence, so splitting the raw bytes
+      // is safe.
+      int start = offset;
+      int end = offset + length;
+      for (int i = offset; i < end; i++) {
+        if (bytes[i] == terminator) {
+          line.write(bytes, start, i - start);
+          emitLine();
+          start = i + 1;
+        }
+      }
+      line.write(bytes, start, end - start);
+    }
+
+    private void emitLine() throws IOException {
+      String decoded = new String(line.toByteArray(), UTF_8);
+      line.reset();
+      consumer.accept(decoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (line.size() > 0) {
+        emitLine();
+      }
+    }
+  }
+
+  /**
+   * The stdout of a command, held in memory if small, or in a temporary file if it exceeded the
+   * spill threshold. It may be read any number of times until it is closed.
+   */
+  final class SpooledOutput implements Closeable {
+    private final FileBackedOutputStream spool;
+    private final CountingOutputStream sink;
+
+    SpooledOutput(int spillThresholdBytes) {
+      this.spool = new FileBackedOutputStream(spillThresholdBytes, /* resetOnFinalize */ true);
+      this.sink = new CountingOutputStream(spool);
+    }
+
+    /** The number of bytes of output. */
+    public long size() {
+      return sink.getCount();
+    }
+
+    public ByteSource asByteSource() {
+      return spool.asByteSource();
+    }
+
+    /** The output, decoded as UTF-8. */
+    public CharSource asCharSource() {
+      return spool.asByteSource().asCharSource(UTF_8);
+    }
+
+    /** Discards the output, deleting any temporary file. */
+    @Override
+    public void close() {
+      try {
+        spool.reset();
+      } catch (IOException e) {
+        throw new MoeProblem(e, "Could not delete spooled command output");
+      }
+    }
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The files under a directory, by their paths relative to it ('/'-separated), in sorted order, with
+ * their sizes and executability. Directories are not listed.
+ */
+public final class FileIndex {
+  private final ImmutableSortedMap<String, Attributes> files;
+
+  private FileIndex(ImmutableSortedMap<String, Attributes> files) {
+    this.files = files;
+  }
+
+  /** Returns an index of the given files, by relative path. */
+  public static FileIndex of(Map<String, Attributes> files) {
+    return new FileIndex(ImmutableSortedMap.copyOf(files));
+  }
+
+  /** Returns an index of the given non-executable files, of unknown size. */
+  public static FileIndex of(String... paths) {
+    ImmutableSortedMap.Builder<String, Attributes> files = ImmutableSortedMap.naturalOrder();
+    for (String path : paths) {
+      files.put(path, Attributes.create(Attributes.UNKNOWN_SIZE, false));
+    }
+    return new FileIndex(files.build());
+  }
+
+  /** The relative paths of the files, in sorted order. */
+  public ImmutableSortedSet<String> paths() {
+    return files.keySet();
+  }
+
+  /** Returns the attributes of the file at the given relative path, or null if there is none. */
+  public Attributes get(String path) {
+    return files.get(path);
+  }
+
+  public boolean contains(String path) {
+    return files.containsKey(path);
+  }
+
+  public int size() {
+    return files.size();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof FileIndex && files.equals(((FileIndex) other).files);
+  }
+
+  @Override
+  public int hashCode() {
+    return files.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return files.toString();
+  }
+
+  /** The attributes of an indexed file. */
+  public static final class Attributes {
+    /** The size of a file whose {@link FileSystem} doesn't report sizes. */
+    public static final long UNKNOWN_SIZE = -1;
+
+    private final long size;
+    private final boolean executable;
+
+    private Attributes(long size, boolean executable) {
+      this.size = size;
+      this.executable = executable;
+    }
+
+    public static Attributes create(long size, boolean executable) {
+      return new Attributes(size, executable);
+    }
+
+    /** The file's size in bytes, or {@link #UNKNOWN_SIZE}. */
+    public long size() {
+      return size;
+    }
+
+    public boolean isExecutable() {
+      return executable;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Attributes)) {
+        return false;
+      }
+      Attributes that = (Attributes) other;
+      return size == that.size && executable == that.executable;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(size, executable);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("size", size)
+          .add("executable", executable)
+          .toString();
+    }
+  }
+}
@@ -22,7 +22,9 @@ import static java.util.stream.Collectors.toSet;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.PathMatcher;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -119,12 +121,39 @@ public interface FileSystem {
         .collect(toSet());
   }
 
+  /**
+   * Returns an index of the files under the directory {@code root}, by their paths relative to it.
+   * Where {@link #findFiles(File)} and {@link Utils#makeFilenamesRelative} would be used together,
+   * this saves re-deriving the relative paths, and can read the files' attributes in the same pass.
+   *
+   * <p>NB: indexes only files, not directories
+   */
+  default FileIndex indexFiles(File root) {
+    Map<String, FileIndex.Attributes> files = new HashMap<>();
+    for (String path : Utils.makeFilenamesRelative(findFiles(root), root)) {
+      files.put(
+          path,
+          FileIndex.Attributes.create(
+              FileIndex.Attributes.UNKNOWN_SIZE, isExecutable(new File(root, path))));
+    }
+    return FileIndex.of(files);
+  }
+
   /**
    * Returns an array of files and directories under path.
    */
   // TODO(user): Return List instead of array.
   public File[] listFiles(File path);
 
+  /**
+   * Returns whether the files this file system names are on local disk, so that they may also be
+   * read directly (e.g. through {@link java.nio.file.Files}) rather than only through this
+   * interface.
+   */
+  default boolean isLocal() {
+    return false;
+  }
+
   /**
    * Returns whether the file exists.
    */
@@ -188,6 +217,24 @@ public interface FileSystem {
    */
   public void copyDirectory(File src, File dest) throws IOException;
 
+  /**
+   * Copy File src's contents into dest, as {@link #copyFile} does, but where possible by sharing
+   * src's storage (e.g. as a hard link) rather than duplicating it. The copy may then be read,
+   * replaced or deleted, and changed through this interface (which first gives it storage of its
+   * own), but must not be modified in place by anything else.
+   */
+  default void shareFile(File src, File dest) throws IOException {
+    copyFile(src, dest);
+  }
+
+  /**
+   * Copy the contents of directory {@code src} into {@code dest}, as {@link #copyDirectory} does,
+   * but sharing each file's storage as {@link #shareFile} does.
+   */
+  default void shareDirectory(File src, File dest) throws IOException {
+    copyDirectory(src, dest);
+  }
+
   /** Write contents to File f. */
   public void write(String contents, File f) throws IOException;
 
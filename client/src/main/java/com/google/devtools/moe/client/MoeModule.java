@@ -16,8 +16,10 @@
 package com.google.devtools.moe.client;
 
 import com.google.devtools.moe.client.Ui.UiModule;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
 import com.google.devtools.moe.client.codebase.ExpressionModule;
 import com.google.devtools.moe.client.database.FileDb;
+import com.google.devtools.moe.client.dvcs.git.GitMirrorCache;
 import com.google.devtools.moe.client.directives.Directives;
 import com.google.devtools.moe.client.options.OptionsModule;
 import com.google.devtools.moe.client.project.FileReadingProjectContextFactory;
@@ -28,8 +30,11 @@ import com.google.devtools.moe.client.project.ProjectContextFactory;
 import com.google.devtools.moe.client.qualifiers.Argument;
 import com.google.devtools.moe.client.repositories.MetadataScrubber;
 import com.google.devtools.moe.client.repositories.Repositories;
-import com.google.devtools.moe.client.tools.FileDifference.ConcreteFileDiffer;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import com.google.devtools.moe.client.tools.FileDifference.FileDiffer;
+import com.google.devtools.moe.client.tools.FileDifference.InProcessFileDiffer;
+import com.google.devtools.moe.client.tools.FileMerger;
+import com.google.devtools.moe.client.tools.FileMerger.InProcessFileMerger;
 import com.google.devtools.moe.client.translation.editors.Editors;
 import com.squareup.okhttp.OkHttpClient;
 import dagger.Module;
@@ -98,8 +103,14 @@ public class MoeModule {
 
   @Provides
   @Singleton
-  FileDiffer fileDiffer(ConcreteFileDiffer cfd) {
-    return cfd;
+  FileDiffer fileDiffer(InProcessFileDiffer differ) {
+    return differ;
+  }
+
+  @Provides
+  @Singleton
+  FileMerger fileMerger(InProcessFileMerger merger) {
+    return merger;
   }
 
   @Provides
@@ -118,6 +129,25 @@ public class MoeModule {
       return new File("hg"); // Override this in integration tests
     }
 
+    @Provides
+    @Singleton
+    public RevisionMetadataCache revisionMetadataCache() {
+      return RevisionMetadataCache.inUserCacheDirectory(); // Override this in integration tests
+    }
+
+    @Provides
+    @Singleton
+    public GitMirrorCache gitMirrorCache(CommandRunner cmd) {
+      return GitMirrorCache.inUserCacheDirectory(cmd); // Override this in integration tests
+    }
+
+    @Provides
+    @Singleton
+    public CodebaseSnapshotCache codebaseSnapshotCache(FileSystem filesystem, Lifetimes lifetimes) {
+      // Override this in integration tests
+      return CodebaseSnapshotCache.inUserCacheDirectory(filesystem, lifetimes);
+    }
+
     // TODO(cgruber): migrate to a scrubber-specific module once they're injected.
     @Provides
     @Singleton
@@ -21,11 +21,12 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import dagger.Binds;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.logging.Logger;
 import javax.inject.Inject;
@@ -45,6 +46,42 @@ public class SystemCommandRunner implements CommandRunner {
   @Override
   public CommandOutput runCommandWithFullOutput(
       String workingDirectory, String command, List<String> args) throws CommandException {
+    DecodingByteArrayOutputStream stdout = new DecodingByteArrayOutputStream();
+    DecodingByteArrayOutputStream stderr = new DecodingByteArrayOutputStream();
+    int returnStatus = execute(workingDirectory, command, args, stdout, stderr);
+    if (returnStatus == 0) {
+      return new CommandOutput(stdout.decode(), stderr.decode());
+    }
+    throw new CommandException(command, args, stdout.decode(), stderr.decode(), returnStatus);
+  }
+
+  @Override
+  public String runCommand(String workingDirectory, String command, List<String> args)
+      throws CommandException {
+    return runCommandWithFullOutput(workingDirectory, command, args).getStdout();
+  }
+
+  @Override
+  public void runCommandStreaming(
+      String workingDirectory, String command, List<String> args, OutputStream stdout)
+      throws CommandException {
+    DecodingByteArrayOutputStream stderr = new DecodingByteArrayOutputStream();
+    int returnStatus = execute(workingDirectory, command, args, stdout, stderr);
+    if (returnStatus != 0) {
+      throw new CommandException(command, args, "", stderr.decode(), returnStatus);
+    }
+  }
+
+  /**
+   * Runs the command to completion, copying its stdout and stderr into the given streams, and
+   * returns its exit status.
+   */
+  private int execute(
+      String workingDirectory,
+      String command,
+      List<String> args,
+      OutputStream stdout,
+      OutputStream stderr) {
     ImmutableList<String> cmdArgs =
         new ImmutableList.Builder<String>().add(command).addAll(args).build();
 
@@ -55,112 +92,99 @@ public class SystemCommandRunner implements CommandRunner {
       pb.directory(new File(workingDirectory));
     }
     Process p;
-    int returnStatus;
-    String stdoutData;
-    String stderrData;
     try {
       p = pb.start();
       p.getOutputStream().close();
-      // We need to read data from the output steams.
-      // Why? Because if we don't read from them, then the process we have started will fill the
-      // buffers and block. We will be in a deadlock.
-      // If there were only one stream, we could just do repeated calls to read() until we got
-      // EOF.
-      // But because there are two streams (both stdout and stderr), we have to read from each.
-      // read() is blocking, so we use available().
-
-      Sink stdoutSink = new Sink(p.getInputStream());
-      Sink stderrSink = new Sink(p.getErrorStream());
-
-      // Sleep in longer increments when it's not generating output.
-      // When it is, reset this value.
-      int timeToSleep = 1;
-      while (true) {
-        while (stdoutSink.isAvailable()) {
-          if (stdoutSink.consumeByte()) {
-            timeToSleep = 1;
-          } else {
-            stdoutSink.closeStream();
-          }
-        }
-        while (stderrSink.isAvailable()) {
-          if (stderrSink.consumeByte()) {
-            timeToSleep = 1;
-          } else {
-            stderrSink.closeStream();
-          }
-        }
-        try {
-          returnStatus = p.exitValue();
-          break;
-        } catch (IllegalThreadStateException expected) {
-        }
-        timeToSleep++;
-        // Never sleep more than half a second.
-        if (timeToSleep > 500) {
-          timeToSleep = 500;
-        }
-        Thread.sleep(timeToSleep);
-      }
-      if (stdoutSink.isAvailable()) {
-        while (stdoutSink.consumeByte()) {}
-      }
-      if (stderrSink.isAvailable()) {
-        while (stderrSink.consumeByte()) {}
-      }
-
-      stdoutData = stdoutSink.getData();
-      stderrData = stderrSink.getData();
     } catch (IOException e) {
       throw new MoeProblem(e, "Cannot run process: %s: %s", cmdArgs, e.getMessage());
+    }
+    // Both streams must be drained while the process runs, or it will fill the pipe buffers and
+    // block, deadlocking with us. Each stream gets its own pump thread doing blocking bulk reads,
+    // so nothing here polls or sleeps; we only wait for the process and its pumps to finish.
+    StreamPump stdoutPump = StreamPump.start(p.getInputStream(), stdout, command + " stdout");
+    StreamPump stderrPump = StreamPump.start(p.getErrorStream(), stderr, command + " stderr");
+    try {
+      int returnStatus = p.waitFor();
+      stdoutPump.finish();
+      stderrPump.finish();
+      return returnStatus;
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Failed to read output of process: %s: %s", cmdArgs, e.getMessage());
     } catch (InterruptedException e) {
+      p.destroy();
+      Thread.currentThread().interrupt();
       throw new MoeProblem(e, "Interrupted while running process: %s", cmdArgs);
     }
-    if (returnStatus == 0) {
-      return new CommandOutput(stdoutData, stderrData);
-    }
-    throw new CommandException(command, args, stdoutData, stderrData, returnStatus);
   }
 
-  @Override
-  public String runCommand(String workingDirectory, String command, List<String> args)
-      throws CommandException {
-    return runCommandWithFullOutput(workingDirectory, command, args).getStdout();
-  }
+  /**
+   * Copies a process output stream into a sink on a dedicated thread, using bulk reads, until the
+   * stream reaches end-of-file.
+   */
+  private static final class StreamPump implements Runnable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
 
-  private static class Sink {
-    private final List<Byte> bytes = Lists.newArrayList();
-    private InputStream stream;
+    private final InputStream stream;
+    private final OutputStream sink;
+    private final Thread thread;
+    private volatile Exception failure;
 
-    Sink(InputStream stream) {
+    private StreamPump(InputStream stream, OutputStream sink, String name) {
       this.stream = stream;
+      this.sink = sink;
+      this.thread = new Thread(this, "moe-pump: " + name);
+      this.thread.setDaemon(true);
     }
 
-    boolean isAvailable() throws IOException {
-      return stream != null && stream.available() > 0;
+    /** Creates a pump for the given stream and starts draining it in the background. */
+    static StreamPump start(InputStream stream, OutputStream sink, String name) {
+      StreamPump pump = new StreamPump(stream, sink, name);
+      pump.thread.start();
+      return pump;
     }
 
-    void closeStream() {
-      stream = null;
+    @Override
+    public void run() {
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      try (InputStream in = stream) {
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+          if (failure == null) {
+            try {
+              sink.write(buffer, 0, read);
+            } catch (IOException | RuntimeException e) {
+              // Keep draining (and discarding) so that the process can still run to completion.
+              failure = e;
+            }
+          }
+        }
+      } catch (IOException e) {
+        failure = e;
+      }
     }
 
-    boolean consumeByte() throws IOException {
-      int data = stream.read();
-      if (data == -1) {
-        return false;
-      } else {
-        bytes.add((byte) data);
-        return true;
+    /**
+     * Waits for the stream to be fully drained into the sink.
+     *
+     * @throws IOException if reading from the stream, or writing to the sink, failed
+     */
+    void finish() throws IOException, InterruptedException {
+      thread.join();
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure != null) {
+        throw (IOException) failure;
       }
     }
+  }
 
-    String getData() {
-      byte[] byteArray = new byte[bytes.size()];
-      int i = 0;
-      for (Byte b : bytes) {
-        byteArray[i++] = b;
-      }
-      return new String(byteArray, UTF_8);
+  /** A {@link ByteArrayOutputStream} which can decode its contents without an extra copy. */
+  private static final class DecodingByteArrayOutputStream extends ByteArrayOutputStream {
+    DecodingByteArrayOutputStream() {
+      super(8 * 1024);
+    }
+
+    synchronized String decode() {
+      return new String(buf, 0, count, UTF_8);
     }
   }
 
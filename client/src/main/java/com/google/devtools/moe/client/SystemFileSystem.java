@@ -18,7 +18,16 @@ package com.google.devtools.moe.client;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Files.walkFileTree;
-
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
+
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -31,22 +40,42 @@ import dagger.Lazy;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /** A {@link FileSystem} using the real local filesystem via operations in {@link File}. */
 @Singleton
 public class SystemFileSystem extends AbstractFileSystem {
+  /**
+   * Whether files can be shared as hard links: only where the number of links to a file can be
+   * read, so that a shared file can be told apart and given its own storage before a write.
+   */
+  private static final boolean CAN_SHARE =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+  /** Whether files' permissions can be read along with their other attributes. */
+  private static final boolean POSIX =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
   private final Map<File, Lifetime> tempDirLifetimes = Maps.newHashMap();
   @Inject Lazy<Lifetimes> lifetimes;
 
@@ -98,6 +127,11 @@ public class SystemFileSystem extends AbstractFileSystem {
     tempDirLifetimes.put(path, lifetime);
   }
 
+  @Override
+  public boolean isLocal() {
+    return true;
+  }
+
   /**
    * Find files under a path.
    */
@@ -108,6 +142,67 @@ public class SystemFileSystem extends AbstractFileSystem {
     return result;
   }
 
+  /**
+   * Indexes the files under root, listing its directories in parallel. Like {@link #findFiles}, it
+   * follows symbolic links, and skips those which are dangling.
+   */
+  @Override
+  public FileIndex indexFiles(File root) {
+    Path rootPath = root.toPath();
+    ConcurrentMap<String, FileIndex.Attributes> files = new ConcurrentHashMap<>();
+    if (java.nio.file.Files.isDirectory(rootPath)) {
+      ForkJoinPool.commonPool().invoke(new IndexDirectory(rootPath, rootPath, files));
+    }
+    return FileIndex.of(files);
+  }
+
+  /** Lists a directory into an index, forking a task for each of its subdirectories. */
+  private static class IndexDirectory extends RecursiveAction {
+    private final Path root;
+    private final Path directory;
+    private final ConcurrentMap<String, FileIndex.Attributes> files;
+
+    IndexDirectory(Path root, Path directory, ConcurrentMap<String, FileIndex.Attributes> files) {
+      this.root = root;
+      this.directory = directory;
+      this.files = files;
+    }
+
+    @Override
+    protected void compute() {
+      List<IndexDirectory> subdirectories = new ArrayList<>();
+      try (DirectoryStream<Path> entries = java.nio.file.Files.newDirectoryStream(directory)) {
+        for (Path entry : entries) {
+          BasicFileAttributes attributes;
+          try {
+            attributes =
+                POSIX
+                    ? java.nio.file.Files.readAttributes(entry, PosixFileAttributes.class)
+                    : java.nio.file.Files.readAttributes(entry, BasicFileAttributes.class);
+          } catch (NoSuchFileException e) {
+            continue; // A dangling symbolic link, or a file deleted since the listing.
+          }
+          if (attributes.isDirectory()) {
+            subdirectories.add(new IndexDirectory(root, entry, files));
+          } else if (attributes.isRegularFile()) {
+            files.put(
+                Joiner.on('/').join(root.relativize(entry)),
+                FileIndex.Attributes.create(attributes.size(), isExecutable(entry, attributes)));
+          }
+        }
+      } catch (IOException e) {
+        throw new MoeProblem(e, "Could not list %s", directory);
+      }
+      invokeAll(subdirectories);
+    }
+
+    private static boolean isExecutable(Path file, BasicFileAttributes attributes) {
+      return (attributes instanceof PosixFileAttributes)
+          ? ((PosixFileAttributes) attributes).permissions().contains(OWNER_EXECUTE)
+          : java.nio.file.Files.isExecutable(file);
+    }
+  }
+
   void findFilesRecursiveHelper(File f, Set<File> result) {
     if (f.exists() && f.isFile()) {
       result.add(f);
@@ -160,11 +255,13 @@ public class SystemFileSystem extends AbstractFileSystem {
 
   @Override
   public void setExecutable(File f) {
+    unshare(f);
     f.setExecutable(true, false);
   }
 
   @Override
   public void setNonExecutable(File f) {
+    unshare(f);
     f.setExecutable(false, false);
   }
 
@@ -180,13 +277,99 @@ public class SystemFileSystem extends AbstractFileSystem {
 
   @Override
   public void copyFile(File src, File dest) throws IOException {
-    Files.copy(src, dest);
+    if (dest.exists() && java.nio.file.Files.isSameFile(src.toPath(), dest.toPath())) {
+      // dest is src, or shares its storage, so it has src's contents already (and deleting it could
+      // lose them); it only needs storage of its own.
+      unshare(dest);
+      return;
+    }
+    // Write a new file, rather than through to any file dest shares its storage with.
+    java.nio.file.Files.deleteIfExists(dest.toPath());
+    transfer(src.toPath(), dest.toPath());
     dest.setExecutable(src.canExecute(), false);
   }
 
+  /**
+   * Copies the bytes of a file with {@link FileChannel#transferTo}, which leaves the copying to the
+   * kernel, and on a copy-on-write file system can share the blocks rather than copy them.
+   */
+  private static void transfer(Path src, Path dest) throws IOException {
+    try (FileChannel in = FileChannel.open(src, READ);
+        FileChannel out = FileChannel.open(dest, WRITE, CREATE, TRUNCATE_EXISTING)) {
+      long size = in.size();
+      long position = 0;
+      while (position < size) {
+        long transferred = in.transferTo(position, size - position, out);
+        if (transferred <= 0) {
+          break; // The file was truncated while being copied.
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  /**
+   * Shares src's storage with dest as a hard link, which also shares its executability. Files
+   * which can't be linked (e.g. across devices, or symlinks) are copied instead.
+   */
+  @Override
+  public void shareFile(File src, File dest) throws IOException {
+    Path srcPath = src.toPath();
+    Path destPath = dest.toPath();
+    if (CAN_SHARE && java.nio.file.Files.isRegularFile(srcPath, NOFOLLOW_LINKS)) {
+      java.nio.file.Files.deleteIfExists(destPath);
+      try {
+        java.nio.file.Files.createLink(destPath, srcPath);
+        return;
+      } catch (IOException | UnsupportedOperationException e) {
+        // Fall back to a copy.
+      }
+    }
+    copyFile(src, dest);
+  }
+
+  /** Returns whether the file is a regular file sharing its storage with another. */
+  private static boolean isShared(Path path) throws IOException {
+    return CAN_SHARE
+        && java.nio.file.Files.isRegularFile(path, NOFOLLOW_LINKS)
+        && (Integer) java.nio.file.Files.getAttribute(path, "unix:nlink", NOFOLLOW_LINKS) > 1;
+  }
+
+  /**
+   * Gives a file shared by {@link #shareFile} storage of its own, so that modifying it in place
+   * leaves the file it was shared with unchanged.
+   */
+  private static void unshare(File f) {
+    Path path = f.toPath();
+    try {
+      if (!isShared(path)) {
+        return;
+      }
+      Path copy = java.nio.file.Files.createTempFile(path.getParent(), ".moe_unshare_", "");
+      try {
+        transfer(path, copy);
+        copy.toFile().setExecutable(f.canExecute(), false);
+        java.nio.file.Files.move(copy, path, REPLACE_EXISTING, ATOMIC_MOVE);
+      } finally {
+        java.nio.file.Files.deleteIfExists(copy);
+      }
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not unshare %s", f);
+    }
+  }
+
   @Override
   public void write(String contents, File f) throws IOException {
-    Files.write(contents, f, UTF_8);
+    Path path = f.toPath();
+    if (isShared(path)) {
+      // Write a new file, keeping its executability, rather than through to the shared one.
+      boolean executable = f.canExecute();
+      java.nio.file.Files.delete(path);
+      Files.asCharSink(f, UTF_8).write(contents);
+      f.setExecutable(executable, false);
+      return;
+    }
+    Files.asCharSink(f, UTF_8).write(contents);
   }
 
   @Override
@@ -19,6 +19,8 @@ package com.google.devtools.moe.client.codebase;
 import static java.util.Arrays.asList;
 
 import com.google.auto.value.AutoValue;
+import com.google.devtools.moe.client.FileIndex;
+import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.Ui.Keepable;
 import com.google.devtools.moe.client.codebase.expressions.Expression;
@@ -34,6 +36,9 @@ import java.util.Collection;
  */
 @AutoValue
 public abstract class Codebase implements Keepable<Codebase> {
+  /** The index of this codebase's files, once read. Shared with copies of this codebase. */
+  private volatile FileIndex files;
+
   public abstract File root();
 
   @Override
@@ -81,6 +86,19 @@ public abstract class Codebase implements Keepable<Codebase> {
     return root().hashCode();
   }
 
+  /**
+   * Returns an index of the files in this Codebase. The files of a Codebase don't change once it
+   * is created, so they are indexed on the first call, and the index is kept.
+   */
+  public FileIndex files(FileSystem filesystem) {
+    FileIndex index = files;
+    if (index == null) {
+      index = filesystem.indexFiles(root());
+      files = index;
+    }
+    return index;
+  }
+
   /**
    * @return the path of a file in this Codebase
    */
@@ -109,7 +127,7 @@ public abstract class Codebase implements Keepable<Codebase> {
    * or translating by "imprinting" them with the EditExpression or TranslateExpression.
    */
   public Codebase copyWithExpression(Expression newExpression) {
-    return Codebase.create(root(), projectSpace(), newExpression);
+    return keepingIndex(Codebase.create(root(), projectSpace(), newExpression));
   }
 
   /**
@@ -118,6 +136,11 @@ public abstract class Codebase implements Keepable<Codebase> {
    * space it was translated to.
    */
   public Codebase copyWithProjectSpace(String newProjectSpace) {
-    return Codebase.create(root(), newProjectSpace, expression());
+    return keepingIndex(Codebase.create(root(), newProjectSpace, expression()));
+  }
+
+  private Codebase keepingIndex(Codebase copy) {
+    copy.files = files;
+    return copy;
   }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.codebase;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.MoeProblem;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Computes {@link Fingerprint}s of codebases on local disk.
+ *
+ * <p>File content hashes are remembered by path, and reused for as long as the file's size and
+ * modification time are unchanged, so fingerprinting a codebase again (or a copy sharing most of
+ * its files) costs little more than listing it. Only the most recently used hashes are remembered,
+ * as the codebases of a long MOE run come and go in temp dirs that are soon deleted.
+ */
+@Singleton
+public class CodebaseFingerprinter {
+  private static final long MAX_CACHED_HASHES = 100_000;
+
+  private final FileSystem filesystem;
+  private final Cache<Path, CachedHash> contentHashes;
+
+  @Inject
+  public CodebaseFingerprinter(FileSystem filesystem) {
+    this(filesystem, MAX_CACHED_HASHES);
+  }
+
+  @VisibleForTesting
+  CodebaseFingerprinter(FileSystem filesystem, long maxCachedHashes) {
+    this.filesystem = filesystem;
+    this.contentHashes = CacheBuilder.newBuilder().maximumSize(maxCachedHashes).build();
+  }
+
+  /**
+   * Returns the fingerprint of the codebase's directory tree, or null if the codebase isn't a
+   * directory on local disk (e.g. it lives in an in-memory file system) and so can't be
+   * fingerprinted.
+   */
+  @Nullable
+  public Fingerprint fingerprint(Codebase codebase) {
+    if (!filesystem.isLocal()) {
+      return null;
+    }
+    Path root = codebase.root().toPath().toAbsolutePath();
+    if (!Files.isDirectory(root)) {
+      return null;
+    }
+    try {
+      return fingerprintDirectory(root);
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not fingerprint %s", codebase.root());
+    }
+  }
+
+  private Fingerprint fingerprintDirectory(Path directory) throws IOException {
+    Map<String, Fingerprint> entries = new HashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        BasicFileAttributes attributes;
+        try {
+          // Like FileSystem.findFiles, follow symlinks.
+          attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+          // A dangling symlink, which findFiles doesn't list either.
+          continue;
+        }
+        if (attributes.isDirectory()) {
+          // Like FileSystem.findFiles, see only files: a directory with none doesn't count.
+          Fingerprint subdirectory = fingerprintDirectory(path);
+          if (!subdirectory.isEmpty()) {
+            entries.put(path.getFileName().toString(), subdirectory);
+          }
+        } else if (attributes.isRegularFile()) {
+          entries.put(
+              path.getFileName().toString(),
+              Fingerprint.ofFile(contentHash(path, attributes), Files.isExecutable(path)));
+        }
+      }
+    }
+    return Fingerprint.ofDirectory(entries);
+  }
+
+  private HashCode contentHash(Path file, BasicFileAttributes attributes) throws IOException {
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+    CachedHash cached = contentHashes.getIfPresent(file);
+    if (cached != null && cached.size() == size && cached.modified() == modified) {
+      return cached.hash();
+    }
+    HashCode hash = com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256());
+    contentHashes.put(file, CachedHash.create(size, modified, hash));
+    return hash;
+  }
+
+  /** A file's content hash, and the size and modification time it was computed at. */
+  @AutoValue
+  abstract static class CachedHash {
+    abstract long size();
+
+    abstract long modified();
+
+    abstract HashCode hash();
+
+    static CachedHash create(long size, long modified, HashCode hash) {
+      return new AutoValue_CodebaseFingerprinter_CachedHash(size, modified, hash);
+    }
+  }
+}
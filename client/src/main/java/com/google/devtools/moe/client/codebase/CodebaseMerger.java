@@ -16,22 +16,31 @@
 
 package com.google.devtools.moe.client.codebase;
 
-import static com.google.devtools.moe.client.Utils.makeFilenamesRelative;
-
 import com.google.auto.value.AutoValue;
-import com.google.common.collect.ImmutableList;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.devtools.moe.client.CommandRunner;
-import com.google.devtools.moe.client.CommandRunner.CommandException;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.tools.FileDifference.FileDiffer;
+import com.google.devtools.moe.client.tools.FileMerger;
+import com.google.devtools.moe.client.tools.FileMerger.RcsFileMerger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -79,20 +88,58 @@ import javax.inject.Singleton;
  * 75 which has the new public changes and still has the confidential code that a public revision
  * wouldn't have. Thus, internal revision 75 would be equivalent with public revision 143 assuming
  * there were no conflicts when merging.
+ *
+ * <p>Files are independent of each other, so they are merged in parallel. The results are
+ * collected in filename order, whatever order the merges finish in.
  */
 @Singleton
 public class CodebaseMerger {
   private final Ui ui;
   private final FileSystem filesystem;
-  private final CommandRunner cmd;
   private final FileDiffer differ;
+  private final FileMerger fileMerger;
+  private final CodebaseFingerprinter fingerprinter;
+  private final int parallelism;
 
-  @Inject
+  /**
+   * Creates a CodebaseMerger which merges files one at a time by running {@code merge} through
+   * {@code cmd}.
+   */
   CodebaseMerger(Ui ui, FileSystem filesystem, CommandRunner cmd, FileDiffer differ) {
+    this(
+        ui, filesystem, differ, new RcsFileMerger(cmd), new CodebaseFingerprinter(filesystem), 1);
+  }
+
+  @Inject
+  CodebaseMerger(
+      Ui ui,
+      FileSystem filesystem,
+      FileDiffer differ,
+      FileMerger fileMerger,
+      CodebaseFingerprinter fingerprinter) {
+    this(
+        ui,
+        filesystem,
+        differ,
+        fileMerger,
+        fingerprinter,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  CodebaseMerger(
+      Ui ui,
+      FileSystem filesystem,
+      FileDiffer differ,
+      FileMerger fileMerger,
+      CodebaseFingerprinter fingerprinter,
+      int parallelism) {
     this.ui = ui;
     this.filesystem = filesystem;
-    this.cmd = cmd;
     this.differ = differ;
+    this.fileMerger = fileMerger;
+    this.fingerprinter = fingerprinter;
+    this.parallelism = parallelism;
   }
 
   /**
@@ -106,19 +153,100 @@ public class CodebaseMerger {
     MergeResult.Builder resultBuilder = MergeResult.builder();
     File mergedDir = filesystem.getTemporaryDirectory("merged_codebase_");
     RepositoryExpression mergedExpression = new RepositoryExpression("merged");
-    resultBuilder.setMergedCodebase(Codebase.create(mergedDir, "merged", mergedExpression));
-    Set<String> filesToMerge = Sets.union(findFiles(destination), findFiles(modified));
+    Codebase merged = Codebase.create(mergedDir, "merged", mergedExpression);
+    resultBuilder.setMergedCodebase(merged);
+    List<String> filesToMerge =
+        ImmutableSortedSet.copyOf(Sets.union(findFiles(destination), findFiles(modified)))
+            .asList();
+
+    // A file that is the same in the original and modified codebases has no changes to merge
+    // into the destination, so it needn't be diffed or run through merge. Fingerprints answer
+    // that from hashes, reusing the hashes of files seen before.
+    Fingerprint originalFingerprint = fingerprinter.fingerprint(original);
+    Fingerprint modifiedFingerprint =
+        (originalFingerprint == null) ? null : fingerprinter.fingerprint(modified);
+
+    // Each worker claims files until they run out, and records what merging each one produced
+    // in that file's slot, so the results can be collected in order afterwards.
+    FileOutcome[] outcomes = new FileOutcome[filesToMerge.size()];
+    AtomicInteger nextFile = new AtomicInteger();
+    Runnable worker =
+        () -> {
+          int i;
+          while (!Thread.currentThread().isInterrupted()
+              && (i = nextFile.getAndIncrement()) < filesToMerge.size()) {
+            String filename = filesToMerge.get(i);
+            if (modifiedFingerprint != null
+                && isUnmodified(originalFingerprint, modifiedFingerprint, filename)) {
+              outcomes[i] = keepDestinationFile(destination, merged, filename);
+            } else {
+              outcomes[i] = mergeFile(original, modified, destination, merged, filename);
+            }
+          }
+        };
+    runWorkers(worker, Math.min(parallelism, filesToMerge.size()), destination);
 
-    for (String filename : filesToMerge) {
-      this.generateMergedFile(original, modified, destination, resultBuilder, filename);
+    for (int i = 0; i < outcomes.length; i++) {
+      addOutcome(resultBuilder, filesToMerge.get(i), outcomes[i]);
     }
     MergeResult result = resultBuilder.build();
     result.report(ui);
     return result;
   }
 
+  /** Runs the worker on the given number of threads, returning once all have finished. */
+  private static void runWorkers(Runnable worker, int threads, Codebase destination) {
+    if (threads <= 1) {
+      worker.run();
+      return;
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("codebase-merger-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> workers = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(worker));
+      }
+      for (Future<?> future : workers) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new MoeProblem(e.getCause(), "Error merging into %s", destination);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MoeProblem(e, "Interrupted merging into %s", destination);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private Set<String> findFiles(Codebase codebase) {
-    return makeFilenamesRelative(filesystem.findFiles(codebase.root()), codebase.root());
+    return codebase.files(filesystem).paths();
+  }
+
+  /** Returns whether the file exists, and is identical, in both the original and modified trees. */
+  private static boolean isUnmodified(
+      Fingerprint original, Fingerprint modified, String filename) {
+    Fingerprint originalFile = original.find(filename);
+    return originalFile != null
+        && !originalFile.isDirectory()
+        && originalFile.equals(modified.find(filename));
+  }
+
+  /**
+   * Handles a file unchanged between the original and modified codebases as merging it would: the
+   * destination's version, if any, is the result.
+   */
+  private FileOutcome keepDestinationFile(Codebase destination, Codebase merged, String filename) {
+    File destFile = destination.getFile(filename);
+    if (!filesystem.exists(destFile)) {
+      return FileOutcome.NONE;
+    }
+    copyToMergedCodebase(merged, filename, destFile);
+    return FileOutcome.MERGED;
   }
 
   private boolean areDifferent(String filename, File x, File y) {
@@ -142,9 +270,9 @@ public class CodebaseMerger {
 
   /**
    * Given a filename, this method finds the file with that name in each of the three codebases.
-   * Using the UNIX merge(1) tool, those three files are merged and the result is placed in the
-   * merged codebase. Any conflicts that occurred during merging will appear in the merged codebase
-   * file for the user to resolve.
+   * Using the {@link FileMerger} (which merges as the UNIX merge(1) tool does), those three files
+   * are merged and the result is placed in the merged codebase. Any conflicts that occurred during
+   * merging will appear in the merged codebase file for the user to resolve.
    *
    * <p>In the case where the file specified by the given filename exists in the original codebase
    * and in either the modified codebase or the destination codebase (but not both) and if the file
@@ -164,6 +292,22 @@ public class CodebaseMerger {
       Codebase destination,
       MergeResult.Builder resultBuilder,
       String filename) {
+    addOutcome(
+        resultBuilder,
+        filename,
+        mergeFile(original, modified, destination, resultBuilder.mergedCodebase(), filename));
+  }
+
+  /**
+   * Does the work of {@link #generateMergedFile}, touching nothing shared but the merged
+   * codebase's directory, so that files can be merged concurrently.
+   */
+  private FileOutcome mergeFile(
+      Codebase original,
+      Codebase modified,
+      Codebase destination,
+      Codebase merged,
+      String filename) {
     File origFile = original.getFile(filename);
     boolean origExists = filesystem.exists(origFile);
 
@@ -187,52 +331,60 @@ public class CodebaseMerger {
         destFile = new File("/dev/null");
       } else {
         // Defer to deletion in destination codebase.
-        return;
+        return FileOutcome.NONE;
       }
 
     } else if (origExists && !modExists && destExists) {
       // Blindly follow deletion of the original file by not copying it into the merged codebase.
-      return;
+      return FileOutcome.NONE;
 
     } else if (!origExists && !(modExists && destExists)) {
       // File exists only in modified or destination codebase, so just copy it over.
       File existingFile = (modExists ? modFile : destFile);
-      copyToMergedCodebase(resultBuilder.mergedCodebase(), filename, existingFile);
-      return;
+      copyToMergedCodebase(merged, filename, existingFile);
+      return FileOutcome.NONE;
 
     } else if (!origExists && modExists && destExists) {
       // Merge both new files (conflict expected).
       origFile = new File("/dev/null");
     }
 
-    File mergedFile = copyToMergedCodebase(resultBuilder.mergedCodebase(), filename, destFile);
+    File mergedFile = copyToMergedCodebase(merged, filename, destFile);
 
-    try {
-      // Merges the changes that lead from origFile to modFile into mergedFile (which is a copy
-      // of destFile). After, mergedFile will have the combined changes of modFile and destFile.
-      cmd.runCommand(
-          resultBuilder.mergedCodebase().root().getAbsolutePath(),
-          "merge",
-          ImmutableList.of(
-              mergedFile.getAbsolutePath(), origFile.getAbsolutePath(), modFile.getAbsolutePath()));
-      // Return status was 0 and the merge was successful. Note it.
-      resultBuilder.mergedFilesBuilder().add(mergedFile.getAbsolutePath());
-    } catch (CommandException e) {
-      // If merge fails with exit status 1, then a conflict occurred. Make a note of the filepath.
-      if (e.returnStatus == 1) {
-        resultBuilder.failedFilesBuilder().add(mergedFile.getAbsolutePath());
-      } else {
-        throw new MoeProblem(
-            e,
-            "Merge returned with unexpected status %d when trying to run \"merge -p %s %s %s\"",
-            e.returnStatus,
-            destFile.getAbsolutePath(),
-            origFile.getAbsolutePath(),
-            modFile.getAbsolutePath());
-      }
+    // Merges the changes that lead from origFile to modFile into mergedFile (which is a copy
+    // of destFile). After, mergedFile will have the combined changes of modFile and destFile.
+    // If a conflict occurred, the file is noted as failed.
+    return fileMerger.merge(mergedFile, origFile, modFile)
+        ? FileOutcome.MERGED
+        : FileOutcome.FAILED;
+  }
+
+  /** Records the outcome of merging a file in the result. */
+  private static void addOutcome(
+      MergeResult.Builder resultBuilder, String filename, FileOutcome outcome) {
+    String mergedPath = resultBuilder.mergedCodebase().getFile(filename).getAbsolutePath();
+    switch (outcome) {
+      case MERGED:
+        resultBuilder.mergedFilesBuilder().add(mergedPath);
+        break;
+      case FAILED:
+        resultBuilder.failedFilesBuilder().add(mergedPath);
+        break;
+      case NONE:
+        break;
     }
   }
 
+  /** What merging a file contributes to the {@link MergeResult}. */
+  private enum FileOutcome {
+    /** The file was merged cleanly into the merged codebase. */
+    MERGED,
+    /** The file was merged into the merged codebase with conflicts. */
+    FAILED,
+    /** The file was copied into the merged codebase as is, or left out of it. */
+    NONE
+  }
+
   /**
    * The encapsulated results of a {@link CodebaseMerger#merge(Codebase,Codebase,Codebase)}
    * operation
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.codebase;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent, size-bounded cache of the codebases exported from repositories, shared by every MOE
+ * run on this machine, so that exporting the same contents again (the same revision, or another
+ * with an identical tree) costs a directory of hard links rather than an archive of the repository.
+ *
+ * <p>Snapshots are keyed by repository URL, an identifier for the exported contents (e.g. a git
+ * tree hash), and the configuration which shapes the export (ignored files and checkout paths).
+ * Each snapshot is a directory of files plus a manifest of their sizes and modification times.
+ *
+ * <p>Codebases handed out share storage with their snapshot, as {@link FileSystem#shareFile}
+ * describes: changing a file through the {@link FileSystem} first gives it storage of its own, so
+ * the snapshot is untouched. A snapshot whose files were nonetheless modified in place no longer
+ * matches its manifest, and is discarded rather than handed out. When the cache outgrows its bound,
+ * the least recently used snapshots are evicted.
+ *
+ * <p>The cache is best-effort: failures to read or write it are logged and otherwise ignored.
+ */
+public class CodebaseSnapshotCache {
+  private static final Logger logger = Logger.getLogger(CodebaseSnapshotCache.class.getName());
+
+  /** A cache which never holds anything. */
+  public static final CodebaseSnapshotCache DISABLED =
+      new CodebaseSnapshotCache(null, null, null, 0);
+
+  /** The default bound on the total size of the cached snapshots. */
+  public static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+  private static final String MANIFEST_SUFFIX = ".manifest";
+  private static final String MANIFEST_HEADER = "moe-snapshot-1";
+
+  private final FileSystem filesystem;
+  private final Lifetimes lifetimes;
+  @Nullable private final File directory;
+  private final long maxBytes;
+
+  /**
+   * @param filesystem the filesystem through which snapshots are shared with codebases
+   * @param lifetimes the lifetimes of the codebases handed out
+   * @param directory the directory holding the snapshots, created if needed, or null to disable
+   *     caching
+   * @param maxBytes the total size of snapshots above which the least recently used are evicted
+   */
+  public CodebaseSnapshotCache(
+      FileSystem filesystem, Lifetimes lifetimes, @Nullable File directory, long maxBytes) {
+    this.filesystem = filesystem;
+    this.lifetimes = lifetimes;
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns a cache in the user's cache directory ({@code $XDG_CACHE_HOME/moe/codebase_snapshots},
+   * by default {@code ~/.cache/moe/codebase_snapshots}).
+   */
+  public static CodebaseSnapshotCache inUserCacheDirectory(
+      FileSystem filesystem, Lifetimes lifetimes) {
+    String cacheHome = System.getenv("XDG_CACHE_HOME");
+    File root =
+        Strings.isNullOrEmpty(cacheHome)
+            ? new File(System.getProperty("user.home"), ".cache")
+            : new File(cacheHome);
+    return new CodebaseSnapshotCache(
+        filesystem, lifetimes, new File(root, "moe/codebase_snapshots"), DEFAULT_MAX_BYTES);
+  }
+
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Returns the key of the snapshot of the given contents of the repository with the given config.
+   *
+   * @param contentId an identifier for the exported contents, equal for any two revisions whose
+   *     exports are identical, such as a tree hash
+   */
+  public static String key(RepositoryConfig config, String contentId) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Object part :
+        new Object[] {
+          config.getUrl(), contentId, config.getIgnoreFilePatterns(), config.getCheckoutPaths()
+        }) {
+      String string = String.valueOf(part);
+      hasher.putInt(string.length()).putString(string, UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns a new temporary directory, lasting as long as the current task, holding the snapshot
+   * with the given key, or null if there is no such (intact) snapshot.
+   */
+  @Nullable
+  public File get(String key, String tempDirPrefix) {
+    if (directory == null) {
+      return null;
+    }
+    File snapshot = new File(directory, key);
+    File manifest = new File(directory, key + MANIFEST_SUFFIX);
+    if (!manifest.isFile()) {
+      return null;
+    }
+    File destination = null;
+    // Snapshots are only replaced or evicted under the exclusive lock, so this one can't change
+    // between checking it against its manifest and sharing it.
+    try (FileChannel lock = lock(true)) {
+      Map<String, String> expected = manifest.isFile() ? readManifest(manifest) : null;
+      if (expected == null) {
+        // Evicted meanwhile.
+        return null;
+      }
+      if (expected.equals(index(snapshot.toPath()))) {
+        destination = filesystem.getTemporaryDirectory(tempDirPrefix, lifetimes.currentTask());
+        filesystem.makeDirs(destination);
+        filesystem.shareDirectory(snapshot, destination);
+        // Most recently used.
+        manifest.setLastModified(System.currentTimeMillis());
+        return destination;
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to read codebase snapshot " + snapshot, e);
+      if (destination != null) {
+        try {
+          filesystem.deleteRecursively(destination);
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+      }
+      return null;
+    }
+    logger.warning("Discarding modified codebase snapshot " + snapshot);
+    try (FileChannel lock = lock(false)) {
+      evict(key);
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to discard codebase snapshot " + snapshot, e);
+    }
+    return null;
+  }
+
+  /**
+   * Caches the codebase at the given root as the snapshot with the given key. The snapshot shares
+   * storage with the codebase. Codebases with symbolic links, or too big for the cache, are not
+   * cached.
+   */
+  public void put(String key, File root) {
+    if (directory == null || new File(directory, key + MANIFEST_SUFFIX).exists()) {
+      return;
+    }
+    Path partial = null;
+    try {
+      Map<String, String> index = index(root.toPath());
+      if (index == null || totalBytes(index.values()) > maxBytes) {
+        return;
+      }
+      Files.createDirectories(directory.toPath());
+      partial = Files.createTempDirectory(directory.toPath(), key + ".partial");
+      filesystem.shareDirectory(root, partial.toFile());
+      Path manifest = Files.createTempFile(directory.toPath(), key, ".partial");
+      writeManifest(manifest, index);
+      try (FileChannel lock = lock(false)) {
+        if (new File(directory, key + MANIFEST_SUFFIX).exists()) {
+          return;
+        }
+        // The snapshot goes into place before its manifest, which marks it complete.
+        evict(key);
+        move(partial, new File(directory, key).toPath());
+        move(manifest, new File(directory, key + MANIFEST_SUFFIX).toPath());
+        partial = null;
+        evictLeastRecentlyUsed();
+      } finally {
+        Files.deleteIfExists(manifest);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to write codebase snapshot of " + root, e);
+    } finally {
+      if (partial != null) {
+        try {
+          filesystem.deleteRecursively(partial.toFile());
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Failed to clean up " + partial, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a channel holding the lock on the cache directory, shared by readers of snapshots, or
+   * exclusively by those which add or remove them. Closing the channel releases the lock.
+   */
+  private FileChannel lock(boolean shared) throws IOException {
+    FileChannel channel =
+        FileChannel.open(
+            new File(directory, "lock").toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    try {
+      channel.lock(0, Long.MAX_VALUE, shared);
+      return channel;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target);
+    }
+  }
+
+  /** Deletes the snapshot with the given key, manifest first, so that it stops being used. */
+  private void evict(String key) throws IOException {
+    Files.deleteIfExists(new File(directory, key + MANIFEST_SUFFIX).toPath());
+    File snapshot = new File(directory, key);
+    if (snapshot.exists()) {
+      filesystem.deleteRecursively(snapshot);
+    }
+  }
+
+  private void evictLeastRecentlyUsed() throws IOException {
+    List<File> manifests = new ArrayList<>();
+    try (DirectoryStream<Path> entries =
+        Files.newDirectoryStream(directory.toPath(), "*" + MANIFEST_SUFFIX)) {
+      for (Path entry : entries) {
+        manifests.add(entry.toFile());
+      }
+    }
+    manifests.sort(Comparator.comparingLong(File::lastModified).reversed());
+    long total = 0;
+    for (File manifest : manifests) {
+      Map<String, String> index = readManifest(manifest);
+      total += (index == null) ? 0 : totalBytes(index.values());
+      if (total > maxBytes) {
+        String name = manifest.getName();
+        evict(name.substring(0, name.length() - MANIFEST_SUFFIX.length()));
+      }
+    }
+  }
+
+  /**
+   * Returns the "size mtime" of each file under the root, by relative path, or null if there are
+   * symbolic links under it, whose targets a snapshot can't vouch for.
+   */
+  @VisibleForTesting
+  @Nullable
+  static Map<String, String> index(Path root) throws IOException {
+    Map<String, String> index = new TreeMap<>();
+    try (Stream<Path> paths = Files.walk(root)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        BasicFileAttributes attributes =
+            Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attributes.isSymbolicLink()) {
+          return null;
+        }
+        if (attributes.isRegularFile()) {
+          index.put(
+              root.relativize(path).toString(),
+              attributes.size() + " " + attributes.lastModifiedTime().toMillis());
+        }
+      }
+    }
+    return index;
+  }
+
+  private static long totalBytes(Iterable<String> sizesAndTimes) {
+    long total = 0;
+    for (String sizeAndTime : sizesAndTimes) {
+      total += Long.parseLong(sizeAndTime.substring(0, sizeAndTime.indexOf(' ')));
+    }
+    return total;
+  }
+
+  private static void writeManifest(Path manifest, Map<String, String> index) throws IOException {
+    try (Writer out = Files.newBufferedWriter(manifest, UTF_8)) {
+      out.write(MANIFEST_HEADER + "\n");
+      for (Map.Entry<String, String> entry : index.entrySet()) {
+        // Paths can contain spaces, but not NULs.
+        out.write(Joiner.on('\0').join(entry.getValue(), entry.getKey()) + "\n");
+      }
+    }
+  }
+
+  @Nullable
+  private static Map<String, String> readManifest(File manifest) throws IOException {
+    Map<String, String> index = new TreeMap<>();
+    try (BufferedReader in = Files.newBufferedReader(manifest.toPath(), UTF_8)) {
+      if (!MANIFEST_HEADER.equals(in.readLine())) {
+        return null;
+      }
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        int nul = line.indexOf('\0');
+        if (nul < 0) {
+          return null;
+        }
+        index.put(line.substring(nul + 1), line.substring(0, nul));
+      }
+    }
+    return index;
+  }
+}
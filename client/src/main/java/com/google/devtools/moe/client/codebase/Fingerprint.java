@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.codebase;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * A content-addressed (Merkle) hash of a file or directory tree. A file's hash covers its bytes
+ * and executable bit, and a directory's hash covers the names and hashes of its entries, so two
+ * trees with the same hash have the same files, contents and executable bits, and any subtrees
+ * with equal hashes can be skipped when looking for what differs.
+ *
+ * <p>Directories containing no files are left out, as {@link
+ * com.google.devtools.moe.client.FileSystem#findFiles} leaves them out, so two codebases have the
+ * same fingerprint exactly when diffing them would find no difference.
+ */
+public final class Fingerprint {
+  private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+
+  private final HashCode hash;
+  /** The entries of a directory by name, or null for a file. */
+  @Nullable private final ImmutableSortedMap<String, Fingerprint> children;
+
+  private Fingerprint(HashCode hash, @Nullable ImmutableSortedMap<String, Fingerprint> children) {
+    this.hash = hash;
+    this.children = children;
+  }
+
+  /** Returns the fingerprint of a file, given the hash of its contents. */
+  static Fingerprint ofFile(HashCode contentHash, boolean executable) {
+    return new Fingerprint(
+        Hashing.sha256()
+            .newHasher()
+            .putByte((byte) (executable ? 'x' : 'f'))
+            .putBytes(contentHash.asBytes())
+            .hash(),
+        null);
+  }
+
+  /** Returns the fingerprint of a directory with the given entries. */
+  static Fingerprint ofDirectory(Map<String, Fingerprint> entries) {
+    ImmutableSortedMap<String, Fingerprint> children = ImmutableSortedMap.copyOf(entries);
+    Hasher hasher = Hashing.sha256().newHasher().putByte((byte) 'd');
+    for (Map.Entry<String, Fingerprint> entry : children.entrySet()) {
+      hasher.putString(entry.getKey(), UTF_8).putByte((byte) 0);
+      hasher.putBytes(entry.getValue().hash.asBytes());
+    }
+    return new Fingerprint(hasher.hash(), children);
+  }
+
+  public HashCode hash() {
+    return hash;
+  }
+
+  public boolean isDirectory() {
+    return children != null;
+  }
+
+  /** Returns whether this is a directory with no entries. */
+  boolean isEmpty() {
+    return children != null && children.isEmpty();
+  }
+
+  /**
+   * Returns the fingerprint of the file or directory at the given '/'-separated path under this
+   * directory, or null if there is none.
+   */
+  @Nullable
+  public Fingerprint find(String relativePath) {
+    Fingerprint current = this;
+    for (String name : PATH_SPLITTER.split(relativePath)) {
+      if (current.children == null) {
+        return null;
+      }
+      current = current.children.get(name);
+      if (current == null) {
+        return null;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns the relative paths of the files which are not identical in both trees: files in only
+   * one of them, and files whose contents or executable bits differ. Subtrees whose hashes match
+   * are not descended into.
+   */
+  public static Set<String> differingFiles(Fingerprint tree1, Fingerprint tree2) {
+    Set<String> result = new TreeSet<>();
+    collectDifferingFiles(tree1, tree2, "", result);
+    return result;
+  }
+
+  private static void collectDifferingFiles(
+      @Nullable Fingerprint tree1, @Nullable Fingerprint tree2, String path, Set<String> result) {
+    if (tree1 != null && tree2 != null && tree1.hash.equals(tree2.hash)) {
+      return;
+    }
+    // A path may be a file in one tree and a directory in the other, so each side is walked.
+    if (tree1 != null && !tree1.isDirectory()) {
+      result.add(path);
+    }
+    if (tree2 != null && !tree2.isDirectory()) {
+      result.add(path);
+    }
+    Map<String, Fingerprint> children1 = childrenOf(tree1);
+    Map<String, Fingerprint> children2 = childrenOf(tree2);
+    Set<String> names = new TreeSet<>(children1.keySet());
+    names.addAll(children2.keySet());
+    for (String name : names) {
+      collectDifferingFiles(
+          children1.get(name),
+          children2.get(name),
+          path.isEmpty() ? name : path + "/" + name,
+          result);
+    }
+  }
+
+  private static Map<String, Fingerprint> childrenOf(@Nullable Fingerprint tree) {
+    return (tree == null || tree.children == null)
+        ? ImmutableSortedMap.<String, Fingerprint>of()
+        : tree.children;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Fingerprint && hash.equals(((Fingerprint) other).hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(hash);
+  }
+
+  @Override
+  public String toString() {
+    return hash.toString();
+  }
+}
@@ -63,4 +63,14 @@ public interface LocalWorkspace {
    * @return the root of the archive
    */
   File archiveAtRevision(@Nullable String revId);
+
+  /**
+   * Returns an identifier for the contents of the given revision, equal for any two revisions with
+   * identical contents (e.g. a tree hash), or null if this kind of repository has none. Codebases
+   * with a content ID can be cached across revisions and MOE runs.
+   */
+  @Nullable
+  default String contentId(String revId) {
+    return null;
+  }
 }
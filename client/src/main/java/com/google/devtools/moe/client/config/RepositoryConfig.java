@@ -32,6 +32,9 @@ import java.util.List;
 // are supported.
 @SuppressWarnings("FieldCanBeFinal") // Gson reflectively updates these fields.
 public class RepositoryConfig {
+  /** The default for {@link #getMaxRevisionsToSearch()}. */
+  public static final int DEFAULT_MAX_REVISIONS_TO_SEARCH = 10000;
+
   private String type;
   private String url;
   private String projectSpace = "public";
@@ -83,6 +86,13 @@ public class RepositoryConfig {
   @SerializedName("shallow_checkout")
   private boolean shallowCheckout = false;
 
+  /**
+   * How many revisions a history search (e.g. for the last equivalence) may visit before giving
+   * up. Zero or less means no limit.
+   */
+  @SerializedName("max_revisions_to_search")
+  private int maxRevisionsToSearch = DEFAULT_MAX_REVISIONS_TO_SEARCH;
+
   private RepositoryConfig() {} // Constructed by gson
 
   public String getUrl() {
@@ -156,6 +166,14 @@ public class RepositoryConfig {
     return shallowCheckout;
   }
 
+  /**
+   * Returns how many revisions a search of this repository's history may visit before giving up,
+   * or a number less than one if searches may go all the way to the start of history.
+   */
+  public int getMaxRevisionsToSearch() {
+    return maxRevisionsToSearch;
+  }
+
   /**
    * Returns a list of pattern strings for file paths that should be marked executable. For version
    * control or build systems that don't support the executable bit, use these patterns to indicate
@@ -24,7 +24,9 @@ import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.Ui.Task;
 import com.google.devtools.moe.client.codebase.Codebase;
 import com.google.devtools.moe.client.codebase.CodebaseCreationError;
+import com.google.devtools.moe.client.codebase.CodebaseFingerprinter;
 import com.google.devtools.moe.client.codebase.ExpressionEngine;
+import com.google.devtools.moe.client.codebase.Fingerprint;
 import com.google.devtools.moe.client.codebase.expressions.Expression;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.config.MigrationConfig;
@@ -56,6 +58,8 @@ public class Bookkeeper {
   private final Db db;
   private final Ui ui;
   private final ExpressionEngine expressionEngine;
+  private final CodebaseFingerprinter fingerprinter;
+  private String configDigest;
 
   @Inject
   public Bookkeeper(
@@ -63,12 +67,14 @@ public class Bookkeeper {
       CodebaseDiffer differ,
       Db db,
       Ui ui,
-      ExpressionEngine expressionEngine) {
+      ExpressionEngine expressionEngine,
+      CodebaseFingerprinter fingerprinter) {
     this.context = context;
     this.differ = differ;
     this.db = db;
     this.ui = ui;
     this.expressionEngine = expressionEngine;
+    this.fingerprinter = fingerprinter;
   }
 
   private Revision head(String repositoryName) {
@@ -106,24 +112,85 @@ public class Bookkeeper {
    * Determines if the two revisions given are equivalent - that is to say, when fromRevision
    * is translated into the project space of toRevision, are their codebases without difference.
    *
+   * <p>The fingerprints of the codebases compared are recorded in the db, and codebases whose
+   * fingerprints are already recorded are not created again, so checking revisions that were
+   * checked before (e.g. unchanged heads) needs no codebases at all.
+   *
    * @return a RepositoryEquivalence if the two codebases (after transformation) are equivalent.
    */
   private RepositoryEquivalence determineEquivalence(Revision fromRevision, Revision toRevision) {
     String toSpace =
         context.config().getRepositoryConfig(toRevision.repositoryName()).getProjectSpace();
-    Codebase from = createCodebaseForRevision(fromRevision, toSpace);
-    Codebase to = createCodebaseForRevision(toRevision, null);
-    if (from == null || to == null) {
-      return null;
+    String fromHash = db.findFingerprint(fromRevision, toSpace, configDigest());
+    String toHash = db.findFingerprint(toRevision, toSpace, configDigest());
+    Codebase from = null;
+    Codebase to = null;
+    if (fromHash == null) {
+      from = createCodebaseForRevision(fromRevision, toSpace);
+      if (from == null) {
+        return null;
+      }
+      fromHash = noteFingerprint(fromRevision, toSpace, from);
+    }
+    if (toHash == null) {
+      to = createCodebaseForRevision(toRevision, null);
+      if (to == null) {
+        return null;
+      }
+      toHash = noteFingerprint(toRevision, toSpace, to);
     }
+
     boolean equivalent;
-    try (Ui.Task task = ui.newTask("diff_codebases", "Diff codebases '%s' and '%s'", from, to)) {
-      equivalent = !differ.diffCodebases(from, to).areDifferent();
-      task.result().append(equivalent ? "No Difference" : "Difference Found");
+    if (fromHash != null && toHash != null) {
+      try (Ui.Task task =
+          ui.newTask(
+              "compare_fingerprints",
+              "Compare fingerprints of '%s' and '%s'",
+              fromRevision,
+              toRevision)) {
+        equivalent = fromHash.equals(toHash);
+        task.result().append(equivalent ? "No Difference" : "Difference Found");
+      }
+    } else {
+      // A codebase couldn't be fingerprinted (e.g. it isn't on local disk), so diff them.
+      from = (from != null) ? from : createCodebaseForRevision(fromRevision, toSpace);
+      to = (to != null) ? to : createCodebaseForRevision(toRevision, null);
+      if (from == null || to == null) {
+        return null;
+      }
+      try (Ui.Task task = ui.newTask("diff_codebases", "Diff codebases '%s' and '%s'", from, to)) {
+        // Only whether they differ matters here, so stop at the first difference found.
+        String difference = differ.findDifference(from, to);
+        equivalent = (difference == null);
+        task.result().append(equivalent ? "No Difference" : "Difference Found: " + difference);
+      }
     }
     return equivalent ? RepositoryEquivalence.create(fromRevision, toRevision) : null;
   }
 
+  /**
+   * Fingerprints the codebase and records the result in the db.
+   *
+   * @return the fingerprint's hash, or null if the codebase can't be fingerprinted
+   */
+  @Nullable
+  private String noteFingerprint(Revision revision, String projectSpace, Codebase codebase) {
+    Fingerprint fingerprint = fingerprinter.fingerprint(codebase);
+    if (fingerprint == null) {
+      return null;
+    }
+    String hash = fingerprint.hash().toString();
+    db.noteFingerprint(CodebaseFingerprint.create(revision, projectSpace, configDigest(), hash));
+    return hash;
+  }
+
+  private String configDigest() {
+    if (configDigest == null) {
+      configDigest = CodebaseFingerprint.configDigest(context.config());
+    }
+    return configDigest;
+  }
+
   private Codebase createCodebaseForRevision(Revision rev, String translateSpace) {
     Expression expression = new RepositoryExpression(rev.repositoryName()).atRevision(rev.revId());
     if (translateSpace != null) {
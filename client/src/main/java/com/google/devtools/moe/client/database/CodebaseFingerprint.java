@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.database;
+
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.GsonModule;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.EditorConfig;
+import com.google.devtools.moe.client.config.EditorType;
+import com.google.devtools.moe.client.config.ProjectConfig;
+import com.google.devtools.moe.client.config.StepConfig;
+import com.google.devtools.moe.client.config.TranslatorConfig;
+import com.google.devtools.moe.client.repositories.Revision;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The recorded {@link com.google.devtools.moe.client.codebase.Fingerprint} of the codebase of a
+ * revision, as created in (and if need be, translated to) a project space, so that bookkeeping can
+ * compare codebases it has seen before without creating them again.
+ */
+@AutoValue
+public abstract class CodebaseFingerprint {
+  /**
+   * The version of how codebases are created from a configuration, which is part of every config
+   * digest. Bump it when a change to MOE itself (e.g. to the bundled scrubber, or to an editor)
+   * changes the codebases a configuration creates, so that fingerprints recorded before are
+   * ignored.
+   */
+  private static final int CODEBASE_CREATION_VERSION = 1;
+
+  /** Splits a shell command into words, roughly: quoting and redirection are separators. */
+  private static final Splitter SHELL_WORDS =
+      Splitter.on(CharMatcher.whitespace().or(CharMatcher.anyOf("'\"`;|&<>()")))
+          .omitEmptyStrings();
+
+  /** The {@link Revision} the codebase was created from */
+  public abstract Revision revision();
+
+  /** The project space the codebase was created in, or translated to */
+  @SerializedName("project_space")
+  public abstract String projectSpace();
+
+  /**
+   * A digest of the project configuration the codebase was created under, since changing the
+   * configuration (e.g. its translators' scrubbing) can change the codebase
+   */
+  @SerializedName("config_digest")
+  public abstract String configDigest();
+
+  /** The codebase's fingerprint hash */
+  public abstract String hash();
+
+  /** Returns whether this records the given revision's codebase, as described. */
+  boolean isOf(Revision revision, String projectSpace, String configDigest) {
+    return revision().equals(revision)
+        && projectSpace().equals(projectSpace)
+        && configDigest().equals(configDigest);
+  }
+
+  @Override
+  public String toString() {
+    return revision() + " in " + projectSpace() + " = " + hash();
+  }
+
+  public static CodebaseFingerprint create(
+      Revision revision, String projectSpace, String configDigest, String hash) {
+    return new AutoValue_CodebaseFingerprint(revision, projectSpace, configDigest, hash);
+  }
+
+  /**
+   * Returns a digest of the project configuration, which determines how codebases are created
+   * and translated, and so which recorded fingerprints still apply.
+   *
+   * <p>Besides the configuration itself, the digest covers the contents of any files named by
+   * absolute path in shell editors' commands, such as the scripts they run. Files a command finds
+   * otherwise (e.g. on the PATH, or through another script) are not covered, so after changing
+   * such a file, change the configuration too (or clear the database's fingerprints) for
+   * bookkeeping to see the codebases it now creates.
+   */
+  public static String configDigest(ProjectConfig config) {
+    Hasher hasher =
+        sha256()
+            .newHasher()
+            .putInt(CODEBASE_CREATION_VERSION)
+            .putString(GsonModule.provideGson().toJson(config), UTF_8);
+    for (String path : referencedFiles(config)) {
+      File file = new File(path);
+      if (file.isFile()) {
+        try {
+          hasher.putString(path, UTF_8).putBytes(Files.asByteSource(file).hash(sha256()).asBytes());
+        } catch (IOException e) {
+          throw new MoeProblem(e, "Could not read %s, used by the project configuration", path);
+        }
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the absolute paths named in the commands of the configuration's shell editors. */
+  private static SortedSet<String> referencedFiles(ProjectConfig config) {
+    List<EditorConfig> editors = new ArrayList<>(config.editors().values());
+    for (TranslatorConfig translator : config.translators()) {
+      if (translator.getSteps() != null) {
+        for (StepConfig step : translator.getSteps()) {
+          editors.add(step.getEditorConfig());
+        }
+      }
+    }
+    SortedSet<String> paths = new TreeSet<>();
+    for (EditorConfig editor : editors) {
+      if (editor.type() == EditorType.shell && editor.commandString() != null) {
+        for (String word : SHELL_WORDS.split(editor.commandString())) {
+          if (word.startsWith("/")) {
+            paths.add(word);
+          }
+        }
+      }
+    }
+    return paths;
+  }
+
+  public static TypeAdapter<CodebaseFingerprint> typeAdapter(Gson gson) {
+    return new AutoValue_CodebaseFingerprint.GsonTypeAdapter(gson);
+  }
+}
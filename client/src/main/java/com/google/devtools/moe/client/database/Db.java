@@ -18,6 +18,7 @@ package com.google.devtools.moe.client.database;
 
 import com.google.devtools.moe.client.repositories.Revision;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * An abstraction of MOE's database.
@@ -51,6 +52,20 @@ public interface Db {
   /** Checks whether the given {@link SubmittedMigration} exists within this database */
   boolean hasMigration(SubmittedMigration migration);
 
+  /**
+   * Returns the recorded fingerprint hash of the given revision's codebase in the given project
+   * space, or null if there is none.
+   *
+   * @param revision  the Revision the codebase is created from
+   * @param projectSpace  the project space the codebase is created in, or translated to
+   * @param configDigest  a digest of the project configuration the codebase is created under
+   */
+  @Nullable
+  String findFingerprint(Revision revision, String projectSpace, String configDigest);
+
+  /** Records the fingerprint of a codebase, replacing any recorded for the same codebase. */
+  void noteFingerprint(CodebaseFingerprint fingerprint);
+
   /**
    * Write out any pending changes and release any held resources. If the Db implementation writes
    * on-demand, this may have no effect.
@@ -96,6 +111,14 @@ public interface Db {
       return false;
     }
 
+    @Override
+    public String findFingerprint(Revision revision, String projectSpace, String configDigest) {
+      return null;
+    }
+
+    @Override
+    public void noteFingerprint(CodebaseFingerprint fingerprint) {}
+
     @Override
     public void write() {}
   }
@@ -19,20 +19,32 @@ package com.google.devtools.moe.client.database;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.devtools.moe.client.repositories.Revision;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import javax.annotation.Nullable;
 
 /**
  * MOE's database, storing all Equivalences and SubmittedMigrations in order from those between
- * lower revisions to those between higher revisions.
+ * lower revisions to those between higher revisions, and the CodebaseFingerprints of codebases
+ * bookkeeping has compared.
  *
  * <p>This class is used for serialization of a database file.
  */
 public class DbStorage {
 
+  /** The most fingerprints kept per project space; adding another drops the oldest. */
+  static final int MAX_FINGERPRINTS_PER_PROJECT_SPACE = 1000;
+
   private final List<RepositoryEquivalence> equivalences;
   private final List<SubmittedMigration> migrations;
+  // Left null until one is added, so that databases without fingerprints are written as before.
+  private List<CodebaseFingerprint> fingerprints;
+  // The fingerprints by revision, built when first looked up. Not serialized.
+  private transient Map<Revision, List<CodebaseFingerprint>> fingerprintsByRevision;
 
   public DbStorage() {
     equivalences = Lists.newArrayList();
@@ -47,6 +59,10 @@ public class DbStorage {
     return ImmutableList.copyOf(migrations);
   }
 
+  public List<CodebaseFingerprint> fingerprints() {
+    return (fingerprints == null) ? ImmutableList.of() : ImmutableList.copyOf(fingerprints);
+  }
+
   public void addEquivalence(RepositoryEquivalence e) {
     if (!equivalences.contains(e)) {
       equivalences.add(e);
@@ -67,9 +83,82 @@ public class DbStorage {
     return migrations.contains(m);
   }
 
+  /**
+   * Returns the recorded fingerprint hash of the given revision's codebase in the given project
+   * space, under the given configuration, or null if there is none.
+   */
+  @Nullable
+  public String findFingerprint(Revision revision, String projectSpace, String configDigest) {
+    for (CodebaseFingerprint fingerprint :
+        fingerprintsByRevision().getOrDefault(revision, ImmutableList.of())) {
+      if (fingerprint.isOf(revision, projectSpace, configDigest)) {
+        return fingerprint.hash();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds a CodebaseFingerprint, replacing any for the same codebase. Fingerprints recorded under
+   * another project configuration can never be looked up again, so they are dropped, as is the
+   * oldest fingerprint in the project space once it has more than {@link
+   * #MAX_FINGERPRINTS_PER_PROJECT_SPACE}.
+   */
+  public void addFingerprint(CodebaseFingerprint f) {
+    if (fingerprints == null) {
+      fingerprints = Lists.newArrayList();
+    }
+    if (fingerprints.removeIf(existing -> !existing.configDigest().equals(f.configDigest()))) {
+      fingerprintsByRevision = null;
+    }
+    List<CodebaseFingerprint> ofRevision =
+        fingerprintsByRevision().computeIfAbsent(f.revision(), r -> Lists.newArrayList());
+    for (CodebaseFingerprint existing : ofRevision) {
+      if (existing.isOf(f.revision(), f.projectSpace(), f.configDigest())) {
+        removeFingerprint(existing);
+        break;
+      }
+    }
+    fingerprints.add(f);
+    fingerprintsByRevision().computeIfAbsent(f.revision(), r -> Lists.newArrayList()).add(f);
+
+    CodebaseFingerprint oldest = null;
+    int inProjectSpace = 0;
+    for (CodebaseFingerprint existing : fingerprints) {
+      if (existing.projectSpace().equals(f.projectSpace())) {
+        oldest = (oldest == null) ? existing : oldest;
+        inProjectSpace++;
+      }
+    }
+    if (inProjectSpace > MAX_FINGERPRINTS_PER_PROJECT_SPACE) {
+      removeFingerprint(oldest);
+    }
+  }
+
+  private void removeFingerprint(CodebaseFingerprint f) {
+    fingerprints.remove(f);
+    List<CodebaseFingerprint> ofRevision = fingerprintsByRevision.get(f.revision());
+    ofRevision.remove(f);
+    if (ofRevision.isEmpty()) {
+      fingerprintsByRevision.remove(f.revision());
+    }
+  }
+
+  private Map<Revision, List<CodebaseFingerprint>> fingerprintsByRevision() {
+    if (fingerprintsByRevision == null) {
+      fingerprintsByRevision = new HashMap<>();
+      for (CodebaseFingerprint fingerprint : fingerprints()) {
+        fingerprintsByRevision
+            .computeIfAbsent(fingerprint.revision(), r -> Lists.newArrayList())
+            .add(fingerprint);
+      }
+    }
+    return fingerprintsByRevision;
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hash(equivalences, migrations);
+    return Objects.hash(equivalences, migrations, fingerprints());
   }
 
   @Override
@@ -77,6 +166,7 @@ public class DbStorage {
     return MoreObjects.toStringHelper("DbStorage")
         .add("equivalences", equivalences)
         .add("migrations", migrations)
+        .add("fingerprints", fingerprints)
         .omitNullValues()
         .toString();
   }
@@ -86,7 +176,8 @@ public class DbStorage {
     if (obj instanceof DbStorage) {
       DbStorage other = (DbStorage) obj;
       return Objects.equals(equivalences, other.equivalences)
-          && Objects.equals(migrations, other.migrations);
+          && Objects.equals(migrations, other.migrations)
+          && Objects.equals(fingerprints(), other.fingerprints());
     }
     return false;
   }
@@ -105,6 +105,16 @@ public class FileDb implements Db, HasDbStorage {
     return dbStorage.hasMigration(migration);
   }
 
+  @Override
+  public String findFingerprint(Revision revision, String projectSpace, String configDigest) {
+    return dbStorage.findFingerprint(revision, projectSpace, configDigest);
+  }
+
+  @Override
+  public void noteFingerprint(CodebaseFingerprint fingerprint) {
+    dbStorage.addFingerprint(fingerprint);
+  }
+
   @Override
   public DbStorage getStorage() {
     return dbStorage;
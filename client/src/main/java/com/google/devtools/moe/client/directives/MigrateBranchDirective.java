@@ -43,6 +43,8 @@ import com.google.devtools.moe.client.config.ProjectConfig;
 import com.google.devtools.moe.client.project.ProjectContext;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.config.ScrubberConfig;
+import com.google.devtools.moe.client.repositories.CommitGraph;
+import com.google.devtools.moe.client.repositories.MetadataPrefetcher;
 import com.google.devtools.moe.client.repositories.Repositories;
 import com.google.devtools.moe.client.repositories.RepositoryType;
 import com.google.devtools.moe.client.repositories.Revision;
@@ -60,10 +62,8 @@ import dagger.multibindings.StringKey;
 import java.io.File;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import javax.inject.Inject;
 import org.kohsuke.args4j.Option;
 
@@ -368,40 +368,65 @@ public class MigrateBranchDirective extends Directive {
    * found in {@parentBranch}.
    */
   /*
-   * TODO(cgruber): Profile costs.
-   * TODO(cgruber): Optimize the loops and metadata fetching.
-   * TODO(cgruber): Look at the feasibility of a more incremental approach based on profiling.
-   *
-   * This code, depending on the repository implementation, can be expsensive, and result in
-   * a lot of trips to the filesystem or executions of external commands.  Some of the looping
-   * and metadata fetching should be exposed in the RepositoryType where batch commands can
-   * be implemented more efficiently.
-   *
-   * This is particularly vulnerable to large depots, but our largest depots are <2000 commits, so
-   * there is a window.
+   * When the branch's clone also contains the parent branch's head (the usual case: a branch of
+   * the same repository), this is a single set-difference query which repository types can answer
+   * natively (e.g. git rev-list branch ^parent), in time proportional to the result rather than to
+   * the parent branch's whole history. Otherwise (e.g. a fork at another URL) it falls back to
+   * walking both histories.
    */
   @VisibleForTesting
   static List<Revision> findRevisionsToMigrate(
       Ui ui, RevisionHistory branch, RevisionHistory parentBranch) {
-    Set<String> commitsInParentBranch = new LinkedHashSet<>();
-    final String repositoryName = branch.findHighestRevision(null).repositoryName();
+    Revision branchHead = branch.findHighestRevision(null);
+    Revision parentHead = parentBranch.findHighestRevision(null);
+    try (Task t = ui.newTask("diff_branches", "Finding commits not in the parent branch")) {
+      List<Revision> toMigrate =
+          branch.findAncestorsExcluding(
+              branchHead, Revision.create(parentHead.revId(), branchHead.repositoryName()));
+      if (toMigrate != null) {
+        t.result().append("Mergeable revisions: " + toMigrate.size());
+        return toMigrate;
+      }
+    }
+    return walkRevisionsToMigrate(ui, branch, parentBranch);
+  }
+
+  /**
+   * Finds the revisions to migrate as {@link #findRevisionsToMigrate} does, by walking the whole
+   * history of the parent branch and then the branch's history down to their common ancestors.
+   * This is for the case where the branch doesn't contain the parent branch's head.
+   */
+  private static List<Revision> walkRevisionsToMigrate(
+      Ui ui, RevisionHistory branch, RevisionHistory parentBranch) {
+    Revision branchHead = branch.findHighestRevision(null); // most recent.
+    String repositoryName = branchHead.repositoryName();
     Revision head = parentBranch.findHighestRevision(null);
     String parentRepositoryName = head.repositoryName();
 
+    // Both histories go into one graph, with the parent's revisions named as the branch's.
+    CommitGraph.Builder graph = CommitGraph.builder();
     Deque<Revision> revisionsToProcess = new ArrayDeque<>();
+    MetadataPrefetcher parentMetadata = new MetadataPrefetcher(parentBranch);
     try (Task ancestorTask =
         ui.newTask("scan_ancestor_branch", "Gathering revisions to consider migrating")) {
       revisionsToProcess.add(head);
       int count = 0;
       while (!revisionsToProcess.isEmpty()) {
         Revision revision = revisionsToProcess.remove();
-        if (!commitsInParentBranch.contains(revision.revId())) {
-          commitsInParentBranch.add(revision.revId());
+        Revision branchRevision = Revision.create(revision.revId(), repositoryName);
+        if (!graph.contains(branchRevision)) {
           RevisionMetadata metadata =
-              parentBranch.getMetadata(Revision.create(revision.revId(), parentRepositoryName));
+              parentMetadata.get(Revision.create(revision.revId(), parentRepositoryName));
           if (metadata == null) {
             throw new MoeProblem("Could not load revision metadata for %s", revision);
           }
+          graph.addCommit(
+              branchRevision,
+              metadata
+                  .parents()
+                  .stream()
+                  .map(parent -> Revision.create(parent.revId(), repositoryName))
+                  .collect(toImmutableList()));
           revisionsToProcess.addAll(metadata.parents());
           count++;
         }
@@ -409,31 +434,29 @@ public class MigrateBranchDirective extends Directive {
       ancestorTask.result().append("Scanned revisions: " + count);
     }
 
-    LinkedHashSet<String> commitsNotInDestinationBranch = new LinkedHashSet<>();
     try (Task t = ui.newTask("scan_target_branch", "Finding mergeable commits")) {
       revisionsToProcess = new ArrayDeque<>();
-      revisionsToProcess.add(branch.findHighestRevision(null)); // most recent.
+      revisionsToProcess.add(branchHead);
+      MetadataPrefetcher branchMetadata = new MetadataPrefetcher(branch);
 
       // Walk up the branch history until we get to a commit that is already in common.
       while (!revisionsToProcess.isEmpty()) {
         Revision revision = revisionsToProcess.remove();
-        RevisionMetadata metadata = branch.getMetadata(revision);
-        if (metadata == null) {
-          throw new MoeProblem(
-              "Revision %s did not appear in branch history as expected", revision);
-        }
-        if (!commitsInParentBranch.contains(revision.revId())) {
-          commitsNotInDestinationBranch.add(revision.revId());
+        if (!graph.contains(revision)) {
+          RevisionMetadata metadata = branchMetadata.get(revision);
+          if (metadata == null) {
+            throw new MoeProblem(
+                "Revision %s did not appear in branch history as expected", revision);
+          }
+          graph.addCommit(revision, metadata.parents());
           revisionsToProcess.addAll(metadata.parents());
         }
       }
     }
 
-    return commitsNotInDestinationBranch
-        .stream()
-        .map(revId -> Revision.create(revId, repositoryName))
-        .collect(toImmutableList())
-        .reverse();
+    return graph
+        .build()
+        .ancestorsExcluding(branchHead, Revision.create(head.revId(), repositoryName));
   }
 
   /**
@@ -26,12 +26,14 @@ import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.codebase.Codebase;
 import com.google.devtools.moe.client.codebase.CodebaseCreationError;
 import com.google.devtools.moe.client.codebase.CodebaseCreator;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
 import com.google.devtools.moe.client.codebase.LocalWorkspace;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.repositories.Revision;
 import com.google.devtools.moe.client.repositories.RevisionHistory;
 import java.io.File;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /** CodebaseCreator for DVCSes, implemented by cloning a LocalClone to disk. */
 public abstract class AbstractDvcsCodebaseCreator extends CodebaseCreator {
@@ -39,6 +41,7 @@ public abstract class AbstractDvcsCodebaseCreator extends CodebaseCreator {
   private final Supplier<? extends LocalWorkspace> headCloneSupplier;
   private final RevisionHistory revisionHistory;
   private final String projectSpace;
+  private final CodebaseSnapshotCache snapshots;
   protected final CommandRunner cmd;
   protected final FileSystem filesystem;
 
@@ -56,11 +59,32 @@ public abstract class AbstractDvcsCodebaseCreator extends CodebaseCreator {
       Supplier<? extends LocalWorkspace> headCloneSupplier,
       RevisionHistory revisionHistory,
       String projectSpace) {
+    this(
+        cmd,
+        filesystem,
+        headCloneSupplier,
+        revisionHistory,
+        projectSpace,
+        CodebaseSnapshotCache.DISABLED);
+  }
+
+  /**
+   * @param snapshots a persistent cache of codebases, from which revisions whose contents were
+   *     exported before are created without archiving them again
+   */
+  public AbstractDvcsCodebaseCreator(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      Supplier<? extends LocalWorkspace> headCloneSupplier,
+      RevisionHistory revisionHistory,
+      String projectSpace,
+      CodebaseSnapshotCache snapshots) {
     this.cmd = cmd;
     this.filesystem = filesystem;
     this.headCloneSupplier = headCloneSupplier;
     this.revisionHistory = revisionHistory;
     this.projectSpace = projectSpace;
+    this.snapshots = snapshots;
   }
 
   /**
@@ -88,21 +112,48 @@ public abstract class AbstractDvcsCodebaseCreator extends CodebaseCreator {
         throw new CodebaseCreationError(e, "%s", message);
       }
       headClone = headCloneSupplier.get();
-      archiveLocation = headClone.archiveAtRevision(rev.revId());
+      archiveLocation = archive(headClone, rev.revId());
     } else {
       // TODO(user): Archive only (don't clone) if localroot is set.
       headClone = cloneAtLocalRoot(localRoot);
-      archiveLocation = headClone.archiveAtRevision(null);
+      // Local changes have no content ID, so this is never cached.
+      archiveLocation = archive(headClone, null);
     }
 
-    // Filter files in the codebase by RepositoryConfig#ignoreFileRes.
-    Predicate<CharSequence> nonIgnoredFilePred =
-        Utils.nonMatchingPredicateFromRes(headClone.getConfig().getIgnoreFilePatterns());
-    Utils.filterFiles(archiveLocation, nonIgnoredFilePred, filesystem);
-
     return Codebase.create(
         archiveLocation,
         projectSpace,
         new RepositoryExpression(headClone.getRepositoryName()).withOptions(options));
   }
+
+  /**
+   * Returns the archive of the given clone at the given revision, or at head if null, without the
+   * files the repository ignores. The archive is taken from the snapshot cache where possible.
+   */
+  private File archive(LocalWorkspace clone, @Nullable String revId) {
+    String key = null;
+    if (revId != null && snapshots.isEnabled()) {
+      String contentId = clone.contentId(revId);
+      if (contentId != null) {
+        key = CodebaseSnapshotCache.key(clone.getConfig(), contentId);
+        File cached =
+            snapshots.get(
+                key, String.format("snapshot_%s_%s_", clone.getRepositoryName(), revId));
+        if (cached != null) {
+          return cached;
+        }
+      }
+    }
+
+    File archiveLocation = clone.archiveAtRevision(revId);
+    // Filter files in the codebase by RepositoryConfig#ignoreFileRes.
+    Predicate<CharSequence> nonIgnoredFilePred =
+        Utils.nonMatchingPredicateFromRes(clone.getConfig().getIgnoreFilePatterns());
+    Utils.filterFiles(archiveLocation, nonIgnoredFilePred, filesystem);
+
+    if (key != null) {
+      snapshots.put(key, archiveLocation);
+    }
+    return archiveLocation;
+  }
 }
@@ -74,13 +74,9 @@ public abstract class AbstractDvcsWriter<T extends LocalWorkspace> implements Wr
   private DraftRevision putCodebase(Codebase incomingChangeCodebase) {
     incomingChangeCodebase.checkProjectSpace(revClone.getConfig().getProjectSpace());
 
-    Set<String> codebaseFiles =
-        Utils.makeFilenamesRelative(
-            filesystem.findFiles(incomingChangeCodebase.root()), incomingChangeCodebase.root());
+    Set<String> codebaseFiles = incomingChangeCodebase.files(filesystem).paths();
     Set<String> writerRepoFiles =
-        Utils.filterByRegEx(
-            Utils.makeFilenamesRelative(filesystem.findFiles(getRoot()), getRoot()),
-            getIgnoreFilePatterns());
+        Utils.filterByRegEx(filesystem.indexFiles(getRoot()).paths(), getIgnoreFilePatterns());
 
     Set<String> filesToUpdate = Sets.union(codebaseFiles, writerRepoFiles);
 
@@ -130,6 +126,8 @@ public abstract class AbstractDvcsWriter<T extends LocalWorkspace> implements Wr
 
     try {
       filesystem.makeDirsForFile(dest);
+      // Copy rather than share: the working copy is the user's to edit in place (e.g. when asked to
+      // resolve a conflict), which mustn't reach through to the incoming codebase.
       filesystem.copyFile(src, dest);
     } catch (IOException e) {
       throw new MoeProblem(e, "%s", e.getMessage());
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import com.google.devtools.moe.client.MoeProblem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A long-lived {@code git cat-file --batch} process for a local repository, through which objects
+ * are looked up over a pipe rather than by forking a new git process per query.
+ *
+ * <p>The process is started on first use and lives until {@link #close()}, or until the JVM
+ * exits (at which point git sees its stdin close and exits too). If it fails mid-request it is
+ * discarded, and the next request starts a new one.
+ */
+final class GitCatFileBatch implements Closeable {
+
+  /** A git object, as answered by {@code git cat-file --batch}. */
+  @AutoValue
+  abstract static class GitObject {
+    /** The full hash of the object. */
+    abstract String id();
+
+    /** The object type, e.g. "commit", "tree", "blob" or "tag". */
+    abstract String type();
+
+    /** The raw object contents, decoded as UTF-8. */
+    abstract String content();
+
+    static GitObject create(String id, String type, String content) {
+      return new AutoValue_GitCatFileBatch_GitObject(id, type, content);
+    }
+  }
+
+  private final File repositoryDirectory;
+
+  private Process process;
+  private OutputStream requests;
+  private InputStream responses;
+
+  GitCatFileBatch(File repositoryDirectory) {
+    this.repositoryDirectory = repositoryDirectory;
+  }
+
+  /**
+   * Returns the object named by the given expression (anything {@code git rev-parse} accepts, e.g.
+   * {@code "HEAD^{commit}"}), or null if it does not name an object in this repository.
+   */
+  @Nullable
+  synchronized GitObject read(String objectName) {
+    Preconditions.checkArgument(
+        objectName.indexOf('\n') < 0, "Object names may not contain newlines: %s", objectName);
+    try {
+      if (process == null) {
+        start();
+      }
+      requests.write((objectName + "\n").getBytes(UTF_8));
+      requests.flush();
+
+      String header = readLine();
+      // Unknown names are answered with "<name> missing" (or "ambiguous"), with no contents.
+      if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+        return null;
+      }
+      List<String> fields = Splitter.on(' ').splitToList(header);
+      if (fields.size() != 3) {
+        throw new IOException("Unexpected git cat-file header: " + header);
+      }
+      byte[] content = new byte[Integer.parseInt(fields.get(2))];
+      ByteStreams.readFully(responses, content);
+      if (responses.read() != '\n') {
+        throw new IOException("Missing terminator after object " + fields.get(0));
+      }
+      return GitObject.create(fields.get(0), fields.get(1), new String(content, UTF_8));
+    } catch (IOException | RuntimeException e) {
+      stop();
+      throw new MoeProblem(
+          e, "Failed to read '%s' via git cat-file in %s: %s",
+          objectName, repositoryDirectory, e.getMessage());
+    }
+  }
+
+  /** Stops the underlying git process, if it is running. */
+  @Override
+  public synchronized void close() {
+    if (process == null) {
+      return;
+    }
+    try {
+      requests.close();
+      process.waitFor();
+    } catch (IOException e) {
+      process.destroy();
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+    } finally {
+      process = null;
+    }
+  }
+
+  private void start() throws IOException {
+    process =
+        new ProcessBuilder("git", "cat-file", "--batch")
+            .directory(repositoryDirectory)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    requests = new BufferedOutputStream(process.getOutputStream());
+    responses = new BufferedInputStream(process.getInputStream());
+  }
+
+  private void stop() {
+    if (process != null) {
+      process.destroy();
+      process = null;
+    }
+  }
+
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    for (int b = responses.read(); b != '\n'; b = responses.read()) {
+      if (b == -1) {
+        throw new EOFException("git cat-file exited unexpectedly");
+      }
+      line.write(b);
+    }
+    return new String(line.toByteArray(), UTF_8);
+  }
+}
@@ -18,19 +18,29 @@ package com.google.devtools.moe.client.dvcs.git;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.CommandRunner.LineConsumer;
+import com.google.devtools.moe.client.CommandRunner.LineSplittingOutputStream;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.FileSystem.Lifetime;
 import com.google.devtools.moe.client.Lifetimes;
 import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.codebase.LocalWorkspace;
 import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.dvcs.git.GitCatFileBatch.GitObject;
+import com.google.devtools.moe.client.tools.TarExtractor;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Git implementation of {@link LocalWorkspace}, i.e. a 'git clone' to local disk.
@@ -56,11 +66,15 @@ public class GitClonedRepository implements LocalWorkspace {
   private final String repositoryUrl;
 
   private final Lifetimes lifetimes;
+  /** Mirrors from which clones borrow objects instead of fetching them. */
+  private final GitMirrorCache mirrors;
 
   private File localCloneTempDir;
   private boolean clonedLocally;
   /** The revision of this clone, a Git hash ID */
   private String revId;
+  /** A long-lived object reader for this clone, created on first use. */
+  private GitCatFileBatch catFileBatch;
 
   GitClonedRepository(
       CommandRunner cmd,
@@ -68,7 +82,31 @@ public class GitClonedRepository implements LocalWorkspace {
       String repositoryName,
       RepositoryConfig repositoryConfig,
       Lifetimes lifetimes) {
-    this(cmd, filesystem, repositoryName, repositoryConfig, repositoryConfig.getUrl(), lifetimes);
+    this(
+        cmd,
+        filesystem,
+        repositoryName,
+        repositoryConfig,
+        repositoryConfig.getUrl(),
+        lifetimes,
+        GitMirrorCache.DISABLED);
+  }
+
+  GitClonedRepository(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      String repositoryName,
+      RepositoryConfig repositoryConfig,
+      Lifetimes lifetimes,
+      GitMirrorCache mirrors) {
+    this(
+        cmd,
+        filesystem,
+        repositoryName,
+        repositoryConfig,
+        repositoryConfig.getUrl(),
+        lifetimes,
+        mirrors);
   }
 
   GitClonedRepository(
@@ -78,6 +116,24 @@ public class GitClonedRepository implements LocalWorkspace {
       RepositoryConfig repositoryConfig,
       String repositoryUrl,
       Lifetimes lifetimes) {
+    this(
+        cmd,
+        filesystem,
+        repositoryName,
+        repositoryConfig,
+        repositoryUrl,
+        lifetimes,
+        GitMirrorCache.DISABLED);
+  }
+
+  GitClonedRepository(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      String repositoryName,
+      RepositoryConfig repositoryConfig,
+      String repositoryUrl,
+      Lifetimes lifetimes,
+      GitMirrorCache mirrors) {
     this.cmd = cmd;
     this.filesystem = filesystem;
     this.repositoryName = repositoryName;
@@ -85,6 +141,7 @@ public class GitClonedRepository implements LocalWorkspace {
     this.repositoryUrl = repositoryUrl;
     this.clonedLocally = false;
     this.lifetimes = lifetimes;
+    this.mirrors = mirrors;
   }
 
   @Override
@@ -110,7 +167,20 @@ public class GitClonedRepository implements LocalWorkspace {
         cloneTempDir.getAbsolutePath(),
         "git",
         ImmutableList.of("remote", "add", "origin", repositoryUrl));
+    // Borrow whatever objects the mirror has, as 'git clone --reference' would, so the fetch only
+    // transfers what is newer than the mirror.
+    File mirrorObjects = mirrors.objectsFor(repositoryUrl);
+    if (mirrorObjects != null) {
+      filesystem.write(
+          mirrorObjects.getAbsolutePath() + "\n",
+          Paths.get(cloneTempDir.getAbsolutePath(), ".git", "objects", "info", "alternates")
+              .toFile());
+    }
     cmd.runCommand(cloneTempDir.getAbsolutePath(), "git", ImmutableList.of("fetch", "--tags"));
+    configureSparseCheckout(cloneTempDir);
+  }
+
+  private void configureSparseCheckout(File cloneTempDir) throws CommandException, IOException {
     if (!repositoryConfig.getCheckoutPaths().isEmpty()) {
       cmd.runCommand(
           cloneTempDir.getAbsolutePath(),
@@ -125,12 +195,7 @@ public class GitClonedRepository implements LocalWorkspace {
   @Override
   public void cloneLocallyAtHead(Lifetime cloneLifetime) {
     Preconditions.checkState(!clonedLocally);
-
-    Optional<String> branchName = repositoryConfig.getBranch();
-    String tempDirName = branchName.isPresent()
-        ? "git_clone_" + repositoryName + "_" + branchName.get() + "_"
-        : "git_clone_" + repositoryName + "_";
-    localCloneTempDir = filesystem.getTemporaryDirectory(tempDirName, cloneLifetime);
+    localCloneTempDir = newCloneTempDir(cloneLifetime);
 
     try {
       initLocal(localCloneTempDir);
@@ -139,7 +204,7 @@ public class GitClonedRepository implements LocalWorkspace {
       if (repositoryConfig.shallowCheckout()) {
         pullArgs.add("--depth=1");
       }
-      pullArgs.add("origin", branchName.or("master"));
+      pullArgs.add("origin", repositoryConfig.getBranch().or("master"));
       cmd.runCommand(localCloneTempDir.getAbsolutePath(), "git", pullArgs.build());
       clonedLocally = true;
       this.revId = "HEAD";
@@ -151,6 +216,48 @@ public class GitClonedRepository implements LocalWorkspace {
     }
   }
 
+  /**
+   * Clones this repository at head, as {@link #cloneLocallyAtHead} does, but from an existing clone
+   * of it rather than from its URL. The new clone hard-links the existing clone's objects, so it
+   * costs a checkout rather than a fetch, yet it stands alone: it outlives the existing clone, and
+   * its origin is this repository's URL, so it can be pushed from as usual.
+   */
+  void cloneLocallyFrom(GitClonedRepository headClone, Lifetime cloneLifetime) {
+    Preconditions.checkState(!clonedLocally);
+    localCloneTempDir = newCloneTempDir(cloneLifetime);
+    String source = headClone.getLocalTempDir().getAbsolutePath();
+    String clone = localCloneTempDir.getAbsolutePath();
+
+    try {
+      // Don't check out yet, so that a sparse checkout can be configured first.
+      cmd.runCommand(
+          "", "git", ImmutableList.of("clone", "--local", "--no-checkout", "-q", source, clone));
+      cmd.runCommand(clone, "git", ImmutableList.of("remote", "set-url", "origin", repositoryUrl));
+      // The new clone's remote-tracking branches are the head clone's local ones; take the head
+      // clone's view of the real origin instead.
+      cmd.runCommand(
+          clone,
+          "git",
+          ImmutableList.of("fetch", "-q", source, "+refs/remotes/origin/*:refs/remotes/origin/*"));
+      configureSparseCheckout(localCloneTempDir);
+      cmd.runCommand(clone, "git", ImmutableList.of("checkout", "-f", "-q"));
+      clonedLocally = true;
+      this.revId = "HEAD";
+    } catch (CommandException e) {
+      throw new MoeProblem(e, "Could not clone from git clone at %s: %s", source, e.stderr);
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not clone from git clone at %s: %s", source, e.getMessage());
+    }
+  }
+
+  private File newCloneTempDir(Lifetime cloneLifetime) {
+    Optional<String> branchName = repositoryConfig.getBranch();
+    String tempDirName = branchName.isPresent()
+        ? "git_clone_" + repositoryName + "_" + branchName.get() + "_"
+        : "git_clone_" + repositoryName + "_";
+    return filesystem.getTemporaryDirectory(tempDirName, cloneLifetime);
+  }
+
   @Override
   public void updateToRevision(String revId) {
     Preconditions.checkState(clonedLocally);
@@ -184,39 +291,33 @@ public class GitClonedRepository implements LocalWorkspace {
             String.format("git_archive_%s_%s_", repositoryName, revId), lifetimes.currentTask());
     try {
       filesystem.makeDirs(archiveLocation);
-      if (repositoryConfig.getCheckoutPaths().isEmpty()) {
-        // Using this just to get a filename.
-        String tarballPath =
-            filesystem
-                .getTemporaryDirectory(
-                    String.format("git_tarball_%s_%s.tar.", repositoryName, revId),
-                    lifetimes.currentTask())
-                .getAbsolutePath();
-
-        // Git doesn't support archiving to a directory: it only supports
-        // archiving to a tar.  The fastest way to do this would be to pipe the
-        // output directly into tar, however, there's no option for that using
-        // the classes we have. (michaelpb)
-        runGitCommand("archive", "--format=tar", "--output=" + tarballPath, revId);
-
-        // Untar the tarball we just made
-        cmd.runCommand(
-            "",
-            "tar",
-            ImmutableList.of("xf", tarballPath, "-C", archiveLocation.getAbsolutePath()));
-      } else {
-        initLocal(archiveLocation);
-        ImmutableList.Builder<String> pullArgs = ImmutableList.builder();
-        pullArgs.add("pull");
-        if (repositoryConfig.shallowCheckout()) {
-          pullArgs.add("--depth=1");
+      Predicate<CharSequence> filter =
+          Utils.nonMatchingPredicateFromRes(repositoryConfig.getIgnoreFilePatterns());
+      List<String> pathspecs = ImmutableList.of();
+      if (!repositoryConfig.getCheckoutPaths().isEmpty()) {
+        // Serve a sparse checkout from this clone too: have git archive only the directories the
+        // checkout paths could select, and select the exact paths while extracting.
+        SparseCheckoutPatterns sparse =
+            SparseCheckoutPatterns.parse(repositoryConfig.getCheckoutPaths());
+        filter = Predicates.and(filter, sparse);
+        if (!sparse.literalPrefixes().isEmpty()) {
+          pathspecs = existingPaths(revId, sparse.literalPrefixes());
+          if (pathspecs.isEmpty()) {
+            return archiveLocation;
+          }
         }
-        pullArgs.add("origin", revId);
-        cmd.runCommand(archiveLocation.getAbsolutePath(), "git", pullArgs.build());
-        cmd.runCommand(
-            archiveLocation.getAbsolutePath(), "git", ImmutableList.of("checkout", revId));
-        // Remove git tracking.
-        filesystem.deleteRecursively(Paths.get(archiveLocation.getAbsolutePath(), ".git").toFile());
+      }
+      // Expand git's tar output as it is produced, skipping ignored files, rather than writing the
+      // tarball to disk and then untarring it.
+      try (TarExtractor extractor = new TarExtractor(archiveLocation, filter, filesystem)) {
+        cmd.runCommandStreaming(
+            localCloneTempDir.getAbsolutePath(),
+            "git",
+            ImmutableList.<String>builder()
+                .add("archive", "--format=tar", revId, "--")
+                .addAll(pathspecs)
+                .build(),
+            extractor);
       }
     } catch (CommandException e) {
       throw new MoeProblem(
@@ -231,6 +332,32 @@ public class GitClonedRepository implements LocalWorkspace {
     return archiveLocation;
   }
 
+  /**
+   * Returns those of the given paths which exist at the given revision, since git archive refuses
+   * paths that don't.
+   */
+  private List<String> existingPaths(String revId, List<String> paths) throws CommandException {
+    ImmutableList.Builder<String> existing = ImmutableList.builder();
+    String listing =
+        cmd.runCommand(
+            localCloneTempDir.getAbsolutePath(),
+            "git",
+            ImmutableList.<String>builder()
+                .add("ls-tree", "--name-only", "-z", revId, "--")
+                .addAll(paths)
+                .build());
+    List<String> entries = Splitter.on('\0').omitEmptyStrings().splitToList(listing);
+    for (String path : paths) {
+      for (String entry : entries) {
+        if (entry.equals(path) || entry.startsWith(path + "/")) {
+          existing.add(path);
+          break;
+        }
+      }
+    }
+    return existing.build();
+  }
+
   /**
    * Runs a git command with the given arguments, in this cloned repository's directory.
    *
@@ -240,4 +367,85 @@ public class GitClonedRepository implements LocalWorkspace {
   String runGitCommand(String... args) throws CommandException {
     return cmd.runCommand(getLocalTempDir().getAbsolutePath(), "git", ImmutableList.copyOf(args));
   }
+
+  /**
+   * Runs git in this clone, handing each line of its output to {@code lines} as it is produced,
+   * rather than holding all of the output in memory.
+   */
+  void runGitCommandForLines(List<String> args, LineConsumer lines) throws CommandException {
+    cmd.runCommandForLines(getLocalTempDir().getAbsolutePath(), "git", args, lines);
+  }
+
+  /**
+   * Runs git with {@code -z}-style output in this clone, handing each NUL-terminated record of its
+   * output to {@code records} as it is produced.
+   */
+  void runGitCommandForNulTerminated(List<String> args, LineConsumer records)
+      throws CommandException {
+    LineSplittingOutputStream splitter = new LineSplittingOutputStream('\0', records);
+    cmd.runCommandStreaming(getLocalTempDir().getAbsolutePath(), "git", args, splitter);
+    try {
+      splitter.close();
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Failed to consume output of git %s", args);
+    }
+  }
+
+  /**
+   * Returns the hash of the root tree at the given revision, or null if there is no such tree. If
+   * the repository's attributes mark files export-subst, whose placeholders (e.g. {@code
+   * $Format:%H$}) git archive expands from the commit rather than the tree, the commit hash is
+   * returned instead.
+   */
+  @Override
+  @Nullable
+  public String contentId(String revId) {
+    GitObject tree = catFileBatch().read(revId + "^{tree}");
+    if (tree == null) {
+      return null;
+    }
+    try {
+      if (!usesExportSubst(revId)) {
+        return tree.id();
+      }
+    } catch (CommandException | IOException e) {
+      return null;
+    }
+    GitObject commit = catFileBatch().read(revId + "^{commit}");
+    return (commit == null) ? null : commit.id();
+  }
+
+  /**
+   * Returns whether any attributes file git archive would consult at the given revision (those in
+   * its tree, and this clone's own) mentions export-subst.
+   */
+  private boolean usesExportSubst(String revId) throws CommandException, IOException {
+    File infoAttributes = new File(getLocalTempDir(), ".git/info/attributes");
+    if (filesystem.isFile(infoAttributes)
+        && filesystem.fileToString(infoAttributes).contains("export-subst")) {
+      return true;
+    }
+    try {
+      runGitCommand(
+          "grep", "-q", "-F", "export-subst", revId, "--", ".gitattributes", "*/.gitattributes");
+      return true;
+    } catch (CommandException e) {
+      if (e.returnStatus == 1) {
+        // No match.
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a long-lived {@code git cat-file --batch} reader for this clone, through which objects
+   * and revision expressions can be resolved without forking git for each one.
+   */
+  synchronized GitCatFileBatch catFileBatch() {
+    if (catFileBatch == null) {
+      catFileBatch = new GitCatFileBatch(getLocalTempDir());
+    }
+    return catFileBatch;
+  }
 }
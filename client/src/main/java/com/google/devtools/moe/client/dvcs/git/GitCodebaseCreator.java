@@ -20,6 +20,7 @@ import com.google.common.base.Supplier;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
 import com.google.devtools.moe.client.codebase.LocalWorkspace;
 import com.google.devtools.moe.client.dvcs.AbstractDvcsCodebaseCreator;
 import com.google.devtools.moe.client.config.RepositoryConfig;
@@ -43,7 +44,29 @@ public class GitCodebaseCreator extends AbstractDvcsCodebaseCreator {
       String repositoryName,
       RepositoryConfig config,
       Lifetimes lifetimes) {
-    super(cmd, filesystem, headCloneSupplier, revisionHistory, projectSpace);
+    this(
+        cmd,
+        filesystem,
+        headCloneSupplier,
+        revisionHistory,
+        projectSpace,
+        repositoryName,
+        config,
+        lifetimes,
+        CodebaseSnapshotCache.DISABLED);
+  }
+
+  public GitCodebaseCreator(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      Supplier<? extends LocalWorkspace> headCloneSupplier,
+      RevisionHistory revisionHistory,
+      String projectSpace,
+      String repositoryName,
+      RepositoryConfig config,
+      Lifetimes lifetimes,
+      CodebaseSnapshotCache snapshots) {
+    super(cmd, filesystem, headCloneSupplier, revisionHistory, projectSpace, snapshots);
     this.repositoryName = repositoryName;
     this.config = config;
     this.lifetimes = lifetimes;
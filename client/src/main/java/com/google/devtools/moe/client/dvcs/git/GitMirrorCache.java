@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.devtools.moe.client.CommandRunner;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent cache of bare git mirrors, one per repository URL, shared by every MOE run on this
+ * machine.
+ *
+ * <p>A {@link GitClonedRepository} borrows objects from the mirror of its URL (through git's
+ * alternates mechanism, as {@code git clone --reference} does), so that it only fetches what the
+ * mirror lacks. A mirror holds the repository's branches and tags, but not other refs (e.g. those
+ * of GitHub's pull requests), which clones never fetch. The first run against a repository
+ * populates its mirror; later runs bring it up to date with an incremental fetch, at most once per
+ * run.
+ *
+ * <p>Clones borrowing from a mirror break if objects they rely on are pruned from it, so mirrors
+ * are configured never to prune unreachable objects. Concurrent MOE runs serialize their updates of
+ * a mirror through a lock file next to it.
+ *
+ * <p>The cache is best-effort: a mirror which can't be created or updated is logged and skipped,
+ * and the clone fetches everything from the repository itself.
+ */
+public class GitMirrorCache {
+  private static final Logger logger = Logger.getLogger(GitMirrorCache.class.getName());
+
+  /** A cache which never holds anything. */
+  public static final GitMirrorCache DISABLED = new GitMirrorCache(null, null);
+
+  private final CommandRunner cmd;
+  @Nullable private final File directory;
+
+  /** The URLs whose mirrors have already been brought up to date by this run. */
+  private final Set<String> updated = new HashSet<>();
+
+  /**
+   * @param cmd the runner for git commands
+   * @param directory the directory holding the mirrors, created if needed, or null to disable
+   *     mirroring
+   */
+  public GitMirrorCache(CommandRunner cmd, @Nullable File directory) {
+    this.cmd = cmd;
+    this.directory = directory;
+  }
+
+  /**
+   * Returns a cache in the user's cache directory ({@code $XDG_CACHE_HOME/moe/git_mirrors}, by
+   * default {@code ~/.cache/moe/git_mirrors}).
+   */
+  public static GitMirrorCache inUserCacheDirectory(CommandRunner cmd) {
+    String cacheHome = System.getenv("XDG_CACHE_HOME");
+    File root =
+        Strings.isNullOrEmpty(cacheHome)
+            ? new File(System.getProperty("user.home"), ".cache")
+            : new File(cacheHome);
+    return new GitMirrorCache(cmd, new File(root, "moe/git_mirrors"));
+  }
+
+  /**
+   * Returns the object directory of the mirror of the repository at the given URL, brought up to
+   * date if this run hasn't done so yet, or null if there is no usable mirror. Repositories which
+   * are already local directories aren't mirrored.
+   */
+  @Nullable
+  public synchronized File objectsFor(String repositoryUrl) {
+    if (directory == null || new File(repositoryUrl).isDirectory()) {
+      return null;
+    }
+    File mirror = mirrorFor(repositoryUrl);
+    if (!updated.contains(repositoryUrl)) {
+      try {
+        Files.createDirectories(directory.toPath());
+        try (FileChannel lockChannel =
+                FileChannel.open(
+                    new File(directory, mirror.getName() + ".lock").toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            FileLock lock = lockChannel.lock()) {
+          if (mirror.isDirectory()) {
+            fetch(mirror);
+          } else {
+            create(repositoryUrl, mirror);
+          }
+        }
+      } catch (CommandException e) {
+        logger.log(Level.WARNING, "Failed to update git mirror of " + repositoryUrl, e);
+        if (!mirror.isDirectory()) {
+          return null;
+        }
+        // A stale mirror is still useful; the clone fetches whatever it lacks.
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to update git mirror of " + repositoryUrl, e);
+        return null;
+      }
+      updated.add(repositoryUrl);
+    }
+    return new File(mirror, "objects");
+  }
+
+  @VisibleForTesting
+  File mirrorFor(String repositoryUrl) {
+    return new File(
+        directory, Hashing.sha256().hashString(repositoryUrl, UTF_8).toString() + ".git");
+  }
+
+  private void fetch(File mirror) throws CommandException {
+    // Given explicitly, rather than configured, since mirrors made by 'git clone --mirror' fetch
+    // every ref.
+    cmd.runCommand(
+        mirror.getAbsolutePath(),
+        "git",
+        ImmutableList.of(
+            "fetch",
+            "--prune",
+            "-q",
+            "origin",
+            "+refs/heads/*:refs/heads/*",
+            "+refs/tags/*:refs/tags/*"));
+  }
+
+  /**
+   * Clones a new mirror beside its final location and moves it into place, so an interrupted
+   * clone never leaves a half-populated mirror behind.
+   */
+  private void create(String repositoryUrl, File mirror) throws CommandException, IOException {
+    Path partial = Files.createTempDirectory(directory.toPath(), mirror.getName() + ".partial");
+    try {
+      String partialPath = partial.toAbsolutePath().toString();
+      cmd.runCommand("", "git", ImmutableList.of("init", "--bare", "-q", partialPath));
+      cmd.runCommand(
+          partialPath, "git", ImmutableList.of("config", "remote.origin.url", repositoryUrl));
+      cmd.runCommand(partialPath, "git", ImmutableList.of("config", "gc.pruneExpire", "never"));
+      fetch(partial.toFile());
+      try {
+        Files.move(partial, mirror.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(partial, mirror.toPath());
+      }
+    } finally {
+      if (Files.exists(partial)) {
+        cmd.runCommand("", "rm", ImmutableList.of("-rf", partial.toAbsolutePath().toString()));
+      }
+    }
+  }
+}
@@ -24,9 +24,13 @@ import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Lifetimes;
 import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
 import com.google.devtools.moe.client.InvalidProject;
 import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.CachingRevisionHistory;
 import com.google.devtools.moe.client.repositories.RepositoryType;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import javax.inject.Inject;
 
 /** Creates a Git implementation of {@link RepositoryType}. */
@@ -35,14 +39,26 @@ public class GitRepositoryFactory implements RepositoryType.Factory {
   private final FileSystem filesystem;
   private final Ui ui;
   private final Lifetimes lifetimes;
+  private final RevisionMetadataCache metadataCache;
+  private final GitMirrorCache mirrors;
+  private final CodebaseSnapshotCache snapshots;
 
   @Inject
   public GitRepositoryFactory(
-      CommandRunner cmd, FileSystem filesystem, Ui ui, Lifetimes lifetimes) {
+      CommandRunner cmd,
+      FileSystem filesystem,
+      Ui ui,
+      Lifetimes lifetimes,
+      RevisionMetadataCache metadataCache,
+      GitMirrorCache mirrors,
+      CodebaseSnapshotCache snapshots) {
     this.cmd = cmd;
     this.filesystem = filesystem;
     this.ui = ui;
     this.lifetimes = lifetimes;
+    this.metadataCache = metadataCache;
+    this.mirrors = mirrors;
+    this.snapshots = snapshots;
   }
 
   @Override
@@ -65,26 +81,37 @@ public class GitRepositoryFactory implements RepositoryType.Factory {
       throw new InvalidProject("Git repository config missing \"url\".");
     }
 
-    Supplier<GitClonedRepository> freshSupplier =
-        () -> {
-          GitClonedRepository headClone =
-              new GitClonedRepository(cmd, filesystem, name, config, lifetimes);
-          headClone.cloneLocallyAtHead(lifetimes.currentTask());
-          return headClone;
-        };
-
     // RevisionHistory and CodebaseCreator don't modify their clones, so they can use a shared,
     // memoized supplier.
     Supplier<GitClonedRepository> memoizedSupplier =
         Suppliers.memoize(
             () -> {
               GitClonedRepository tipClone =
-                  new GitClonedRepository(cmd, filesystem, name, config, lifetimes);
+                  new GitClonedRepository(cmd, filesystem, name, config, lifetimes, mirrors);
               tipClone.cloneLocallyAtHead(lifetimes.moeExecution());
               return tipClone;
             });
 
-    GitRevisionHistory rh = new GitRevisionHistory(memoizedSupplier);
+    // Writers each get a clone of their own, made from the shared one rather than fetched again.
+    Supplier<GitClonedRepository> freshSupplier =
+        () -> {
+          GitClonedRepository writerClone =
+              new GitClonedRepository(cmd, filesystem, name, config, lifetimes, mirrors);
+          writerClone.cloneLocallyFrom(memoizedSupplier.get(), lifetimes.currentTask());
+          return writerClone;
+        };
+
+    // The head clone lives for the whole execution, so its history is read through a long-lived
+    // cat-file process instead of a git log per revision. A shallow clone's oldest commits appear
+    // to have no parents, which mustn't be cached as their real metadata.
+    RevisionHistory rh =
+        new CachingRevisionHistory(
+            new GitRevisionHistory(
+                memoizedSupplier,
+                true,
+                config.shallowCheckout() ? RevisionMetadataCache.DISABLED : metadataCache,
+                url,
+                config.getMaxRevisionsToSearch()));
 
     String projectSpace = config.getProjectSpace();
     if (projectSpace == null) {
@@ -93,7 +120,15 @@ public class GitRepositoryFactory implements RepositoryType.Factory {
 
     GitCodebaseCreator cc =
         new GitCodebaseCreator(
-            cmd, filesystem, memoizedSupplier, rh, projectSpace, name, config, lifetimes);
+            cmd,
+            filesystem,
+            memoizedSupplier,
+            rh,
+            projectSpace,
+            name,
+            config,
+            lifetimes,
+            snapshots);
 
     GitWriterCreator wc = new GitWriterCreator(freshSupplier, rh, filesystem, ui);
 
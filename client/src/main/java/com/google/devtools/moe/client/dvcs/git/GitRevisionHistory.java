@@ -24,10 +24,13 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
 import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.dvcs.git.GitCatFileBatch.GitObject;
 import com.google.devtools.moe.client.repositories.AbstractRevisionHistory;
 import com.google.devtools.moe.client.repositories.Revision;
 import com.google.devtools.moe.client.repositories.RevisionMetadata;
 import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import java.util.List;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
@@ -44,10 +47,41 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
 
   @VisibleForTesting static final String LOG_DELIMITER = "---@MOE@---";
 
+  // Format: hash, author, ISO date, parents, full commit message (subject and body)
+  private static final String LOG_FORMAT =
+      Joiner.on(LOG_DELIMITER).join("%H", "%an", "%ai", "%P", "%B");
+
   private final Supplier<GitClonedRepository> headCloneSupplier;
 
+  /**
+   * Whether to batch revision queries: answering single-revision queries through the clone's
+   * long-lived {@link GitCatFileBatch}, and reading ancestry for history searches with one
+   * {@code git log} per range, rather than running {@code git log} once per revision.
+   */
+  private final boolean batchQueries;
+
   GitRevisionHistory(Supplier<GitClonedRepository> headCloneSupplier) {
+    this(headCloneSupplier, false);
+  }
+
+  GitRevisionHistory(Supplier<GitClonedRepository> headCloneSupplier, boolean batchQueries) {
+    this(
+        headCloneSupplier,
+        batchQueries,
+        RevisionMetadataCache.DISABLED,
+        "",
+        RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+  }
+
+  GitRevisionHistory(
+      Supplier<GitClonedRepository> headCloneSupplier,
+      boolean batchQueries,
+      RevisionMetadataCache metadataCache,
+      String repositoryUrl,
+      int maxRevisionsToSearch) {
+    super(metadataCache, repositoryUrl, maxRevisionsToSearch);
     this.headCloneSupplier = headCloneSupplier;
+    this.batchQueries = batchQueries;
   }
 
   /**
@@ -65,6 +99,14 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
 
     String hashID;
     GitClonedRepository headClone = headCloneSupplier.get();
+    if (batchQueries) {
+      GitObject commit = headClone.catFileBatch().read(revId + "^{commit}");
+      if (commit == null) {
+        throw new MoeProblem(
+            "Revision %s not found in repository %s", revId, headClone.getRepositoryName());
+      }
+      return Revision.create(commit.id(), headClone.getRepositoryName());
+    }
     try {
       hashID = headClone.runGitCommand("log", "--max-count=1", "--format=%H", revId, "--").trim();
     } catch (CommandException e) {
@@ -89,8 +131,10 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
           headClone.getRepositoryName());
     }
 
-    // Format: hash, author, ISO date, parents, full commit message (subject and body)
-    String format = Joiner.on(LOG_DELIMITER).join("%H", "%an", "%ai", "%P", "%B");
+    if (batchQueries) {
+      GitObject commit = headClone.catFileBatch().read(revision.revId() + "^{commit}");
+      return commit == null ? null : parseCommitObject(commit);
+    }
 
     String log;
     try {
@@ -99,7 +143,7 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
               "log",
               // Ensure one revision only, to be safe.
               "--max-count=1",
-              "--format=" + format,
+              "--format=" + LOG_FORMAT,
               "--ignore-missing",
               revision.revId());
     } catch (CommandException e) {
@@ -109,6 +153,81 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
     return parseMetadata(log);
   }
 
+  /**
+   * Reads the metadata for the given revisions and their most recent ancestors with a single
+   * {@code git log} over their ancestry.
+   */
+  @Override
+  protected List<RevisionMetadata> createMetadataBatch(List<Revision> revisions, int limit) {
+    if (!batchQueries) {
+      return super.createMetadataBatch(revisions, limit);
+    }
+    GitClonedRepository headClone = headCloneSupplier.get();
+    ImmutableList.Builder<String> args =
+        ImmutableList.<String>builder()
+            .add("log", "-z")
+            .add("--max-count=" + limit)
+            .add("--format=" + LOG_FORMAT)
+            .add("--ignore-missing");
+    for (Revision revision : revisions) {
+      if (!headClone.getRepositoryName().equals(revision.repositoryName())) {
+        throw new MoeProblem(
+            "Could not get metadata: Revision %s is in repository %s instead of %s",
+            revision.revId(),
+            revision.repositoryName(),
+            headClone.getRepositoryName());
+      }
+      args.add(revision.revId());
+    }
+    args.add("--");
+
+    // With -z, each entry is NUL-terminated rather than newline-terminated. Entries are parsed as
+    // they arrive, so the whole log (which may be long) is never held in memory.
+    ImmutableList.Builder<RevisionMetadata> result = ImmutableList.builder();
+    try {
+      headClone.runGitCommandForNulTerminated(
+          args.build(),
+          entry -> {
+            if (!entry.isEmpty()) {
+              result.add(parseMetadata(entry + "\n"));
+            }
+          });
+    } catch (CommandException e) {
+      throw new MoeProblem("Failed git run: %d %s %s", e.returnStatus, e.stdout, e.stderr);
+    }
+    return result.build();
+  }
+
+  /**
+   * Lists the revisions in {@code head}'s ancestry but not {@code excluded}'s with a single
+   * {@code git rev-list head ^excluded}, rather than walking both ancestries.
+   */
+  @Override
+  public List<Revision> findAncestorsExcluding(Revision head, Revision excluded) {
+    GitClonedRepository headClone = headCloneSupplier.get();
+    try {
+      headClone.runGitCommand("rev-parse", "--verify", "--quiet", excluded.revId() + "^{commit}");
+    } catch (CommandException e) {
+      // This clone doesn't have the excluded revision (e.g. it's the head of another fork).
+      return null;
+    }
+
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    try {
+      headClone.runGitCommandForLines(
+          ImmutableList.of(
+              "rev-list", "--topo-order", "--reverse", head.revId(), "^" + excluded.revId(), "--"),
+          revId -> {
+            if (!revId.trim().isEmpty()) {
+              result.add(Revision.create(revId.trim(), headClone.getRepositoryName()));
+            }
+          });
+    } catch (CommandException e) {
+      throw new MoeProblem("Failed git run: %d %s %s", e.returnStatus, e.stdout, e.stderr);
+    }
+    return result.build();
+  }
+
   /**
    * Parse the output of Git into RevisionMetadata.
    *
@@ -141,6 +260,52 @@ public class GitRevisionHistory extends AbstractRevisionHistory {
         .build();
   }
 
+  /**
+   * Parse a raw commit object, as read by {@link GitCatFileBatch}, into RevisionMetadata equal to
+   * what {@link #parseMetadata} produces from the equivalent {@code git log} output.
+   */
+  @VisibleForTesting
+  RevisionMetadata parseCommitObject(GitObject commit) {
+    String repositoryName = headCloneSupplier.get().getRepositoryName();
+    String content = commit.content();
+    int headerEnd = content.indexOf("\n\n");
+    String headers = headerEnd < 0 ? content : content.substring(0, headerEnd);
+    // git log's %B is the raw message, and each formatted entry is newline-terminated.
+    String message = headerEnd < 0 ? "" : content.substring(headerEnd + 2);
+
+    ImmutableList.Builder<Revision> parentBuilder = ImmutableList.builder();
+    String author = null;
+    DateTime date = null;
+    // Multi-line headers (e.g. gpgsig) continue on lines starting with a space, which never match.
+    for (String header : Splitter.on('\n').split(headers)) {
+      if (header.startsWith("parent ")) {
+        parentBuilder.add(Revision.create(header.substring("parent ".length()), repositoryName));
+      } else if (header.startsWith("author ")) {
+        // Format: author Name <email> epoch-seconds timezone
+        int emailStart = header.indexOf(" <");
+        int emailEnd = header.lastIndexOf('>');
+        if (emailStart < 0 || emailEnd < 0) {
+          throw new MoeProblem("Malformed author in git commit %s: %s", commit.id(), header);
+        }
+        author = header.substring("author ".length(), emailStart);
+        List<String> when =
+            Splitter.on(' ').omitEmptyStrings().splitToList(header.substring(emailEnd + 1));
+        date = new DateTime(Long.parseLong(when.get(0)) * 1000);
+      }
+    }
+    if (author == null) {
+      throw new MoeProblem("Git commit %s has no author", commit.id());
+    }
+
+    return RevisionMetadata.builder()
+        .id(commit.id())
+        .author(author)
+        .date(date)
+        .description(message + "\n")
+        .withParents(parentBuilder.build())
+        .build();
+  }
+
   /** The tag parsing logic for git commits. */
   @Override
   protected FieldParsingResult parseFields(RevisionMetadata metadata) {
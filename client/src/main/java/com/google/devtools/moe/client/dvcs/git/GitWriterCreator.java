@@ -22,6 +22,7 @@ import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
 import com.google.devtools.moe.client.writer.Writer;
 import com.google.devtools.moe.client.writer.WriterCreator;
 import java.util.Map;
@@ -30,13 +31,13 @@ import java.util.Map;
 public class GitWriterCreator implements WriterCreator {
 
   private final Supplier<GitClonedRepository> freshCloneSupplier;
-  private final GitRevisionHistory revHistory;
+  private final RevisionHistory revHistory;
   private final FileSystem filesystem;
   private final Ui ui;
 
   GitWriterCreator(
       Supplier<GitClonedRepository> headCloneSupplier,
-      GitRevisionHistory revHistory,
+      RevisionHistory revHistory,
       FileSystem filesystem,
       Ui ui) {
     this.freshCloneSupplier = headCloneSupplier;
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * The paths selected by a list of sparse-checkout patterns (a repository's {@code checkout_paths}),
+ * matched as git matches its {@code info/sparse-checkout} file: gitignore-style patterns, where a
+ * pattern matching a directory also matches everything beneath it. As in git, the path itself is
+ * matched first and then each of its ancestors, innermost first; the first of these that any
+ * pattern matches decides, by the last pattern matching it.
+ */
+public final class SparseCheckoutPatterns implements Predicate<CharSequence> {
+  private static final CharMatcher WILDCARDS = CharMatcher.anyOf("*?[\\");
+
+  private final ImmutableList<Rule> rules;
+  private final ImmutableList<String> literalPrefixes;
+
+  private SparseCheckoutPatterns(ImmutableList<Rule> rules, ImmutableList<String> literalPrefixes) {
+    this.rules = rules;
+    this.literalPrefixes = literalPrefixes;
+  }
+
+  public static SparseCheckoutPatterns parse(List<String> patterns) {
+    ImmutableList.Builder<Rule> rules = ImmutableList.builder();
+    TreeSet<String> prefixes = new TreeSet<>();
+    boolean wholeTree = false;
+    for (String line : patterns) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        continue;
+      }
+      boolean negated = pattern.startsWith("!");
+      if (negated) {
+        pattern = pattern.substring(1);
+      }
+      boolean directoryOnly = pattern.endsWith("/");
+      pattern = CharMatcher.is('/').trimTrailingFrom(pattern);
+      // As in .gitignore, a pattern with a slash (other than a trailing one) is anchored at the
+      // root; one without matches at any depth.
+      boolean anchored = pattern.contains("/");
+      pattern = CharMatcher.is('/').trimLeadingFrom(pattern);
+      if (pattern.isEmpty()) {
+        continue;
+      }
+      rules.add(new Rule(toRegex(pattern, anchored), negated, directoryOnly));
+
+      if (!negated) {
+        String prefix = anchored ? literalPrefix(pattern) : "";
+        if (prefix.isEmpty()) {
+          wholeTree = true;
+        } else {
+          prefixes.add(prefix);
+        }
+      }
+    }
+    return new SparseCheckoutPatterns(
+        rules.build(), wholeTree ? ImmutableList.of() : withoutNestedPrefixes(prefixes));
+  }
+
+  /** Returns whether the given file (a path relative to the repository root) is selected. */
+  @Override
+  public boolean apply(CharSequence path) {
+    String pathString = path.toString();
+    Boolean selected = match(pathString, false);
+    for (int slash = pathString.lastIndexOf('/');
+        selected == null && slash >= 0;
+        slash = pathString.lastIndexOf('/', slash - 1)) {
+      selected = match(pathString.substring(0, slash), true);
+    }
+    return selected != null && selected;
+  }
+
+  /**
+   * Returns whether the last rule matching the given path selects it, or null if no rule matches.
+   */
+  @Nullable
+  private Boolean match(String path, boolean isDirectory) {
+    Boolean selected = null;
+    for (Rule rule : rules) {
+      if ((isDirectory || !rule.directoryOnly) && rule.pattern.matcher(path).matches()) {
+        selected = !rule.negated;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Returns the directories or files, relative to the repository root, under which every selected
+   * path lies, or an empty list if selected paths may lie anywhere. The paths may not exist.
+   */
+  public ImmutableList<String> literalPrefixes() {
+    return literalPrefixes;
+  }
+
+  /** Returns the leading path components of a pattern which contain no wildcards. */
+  private static String literalPrefix(String pattern) {
+    List<String> literal = new ArrayList<>();
+    for (String component : Splitter.on('/').split(pattern)) {
+      if (WILDCARDS.matchesAnyOf(component)) {
+        break;
+      }
+      literal.add(component);
+    }
+    return Joiner.on('/').join(literal);
+  }
+
+  private static ImmutableList<String> withoutNestedPrefixes(TreeSet<String> prefixes) {
+    List<String> result = new ArrayList<>();
+    for (String prefix : prefixes) {
+      // Sorted, so any prefix this one is beneath has already been seen.
+      if (result.stream().noneMatch(kept -> prefix.startsWith(kept + "/"))) {
+        result.add(prefix);
+      }
+    }
+    return ImmutableList.copyOf(result);
+  }
+
+  /** Translates a gitignore-style glob into a regex over a whole relative path. */
+  private static Pattern toRegex(String glob, boolean anchored) {
+    StringBuilder regex = new StringBuilder(anchored ? "" : "(?:.*/)?");
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (glob.startsWith("**/", i)) {
+        regex.append("(?:.*/)?");
+        i += 2;
+      } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+        regex.append("/.*");
+        i += 2;
+      } else if (c == '*') {
+        regex.append("[^/]*");
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+        int end = glob.indexOf(']', i + 2);
+        String set = glob.substring(i + 1, end);
+        regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+        i = end;
+      } else if (c == '\\' && i + 1 < glob.length()) {
+        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  private static final class Rule {
+    final Pattern pattern;
+    final boolean negated;
+    final boolean directoryOnly;
+
+    Rule(Pattern pattern, boolean negated, boolean directoryOnly) {
+      this.pattern = pattern;
+      this.negated = negated;
+      this.directoryOnly = directoryOnly;
+    }
+  }
+}
@@ -43,6 +43,7 @@ public class HgClonedRepository implements LocalWorkspace {
   private final String repositoryName;
   private final RepositoryConfig repositoryConfig;
   private final Lifetimes lifetimes;
+  private final boolean useCommandServer;
 
   /**
    * The location to clone from. If snapshotting a locally modified Writer, this will <em>not</em>
@@ -54,6 +55,8 @@ public class HgClonedRepository implements LocalWorkspace {
   private boolean clonedLocally;
   private boolean updatedToRev = false;
   private String branch = null;
+  /** The command server for this clone, if enabled, created on first use. */
+  private HgCommandServer commandServer;
 
   public HgClonedRepository(
       CommandRunner cmd,
@@ -80,6 +83,30 @@ public class HgClonedRepository implements LocalWorkspace {
       RepositoryConfig repositoryConfig,
       String repositoryUrl,
       Lifetimes lifetimes) {
+    this(
+        cmd,
+        filesystem,
+        hgBinary,
+        repositoryName,
+        repositoryConfig,
+        repositoryUrl,
+        lifetimes,
+        false);
+  }
+
+  /**
+   * @param useCommandServer whether commands run in this clone, once cloned, should go through a
+   *     long-lived {@link HgCommandServer} rather than a new hg process each
+   */
+  HgClonedRepository(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      File hgBinary,
+      String repositoryName,
+      RepositoryConfig repositoryConfig,
+      String repositoryUrl,
+      Lifetimes lifetimes,
+      boolean useCommandServer) {
     this.cmd = cmd;
     this.filesystem = filesystem;
     this.hgBinary = hgBinary;
@@ -88,6 +115,7 @@ public class HgClonedRepository implements LocalWorkspace {
     this.repositoryUrl = repositoryUrl;
     this.clonedLocally = false;
     this.lifetimes = lifetimes;
+    this.useCommandServer = useCommandServer;
   }
 
   @Override
@@ -117,7 +145,10 @@ public class HgClonedRepository implements LocalWorkspace {
     Preconditions.checkState(!clonedLocally);
 
     String tempDirName = "hg_clone_" + repositoryName + "_";
-    localCloneTempDir = filesystem.getTemporaryDirectory(tempDirName, cloneLifetime);
+    localCloneTempDir =
+        filesystem.getTemporaryDirectory(
+            tempDirName,
+            useCommandServer ? closingCommandServerWith(cloneLifetime) : cloneLifetime);
 
     try {
       Optional<String> branchName = repositoryConfig.getBranch();
@@ -183,9 +214,38 @@ public class HgClonedRepository implements LocalWorkspace {
    * @return the stdout output of the command
    */
   String runHgCommand(File workingDirectory, List<String> args) throws CommandException {
+    if (useCommandServer && clonedLocally && localCloneTempDir.equals(workingDirectory)) {
+      return commandServer().runCommand(args);
+    }
     return cmd.runCommand(
         workingDirectory == null ? null : workingDirectory.getAbsolutePath(),
         hgBinary.getPath(),
         ImmutableList.copyOf(args));
   }
+
+  private synchronized HgCommandServer commandServer() {
+    if (commandServer == null) {
+      commandServer = new HgCommandServer(hgBinary, localCloneTempDir);
+    }
+    return commandServer;
+  }
+
+  /**
+   * Returns a {@link Lifetime} like the given one which, when the clone is due for clean-up, first
+   * closes its command server, so that no server is left running against a deleted directory.
+   */
+  private Lifetime closingCommandServerWith(Lifetime cloneLifetime) {
+    return () -> {
+      if (!cloneLifetime.shouldCleanUp()) {
+        return false;
+      }
+      synchronized (this) {
+        if (commandServer != null) {
+          commandServer.close();
+          commandServer = null;
+        }
+      }
+      return true;
+    };
+  }
 }
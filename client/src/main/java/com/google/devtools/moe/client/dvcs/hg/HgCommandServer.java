@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.hg;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.MoeProblem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * A long-lived {@code hg serve --cmdserver pipe} process for a local repository, through which hg
+ * commands are run without paying interpreter startup for each one.
+ *
+ * <p>The command server protocol frames every message from the server as a one-byte channel, a
+ * four-byte big-endian length and the payload. Commands are sent as {@code "runcommand\n"}
+ * followed by a length-prefixed, NUL-separated argument list, and are answered with any number of
+ * output ('o') and error ('e') frames, terminated by a result ('r') frame holding the exit code.
+ * See https://www.mercurial-scm.org/wiki/CommandServer.
+ *
+ * <p>The server is started on first use and lives until {@link #close()}, or until the JVM exits
+ * (at which point hg sees its stdin close and exits too). If the protocol fails mid-command the
+ * server is discarded, and the next command starts a new one.
+ */
+final class HgCommandServer implements Closeable {
+  private static final Joiner NUL_JOINER = Joiner.on('\0');
+
+  private final String hgBinary;
+  private final File repositoryDirectory;
+  private final List<String> serverCommand;
+
+  private Process process;
+  private DataOutputStream requests;
+  private DataInputStream responses;
+  private Charset encoding;
+
+  HgCommandServer(File hgBinary, File repositoryDirectory) {
+    this(
+        hgBinary.getPath(),
+        repositoryDirectory,
+        ImmutableList.of(hgBinary.getPath(), "serve", "--cmdserver", "pipe"));
+  }
+
+  @VisibleForTesting
+  HgCommandServer(String hgBinary, File repositoryDirectory, List<String> serverCommand) {
+    this.hgBinary = hgBinary;
+    this.repositoryDirectory = repositoryDirectory;
+    this.serverCommand = ImmutableList.copyOf(serverCommand);
+  }
+
+  /**
+   * Runs an hg command in the server's repository.
+   *
+   * @param args a list of arguments to the 'hg' command
+   * @return the stdout output of the command
+   * @throws CommandException if the command exits with a non-zero status
+   */
+  synchronized String runCommand(List<String> args) throws CommandException {
+    ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    int returnStatus;
+    try {
+      if (process == null) {
+        start();
+      }
+      byte[] encodedArgs = NUL_JOINER.join(args).getBytes(encoding);
+      requests.write("runcommand\n".getBytes(UTF_8));
+      requests.writeInt(encodedArgs.length);
+      requests.write(encodedArgs);
+      requests.flush();
+
+      while (true) {
+        char channel = (char) responses.readUnsignedByte();
+        int length = responses.readInt();
+        if (channel == 'r') {
+          returnStatus = responses.readInt();
+          break;
+        }
+        switch (channel) {
+          case 'o':
+            copyPayload(length, stdout);
+            break;
+          case 'e':
+            copyPayload(length, stderr);
+            break;
+          case 'I':
+          case 'L':
+            // The command wants input; MOE never provides any, so answer with end-of-file.
+            requests.writeInt(0);
+            requests.flush();
+            break;
+          default:
+            if (Character.isUpperCase(channel)) {
+              throw new IOException("Unsupported required channel '" + channel + "'");
+            }
+            // Optional channels (e.g. 'd'ebug) may be ignored.
+            copyPayload(length, ByteStreams.nullOutputStream());
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      stop();
+      throw new MoeProblem(
+          e, "hg command server in %s failed running %s: %s",
+          repositoryDirectory, args, e.getMessage());
+    }
+
+    String out = new String(stdout.toByteArray(), encoding);
+    if (returnStatus != 0) {
+      throw new CommandException(
+          hgBinary, args, out, new String(stderr.toByteArray(), encoding), returnStatus);
+    }
+    return out;
+  }
+
+  /** Stops the underlying server process, if it is running. */
+  @Override
+  public synchronized void close() {
+    if (process == null) {
+      return;
+    }
+    try {
+      requests.close();
+      process.waitFor();
+    } catch (IOException e) {
+      process.destroy();
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+    } finally {
+      process = null;
+    }
+  }
+
+  private void start() throws IOException {
+    process =
+        new ProcessBuilder(serverCommand)
+            .directory(repositoryDirectory)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+    // The server greets with a single 'o' frame of "key: value" lines, e.g. "encoding: UTF-8".
+    char channel = (char) responses.readUnsignedByte();
+    byte[] hello = new byte[responses.readInt()];
+    responses.readFully(hello);
+    if (channel != 'o') {
+      throw new IOException("Unexpected hello on channel '" + channel + "'");
+    }
+    encoding = UTF_8;
+    boolean canRunCommands = false;
+    for (String line : Splitter.on('\n').split(new String(hello, UTF_8))) {
+      if (line.startsWith("encoding: ")) {
+        encoding = Charset.forName(line.substring("encoding: ".length()).trim());
+      } else if (line.startsWith("capabilities: ")) {
+        canRunCommands = Splitter.on(' ').splitToList(line).contains("runcommand");
+      }
+    }
+    if (!canRunCommands) {
+      throw new IOException("Server does not support runcommand: " + new String(hello, UTF_8));
+    }
+  }
+
+  private void stop() {
+    if (process != null) {
+      process.destroy();
+      process = null;
+    }
+  }
+
+  private void copyPayload(int length, OutputStream out) throws IOException {
+    ByteStreams.copy(ByteStreams.limit(responses, length), out);
+  }
+}
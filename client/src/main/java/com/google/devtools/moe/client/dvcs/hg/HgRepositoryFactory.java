@@ -26,7 +26,10 @@ import com.google.devtools.moe.client.Lifetimes;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.InvalidProject;
 import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.CachingRevisionHistory;
 import com.google.devtools.moe.client.repositories.RepositoryType;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import java.io.File;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -38,6 +41,7 @@ public class HgRepositoryFactory implements RepositoryType.Factory {
   private final File hgBinary;
   private final Ui ui;
   private final Lifetimes lifetimes;
+  private final RevisionMetadataCache metadataCache;
 
   @Inject
   HgRepositoryFactory(
@@ -45,12 +49,14 @@ public class HgRepositoryFactory implements RepositoryType.Factory {
       FileSystem filesystem,
       @Named("hg_binary") File hgBinary,
       Ui ui,
-      Lifetimes lifetimes) {
+      Lifetimes lifetimes,
+      RevisionMetadataCache metadataCache) {
     this.cmd = cmd;
     this.filesystem = filesystem;
     this.hgBinary = hgBinary;
     this.ui = ui;
     this.lifetimes = lifetimes;
+    this.metadataCache = metadataCache;
   }
 
   @Override
@@ -75,8 +81,7 @@ public class HgRepositoryFactory implements RepositoryType.Factory {
 
     Supplier<HgClonedRepository> freshSupplier =
         () -> {
-          HgClonedRepository tipClone =
-              new HgClonedRepository(cmd, filesystem, hgBinary, name, config, lifetimes);
+          HgClonedRepository tipClone = newClone(name, config, false);
           tipClone.cloneLocallyAtHead(lifetimes.currentTask());
           return tipClone;
         };
@@ -86,13 +91,21 @@ public class HgRepositoryFactory implements RepositoryType.Factory {
     Supplier<HgClonedRepository> memoizedSupplier =
         Suppliers.memoize(
             () -> {
-              HgClonedRepository tipClone =
-                  new HgClonedRepository(cmd, filesystem, hgBinary, name, config, lifetimes);
+              HgClonedRepository tipClone = newClone(name, config, true);
               tipClone.cloneLocallyAtHead(lifetimes.moeExecution());
               return tipClone;
             });
 
-    HgRevisionHistory rh = new HgRevisionHistory(cmd, hgBinary, memoizedSupplier);
+    RevisionHistory rh =
+        new CachingRevisionHistory(
+            new HgRevisionHistory(
+                cmd,
+                hgBinary,
+                memoizedSupplier,
+                true,
+                metadataCache,
+                url,
+                config.getMaxRevisionsToSearch()));
 
     String projectSpace = config.getProjectSpace();
     if (projectSpace == null) {
@@ -107,4 +120,16 @@ public class HgRepositoryFactory implements RepositoryType.Factory {
 
     return RepositoryType.create(name, rh, cc, wc);
   }
+
+  /**
+   * Creates a clone, whose commands once cloned go through a command server if {@code
+   * useCommandServer}. That is worth it for the memoized head clone, which runs many small hg
+   * commands (e.g. log queries) over the whole MOE execution; writer clones are short-lived and
+   * often kept past their task, so they run hg directly rather than leave a server behind.
+   */
+  private HgClonedRepository newClone(
+      String name, RepositoryConfig config, boolean useCommandServer) {
+    return new HgClonedRepository(
+        cmd, filesystem, hgBinary, name, config, config.getUrl(), lifetimes, useCommandServer);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.devtools.moe.client.dvcs.hg;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
@@ -24,11 +25,14 @@ import com.google.common.collect.ImmutableList;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
 import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.AbstractRevisionHistory;
 import com.google.devtools.moe.client.repositories.Revision;
 import com.google.devtools.moe.client.repositories.RevisionMetadata;
 import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -43,15 +47,56 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
   private static final DateTimeFormatter HG_DATE_FMT =
       DateTimeFormat.forPattern("yyyy-MM-dd HH:mm Z");
 
+  // Format output as "changesetID < author < date < description < parents".
+  // Since parents is a list, need to use stringify before applying another filter.
+  private static final String LOG_TEMPLATE =
+      "{node|escape} < {author|escape} < {date|isodate|escape} < "
+          + "{desc|escape} < {parents|stringify|escape}";
+
   private final Supplier<HgClonedRepository> tipCloneSupplier;
   private final CommandRunner runner;
   private final File hgBinary;
 
+  /**
+   * Whether to batch queries: running them through the tip clone (and so its command server, if
+   * it has one), and reading ancestry for history searches with one {@code hg log} per range,
+   * rather than forking hg once per revision.
+   */
+  private final boolean batchQueries;
+
   HgRevisionHistory(
       CommandRunner runner, File hgBinary, Supplier<HgClonedRepository> tipCloneSupplier) {
+    this(runner, hgBinary, tipCloneSupplier, false);
+  }
+
+  HgRevisionHistory(
+      CommandRunner runner,
+      File hgBinary,
+      Supplier<HgClonedRepository> tipCloneSupplier,
+      boolean batchQueries) {
+    this(
+        runner,
+        hgBinary,
+        tipCloneSupplier,
+        batchQueries,
+        RevisionMetadataCache.DISABLED,
+        "",
+        RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+  }
+
+  HgRevisionHistory(
+      CommandRunner runner,
+      File hgBinary,
+      Supplier<HgClonedRepository> tipCloneSupplier,
+      boolean batchQueries,
+      RevisionMetadataCache metadataCache,
+      String repositoryUrl,
+      int maxRevisionsToSearch) {
+    super(metadataCache, repositoryUrl, maxRevisionsToSearch);
     this.runner = runner;
     this.hgBinary = hgBinary;
     this.tipCloneSupplier = tipCloneSupplier;
+    this.batchQueries = batchQueries;
   }
 
   /**
@@ -79,11 +124,7 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
     String changesetID;
     HgClonedRepository tipClone = tipCloneSupplier.get();
     try {
-      changesetID =
-          runner.runCommand(
-              tipClone.getLocalTempDir().getAbsolutePath(),
-              hgBinary.getPath(),
-              ImmutableList.copyOf(args));
+      changesetID = runHg(tipClone, args);
     } catch (CommandException e) {
       throw new MoeProblem(
           e, "Failed hg run: %s %d %s %s", args, e.returnStatus, e.stdout, e.stderr);
@@ -113,20 +154,12 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
             "--rev=" + revision.revId(),
             // Ensure one revision only, to be safe.
             "--limit=1",
-            // Format output as "changesetID < author < date < description < parents".
-            // Since parents is a list, need to use stringify before applying another filter.
-            "--template={node|escape} < {author|escape} < {date|isodate|escape} < "
-                + "{desc|escape} < {parents|stringify|escape}",
+            "--template=" + LOG_TEMPLATE,
             // Use the debug option to get all parents
             "--debug");
     String log;
     try {
-      log =
-          runner.runCommand(
-              tipClone.getLocalTempDir().getAbsolutePath(),
-              hgBinary.getPath(),
-              ImmutableList.copyOf(args));
-
+      log = runHg(tipClone, args);
     } catch (CommandException e) {
       throw new MoeProblem(
           e, "Failed hg run: %s %d %s %s", args, e.returnStatus, e.stdout, e.stderr);
@@ -135,6 +168,83 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
     return parseMetadata(log);
   }
 
+  /**
+   * Reads the metadata for the given revisions and their most recent ancestors with a single
+   * {@code hg log} over their ancestry.
+   */
+  @Override
+  protected List<RevisionMetadata> createMetadataBatch(List<Revision> revisions, int limit) {
+    if (!batchQueries) {
+      return super.createMetadataBatch(revisions, limit);
+    }
+    HgClonedRepository tipClone = tipCloneSupplier.get();
+    List<String> revsets = new ArrayList<>();
+    for (Revision revision : revisions) {
+      if (!tipClone.getRepositoryName().equals(revision.repositoryName())) {
+        throw new MoeProblem(
+            "Could not get metadata: Revision %s is in repository %s instead of %s",
+            revision.revId(),
+            revision.repositoryName(),
+            tipClone.getRepositoryName());
+      }
+      revsets.add("'" + revision.revId() + "'");
+    }
+    ImmutableList<String> args =
+        ImmutableList.of(
+            "log",
+            "--rev=reverse(ancestors(" + Joiner.on(" or ").join(revsets) + "))",
+            "--limit=" + limit,
+            // Escaping leaves no '<' in a field, so "<" alone on a line ends each entry.
+            "--template=" + LOG_TEMPLATE + "\n<\n",
+            "--debug");
+    String log;
+    try {
+      log = runHg(tipClone, args);
+    } catch (CommandException e) {
+      throw new MoeProblem(
+          e, "Failed hg run: %s %d %s %s", args, e.returnStatus, e.stdout, e.stderr);
+    }
+
+    ImmutableList.Builder<RevisionMetadata> result = ImmutableList.builder();
+    for (String entry : Splitter.on("\n<\n").omitEmptyStrings().split(log)) {
+      result.add(parseMetadata(entry));
+    }
+    return result.build();
+  }
+
+  /**
+   * Lists the revisions in {@code head}'s ancestry but not {@code excluded}'s with a single
+   * {@code hg log -r "only(head, excluded)"}, rather than walking both ancestries.
+   */
+  @Override
+  public List<Revision> findAncestorsExcluding(Revision head, Revision excluded) {
+    HgClonedRepository tipClone = tipCloneSupplier.get();
+    List<String> args =
+        ImmutableList.of("log", "--rev=present('" + excluded.revId() + "')", "--template={node}");
+    String log;
+    try {
+      if (runHg(tipClone, args).isEmpty()) {
+        // This clone doesn't have the excluded revision (e.g. it's the head of another fork).
+        return null;
+      }
+      args =
+          ImmutableList.of(
+              "log",
+              "--rev=sort(only('" + head.revId() + "', '" + excluded.revId() + "'), rev)",
+              "--template={node}\n");
+      log = runHg(tipClone, args);
+    } catch (CommandException e) {
+      throw new MoeProblem(
+          e, "Failed hg run: %s %d %s %s", args, e.returnStatus, e.stdout, e.stderr);
+    }
+
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    for (String changesetId : Splitter.on('\n').omitEmptyStrings().split(log)) {
+      result.add(Revision.create(changesetId, tipClone.getRepositoryName()));
+    }
+    return result.build();
+  }
+
   private static final String BEGIN_LOG_PATTERN = "^(.*) < (.*) < (.*) < (.*) < (.*)$";
   private static final Pattern BEGIN_LOG_RE = Pattern.compile(BEGIN_LOG_PATTERN, Pattern.DOTALL);
 
@@ -189,9 +299,8 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
     String heads;
     try {
       heads =
-          runner.runCommand(
-              tipClone.getLocalTempDir().getAbsolutePath(),
-              hgBinary.getPath(),
+          runHg(
+              tipClone,
               // Format output as "changesetID branch".
               ImmutableList.of("heads", tipClone.getBranch(), "--template={node} {branch}\n"));
     } catch (CommandException e) {
@@ -207,6 +316,16 @@ public class HgRevisionHistory extends AbstractRevisionHistory {
     return result.build();
   }
 
+  private String runHg(HgClonedRepository tipClone, List<String> args) throws CommandException {
+    if (batchQueries) {
+      return tipClone.runHgCommand(tipClone.getLocalTempDir(), args);
+    }
+    return runner.runCommand(
+        tipClone.getLocalTempDir().getAbsolutePath(),
+        hgBinary.getPath(),
+        ImmutableList.copyOf(args));
+  }
+
   /** The tag parsing logic for hg commits. */
   @Override
   protected FieldParsingResult parseFields(RevisionMetadata metadata) {
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.FileSystem.Lifetime;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.codebase.LocalWorkspace;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.dvcs.git.SparseCheckoutPatterns;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * A git clone to local disk which, unlike {@link
+ * com.google.devtools.moe.client.dvcs.git.GitClonedRepository}, is created and read in-process
+ * through JGit rather than by running the git binary.
+ *
+ * <p>JGit does not support shallow clones, so {@code shallow_checkout} is ignored. {@code
+ * checkout_paths} are honored when archiving, as sparse-checkout patterns just as for git.
+ */
+public class JGitClonedRepository implements LocalWorkspace {
+
+  /** A prefix for branches MOE creates to write migrated changes, as for the git type. */
+  static final String MOE_MIGRATIONS_BRANCH_PREFIX = "moe_writing_branch_from_";
+
+  private final FileSystem filesystem;
+  private final String repositoryName;
+  private final RepositoryConfig repositoryConfig;
+  /**
+   * The location to clone from. If snapshotting a locally modified Writer, this will _not_ be
+   * the same as repositoryConfig.getUrl(). Otherwise, it will.
+   */
+  private final String repositoryUrl;
+
+  private final Lifetimes lifetimes;
+
+  private File localCloneTempDir;
+  private Git git;
+  /** The revision of this clone, a Git hash ID */
+  private String revId;
+
+  JGitClonedRepository(
+      FileSystem filesystem,
+      String repositoryName,
+      RepositoryConfig repositoryConfig,
+      String repositoryUrl,
+      Lifetimes lifetimes) {
+    this.filesystem = filesystem;
+    this.repositoryName = repositoryName;
+    this.repositoryConfig = repositoryConfig;
+    this.repositoryUrl = repositoryUrl;
+    this.lifetimes = lifetimes;
+  }
+
+  @Override
+  public String getRepositoryName() {
+    return repositoryName;
+  }
+
+  @Override
+  public RepositoryConfig getConfig() {
+    return repositoryConfig;
+  }
+
+  @Override
+  public File getLocalTempDir() {
+    Preconditions.checkState(git != null);
+    return localCloneTempDir;
+  }
+
+  /** Returns the JGit porcelain for this clone. */
+  Git git() {
+    Preconditions.checkState(git != null);
+    return git;
+  }
+
+  @Override
+  public void cloneLocallyAtHead(Lifetime cloneLifetime) {
+    Preconditions.checkState(git == null);
+
+    Optional<String> branchName = repositoryConfig.getBranch();
+    String tempDirName = branchName.isPresent()
+        ? "jgit_clone_" + repositoryName + "_" + branchName.get() + "_"
+        : "jgit_clone_" + repositoryName + "_";
+    localCloneTempDir = filesystem.getTemporaryDirectory(tempDirName, cloneLifetime);
+
+    try {
+      git =
+          Git.cloneRepository()
+              .setURI(repositoryUrl)
+              .setDirectory(localCloneTempDir)
+              .setBranch(branchName.or("master"))
+              .call();
+      this.revId = "HEAD";
+    } catch (GitAPIException e) {
+      throw new MoeProblem(
+          e, "Could not clone from git repo at %s: %s", repositoryUrl, e.getMessage());
+    }
+  }
+
+  @Override
+  public void updateToRevision(String revId) {
+    Preconditions.checkState(git != null);
+    Preconditions.checkState("HEAD".equals(this.revId));
+    try {
+      ObjectId head = resolveCommit("HEAD");
+      // If we are updating to a revision other than the branch's head, branch from that revision.
+      if (head == null || !head.getName().equals(revId)) {
+        git.checkout()
+            .setCreateBranch(true)
+            .setName(MOE_MIGRATIONS_BRANCH_PREFIX + revId)
+            .setStartPoint(revId)
+            .call();
+      }
+      this.revId = revId;
+    } catch (GitAPIException e) {
+      throw new MoeProblem(e, "Could not update git repo at %s: %s", localCloneTempDir, e);
+    }
+  }
+
+  /**
+   * Writes the tree of the given revision directly from the object database, without a checkout
+   * or an intermediate tarball. Executable bits and symlinks are preserved.
+   */
+  @Override
+  public File archiveAtRevision(@Nullable String revId) {
+    Preconditions.checkState(git != null);
+    if (Strings.isNullOrEmpty(revId)) {
+      revId = "HEAD";
+    }
+    File archiveLocation =
+        filesystem.getTemporaryDirectory(
+            String.format("jgit_archive_%s_%s_", repositoryName, revId), lifetimes.currentTask());
+    Repository repository = git.getRepository();
+    try (RevWalk revWalk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository)) {
+      filesystem.makeDirs(archiveLocation);
+      ObjectId commitId = resolveCommit(revId);
+      if (commitId == null) {
+        throw new MoeProblem("Revision %s not found in repository %s", revId, repositoryName);
+      }
+      treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+      treeWalk.setRecursive(true);
+      if (!repositoryConfig.getCheckoutPaths().isEmpty()) {
+        treeWalk.setFilter(sparseCheckoutFilter(repositoryConfig.getCheckoutPaths()));
+      }
+      while (treeWalk.next()) {
+        Path dest = archiveLocation.toPath().resolve(treeWalk.getPathString());
+        FileMode mode = treeWalk.getFileMode(0);
+        if (mode == FileMode.GITLINK) {
+          // Like 'git archive', represent submodules as empty directories.
+          Files.createDirectories(dest);
+          continue;
+        }
+        Files.createDirectories(dest.getParent());
+        ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
+        if (mode == FileMode.SYMLINK) {
+          Files.createSymbolicLink(dest, Paths.get(new String(loader.getBytes(), UTF_8)));
+        } else {
+          try (OutputStream out = Files.newOutputStream(dest)) {
+            loader.copyTo(out);
+          }
+          if (mode == FileMode.EXECUTABLE_FILE) {
+            filesystem.setExecutable(dest.toFile());
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new MoeProblem(
+          e,
+          "IOException archiving clone at %s to revision %s",
+          localCloneTempDir.getAbsolutePath(),
+          revId);
+    }
+    return archiveLocation;
+  }
+
+  /**
+   * Resolves a revision expression (anything {@code git rev-parse} accepts) to a commit ID, or
+   * returns null if it does not name a commit in this clone.
+   */
+  @Nullable
+  ObjectId resolveCommit(String revision) {
+    try {
+      return git().getRepository().resolve(revision + "^{commit}");
+    } catch (MissingObjectException e) {
+      // A well-formed hash which isn't in this clone.
+      return null;
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not resolve %s in %s", revision, repositoryName);
+    }
+  }
+
+  /** Returns the given commit, or null if it does not name a commit in this clone. */
+  @Nullable
+  RevCommit parseCommit(String revision) {
+    ObjectId commitId = resolveCommit(revision);
+    if (commitId == null) {
+      return null;
+    }
+    try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+      return revWalk.parseCommit(commitId);
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not read commit %s in %s", revision, repositoryName);
+    }
+  }
+
+  @Override
+  @Nullable
+  public String contentId(String revId) {
+    RevCommit commit = parseCommit(revId);
+    return (commit == null) ? null : commit.getTree().getName();
+  }
+
+  /**
+   * Returns a filter selecting the files which the given sparse-checkout patterns select. Where
+   * these all lie under literal prefixes, the walk also skips every other subtree, rather than
+   * enter it only to reject each file in it.
+   */
+  private static TreeFilter sparseCheckoutFilter(List<String> checkoutPaths) {
+    SparseCheckoutPatterns sparse = SparseCheckoutPatterns.parse(checkoutPaths);
+    TreeFilter selected = new SparseCheckoutFilter(sparse);
+    return sparse.literalPrefixes().isEmpty()
+        ? selected
+        : AndTreeFilter.create(
+            PathFilterGroup.createFromStrings(sparse.literalPrefixes()), selected);
+  }
+
+  /** A {@link TreeFilter} over a recursive walk which selects files by sparse-checkout patterns. */
+  private static final class SparseCheckoutFilter extends TreeFilter {
+    private final SparseCheckoutPatterns sparse;
+
+    SparseCheckoutFilter(SparseCheckoutPatterns sparse) {
+      this.sparse = sparse;
+    }
+
+    @Override
+    public boolean include(TreeWalk walker) {
+      // A pattern may select files beneath a directory it doesn't, so every subtree is entered.
+      return walker.isSubtree() || sparse.apply(walker.getPathString());
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+      return true;
+    }
+
+    @Override
+    public TreeFilter clone() {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.devtools.moe.client.CommandRunner;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.InvalidProject;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.CachingRevisionHistory;
+import com.google.devtools.moe.client.repositories.RepositoryType;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
+import javax.inject.Inject;
+
+/**
+ * Creates a {@link RepositoryType} for git repositories ("type" == "jgit") which clones, reads
+ * history, archives and commits in-process via JGit, without running the git binary.
+ */
+public class JGitRepositoryFactory implements RepositoryType.Factory {
+  private final CommandRunner cmd;
+  private final FileSystem filesystem;
+  private final Ui ui;
+  private final Lifetimes lifetimes;
+  private final RevisionMetadataCache metadataCache;
+  private final CodebaseSnapshotCache snapshots;
+
+  @Inject
+  public JGitRepositoryFactory(
+      CommandRunner cmd,
+      FileSystem filesystem,
+      Ui ui,
+      Lifetimes lifetimes,
+      RevisionMetadataCache metadataCache,
+      CodebaseSnapshotCache snapshots) {
+    this.cmd = cmd;
+    this.filesystem = filesystem;
+    this.ui = ui;
+    this.lifetimes = lifetimes;
+    this.metadataCache = metadataCache;
+    this.snapshots = snapshots;
+  }
+
+  @Override
+  public String type() {
+    return "jgit";
+  }
+
+  /**
+   * Create a Repository from a RepositoryConfig indicating a git repo ("type" == "jgit").
+   *
+   * @throws InvalidProject if RepositoryConfig is missing a repo URL.
+   */
+  @Override
+  public RepositoryType create(final String name, final RepositoryConfig config)
+      throws InvalidProject {
+    checkType(config);
+
+    final String url = config.getUrl();
+    if (isNullOrEmpty(url)) {
+      throw new InvalidProject("Git repository config missing \"url\".");
+    }
+
+    Supplier<JGitClonedRepository> freshSupplier =
+        () -> {
+          JGitClonedRepository headClone =
+              new JGitClonedRepository(filesystem, name, config, url, lifetimes);
+          headClone.cloneLocallyAtHead(lifetimes.currentTask());
+          return headClone;
+        };
+
+    // RevisionHistory and CodebaseCreator don't modify their clones, so they can use a shared,
+    // memoized supplier.
+    Supplier<JGitClonedRepository> memoizedSupplier =
+        Suppliers.memoize(
+            () -> {
+              JGitClonedRepository tipClone =
+                  new JGitClonedRepository(filesystem, name, config, url, lifetimes);
+              tipClone.cloneLocallyAtHead(lifetimes.moeExecution());
+              return tipClone;
+            });
+
+    RevisionHistory rh =
+        new CachingRevisionHistory(
+            new JGitRevisionHistory(
+                memoizedSupplier, metadataCache, url, config.getMaxRevisionsToSearch()));
+
+    String projectSpace = config.getProjectSpace();
+    if (projectSpace == null) {
+      projectSpace = "public";
+    }
+
+    JGitCodebaseCreator cc =
+        new JGitCodebaseCreator(
+            cmd,
+            filesystem,
+            memoizedSupplier,
+            rh,
+            projectSpace,
+            name,
+            config,
+            lifetimes,
+            snapshots);
+
+    JGitWriterCreator wc = new JGitWriterCreator(freshSupplier, rh, filesystem, ui);
+
+    return RepositoryType.create(name, rh, cc, wc);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.AbstractRevisionHistory;
+import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
+import java.io.IOException;
+import java.util.List;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.joda.time.DateTime;
+
+/**
+ * A JGit implementation of {@link AbstractRevisionHistory}, reading commits straight from the
+ * clone's object database.
+ */
+public class JGitRevisionHistory extends AbstractRevisionHistory {
+
+  private final Supplier<JGitClonedRepository> headCloneSupplier;
+
+  JGitRevisionHistory(Supplier<JGitClonedRepository> headCloneSupplier) {
+    this(
+        headCloneSupplier,
+        RevisionMetadataCache.DISABLED,
+        "",
+        RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+  }
+
+  JGitRevisionHistory(
+      Supplier<JGitClonedRepository> headCloneSupplier,
+      RevisionMetadataCache metadataCache,
+      String repositoryUrl,
+      int maxRevisionsToSearch) {
+    super(metadataCache, repositoryUrl, maxRevisionsToSearch);
+    this.headCloneSupplier = headCloneSupplier;
+  }
+
+  /**
+   * Confirm the existence of the given hash ID, or find the most recent hash ID if none is given.
+   *
+   * @param revId a revision ID (or the name of a branch)
+   * @return a Revision corresponding to the given revId hash
+   */
+  @Override
+  public Revision findHighestRevision(String revId) {
+    if (Strings.isNullOrEmpty(revId)) {
+      revId = "HEAD";
+    }
+    JGitClonedRepository headClone = headCloneSupplier.get();
+    ObjectId commitId = headClone.resolveCommit(revId);
+    if (commitId == null) {
+      throw new MoeProblem(
+          "Revision %s not found in repository %s", revId, headClone.getRepositoryName());
+    }
+    return Revision.create(commitId.getName(), headClone.getRepositoryName());
+  }
+
+  /**
+   * Read the metadata for a given revision in the same repository. This matches what the git
+   * repository type reads, so the two types are interchangeable for a given repository.
+   *
+   * @param revision the revision to parse metadata for
+   */
+  @Override
+  public RevisionMetadata createMetadata(Revision revision) {
+    JGitClonedRepository headClone = headCloneSupplier.get();
+    if (!headClone.getRepositoryName().equals(revision.repositoryName())) {
+      throw new MoeProblem(
+          "Could not get metadata: Revision %s is in repository %s instead of %s",
+          revision.revId(),
+          revision.repositoryName(),
+          headClone.getRepositoryName());
+    }
+
+    RevCommit commit = headClone.parseCommit(revision.revId());
+    if (commit == null) {
+      return null;
+    }
+    ImmutableList.Builder<Revision> parentBuilder = ImmutableList.builder();
+    for (RevCommit parent : commit.getParents()) {
+      parentBuilder.add(Revision.create(parent.getName(), headClone.getRepositoryName()));
+    }
+    PersonIdent author = commit.getAuthorIdent();
+    return RevisionMetadata.builder()
+        .id(commit.getName())
+        .author(author.getName())
+        .date(new DateTime(author.getWhen()))
+        // 'git log --format=%B' terminates the raw message with an extra newline.
+        .description(commit.getFullMessage() + "\n")
+        .withParents(parentBuilder.build())
+        .build();
+  }
+
+  /**
+   * Lists the revisions in {@code head}'s ancestry but not {@code excluded}'s with a single
+   * revision walk, rather than walking both ancestries.
+   */
+  @Override
+  public List<Revision> findAncestorsExcluding(Revision head, Revision excluded) {
+    JGitClonedRepository headClone = headCloneSupplier.get();
+    ObjectId excludedId = headClone.resolveCommit(excluded.revId());
+    if (excludedId == null) {
+      // This clone doesn't have the excluded revision (e.g. it's the head of another fork).
+      return null;
+    }
+    ObjectId headId = headClone.resolveCommit(head.revId());
+    if (headId == null) {
+      throw new MoeProblem(
+          "Revision %s not found in repository %s", head.revId(), headClone.getRepositoryName());
+    }
+
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    try (RevWalk revWalk = new RevWalk(headClone.git().getRepository())) {
+      revWalk.sort(RevSort.TOPO);
+      revWalk.sort(RevSort.REVERSE, true);
+      revWalk.markStart(revWalk.parseCommit(headId));
+      revWalk.markUninteresting(revWalk.parseCommit(excludedId));
+      for (RevCommit commit : revWalk) {
+        result.add(Revision.create(commit.getName(), headClone.getRepositoryName()));
+      }
+    } catch (IOException e) {
+      throw new MoeProblem(
+          e, "Could not list %s ^%s in %s", head.revId(), excluded.revId(),
+          headClone.getRepositoryName());
+    }
+    return result.build();
+  }
+
+  /** The tag parsing logic for git commits. */
+  @Override
+  protected FieldParsingResult parseFields(RevisionMetadata metadata) {
+    return RevisionMetadata.legacyFieldParser(metadata.description());
+  }
+
+  @Override
+  protected List<Revision> findHeadRevisions() {
+    return ImmutableList.of(findHighestRevision("HEAD"));
+  }
+}
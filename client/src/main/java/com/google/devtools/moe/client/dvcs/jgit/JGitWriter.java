@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.Codebase;
+import com.google.devtools.moe.client.dvcs.AbstractDvcsWriter;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import com.google.devtools.moe.client.writer.DraftRevision;
+import com.google.devtools.moe.client.writer.WritingError;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeletePath;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * JGit implementation of {@link AbstractDvcsWriter}. Files are staged in batches, so the index is
+ * rewritten once per codebase rather than once per file.
+ */
+public class JGitWriter extends AbstractDvcsWriter<JGitClonedRepository> {
+  /** Matches an author of the form "Name &lt;email&gt;", as 'git commit --author' accepts. */
+  private static final Pattern AUTHOR_RE = Pattern.compile("^(.*?)\\s*<([^>]*)>\\s*$");
+
+  private final Set<String> filesToAdd = new LinkedHashSet<>();
+  private final Set<String> filesToRemove = new LinkedHashSet<>();
+
+  JGitWriter(JGitClonedRepository revClone, FileSystem filesystem, Ui ui) {
+    super(revClone, filesystem, ui);
+  }
+
+  @Override
+  protected List<String> getIgnoreFilePatterns() {
+    return ImmutableList.<String>builder()
+        .addAll(revClone.getConfig().getIgnoreFilePatterns())
+        .add("^\\.git.*")
+        .build();
+  }
+
+  @Override
+  protected void addFile(String relativeFilename) {
+    filesToAdd.add(relativeFilename);
+  }
+
+  @Override
+  protected void modifyFile(String relativeFilename) {
+    filesToAdd.add(relativeFilename);
+  }
+
+  @Override
+  protected void removeFile(String relativeFilename) {
+    filesToRemove.add(relativeFilename);
+  }
+
+  @Override
+  public DraftRevision putCodebase(
+      Codebase incomingChangeCodebase, @Nullable RevisionMetadata revMetaData) throws WritingError {
+    DraftRevision draftRevision = super.putCodebase(incomingChangeCodebase, revMetaData);
+    // Without metadata nothing is committed, but the draft should still have its changes staged.
+    stagePendingFiles();
+    return draftRevision;
+  }
+
+  /**
+   * Updates the index with all files added, modified or removed since the last call. Like the git
+   * type's {@code git add -f}, files are staged even if the destination's .gitignore matches them.
+   */
+  private void stagePendingFiles() {
+    if (filesToAdd.isEmpty() && filesToRemove.isEmpty()) {
+      return;
+    }
+    Repository repository = revClone.git().getRepository();
+    try (ObjectInserter inserter = repository.newObjectInserter()) {
+      DirCache index = repository.lockDirCache();
+      try {
+        DirCacheEditor editor = index.editor();
+        for (String path : filesToAdd) {
+          editor.add(stagedFile(path, inserter));
+        }
+        for (String path : filesToRemove) {
+          editor.add(new DeletePath(path));
+          deleteFromWorkingTree(path);
+        }
+        inserter.flush();
+        editor.commit();
+      } finally {
+        index.unlock();
+      }
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Error staging files in %s: %s", getRoot(), e.getMessage());
+    }
+    filesToAdd.clear();
+    filesToRemove.clear();
+  }
+
+  /** Deletes a file, and any directories that leaves empty, as {@code git rm} would. */
+  private void deleteFromWorkingTree(String path) throws IOException {
+    Path root = getRoot().toPath();
+    Path file = root.resolve(path);
+    Files.deleteIfExists(file);
+    for (Path dir = file.getParent(); !dir.equals(root); dir = dir.getParent()) {
+      try (Stream<Path> entries = Files.list(dir)) {
+        if (entries.findAny().isPresent()) {
+          break;
+        }
+      }
+      Files.delete(dir);
+    }
+  }
+
+  /** Writes the given file's contents as a blob, returning an edit which stages that blob. */
+  private PathEdit stagedFile(String path, ObjectInserter inserter) throws IOException {
+    Path file = getRoot().toPath().resolve(path);
+    BasicFileAttributes attributes =
+        Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    FileMode mode;
+    ObjectId blob;
+    if (attributes.isSymbolicLink()) {
+      mode = FileMode.SYMLINK;
+      blob =
+          inserter.insert(
+              Constants.OBJ_BLOB, Constants.encode(Files.readSymbolicLink(file).toString()));
+    } else {
+      mode = Files.isExecutable(file) ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE;
+      try (InputStream in = Files.newInputStream(file)) {
+        blob = inserter.insert(Constants.OBJ_BLOB, attributes.size(), in);
+      }
+    }
+    return new PathEdit(path) {
+      @Override
+      public void apply(DirCacheEntry entry) {
+        entry.setFileMode(mode);
+        entry.setObjectId(blob);
+        entry.setLength(attributes.size());
+        entry.setLastModified(attributes.lastModifiedTime().toInstant());
+      }
+    };
+  }
+
+  @Override
+  protected void commitChanges(RevisionMetadata rm) {
+    PersonIdent committer = new PersonIdent(revClone.git().getRepository());
+    PersonIdent author = committer;
+    if (rm.author() != null) {
+      Matcher m = AUTHOR_RE.matcher(rm.author());
+      author =
+          m.matches()
+              ? new PersonIdent(m.group(1), m.group(2))
+              : new PersonIdent(rm.author(), "");
+    }
+    try {
+      revClone
+          .git()
+          .commit()
+          .setAll(true)
+          .setMessage(rm.description())
+          .setAuthor(new PersonIdent(author, rm.date().toDate(), rm.date().getZone().toTimeZone()))
+          .setCommitter(committer)
+          .call();
+    } catch (GitAPIException e) {
+      throw new MoeProblem(e, "Error committing in %s: %s", getRoot(), e.getMessage());
+    }
+  }
+
+  @Override
+  protected boolean hasPendingChanges() {
+    stagePendingFiles();
+    try {
+      return !revClone.git().status().call().isClean();
+    } catch (GitAPIException e) {
+      throw new MoeProblem(e, "Error in git status: %s", e.getMessage());
+    }
+  }
+
+  @Override
+  public void printPushMessage(Ui ui) {
+    String originalBranchName = revClone.getConfig().getBranch().or("master");
+    String moeBranchName;
+    try {
+      moeBranchName = revClone.git().getRepository().getBranch();
+    } catch (IOException e) {
+      throw new MoeProblem(e, "Could not read the current branch of %s", getRoot());
+    }
+
+    ui.message("=====");
+    ui.message("MOE changes have been committed to a clone at " + getRoot());
+    if (moeBranchName.startsWith(JGitClonedRepository.MOE_MIGRATIONS_BRANCH_PREFIX)) {
+      ui.message("Changes are on a new branch. Rebase or merge these changes back onto ");
+      ui.message("the desired branch before pushing. For example:");
+      ui.message("$ git rebase " + originalBranchName);
+      ui.message("$ git checkout " + originalBranchName);
+      ui.message("$ git merge --ff-only " + moeBranchName);
+      ui.message("$ git push");
+    } else {
+      ui.message("Changes are on branch '" + moeBranchName + "' and are ready to push.");
+    }
+    ui.message("=====");
+  }
+}
@@ -17,27 +17,94 @@
 package com.google.devtools.moe.client.repositories;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
 import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * A skeletal implementation of {@link RevisionHistory} with common logic.
  */
 public abstract class AbstractRevisionHistory implements RevisionHistory {
 
-  private static final int MAX_REVISIONS_TO_SEARCH = 400;
+  private final RevisionMetadataCache metadataCache;
+  private final String repositoryUrl;
+  private final int maxRevisionsToSearch;
+
+  protected AbstractRevisionHistory() {
+    this(RevisionMetadataCache.DISABLED, "");
+  }
+
+  /**
+   * @param metadataCache a persistent cache of this repository's raw revision metadata
+   * @param repositoryUrl the URL identifying this repository in the cache
+   */
+  protected AbstractRevisionHistory(RevisionMetadataCache metadataCache, String repositoryUrl) {
+    this(metadataCache, repositoryUrl, RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+  }
+
+  /**
+   * @param metadataCache a persistent cache of this repository's raw revision metadata
+   * @param repositoryUrl the URL identifying this repository in the cache
+   * @param maxRevisionsToSearch how many revisions {@link #findRevisions} may visit before giving
+   *     up, or a number less than one for no limit
+   */
+  protected AbstractRevisionHistory(
+      RevisionMetadataCache metadataCache, String repositoryUrl, int maxRevisionsToSearch) {
+    this.metadataCache = metadataCache;
+    this.repositoryUrl = repositoryUrl;
+    this.maxRevisionsToSearch = maxRevisionsToSearch;
+  }
 
   @Override
   public final RevisionMetadata getMetadata(Revision revision) {
-    RevisionMetadata unparsedMetadata = createMetadata(revision);
+    RevisionMetadata unparsedMetadata = metadataCache.get(repositoryUrl, revision);
     if (unparsedMetadata == null) {
-      return null;
+      unparsedMetadata = createMetadata(revision);
+      if (unparsedMetadata == null) {
+        return null;
+      }
+      // Only cache revisions named by their own ID; symbolic names (e.g. "HEAD") can move.
+      if (unparsedMetadata.id().equals(revision.revId())) {
+        metadataCache.put(repositoryUrl, unparsedMetadata);
+      }
     }
+    return withParsedFields(unparsedMetadata);
+  }
+
+  @Override
+  public final Map<Revision, RevisionMetadata> getMetadataBatch(
+      Collection<Revision> revisions, int limit) {
+    Map<Revision, RevisionMetadata> result = new LinkedHashMap<>();
+    List<Revision> uncached = new ArrayList<>();
+    for (Revision revision : revisions) {
+      RevisionMetadata cached = metadataCache.get(repositoryUrl, revision);
+      if (cached != null) {
+        result.put(revision, withParsedFields(cached));
+      } else {
+        uncached.add(revision);
+      }
+    }
+    if (!uncached.isEmpty()) {
+      String repositoryName = uncached.get(0).repositoryName();
+      for (RevisionMetadata unparsedMetadata : createMetadataBatch(uncached, limit)) {
+        metadataCache.put(repositoryUrl, unparsedMetadata);
+        result.putIfAbsent(
+            Revision.create(unparsedMetadata.id(), repositoryName),
+            withParsedFields(unparsedMetadata));
+      }
+    }
+    return result;
+  }
+
+  private RevisionMetadata withParsedFields(RevisionMetadata unparsedMetadata) {
     FieldParsingResult parseResult = parseFields(unparsedMetadata);
     RevisionMetadata.Builder builder = unparsedMetadata.toBuilder();
     builder.description(parseResult.description());
@@ -48,6 +115,23 @@ public abstract class AbstractRevisionHistory implements RevisionHistory {
   /** The actual creation logic for a {@link RevisionMetadata}, implemented by each repo type */
   protected abstract RevisionMetadata createMetadata(Revision revision);
 
+  /**
+   * The creation logic for {@link #getMetadataBatch}: returns the unparsed metadata for the given
+   * revisions, and for as many of their ancestors (up to {@code limit} revisions in all) as the
+   * repository can return in one query. The default implementation reads only the given
+   * revisions, via {@link #createMetadata}.
+   */
+  protected List<RevisionMetadata> createMetadataBatch(List<Revision> revisions, int limit) {
+    ImmutableList.Builder<RevisionMetadata> result = ImmutableList.builder();
+    for (Revision revision : revisions) {
+      RevisionMetadata metadata = createMetadata(revision);
+      if (metadata != null) {
+        result.add(metadata);
+      }
+    }
+    return result.build();
+  }
+
   /**
    * Field-parsing logic, which extracts fields from the revision metadata description and returns a
    * result containing the stripped description, and a multimap of fields
@@ -56,6 +140,19 @@ public abstract class AbstractRevisionHistory implements RevisionHistory {
 
   @Override
   public <T> T findRevisions(Revision revision, RevisionMatcher<T> matcher, SearchType searchType) {
+    return findRevisions(revision, matcher, searchType, this);
+  }
+
+  /**
+   * Searches as {@link #findRevisions(Revision, RevisionMatcher, SearchType)} does, reading
+   * metadata through {@code metadataSource}, so that a decorating history (e.g. {@link
+   * CachingRevisionHistory}) can answer the lookups made during the search.
+   */
+  <T> T findRevisions(
+      Revision revision,
+      RevisionMatcher<T> matcher,
+      SearchType searchType,
+      RevisionHistory metadataSource) {
 
     List<Revision> startingRevisions =
         (revision == null) ? findHeadRevisions() : ImmutableList.of(revision);
@@ -66,39 +163,54 @@ public abstract class AbstractRevisionHistory implements RevisionHistory {
           startingRevisions.get(0).repositoryName());
     }
 
-    RevisionGraph.Builder nonMatchingBuilder = RevisionGraph.builder(startingRevisions);
+    CommitGraph.Builder nonMatchingBuilder = CommitGraph.builder();
     ImmutableList.Builder<Revision> matchingBuilder = ImmutableList.builder();
 
     Deque<Revision> workList = new ArrayDeque<>();
     workList.addAll(startingRevisions);
 
-    // Keep a visited list to make sure we don't visit the same change twice.
-    Set<Revision> visited = Sets.newLinkedHashSet();
-    visited.addAll(startingRevisions);
+    // Keep a visited set, over the graph's indices, to make sure we don't visit the same change
+    // twice.
+    BitSet visited = new BitSet();
+    int visitedCount = 0;
+    for (Revision startingRevision : startingRevisions) {
+      int index = nonMatchingBuilder.intern(startingRevision);
+      if (!visited.get(index)) {
+        visited.set(index);
+        visitedCount++;
+      }
+    }
+
+    // Rather than a command per revision, read metadata for a window of ancestors at a time.
+    MetadataPrefetcher prefetcher = new MetadataPrefetcher(metadataSource);
 
     while (!workList.isEmpty()) {
       Revision current = workList.removeFirst();
       if (!matcher.matches(current)) {
-        RevisionMetadata metadata = getMetadata(current);
-        nonMatchingBuilder.addRevision(current, metadata);
-
+        RevisionMetadata metadata = prefetcher.get(current);
         List<Revision> parentsToSearch = metadata.parents();
+        nonMatchingBuilder.addCommit(current, parentsToSearch);
+
         if (parentsToSearch.size() > 0 && searchType == SearchType.LINEAR) {
           parentsToSearch = parentsToSearch.subList(0, 1);
         }
         for (Revision parent : parentsToSearch) {
           // Don't add a visited parent to the search queue.
-          if (visited.add(parent)) {
+          int index = nonMatchingBuilder.intern(parent);
+          if (!visited.get(index)) {
+            visited.set(index);
+            visitedCount++;
             workList.addLast(parent);
           }
         }
 
-        if (visited.size() > MAX_REVISIONS_TO_SEARCH) {
+        if (maxRevisionsToSearch > 0 && visitedCount > maxRevisionsToSearch) {
           throw new MoeProblem(
-              "Couldn't find a matching revision for matcher (%s) from %s within %d revisions.",
+              "Couldn't find a matching revision for matcher (%s) from %s within %d revisions. "
+                  + "Raise max_revisions_to_search in the repository's config to search further.",
               matcher,
               (revision == null) ? "head" : revision,
-              MAX_REVISIONS_TO_SEARCH);
+              maxRevisionsToSearch);
         }
       } else {
         // Don't search past matching revisions.
@@ -106,7 +218,9 @@ public abstract class AbstractRevisionHistory implements RevisionHistory {
       }
     }
 
-    return matcher.makeResult(nonMatchingBuilder.build(), matchingBuilder.build());
+    return matcher.makeResult(
+        RevisionGraph.create(startingRevisions, nonMatchingBuilder.build()),
+        matchingBuilder.build());
   }
 
   /**
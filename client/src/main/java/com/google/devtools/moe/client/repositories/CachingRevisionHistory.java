@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link RevisionHistory} which memoizes the answers of another for as long as it lives, which
+ * for the histories built by the repository factories is a single MOE run.
+ *
+ * <p>Metadata is keyed by {@link Revision}, whose IDs are immutable (full git/hg hashes, svn
+ * revision numbers), so it never goes stale. Lookups of symbolic revisions such as "HEAD", a
+ * branch name, or the null "head" revision are memoized too: they can only move between runs,
+ * and this cache does not outlive one. Searches via {@link #findRevisions} read metadata through
+ * this cache when the underlying history is an {@link AbstractRevisionHistory}.
+ */
+public final class CachingRevisionHistory implements RevisionHistory {
+  /** Stands in for a null (head) revision ID, which a ConcurrentHashMap can't hold as a key. */
+  private static final String HEAD_KEY = "";
+
+  private final RevisionHistory delegate;
+  private final Map<String, Revision> highestRevisions = new ConcurrentHashMap<>();
+  private final Map<Revision, Optional<RevisionMetadata>> metadata = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public CachingRevisionHistory(RevisionHistory delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Revision findHighestRevision(@Nullable String revId) {
+    String key = revId == null ? HEAD_KEY : revId;
+    Revision cached = highestRevisions.get(key);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+    Revision highest = delegate.findHighestRevision(revId);
+    highestRevisions.put(key, highest);
+    // The highest revision at or below a resolved revision is that revision itself.
+    highestRevisions.putIfAbsent(highest.revId(), highest);
+    return highest;
+  }
+
+  @Override
+  public RevisionMetadata getMetadata(Revision revision) {
+    Optional<RevisionMetadata> cached = metadata.get(revision);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached.orElse(null);
+    }
+    misses.incrementAndGet();
+    RevisionMetadata result = delegate.getMetadata(revision);
+    metadata.put(revision, Optional.ofNullable(result));
+    return result;
+  }
+
+  @Override
+  public Map<Revision, RevisionMetadata> getMetadataBatch(
+      Collection<Revision> revisions, int limit) {
+    Map<Revision, RevisionMetadata> result = new LinkedHashMap<>();
+    List<Revision> uncached = new ArrayList<>();
+    for (Revision revision : revisions) {
+      Optional<RevisionMetadata> cached = metadata.get(revision);
+      if (cached == null) {
+        uncached.add(revision);
+      } else {
+        hits.incrementAndGet();
+        cached.ifPresent(m -> result.put(revision, m));
+      }
+    }
+    if (!uncached.isEmpty()) {
+      misses.addAndGet(uncached.size());
+      Map<Revision, RevisionMetadata> fetched = delegate.getMetadataBatch(uncached, limit);
+      for (Map.Entry<Revision, RevisionMetadata> entry : fetched.entrySet()) {
+        metadata.putIfAbsent(entry.getKey(), Optional.of(entry.getValue()));
+      }
+      result.putAll(fetched);
+    }
+    return result;
+  }
+
+  @Override
+  @Nullable
+  public List<Revision> findAncestorsExcluding(Revision head, Revision excluded) {
+    return delegate.findAncestorsExcluding(head, excluded);
+  }
+
+  @Override
+  public <T> T findRevisions(
+      @Nullable Revision revision, RevisionMatcher<T> matcher, SearchType searchType) {
+    if (delegate instanceof AbstractRevisionHistory) {
+      return ((AbstractRevisionHistory) delegate)
+          .findRevisions(revision, matcher, searchType, this);
+    }
+    return delegate.findRevisions(revision, matcher, searchType);
+  }
+
+  /** Returns the number of queries answered from this cache. */
+  public long hitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of queries passed through to the underlying history. */
+  public long missCount() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CachingRevisionHistory{%s, hits=%d, misses=%d}", delegate, hits.get(), misses.get());
+  }
+}
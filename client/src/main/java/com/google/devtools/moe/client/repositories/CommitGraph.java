@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, immutable index of part of a repository's commit graph.
+ *
+ * <p>Each {@link Revision} is interned once and thereafter referred to by its int index, parent
+ * links are held in primitive arrays, and traversals track visited commits in bitsets. This keeps
+ * the footprint of a large history to a few words per commit, rather than a map entry and a
+ * metadata object each.
+ *
+ * <p>A graph may be partial: a revision can appear only as the parent of another (e.g. the
+ * revision at which a search stopped) without its own parents being known. Such a revision is
+ * {@linkplain #indexOf indexed} but not {@linkplain #contains contained}, and traversals treat
+ * it as a boundary.
+ *
+ * <p>Every indexed commit also has a generation number, one more than the largest among its
+ * parents (a boundary revision's is 1). An ancestor's generation is always lower than its
+ * descendants', which lets ancestry checks skip any commit too old to lead to their target.
+ */
+public final class CommitGraph {
+  private static final int[] NO_PARENTS = new int[0];
+
+  private final Revision[] revisions;
+  private final Map<Revision, Integer> indices;
+  /** The parents of commit {@code i} are {@code parents[parentStarts[i]..parentStarts[i + 1]]}. */
+  private final int[] parentStarts;
+  private final int[] parents;
+  private final BitSet known;
+  private final int[] generations;
+
+  private CommitGraph(
+      Revision[] revisions,
+      Map<Revision, Integer> indices,
+      int[] parentStarts,
+      int[] parents,
+      BitSet known) {
+    this.revisions = revisions;
+    this.indices = indices;
+    this.parentStarts = parentStarts;
+    this.parents = parents;
+    this.known = known;
+    this.generations = computeGenerations();
+  }
+
+  /** Returns the number of indexed revisions, including boundary revisions. */
+  public int size() {
+    return revisions.length;
+  }
+
+  /** Returns the index of the given revision, or -1 if it isn't indexed. */
+  public int indexOf(Revision revision) {
+    Integer index = indices.get(revision);
+    return index == null ? -1 : index;
+  }
+
+  /** Returns the revision with the given index. */
+  public Revision revision(int index) {
+    return revisions[index];
+  }
+
+  /** Returns whether the given revision was added to this graph with its parents. */
+  public boolean contains(Revision revision) {
+    int index = indexOf(revision);
+    return index >= 0 && known.get(index);
+  }
+
+  /** Returns the number of parents of the commit with the given index. */
+  public int parentCount(int index) {
+    return parentStarts[index + 1] - parentStarts[index];
+  }
+
+  /** Returns the index of the {@code n}th parent of the commit with the given index. */
+  public int parent(int index, int n) {
+    Preconditions.checkElementIndex(n, parentCount(index));
+    return parents[parentStarts[index] + n];
+  }
+
+  /** Returns the generation number of the commit with the given index. */
+  public int generation(int index) {
+    return generations[index];
+  }
+
+  /**
+   * Returns whether {@code ancestor} is reachable from {@code descendant} (or is the same
+   * revision), as far as this graph knows.
+   */
+  public boolean isAncestor(Revision ancestor, Revision descendant) {
+    int target = indexOf(ancestor);
+    int start = indexOf(descendant);
+    if (target < 0 || start < 0) {
+      return false;
+    }
+    int targetGeneration = generations[target];
+    BitSet visited = new BitSet(revisions.length);
+    IntStack toVisit = new IntStack();
+    toVisit.push(start);
+    visited.set(start);
+    while (!toVisit.isEmpty()) {
+      int current = toVisit.pop();
+      if (current == target) {
+        return true;
+      }
+      for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+        int parent = parents[i];
+        // Nothing at or below the target's generation but the target itself can reach it.
+        if (generations[parent] >= targetGeneration && !visited.get(parent)) {
+          visited.set(parent);
+          toVisit.push(parent);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the contained revisions reachable from the given starting revisions, in breadth-first
+   * order from the starting revisions backwards through their parents.
+   */
+  public List<Revision> breadthFirst(List<Revision> startingRevisions) {
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    BitSet seen = new BitSet(revisions.length);
+    int[] queue = new int[Math.max(16, startingRevisions.size())];
+    int head = 0;
+    int tail = 0;
+    for (Revision revision : startingRevisions) {
+      int index = indexOf(revision);
+      if (index >= 0) {
+        queue = ensureCapacity(queue, tail + 1);
+        queue[tail++] = index;
+      }
+    }
+    while (head < tail) {
+      int current = queue[head++];
+      if (!seen.get(current) && known.get(current)) {
+        seen.set(current);
+        result.add(revisions[current]);
+        int parentCount = parentCount(current);
+        queue = ensureCapacity(queue, tail + parentCount);
+        System.arraycopy(parents, parentStarts[current], queue, tail, parentCount);
+        tail += parentCount;
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the contained revisions reachable from {@code head}, in topological order (every
+   * revision after its parents).
+   */
+  public List<Revision> topologicalOrder(Revision head) {
+    return topologicalOrder(head, new BitSet());
+  }
+
+  /**
+   * Returns the contained revisions reachable from {@code head} but not from {@code excluded}, in
+   * topological order (every revision after its parents).
+   */
+  public List<Revision> ancestorsExcluding(Revision head, Revision excluded) {
+    BitSet excludedAncestors = new BitSet(revisions.length);
+    int index = indexOf(excluded);
+    if (index >= 0) {
+      IntStack toVisit = new IntStack();
+      toVisit.push(index);
+      excludedAncestors.set(index);
+      while (!toVisit.isEmpty()) {
+        int current = toVisit.pop();
+        for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+          if (!excludedAncestors.get(parents[i])) {
+            excludedAncestors.set(parents[i]);
+            toVisit.push(parents[i]);
+          }
+        }
+      }
+    }
+    return topologicalOrder(head, excludedAncestors);
+  }
+
+  /** Depth-first from head, emitting each commit once all of its parents have been emitted. */
+  private List<Revision> topologicalOrder(Revision head, BitSet excluded) {
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    int start = indexOf(head);
+    if (start < 0 || excluded.get(start) || !known.get(start)) {
+      return result.build();
+    }
+    BitSet visited = new BitSet(revisions.length);
+    // Pairs of (commit, index of the next parent to visit).
+    IntStack stack = new IntStack();
+    stack.push(start);
+    stack.push(0);
+    visited.set(start);
+    while (!stack.isEmpty()) {
+      int next = stack.pop();
+      int current = stack.peek();
+      if (next < parentCount(current)) {
+        stack.push(next + 1);
+        int parent = parents[parentStarts[current] + next];
+        if (!visited.get(parent) && !excluded.get(parent) && known.get(parent)) {
+          visited.set(parent);
+          stack.push(parent);
+          stack.push(0);
+        }
+      } else {
+        stack.pop();
+        result.add(revisions[current]);
+      }
+    }
+    return result.build();
+  }
+
+  private int[] computeGenerations() {
+    int[] result = new int[revisions.length];
+    // Iteratively, so that long linear histories can't overflow the call stack.
+    IntStack stack = new IntStack();
+    for (int root = 0; root < revisions.length; root++) {
+      if (result[root] != 0) {
+        continue;
+      }
+      stack.push(root);
+      while (!stack.isEmpty()) {
+        int current = stack.peek();
+        int generation = 1;
+        boolean ready = true;
+        for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+          int parentGeneration = result[parents[i]];
+          if (parentGeneration == 0) {
+            ready = false;
+            stack.push(parents[i]);
+          } else {
+            generation = Math.max(generation, parentGeneration + 1);
+          }
+        }
+        if (ready) {
+          stack.pop();
+          result[current] = generation;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static int[] ensureCapacity(int[] array, int capacity) {
+    return capacity <= array.length
+        ? array
+        : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+  }
+
+  /** A growable stack of ints, to avoid boxing during traversals. */
+  private static final class IntStack {
+    private int[] elements = new int[16];
+    private int size;
+
+    void push(int element) {
+      elements = ensureCapacity(elements, size + 1);
+      elements[size++] = element;
+    }
+
+    int pop() {
+      return elements[--size];
+    }
+
+    int peek() {
+      return elements[size - 1];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** A builder of {@link CommitGraph}s, to which commits may be added in any order. */
+  public static final class Builder {
+    private final List<Revision> revisions = new ArrayList<>();
+    private final Map<Revision, Integer> indices = new HashMap<>();
+    private int[][] nodeParents = new int[16][];
+    private final BitSet known = new BitSet();
+
+    private Builder() {}
+
+    /** Returns the index of the given revision, indexing it first if it's new. */
+    public int intern(Revision revision) {
+      Integer index = indices.get(revision);
+      if (index == null) {
+        index = revisions.size();
+        revisions.add(revision);
+        indices.put(revision, index);
+      }
+      return index;
+    }
+
+    /** Returns the number of revisions indexed so far. */
+    public int size() {
+      return revisions.size();
+    }
+
+    /** Returns whether the given revision has been added with its parents. */
+    public boolean contains(Revision revision) {
+      Integer index = indices.get(revision);
+      return index != null && known.get(index);
+    }
+
+    /**
+     * Adds a commit and its parents, indexing any of them which are new.
+     *
+     * @throws IllegalStateException if the commit was already added
+     */
+    public Builder addCommit(Revision revision, List<Revision> parents) {
+      int index = intern(revision);
+      Preconditions.checkState(!known.get(index), "Revision %s was already added", revision);
+      int[] parentIndices = parents.isEmpty() ? NO_PARENTS : new int[parents.size()];
+      for (int i = 0; i < parentIndices.length; i++) {
+        parentIndices[i] = intern(parents.get(i));
+      }
+      if (index >= nodeParents.length) {
+        nodeParents = Arrays.copyOf(nodeParents, Math.max(index + 1, nodeParents.length * 2));
+      }
+      nodeParents[index] = parentIndices;
+      known.set(index);
+      return this;
+    }
+
+    public CommitGraph build() {
+      int size = revisions.size();
+      int[] parentStarts = new int[size + 1];
+      for (int i = 0; i < size; i++) {
+        int[] commitParents = i < nodeParents.length ? nodeParents[i] : null;
+        parentStarts[i + 1] = parentStarts[i] + (commitParents == null ? 0 : commitParents.length);
+      }
+      int[] parents = new int[parentStarts[size]];
+      for (int i = 0; i < size; i++) {
+        if (i < nodeParents.length && nodeParents[i] != null) {
+          System.arraycopy(nodeParents[i], 0, parents, parentStarts[i], nodeParents[i].length);
+        }
+      }
+      return new CommitGraph(
+          revisions.toArray(new Revision[0]),
+          new HashMap<>(indices),
+          parentStarts,
+          parents,
+          (BitSet) known.clone());
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import com.google.common.collect.ImmutableList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Reads revision metadata for a walk over a {@link RevisionHistory}, fetching it ahead in batches
+ * via {@link RevisionHistory#getMetadataBatch}. Each batch fetches the revision asked for and a
+ * window of its ancestors; the window doubles with each batch, so short walks stay cheap and long
+ * walks take few round trips.
+ *
+ * <p>Only the most recent {@link #MAX_RETAINED} prefetched entries are kept, so a walk of any depth
+ * holds a bounded amount of metadata; a walk that revisits an evicted revision reads it again.
+ */
+public final class MetadataPrefetcher {
+  static final int INITIAL_WINDOW = 16;
+  static final int MAX_WINDOW = 512;
+  static final int MAX_RETAINED = 4 * MAX_WINDOW;
+
+  private final RevisionHistory history;
+  private final Map<Revision, RevisionMetadata> fetched =
+      new LinkedHashMap<Revision, RevisionMetadata>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Revision, RevisionMetadata> eldest) {
+          return size() > MAX_RETAINED;
+        }
+      };
+  private int window = INITIAL_WINDOW;
+
+  public MetadataPrefetcher(RevisionHistory history) {
+    this.history = history;
+  }
+
+  /** Returns the metadata for a revision, or null if there is none. */
+  @Nullable
+  public RevisionMetadata get(Revision revision) {
+    RevisionMetadata metadata = fetched.get(revision);
+    if (metadata != null) {
+      return metadata;
+    }
+    fetched.putAll(history.getMetadataBatch(ImmutableList.of(revision), window));
+    window = Math.min(window * 2, MAX_WINDOW);
+
+    metadata = fetched.get(revision);
+    // Batches are keyed by revision ID, so a symbolic revision (e.g. "HEAD") is read on its own.
+    return metadata != null ? metadata : history.getMetadata(revision);
+  }
+}
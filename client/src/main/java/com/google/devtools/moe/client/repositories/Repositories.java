@@ -21,6 +21,7 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import com.google.common.collect.ImmutableMap;
 import com.google.devtools.moe.client.dvcs.git.GitRepositoryFactory;
 import com.google.devtools.moe.client.dvcs.hg.HgRepositoryFactory;
+import com.google.devtools.moe.client.dvcs.jgit.JGitRepositoryFactory;
 import com.google.devtools.moe.client.InvalidProject;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.noop.NoopRepositoryFactory;
@@ -82,6 +83,10 @@ public class Repositories implements RepositoryType.Factory {
     @IntoSet
     abstract RepositoryType.Factory git(GitRepositoryFactory concrete);
 
+    @Binds
+    @IntoSet
+    abstract RepositoryType.Factory jgit(JGitRepositoryFactory concrete);
+
     @Binds
     @IntoSet
     abstract RepositoryType.Factory noop(NoopRepositoryFactory concrete);
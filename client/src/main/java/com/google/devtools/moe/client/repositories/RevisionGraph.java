@@ -16,18 +16,8 @@
 
 package com.google.devtools.moe.client.repositories;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * Stores the Revisions found by crawling a repository history with a {@link RevisionMatcher}.
@@ -35,40 +25,42 @@ import java.util.Set;
 public class RevisionGraph {
 
   private final List<Revision> startingRevisions;
-  private final Map<Revision, RevisionMetadata> matchingRevsAndMetadata;
+  private final CommitGraph matchingRevisions;
+  private List<Revision> breadthFirstHistory;
 
-  private RevisionGraph(
-      List<Revision> startingRevisions, Map<Revision, RevisionMetadata> matchingRevsAndMetadata) {
+  private RevisionGraph(List<Revision> startingRevisions, CommitGraph matchingRevisions) {
     this.startingRevisions = startingRevisions;
-    this.matchingRevsAndMetadata = matchingRevsAndMetadata;
+    this.matchingRevisions = matchingRevisions;
   }
 
   /**
    * Returns a breadth-first revision history result, from the starting revisions backwards through
    * all parents not filtered out by the {@code RevisionMatcher}.
    */
-  public List<Revision> getBreadthFirstHistory() {
-    ImmutableList.Builder<Revision> historyBuilder = ImmutableList.builder();
-    Set<Revision> seen = new HashSet<Revision>();
-    Deque<Revision> workList = new ArrayDeque<>();
-    workList.addAll(startingRevisions);
-    while (!workList.isEmpty()) {
-      Revision current = workList.removeFirst();
-      if (seen.add(current)) {
-        if (matchingRevsAndMetadata.containsKey(current)) {
-          historyBuilder.add(current);
-          RevisionMetadata metadata = matchingRevsAndMetadata.get(current);
-          workList.addAll(metadata.parents());
-        }
-      }
+  public synchronized List<Revision> getBreadthFirstHistory() {
+    if (breadthFirstHistory == null) {
+      breadthFirstHistory = matchingRevisions.breadthFirst(startingRevisions);
     }
-    return historyBuilder.build();
+    return breadthFirstHistory;
+  }
+
+  /**
+   * Returns the graph of the revisions found, which is bounded by the revisions the crawl stopped
+   * at (those matched by the {@code RevisionMatcher}).
+   */
+  public CommitGraph commitGraph() {
+    return matchingRevisions;
   }
 
   public static Builder builder(List<Revision> startingRevisions) {
     return new Builder(startingRevisions);
   }
 
+  /** Creates a RevisionGraph over the commits already gathered in {@code matchingRevisions}. */
+  static RevisionGraph create(List<Revision> startingRevisions, CommitGraph matchingRevisions) {
+    return new RevisionGraph(ImmutableList.copyOf(startingRevisions), matchingRevisions);
+  }
+
   /**
    * A Builder for building a RevisionGraph. Example:
    *
@@ -84,20 +76,19 @@ public class RevisionGraph {
   public static class Builder {
 
     private final List<Revision> startingRevisions;
-    private final HashMap<Revision, RevisionMetadata> matchingRevsAndMetadata = Maps.newHashMap();
+    private final CommitGraph.Builder matchingRevisions = CommitGraph.builder();
 
     private Builder(List<Revision> startingRevisions) {
       this.startingRevisions = ImmutableList.copyOf(startingRevisions);
     }
 
     public Builder addRevision(Revision revision, RevisionMetadata metadata) {
-      Preconditions.checkState(!matchingRevsAndMetadata.containsKey(revision));
-      matchingRevsAndMetadata.put(revision, metadata);
+      matchingRevisions.addCommit(revision, metadata.parents());
       return this;
     }
 
     public RevisionGraph build() {
-      return new RevisionGraph(startingRevisions, ImmutableMap.copyOf(matchingRevsAndMetadata));
+      return new RevisionGraph(startingRevisions, matchingRevisions.build());
     }
   }
 }
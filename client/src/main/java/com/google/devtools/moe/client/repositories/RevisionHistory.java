@@ -16,6 +16,14 @@
 
 package com.google.devtools.moe.client.repositories;
 
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.MoeProblem;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -39,6 +47,72 @@ public interface RevisionHistory {
    */
   public RevisionMetadata getMetadata(Revision revision);
 
+  /**
+   * Reads the metadata for the given revisions, along with as many of their ancestors (up to
+   * {@code limit} revisions in all) as the repository can cheaply return at the same time, e.g.
+   * from a single log command over the ancestry range. This lets history walks fetch metadata in
+   * batches rather than a revision at a time.
+   *
+   * <p>The default implementation reads only the given revisions, one at a time.
+   *
+   * @param revisions  the revisions to read metadata for
+   * @param limit  the maximum number of revisions to read ancestors up to
+   * @return the metadata read, by revision, including each given revision that exists
+   */
+  public default Map<Revision, RevisionMetadata> getMetadataBatch(
+      Collection<Revision> revisions, int limit) {
+    Map<Revision, RevisionMetadata> result = new LinkedHashMap<>();
+    for (Revision revision : revisions) {
+      RevisionMetadata metadata = getMetadata(revision);
+      if (metadata != null) {
+        result.put(revision, metadata);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the revisions reachable from {@code head} (including {@code head} itself) which are not
+   * reachable from {@code excluded}, i.e. the revisions a branch has that another branch lacks.
+   *
+   * <p>The default implementation walks the metadata of both ancestries. Repository types should
+   * answer with a native query where they can (e.g. {@code git rev-list head ^excluded}).
+   *
+   * @param head  the revision whose ancestry to list
+   * @param excluded  the revision whose ancestry to omit
+   * @return the revisions, parents before their children, or null if this history doesn't
+   *     contain {@code excluded}
+   */
+  @Nullable
+  public default List<Revision> findAncestorsExcluding(Revision head, Revision excluded) {
+    MetadataPrefetcher metadata = new MetadataPrefetcher(this);
+    // A history may answer for a revision it lacks with another it has: svn, for one, answers with
+    // the highest revision up to that number at its own URL.
+    RevisionMetadata excludedMetadata = metadata.get(excluded);
+    if (excludedMetadata == null || !excludedMetadata.id().equals(excluded.revId())) {
+      return null;
+    }
+
+    // Gather the excluded revision's whole ancestry, then head's down to where the two meet.
+    CommitGraph.Builder graph = CommitGraph.builder();
+    for (Revision start : ImmutableList.of(excluded, head)) {
+      Deque<Revision> toVisit = new ArrayDeque<>();
+      toVisit.add(start);
+      while (!toVisit.isEmpty()) {
+        Revision revision = toVisit.remove();
+        if (!graph.contains(revision)) {
+          RevisionMetadata revisionMetadata = metadata.get(revision);
+          if (revisionMetadata == null) {
+            throw new MoeProblem("Could not load revision metadata for %s", revision);
+          }
+          graph.addCommit(revision, revisionMetadata.parents());
+          toVisit.addAll(revisionMetadata.parents());
+        }
+      }
+    }
+    return graph.build().ancestorsExcluding(head, excluded);
+  }
+
   /**
    * The type of history search to perform in
    * {@link RevisionHistory#findRevisions(Revision, RevisionMatcher, SearchType)}.
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * A persistent cache of {@link RevisionMetadata}, shared by every MOE run on this machine, keyed by
+ * repository URL and revision ID.
+ *
+ * <p>Only metadata looked up by its own (immutable) revision ID is cached, and it is cached in the
+ * raw form returned by {@link AbstractRevisionHistory#createMetadata}, before any field parsing,
+ * so changes to field parsing or scrubbing still apply to cached revisions.
+ *
+ * <p>Each repository gets an append-only file of length-prefixed records in the cache directory.
+ * Records are appended as they are learned, so concurrent MOE runs can share a file; a torn record
+ * at the end of a file is cut off when the file is loaded. When a file grows past the size limit it
+ * is compacted to the most recently learned revisions.
+ *
+ * <p>The cache is best-effort: failures to read or write it are logged and otherwise ignored.
+ */
+public class RevisionMetadataCache {
+  private static final Logger logger = Logger.getLogger(RevisionMetadataCache.class.getName());
+
+  /** A cache which never holds anything. */
+  public static final RevisionMetadataCache DISABLED = new RevisionMetadataCache(null, 0);
+
+  /** The default bound on the size of each repository's cache file. */
+  public static final long DEFAULT_MAX_BYTES_PER_REPOSITORY = 32L * 1024 * 1024;
+
+  private static final int MAGIC = 0x4d4f454d; // "MOEM"
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+  @Nullable private final File directory;
+  private final long maxBytesPerRepository;
+
+  /** Cached records (encoded as written to disk) by revision ID, by repository URL. */
+  private final Map<String, Map<String, byte[]>> repositories = new HashMap<>();
+
+  /**
+   * @param directory the directory holding the cache files, created if needed, or null to disable
+   *     caching
+   * @param maxBytesPerRepository the size above which a repository's cache file is compacted
+   */
+  public RevisionMetadataCache(@Nullable File directory, long maxBytesPerRepository) {
+    this.directory = directory;
+    this.maxBytesPerRepository = maxBytesPerRepository;
+  }
+
+  /**
+   * Returns a cache in the user's cache directory ({@code $XDG_CACHE_HOME/moe/revision_metadata},
+   * by default {@code ~/.cache/moe/revision_metadata}).
+   */
+  public static RevisionMetadataCache inUserCacheDirectory() {
+    String cacheHome = System.getenv("XDG_CACHE_HOME");
+    File root =
+        Strings.isNullOrEmpty(cacheHome)
+            ? new File(System.getProperty("user.home"), ".cache")
+            : new File(cacheHome);
+    return new RevisionMetadataCache(
+        new File(root, "moe/revision_metadata"), DEFAULT_MAX_BYTES_PER_REPOSITORY);
+  }
+
+  /**
+   * Returns the raw metadata for the given revision of the repository at the given URL, or null if
+   * it is not cached. The parents of the returned metadata belong to the revision's repository.
+   */
+  @Nullable
+  public synchronized RevisionMetadata get(String repositoryUrl, Revision revision) {
+    if (directory == null) {
+      return null;
+    }
+    byte[] record = recordsFor(repositoryUrl).get(revision.revId());
+    if (record == null) {
+      return null;
+    }
+    try {
+      return decode(record, revision.repositoryName());
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Discarding unreadable cached metadata for " + revision, e);
+      recordsFor(repositoryUrl).remove(revision.revId());
+      return null;
+    }
+  }
+
+  /** Caches the given raw metadata for the repository at the given URL. */
+  public synchronized void put(String repositoryUrl, RevisionMetadata metadata) {
+    if (directory == null) {
+      return;
+    }
+    Map<String, byte[]> records = recordsFor(repositoryUrl);
+    if (records.containsKey(metadata.id())) {
+      return;
+    }
+    byte[] record = encode(metadata);
+    records.put(metadata.id(), record);
+    File file = fileFor(repositoryUrl);
+    try {
+      if (!file.exists()) {
+        Files.createDirectories(directory.toPath());
+        writeFile(file, repositoryUrl, records);
+        return;
+      }
+      // A single write of the whole frame, so concurrent appenders don't interleave.
+      try (OutputStream out = new FileOutputStream(file, true)) {
+        out.write(frame(record));
+      }
+      if (file.length() > maxBytesPerRepository) {
+        compact(records);
+        writeFile(file, repositoryUrl, records);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to write metadata cache " + file, e);
+    }
+  }
+
+  @VisibleForTesting
+  File fileFor(String repositoryUrl) {
+    return new File(
+        directory, Hashing.sha256().hashString(repositoryUrl, UTF_8).toString() + ".metadata");
+  }
+
+  private Map<String, byte[]> recordsFor(String repositoryUrl) {
+    Map<String, byte[]> records = repositories.get(repositoryUrl);
+    if (records == null) {
+      records = load(repositoryUrl);
+      repositories.put(repositoryUrl, records);
+    }
+    return records;
+  }
+
+  /**
+   * Reads a repository's cache file, cutting off any torn record at its end, and compacting the
+   * file if it has grown too large.
+   */
+  private Map<String, byte[]> load(String repositoryUrl) {
+    // Insertion-ordered, oldest first, so compaction can keep the newest records.
+    Map<String, byte[]> records = new LinkedHashMap<>();
+    File file = fileFor(repositoryUrl);
+    if (!file.exists()) {
+      return records;
+    }
+    // The length of the file's header and the records read intact, to which it is cut back if
+    // there's anything after them.
+    long intactLength = -1;
+    try (CountingInputStream counting =
+            new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        DataInputStream in = new DataInputStream(counting)) {
+      if (in.readInt() != MAGIC
+          || in.readInt() != FORMAT_VERSION
+          || !readString(in).equals(repositoryUrl)) {
+        logger.warning("Ignoring incompatible metadata cache " + file);
+        return records;
+      }
+      intactLength = counting.getCount();
+      while (true) {
+        byte[] record = readFrame(in);
+        if (record == null) {
+          break;
+        }
+        // Re-learned revisions move to the end, as the most recent.
+        String id = readString(new DataInputStream(new ByteArrayInputStream(record)));
+        records.remove(id);
+        records.put(id, record);
+        intactLength = counting.getCount();
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to read metadata cache " + file, e);
+    }
+
+    // Otherwise records appended later would follow the torn one, and be misread.
+    if (intactLength >= 0 && file.length() > intactLength) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        channel.truncate(intactLength);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to truncate metadata cache " + file, e);
+      }
+    }
+
+    if (file.length() > maxBytesPerRepository) {
+      compact(records);
+      try {
+        writeFile(file, repositoryUrl, records);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to compact metadata cache " + file, e);
+      }
+    }
+    return records;
+  }
+
+  /** Drops the oldest records until the rest fill at most half of the size limit. */
+  private void compact(Map<String, byte[]> records) {
+    long size = 0;
+    for (byte[] record : records.values()) {
+      size += record.length + 4;
+    }
+    List<String> evicted = new ArrayList<>();
+    for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+      if (size <= maxBytesPerRepository / 2) {
+        break;
+      }
+      size -= entry.getValue().length + 4;
+      evicted.add(entry.getKey());
+    }
+    records.keySet().removeAll(evicted);
+  }
+
+  /** Atomically replaces a repository's cache file with the given records. */
+  private void writeFile(File file, String repositoryUrl, Map<String, byte[]> records)
+      throws IOException {
+    File temp = File.createTempFile(file.getName(), ".tmp", directory);
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeString(out, repositoryUrl);
+        for (byte[] record : records.values()) {
+          out.write(frame(record));
+        }
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  private static byte[] frame(byte[] record) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 4);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(record.length);
+    out.write(record);
+    return bytes.toByteArray();
+  }
+
+  /** Reads the next record, or returns null at the end of the file or a torn final record. */
+  @Nullable
+  private static byte[] readFrame(DataInputStream in) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    if (length < 0 || length > MAX_RECORD_BYTES) {
+      throw new IOException("Corrupt record length " + length);
+    }
+    byte[] record = new byte[length];
+    int read = ByteStreams.read(in, record, 0, length);
+    return read == length ? record : null;
+  }
+
+  @VisibleForTesting
+  static byte[] encode(RevisionMetadata metadata) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      writeString(out, metadata.id());
+      out.writeBoolean(metadata.author() != null);
+      if (metadata.author() != null) {
+        writeString(out, metadata.author());
+      }
+      out.writeLong(metadata.date().getMillis());
+      writeString(out, metadata.date().getZone().getID());
+      writeString(out, metadata.description());
+      out.writeInt(metadata.parents().size());
+      for (Revision parent : metadata.parents()) {
+        writeString(out, parent.revId());
+      }
+      out.writeInt(metadata.fields().size());
+      for (Map.Entry<String, String> field : metadata.fields().entries()) {
+        writeString(out, field.getKey());
+        writeString(out, field.getValue());
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e); // Can't happen writing to a byte array.
+    }
+  }
+
+  @VisibleForTesting
+  static RevisionMetadata decode(byte[] record, String repositoryName) throws IOException {
+    DataInput in = new DataInputStream(new ByteArrayInputStream(record));
+    RevisionMetadata.Builder builder = RevisionMetadata.builder().id(readString(in));
+    builder.author(in.readBoolean() ? readString(in) : null);
+    long millis = in.readLong();
+    builder.date(new DateTime(millis, DateTimeZone.forID(readString(in))));
+    builder.description(readString(in));
+    for (int i = in.readInt(); i > 0; i--) {
+      builder.parentsBuilder().add(Revision.create(readString(in), repositoryName));
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      builder.fieldsBuilder().put(readString(in), readString(in));
+    }
+    return builder.build();
+  }
+
+  // DataOutput.writeUTF is limited to 64KB, which long descriptions can exceed.
+  private static void writeString(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > MAX_RECORD_BYTES) {
+      throw new IOException("Corrupt string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
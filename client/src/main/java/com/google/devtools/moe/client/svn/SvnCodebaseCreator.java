@@ -27,6 +27,7 @@ import com.google.devtools.moe.client.codebase.CodebaseCreator;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
 import java.io.File;
 import java.util.Map;
 
@@ -36,14 +37,14 @@ public class SvnCodebaseCreator extends CodebaseCreator {
   private final FileSystem filesystem;
   private final String name;
   private final RepositoryConfig config;
-  private final SvnRevisionHistory revisionHistory;
+  private final RevisionHistory revisionHistory;
   private final SvnUtil util;
 
   public SvnCodebaseCreator(
       FileSystem filesystem,
       String repositoryName,
       RepositoryConfig config,
-      SvnRevisionHistory revisionHistory,
+      RevisionHistory revisionHistory,
       SvnUtil util) {
     this.filesystem = filesystem;
     this.name = repositoryName;
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.svn;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import java.io.Reader;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Parses the output of {@code svn log --xml} with a streaming pull parser, holding only the entry
+ * being read rather than a document tree of the whole log. Parsing stops as soon as enough entries
+ * have been read, so the rest of a long log need not be read at all.
+ */
+final class SvnLogParser {
+  private static final XMLInputFactory FACTORY = newInputFactory();
+
+  private SvnLogParser() {}
+
+  private static XMLInputFactory newInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+  /** Returns the revisions of the log's entries, in log order. */
+  static List<Revision> parseRevisions(Reader log, String repositoryName)
+      throws XMLStreamException {
+    ImmutableList.Builder<Revision> result = ImmutableList.builder();
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(log);
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT
+            && reader.getLocalName().equals("logentry")) {
+          result.add(Revision.create(revisionAttribute(reader), repositoryName));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the metadata of up to {@code limit} of the log's entries, in log order. Svn history is
+   * linear and logged newest first, so each entry's parent is the entry after it; the last entry
+   * read has no parent unless the log has more entries than {@code limit}.
+   */
+  static List<RevisionMetadata> parseMetadata(Reader log, String repositoryName, int limit)
+      throws XMLStreamException {
+    ImmutableList.Builder<RevisionMetadata> result = ImmutableList.builder();
+    int count = 0;
+    RevisionMetadata.Builder pending = null;
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(log);
+    try {
+      while (count < limit && reader.hasNext()) {
+        if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        switch (reader.getLocalName()) {
+          case "logentry":
+            String revId = revisionAttribute(reader);
+            if (pending != null) {
+              result.add(pending.withParents(Revision.create(revId, repositoryName)).build());
+              count++;
+            }
+            pending = newEntry(revId);
+            break;
+          case "author":
+            pending.author(reader.getElementText());
+            break;
+          case "date":
+            pending.date(ISODateTimeFormat.dateTime().parseDateTime(reader.getElementText()));
+            break;
+          case "msg":
+            pending.description(reader.getElementText());
+            break;
+          default:
+            // e.g. the "paths" of a verbose log, which are ignored.
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    if (pending != null && count < limit) {
+      result.add(pending.build());
+    }
+    return result.build();
+  }
+
+  private static RevisionMetadata.Builder newEntry(String revId) {
+    return RevisionMetadata.builder()
+        .id(revId)
+        .author("None")
+        .date(new DateTime(0L)) // Unix epoch
+        .description("None");
+  }
+
+  private static String revisionAttribute(XMLStreamReader reader) throws XMLStreamException {
+    String revId = reader.getAttributeValue(null, "revision");
+    if (revId == null) {
+      throw new XMLStreamException("logentry without a revision", reader.getLocation());
+    }
+    return revId;
+  }
+}
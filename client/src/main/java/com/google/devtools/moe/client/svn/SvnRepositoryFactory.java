@@ -22,7 +22,10 @@ import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.InvalidProject;
 import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.CachingRevisionHistory;
 import com.google.devtools.moe.client.repositories.RepositoryType;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 
 import javax.inject.Inject;
 
@@ -34,12 +37,15 @@ public class SvnRepositoryFactory implements RepositoryType.Factory {
   private final FileSystem filesystem;
   private final SvnUtil util;
   private final Ui ui;
+  private final RevisionMetadataCache metadataCache;
 
   @Inject
-  public SvnRepositoryFactory(FileSystem filesystem, SvnUtil util, Ui ui) {
+  public SvnRepositoryFactory(
+      FileSystem filesystem, SvnUtil util, Ui ui, RevisionMetadataCache metadataCache) {
     this.filesystem = filesystem;
     this.util = util;
     this.ui = ui;
+    this.metadataCache = metadataCache;
   }
 
   @Override
@@ -56,7 +62,10 @@ public class SvnRepositoryFactory implements RepositoryType.Factory {
       throw new InvalidProject("Svn repository config missing \"url\".");
     }
 
-    SvnRevisionHistory rh = new SvnRevisionHistory(name, url, util);
+    RevisionHistory rh =
+        new CachingRevisionHistory(
+            new SvnRevisionHistory(
+                name, url, util, metadataCache, true, config.getMaxRevisionsToSearch()));
     return RepositoryType.create(
         name,
         rh,
@@ -18,20 +18,21 @@ package com.google.devtools.moe.client.svn;
 
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.CommandRunner.SpooledOutput;
 import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.AbstractRevisionHistory;
 import com.google.devtools.moe.client.repositories.Revision;
 import com.google.devtools.moe.client.repositories.RevisionMetadata;
 import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.joda.time.DateTime;
-import org.joda.time.format.ISODateTimeFormat;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
+import java.util.Map;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * A revision history backed by a subversion repository
@@ -42,10 +43,43 @@ public class SvnRevisionHistory extends AbstractRevisionHistory {
   private final String url;
   private final SvnUtil util;
 
+  /**
+   * Whether to read ancestry for history searches with one {@code svn log} per range, rather than
+   * once per revision.
+   */
+  private final boolean batchQueries;
+
   public SvnRevisionHistory(String name, String url, SvnUtil util) {
+    this(name, url, util, RevisionMetadataCache.DISABLED, false);
+  }
+
+  public SvnRevisionHistory(
+      String name,
+      String url,
+      SvnUtil util,
+      RevisionMetadataCache metadataCache,
+      boolean batchQueries) {
+    this(
+        name,
+        url,
+        util,
+        metadataCache,
+        batchQueries,
+        RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+  }
+
+  public SvnRevisionHistory(
+      String name,
+      String url,
+      SvnUtil util,
+      RevisionMetadataCache metadataCache,
+      boolean batchQueries,
+      int maxRevisionsToSearch) {
+    super(metadataCache, url, maxRevisionsToSearch);
     this.name = name;
     this.url = url;
     this.util = util;
+    this.batchQueries = batchQueries;
   }
 
   @Override
@@ -75,18 +109,8 @@ public class SvnRevisionHistory extends AbstractRevisionHistory {
    */
   public static List<Revision> parseRevisions(String log, String repositoryName) {
     try {
-      Document doc =
-          DocumentBuilderFactory.newInstance()
-              .newDocumentBuilder()
-              .parse(new InputSource(new StringReader(log)));
-      NodeList nl = doc.getElementsByTagName("logentry");
-      ImmutableList.Builder<Revision> resultBuilder = ImmutableList.builder();
-      for (int i = 0; i < nl.getLength(); i++) {
-        String revId = nl.item(i).getAttributes().getNamedItem("revision").getNodeValue();
-        resultBuilder.add(Revision.create(revId, repositoryName));
-      }
-      return resultBuilder.build();
-    } catch (Exception e) {
+      return SvnLogParser.parseRevisions(new StringReader(log), repositoryName);
+    } catch (XMLStreamException | RuntimeException e) {
       throw new MoeProblem(e, "Could not parse xml log: %s", log);
     }
   }
@@ -116,64 +140,64 @@ public class SvnRevisionHistory extends AbstractRevisionHistory {
   }
 
   /**
-   * Parse the output of svn log into Metadata
-   *
-   * @param log the output of svn to parse
+   * Reads the metadata for the given revisions and their most recent ancestors, with one ranged
+   * {@code svn log} per revision not already covered by an earlier one. (Svn history is linear,
+   * so there is usually only one.)
    */
-  List<RevisionMetadata> parseMetadata(String log) {
-    try {
-      Document doc =
-          DocumentBuilderFactory.newInstance()
-              .newDocumentBuilder()
-              .parse(new InputSource(new StringReader(log)));
-      NodeList nl = doc.getElementsByTagName("logentry");
-      ImmutableList.Builder<RevisionMetadata> resultBuilder = ImmutableList.builder();
-      for (int i = 0; i < nl.getLength(); i++) {
-        String revId = nl.item(i).getAttributes().getNamedItem("revision").getNodeValue();
-        NodeList nlEntries = nl.item(i).getChildNodes();
-        if (i + 1 >= nl.getLength()) {
-          resultBuilder.add(parseMetadataNodeList(revId, nlEntries, ImmutableList.<Revision>of()));
-        } else {
-          String parentId =
-              nl.item(i + 1).getAttributes().getNamedItem("revision").getNodeValue();
-          resultBuilder.add(
-              parseMetadataNodeList(
-                  revId, nlEntries, ImmutableList.of(Revision.create(parentId, name))));
-        }
+  @Override
+  protected List<RevisionMetadata> createMetadataBatch(List<Revision> revisions, int limit) {
+    if (!batchQueries) {
+      return super.createMetadataBatch(revisions, limit);
+    }
+    Map<String, RevisionMetadata> result = new LinkedHashMap<>();
+    for (Revision revision : revisions) {
+      if (!name.equals(revision.repositoryName())) {
+        throw new MoeProblem(
+            "Could not get metadata: Revision %s is in repository %s instead of %s",
+            revision.revId(),
+            revision.repositoryName(),
+            name);
+      }
+      if (result.containsKey(revision.revId()) || result.size() >= limit) {
+        continue;
+      }
+      List<RevisionMetadata> metadata;
+      // One more entry than needed, since an entry's parent is the entry after it. The log is
+      // spooled rather than held in memory, and parsing stops once it has enough entries.
+      try (SpooledOutput log =
+              util.runSvnCommandSpooled(
+                  "log",
+                  "--xml",
+                  "-l",
+                  String.valueOf(limit + 1),
+                  "-r",
+                  revision.revId() + ":1",
+                  url);
+          Reader logReader = log.asCharSource().openStream()) {
+        metadata = SvnLogParser.parseMetadata(logReader, name, limit);
+      } catch (CommandException e) {
+        throw new MoeProblem("Failed svn run: %s", e);
+      } catch (IOException | XMLStreamException | RuntimeException e) {
+        throw new MoeProblem(e, "Could not parse xml log of %s from %s", url, revision.revId());
+      }
+      for (RevisionMetadata entry : metadata) {
+        result.putIfAbsent(entry.id(), entry);
       }
-      return resultBuilder.build();
-    } catch (Exception e) {
-      throw new MoeProblem(e, "Could not parse xml log: %s", log);
     }
+    return ImmutableList.copyOf(result.values());
   }
 
   /**
-   * Helper function for parseMetadata
+   * Parse the output of svn log into Metadata
+   *
+   * @param log the output of svn to parse
    */
-  public RevisionMetadata parseMetadataNodeList(
-      String revId, NodeList nlEntries, ImmutableList<Revision> parents) {
-    String author = "None";
-    DateTime date = new DateTime(0L); // Unix epoch
-    String description = "None";
-    for (int i = 0; i < nlEntries.getLength(); i++) {
-      Node currNode = nlEntries.item(i);
-      if (currNode.getNodeName().equals("author")) {
-        author = currNode.getTextContent();
-      }
-      if (currNode.getNodeName().equals("date")) {
-        date = ISODateTimeFormat.dateTime().parseDateTime(currNode.getTextContent());
-      }
-      if (currNode.getNodeName().equals("msg")) {
-        description = currNode.getTextContent();
-      }
+  List<RevisionMetadata> parseMetadata(String log) {
+    try {
+      return SvnLogParser.parseMetadata(new StringReader(log), name, Integer.MAX_VALUE);
+    } catch (XMLStreamException | RuntimeException e) {
+      throw new MoeProblem(e, "Could not parse xml log: %s", log);
     }
-    return RevisionMetadata.builder()
-        .id(revId)
-        .author(author)
-        .date(date)
-        .description(description)
-        .withParents(parents)
-        .build();
   }
 
   @Override
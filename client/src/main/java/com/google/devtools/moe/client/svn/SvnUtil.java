@@ -18,6 +18,7 @@ package com.google.devtools.moe.client.svn;
 
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.moe.client.CommandRunner;
+import com.google.devtools.moe.client.CommandRunner.SpooledOutput;
 import java.util.Arrays;
 import javax.inject.Inject;
 
@@ -43,4 +44,16 @@ public class SvnUtil {
   String runSvnCommand(String command, String... args) throws CommandRunner.CommandException {
     return runSvnCommandWithWorkingDirectory("", command, args);
   }
+
+  /**
+   * Runs an svn command, spooling its output to a temporary file if it is large. The caller must
+   * close the result.
+   */
+  SpooledOutput runSvnCommandSpooled(String command, String... args)
+      throws CommandRunner.CommandException {
+    ImmutableList.Builder<String> withAuthArgs = ImmutableList.builder();
+    withAuthArgs.add("--no-auth-cache").add(command).addAll(Arrays.asList(args));
+    return cmd.runCommandSpooled(
+        "", "svn", withAuthArgs.build(), CommandRunner.DEFAULT_SPILL_THRESHOLD_BYTES);
+  }
 }
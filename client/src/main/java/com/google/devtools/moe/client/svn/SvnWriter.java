@@ -87,12 +87,9 @@ public class SvnWriter implements Writer {
             .add("(^|.*/)\\.svn(/.*|$)")
             .build();
 
-    Set<String> codebaseFiles =
-        Utils.makeFilenamesRelative(filesystem.findFiles(c.root()), c.root());
+    Set<String> codebaseFiles = c.files(filesystem).paths();
     Set<String> writerFiles =
-        Utils.filterByRegEx(
-            Utils.makeFilenamesRelative(filesystem.findFiles(rootDirectory), rootDirectory),
-            ignoreFilePatterns);
+        Utils.filterByRegEx(filesystem.indexFiles(rootDirectory).paths(), ignoreFilePatterns);
     Set<String> union = Sets.union(codebaseFiles, writerFiles);
 
     for (String filename : union) {
@@ -22,6 +22,7 @@ import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionHistory;
 import com.google.devtools.moe.client.writer.Writer;
 import com.google.devtools.moe.client.writer.WriterCreator;
 import com.google.devtools.moe.client.writer.WritingError;
@@ -32,13 +33,17 @@ import java.util.Map;
 public class SvnWriterCreator implements WriterCreator {
 
   private final RepositoryConfig config;
-  private final SvnRevisionHistory revisionHistory;
+  private final RevisionHistory revisionHistory;
   private final SvnUtil util;
   private final FileSystem fs;
   private final Ui ui;
 
   public SvnWriterCreator(
-      RepositoryConfig config, SvnRevisionHistory revisionHistory, SvnUtil util, FileSystem fs, Ui ui) {
+      RepositoryConfig config,
+      RevisionHistory revisionHistory,
+      SvnUtil util,
+      FileSystem fs,
+      Ui ui) {
     this.config = config;
     this.revisionHistory = revisionHistory;
     this.util = util;
@@ -19,6 +19,7 @@ package com.google.devtools.moe.client.testing;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.database.CodebaseFingerprint;
 import com.google.devtools.moe.client.database.Db;
 import com.google.devtools.moe.client.database.RepositoryEquivalence;
 import com.google.devtools.moe.client.database.SubmittedMigration;
@@ -78,6 +79,14 @@ public class DummyDb implements Db {
     return migrations.contains(migration);
   }
 
+  @Override
+  public String findFingerprint(Revision revision, String projectSpace, String configDigest) {
+    return null;
+  }
+
+  @Override
+  public void noteFingerprint(CodebaseFingerprint fingerprint) {}
+
   @Override
   public void write() {
     ui.message(
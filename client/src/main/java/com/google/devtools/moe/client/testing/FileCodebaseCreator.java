@@ -19,7 +19,6 @@ package com.google.devtools.moe.client.testing;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
-import com.google.devtools.moe.client.CommandRunner.CommandException;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.codebase.Codebase;
@@ -101,9 +100,6 @@ public class FileCodebaseCreator extends CodebaseCreator {
           return extractedArchive;
         }
       }
-    } catch (CommandException exception) {
-      throw new CodebaseCreationError(
-          "Could not extract archive: '%s' %s", sourceFile, exception.getMessage());
     } catch (IOException exception) {
       throw new CodebaseCreationError(
           "Could not extract archive '%s': %s", sourceFile, exception.getMessage());
@@ -122,10 +118,9 @@ public class FileCodebaseCreator extends CodebaseCreator {
    *
    * @param inputFile The File to be extracted.
    * @return File pointing to a directory, or null.
-   * @throws CommandException
    * @throws IOException
    */
-  File expandToDirectory(File inputFile) throws IOException, CommandException {
+  File expandToDirectory(File inputFile) throws IOException {
     // If the specified path already is a directory, return it without modification.
     if (inputFile.isDirectory()) {
       return inputFile;
@@ -19,8 +19,10 @@ import com.google.devtools.moe.client.Ui.UiModule;
 import com.google.devtools.moe.client.project.ProjectContextFactory;
 import com.google.devtools.moe.client.qualifiers.Flag;
 import com.google.devtools.moe.client.repositories.RepositoryType;
-import com.google.devtools.moe.client.tools.FileDifference.ConcreteFileDiffer;
 import com.google.devtools.moe.client.tools.FileDifference.FileDiffer;
+import com.google.devtools.moe.client.tools.FileDifference.InProcessFileDiffer;
+import com.google.devtools.moe.client.tools.FileMerger;
+import com.google.devtools.moe.client.tools.FileMerger.InProcessFileMerger;
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
@@ -37,7 +39,11 @@ public abstract class TestingModule {
 
   @Binds
   @Singleton
-  abstract FileDiffer fileDiffer(ConcreteFileDiffer cfd);
+  abstract FileDiffer fileDiffer(InProcessFileDiffer differ);
+
+  @Binds
+  @Singleton
+  abstract FileMerger fileMerger(InProcessFileMerger merger);
 
   @Binds
   @IntoSet
@@ -15,34 +15,65 @@
  */
 package com.google.devtools.moe.client.tools;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.devtools.moe.client.FileSystem;
-import com.google.devtools.moe.client.Utils;
+import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.codebase.Codebase;
+import com.google.devtools.moe.client.codebase.CodebaseFingerprinter;
+import com.google.devtools.moe.client.codebase.Fingerprint;
+import com.google.devtools.moe.client.tools.FileDifference.Comparison;
 import com.google.devtools.moe.client.tools.FileDifference.FileDiffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /** Performs a difference analysis using an underlying {@code FileDiffer}. */
 public class CodebaseDiffer {
   private final FileDiffer differ;
   private final FileSystem filesystem;
+  private final CodebaseFingerprinter fingerprinter;
+  private final int parallelism;
 
-  @Inject
   public CodebaseDiffer(FileDiffer differ, FileSystem filesystem) {
+    this(differ, filesystem, new CodebaseFingerprinter(filesystem));
+  }
+
+  @Inject
+  public CodebaseDiffer(
+      FileDiffer differ, FileSystem filesystem, CodebaseFingerprinter fingerprinter) {
+    this(differ, filesystem, fingerprinter, Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  CodebaseDiffer(
+      FileDiffer differ,
+      FileSystem filesystem,
+      CodebaseFingerprinter fingerprinter,
+      int parallelism) {
     this.differ = differ;
     this.filesystem = filesystem;
+    this.fingerprinter = fingerprinter;
+    this.parallelism = parallelism;
   }
 
   /**
    * Diff two {@link Codebase} instances with a {@link FileDiffer}.
    */
   public CodebaseDifference diffCodebases(Codebase codebase1, Codebase codebase2) {
-    Set<String> filenames =
-        Sets.union(
-            Utils.makeFilenamesRelative(filesystem.findFiles(codebase1.root()), codebase1.root()),
-            Utils.makeFilenamesRelative(filesystem.findFiles(codebase2.root()), codebase2.root()));
+    Set<String> filenames = filesToCompare(codebase1, codebase2);
 
     ImmutableSet.Builder<FileDifference> fileDiffs = ImmutableSet.builder();
 
@@ -56,4 +87,95 @@ public class CodebaseDiffer {
 
     return new CodebaseDifference(codebase1, codebase2, fileDiffs.build());
   }
+
+  /**
+   * Checks whether two {@link Codebase} instances are equivalent, without building their full
+   * difference. Files are compared in parallel, and the comparison stops as soon as any pair of
+   * files differs.
+   *
+   * @return a short description of a difference between the codebases (not necessarily the first
+   *     in filename order), or null if they are equivalent
+   */
+  @Nullable
+  public String findDifference(Codebase codebase1, Codebase codebase2) {
+    List<String> filenames = ImmutableList.copyOf(filesToCompare(codebase1, codebase2));
+    AtomicInteger nextFile = new AtomicInteger();
+    AtomicReference<String> difference = new AtomicReference<>();
+    // Each worker claims files until they run out or any worker has found a difference.
+    Runnable worker =
+        () -> {
+          int i;
+          while (difference.get() == null && (i = nextFile.getAndIncrement()) < filenames.size()) {
+            String filename = filenames.get(i);
+            String description =
+                describe(
+                    differ.diffFiles(
+                        filename, codebase1.getFile(filename), codebase2.getFile(filename)));
+            if (description != null) {
+              difference.compareAndSet(null, description);
+            }
+          }
+        };
+
+    int threads = Math.min(parallelism, filenames.size());
+    if (threads <= 1) {
+      worker.run();
+      return difference.get();
+    }
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("codebase-differ-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> workers = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(worker));
+      }
+      for (Future<?> future : workers) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new MoeProblem(e.getCause(), "Error comparing %s and %s", codebase1, codebase2);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MoeProblem(e, "Interrupted comparing %s and %s", codebase1, codebase2);
+    } finally {
+      executor.shutdownNow();
+    }
+    return difference.get();
+  }
+
+  /**
+   * Returns the files which may differ between the codebases. When both can be fingerprinted,
+   * these are only the files under subtrees whose hashes differ; otherwise they are all files.
+   */
+  private Set<String> filesToCompare(Codebase codebase1, Codebase codebase2) {
+    Fingerprint fingerprint1 = fingerprinter.fingerprint(codebase1);
+    Fingerprint fingerprint2 = (fingerprint1 == null) ? null : fingerprinter.fingerprint(codebase2);
+    if (fingerprint2 != null) {
+      return Fingerprint.differingFiles(fingerprint1, fingerprint2);
+    }
+    return Sets.union(codebase1.files(filesystem).paths(), codebase2.files(filesystem).paths());
+  }
+
+  /** Returns a one-line description of how the files differ, or null if they don't. */
+  @Nullable
+  private static String describe(FileDifference fileDiff) {
+    String filename = fileDiff.relativeFilename();
+    if (fileDiff.existence() != Comparison.SAME) {
+      return String.format(
+          "%s exists only in the %s codebase",
+          filename, fileDiff.existence() == Comparison.ONLY1 ? "first" : "second");
+    }
+    if (fileDiff.executability() != Comparison.SAME) {
+      return String.format(
+          "%s is executable only in the %s codebase",
+          filename, fileDiff.executability() == Comparison.ONLY1 ? "first" : "second");
+    }
+    if (fileDiff.contentDiff() != null) {
+      return filename + " has different contents";
+    }
+    return null;
+  }
 }
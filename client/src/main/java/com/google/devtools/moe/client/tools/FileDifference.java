@@ -16,13 +16,21 @@
 
 package com.google.devtools.moe.client.tools;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
 import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
@@ -163,4 +171,93 @@ public abstract class FileDifference {
           relativeFilename, file1, file2, existence, executability, contentDiff);
     }
   }
+
+  /**
+   * A {@link FileDiffer} which compares files in-process rather than forking {@code diff}. Files
+   * are compared by size and then bytes, and only files which really differ are read and diffed
+   * line by line. The content diff is what {@code diff -N -u} would print, including its
+   * "Binary files ... differ" line for files containing NUL bytes. Like diff, it compares bytes,
+   * whatever the encoding: each byte of the files is one char (ISO-8859-1) of the diff.
+   */
+  public static class InProcessFileDiffer implements FileDiffer {
+    /** How much of a file is checked for NUL bytes to decide whether it is binary, as git does. */
+    private static final int BINARY_CHECK_BYTES = 8000;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.nnnnnnnnn xx");
+
+    private final FileSystem filesystem;
+
+    @Inject
+    public InProcessFileDiffer(FileSystem filesystem) {
+      this.filesystem = filesystem;
+    }
+
+    @Override
+    public FileDifference diffFiles(String relativeFilename, File file1, File file2) {
+      boolean file1Exists = filesystem.exists(file1);
+      boolean file2Exists = filesystem.exists(file2);
+
+      Preconditions.checkArgument(
+          file1Exists || file2Exists, "Neither file exists: %s, %s", file1, file2);
+
+      Comparison existence = Comparison.diffBools(file1Exists, file2Exists);
+      Comparison executability =
+          Comparison.diffBools(filesystem.isExecutable(file1), filesystem.isExecutable(file2));
+
+      String contentDiff;
+      try {
+        contentDiff = diffContents(file1, file1Exists, file2, file2Exists);
+      } catch (IOException e) {
+        throw new MoeProblem(e, "Could not diff %s and %s", file1, file2);
+      }
+
+      return FileDifference.create(
+          relativeFilename, file1, file2, existence, executability, contentDiff);
+    }
+
+    /** Returns the unified diff of the files, treating an absent file as empty, or null. */
+    @Nullable
+    private static String diffContents(
+        File file1, boolean file1Exists, File file2, boolean file2Exists) throws IOException {
+      ByteSource source1 = file1Exists ? Files.asByteSource(file1) : ByteSource.empty();
+      ByteSource source2 = file2Exists ? Files.asByteSource(file2) : ByteSource.empty();
+      // Cheap checks first: most files in a pair of codebases are identical.
+      if (source1.size() == source2.size() && source1.contentEquals(source2)) {
+        return null;
+      }
+
+      byte[] content1 = source1.read();
+      byte[] content2 = source2.read();
+      if (isBinary(content1) || isBinary(content2)) {
+        return String.format(
+            "Binary files %s and %s differ\n", file1.getAbsolutePath(), file2.getAbsolutePath());
+      }
+      return UnifiedDiff.diff(
+          header(file1, file1Exists),
+          header(file2, file2Exists),
+          new String(content1, ISO_8859_1),
+          new String(content2, ISO_8859_1));
+    }
+
+    private static boolean isBinary(byte[] content) {
+      for (int i = 0; i < content.length && i < BINARY_CHECK_BYTES; i++) {
+        if (content[i] == 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** The path and modification time, as diff labels files (an absent file has the epoch). */
+    private static String header(File file, boolean exists) throws IOException {
+      Instant modified =
+          exists
+              ? java.nio.file.Files.getLastModifiedTime(file.toPath()).toInstant()
+              : Instant.EPOCH;
+      return file.getAbsolutePath()
+          + "\t"
+          + TIMESTAMP_FORMAT.format(modified.atZone(ZoneId.systemDefault()));
+    }
+  }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.CommandRunner;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.MoeProblem;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import javax.inject.Inject;
+
+/**
+ * A FileMerger merges changes to a file into another version of it, as RCS {@code merge(1)} does.
+ * This exists as an interface so that we can mock it out.
+ */
+public interface FileMerger {
+
+  /**
+   * Merges the changes that lead from {@code original} to {@code modified} into {@code target},
+   * in place. Where the changes conflict with {@code target}'s own, both versions are written
+   * between conflict markers.
+   *
+   * @return true if the changes merged cleanly, false if there were conflicts
+   */
+  boolean merge(File target, File original, File modified);
+
+  /** A {@link FileMerger} which runs the RCS {@code merge} binary. */
+  class RcsFileMerger implements FileMerger {
+    private final CommandRunner cmd;
+
+    @Inject
+    public RcsFileMerger(CommandRunner cmd) {
+      this.cmd = cmd;
+    }
+
+    @Override
+    public boolean merge(File target, File original, File modified) {
+      try {
+        cmd.runCommand(
+            target.getAbsoluteFile().getParent(),
+            "merge",
+            ImmutableList.of(
+                target.getAbsolutePath(), original.getAbsolutePath(), modified.getAbsolutePath()));
+        // Return status was 0 and the merge was successful.
+        return true;
+      } catch (CommandException e) {
+        // If merge fails with exit status 1, then a conflict occurred.
+        if (e.returnStatus == 1) {
+          return false;
+        }
+        throw new MoeProblem(
+            e,
+            "Merge returned with unexpected status %d when trying to run \"merge %s %s %s\"",
+            e.returnStatus,
+            target.getAbsolutePath(),
+            original.getAbsolutePath(),
+            modified.getAbsolutePath());
+      }
+    }
+  }
+
+  /**
+   * A {@link FileMerger} which merges in-process with {@link ThreeWayMerge}, writing conflicts with
+   * the same markers as {@code merge}. Files are read as bytes, so any encoding (or none) is preserved, and when
+   * two of the three versions are identical the result is known without a merge.
+   */
+  class InProcessFileMerger implements FileMerger {
+
+    @Inject
+    public InProcessFileMerger() {}
+
+    @Override
+    public boolean merge(File target, File original, File modified) {
+      try {
+        byte[] originalBytes = Files.readAllBytes(original.toPath());
+        byte[] modifiedBytes = Files.readAllBytes(modified.toPath());
+        if (Arrays.equals(originalBytes, modifiedBytes)) {
+          // No changes to merge.
+          return true;
+        }
+        byte[] targetBytes = Files.readAllBytes(target.toPath());
+        if (Arrays.equals(targetBytes, modifiedBytes)) {
+          // The changes are already there.
+          return true;
+        }
+        if (Arrays.equals(targetBytes, originalBytes)) {
+          // Nothing to merge them with.
+          Files.write(target.toPath(), modifiedBytes);
+          return true;
+        }
+        // ISO-8859-1 maps each byte to one char and back, so lines are split on '\n' bytes.
+        ThreeWayMerge.Result result =
+            ThreeWayMerge.merge(
+                new String(targetBytes, ISO_8859_1),
+                new String(originalBytes, ISO_8859_1),
+                new String(modifiedBytes, ISO_8859_1),
+                target.getAbsolutePath(),
+                modified.getAbsolutePath());
+        Files.write(target.toPath(), result.text().getBytes(ISO_8859_1));
+        return !result.hasConflicts();
+      } catch (IOException e) {
+        throw new MoeProblem(e, "Could not merge %s and %s into %s", original, modified, target);
+      }
+    }
+  }
+}
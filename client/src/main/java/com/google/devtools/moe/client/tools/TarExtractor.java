@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.devtools.moe.client.FileSystem;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Expands a tar archive into a directory as the archive is written to it, so that the output of a
+ * command like {@code git archive} can be extracted as it is produced, without an intermediate
+ * tarball or a {@code tar} process.
+ *
+ * <p>Understands the ustar, pax and GNU long-name formats: regular files (with their executable
+ * bit), directories, symbolic links and hard links. Other entries, such as devices and fifos, are
+ * skipped, as are entries whose paths the filter rejects, which are never written at all. Entries
+ * which would land outside the destination are an error.
+ *
+ * <p>{@link #close()} fails if the archive was cut off in the middle of an entry.
+ */
+public final class TarExtractor extends OutputStream {
+  private static final int BLOCK_SIZE = 512;
+
+  private final Path root;
+  private final Predicate<CharSequence> filter;
+  private final FileSystem filesystem;
+  /** Directories known to exist, to save creating each entry's parents over and over. */
+  private final Set<Path> directories = new HashSet<>();
+  /** Symbolic links extracted so far, which later entries mustn't be written through. */
+  private final Set<Path> symlinks = new HashSet<>();
+
+  private final byte[] header = new byte[BLOCK_SIZE];
+  private int headerLength;
+  private boolean ended;
+
+  /** Bytes of the current entry's data yet to come, then of padding out to a block boundary. */
+  private long remaining;
+  private long padding;
+  /** Where the current entry's data goes: a file, a buffer of metadata, or nowhere. */
+  private OutputStream file;
+  private Path filePath;
+  private boolean fileExecutable;
+  private ByteArrayOutputStream metadata;
+  private byte metadataType;
+
+  /** Overrides, from pax or GNU headers, for the next entry's fields. */
+  private String nextPath;
+  private String nextLinkPath;
+  private Long nextSize;
+
+  /**
+   * @param destination the directory to expand into, which must exist
+   * @param filter accepts the paths (relative to the archive's root) of the files to extract
+   * @param filesystem the filesystem used to mark extracted files executable
+   */
+  public TarExtractor(File destination, Predicate<CharSequence> filter, FileSystem filesystem) {
+    this.root = destination.toPath().toAbsolutePath().normalize();
+    this.filter = filter;
+    this.filesystem = filesystem;
+    directories.add(root);
+  }
+
+  /** Returns an extractor into the given directory which extracts every file. */
+  public TarExtractor(File destination, FileSystem filesystem) {
+    this(destination, Predicates.alwaysTrue(), filesystem);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0 && !ended) {
+      int n;
+      if (remaining > 0) {
+        n = (int) Math.min(len, remaining);
+        if (file != null) {
+          file.write(b, off, n);
+        } else if (metadata != null) {
+          metadata.write(b, off, n);
+        }
+        remaining -= n;
+        if (remaining == 0) {
+          finishEntry();
+        }
+      } else if (padding > 0) {
+        n = (int) Math.min(len, padding);
+        padding -= n;
+      } else {
+        n = Math.min(len, BLOCK_SIZE - headerLength);
+        System.arraycopy(b, off, header, headerLength, n);
+        headerLength += n;
+        if (headerLength == BLOCK_SIZE) {
+          headerLength = 0;
+          readHeader();
+        }
+      }
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (file != null) {
+      file.close();
+      file = null;
+    }
+    if (!ended && (remaining > 0 || headerLength > 0)) {
+      throw new IOException("Truncated tar archive, expanding into " + root);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    if (isZeroBlock()) {
+      // The end-of-archive marker. Anything after it is padding.
+      ended = true;
+      return;
+    }
+    checkChecksum();
+
+    byte type = header[156];
+    long size = (nextSize != null) ? nextSize : parseNumber(124, 12);
+    switch (type) {
+      case 'x': // pax extended header, for the next entry
+      case 'L': // GNU long name, for the next entry
+      case 'K': // GNU long link name, for the next entry
+        metadata = new ByteArrayOutputStream();
+        metadataType = type;
+        startData(size);
+        return;
+      case 'g': // pax global header, e.g. the commit ID from git archive
+        startData(size);
+        return;
+      default:
+        break;
+    }
+
+    String name = (nextPath != null) ? nextPath : entryName();
+    String linkName = (nextLinkPath != null) ? nextLinkPath : parseString(157, 100);
+    nextPath = null;
+    nextLinkPath = null;
+    nextSize = null;
+
+    String relativePath = relativePath(name);
+    if (relativePath.isEmpty()) {
+      startData(size);
+      return;
+    }
+    Path target = resolve(relativePath);
+    boolean accepted = filter.apply(relativePath);
+    switch (type) {
+      case '5':
+        createDirectories(target);
+        break;
+      case '2':
+        if (accepted) {
+          createDirectories(target.getParent());
+          Files.deleteIfExists(target);
+          Files.createSymbolicLink(target, Paths.get(linkName));
+          symlinks.add(target);
+        }
+        break;
+      case '1':
+        if (accepted) {
+          // The link's source must be a file already extracted, not a symbolic link (which the
+          // copy would follow out of the destination) or anything else.
+          Path source = resolve(relativePath(linkName));
+          if (!Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(
+                "Tar entry " + relativePath + " links to " + linkName + ", not a regular file");
+          }
+          createDirectories(target.getParent());
+          Files.copy(
+              source, target, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+        }
+        break;
+      case '0':
+      case '\0':
+      case '7':
+        if (accepted) {
+          createDirectories(target.getParent());
+          file =
+              Files.newOutputStream(
+                  target,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.TRUNCATE_EXISTING,
+                  StandardOpenOption.WRITE,
+                  LinkOption.NOFOLLOW_LINKS);
+          filePath = target;
+          fileExecutable = (parseNumber(100, 8) & 0100) != 0;
+        }
+        break;
+      default:
+        // Devices, fifos and the like have no place in a codebase.
+        break;
+    }
+    startData(size);
+  }
+
+  private void startData(long size) throws IOException {
+    remaining = size;
+    padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    if (remaining == 0) {
+      finishEntry();
+    }
+  }
+
+  private void finishEntry() throws IOException {
+    if (file != null) {
+      file.close();
+      file = null;
+      if (fileExecutable) {
+        filesystem.setExecutable(filePath.toFile());
+      }
+    }
+    if (metadata != null) {
+      byte[] data = metadata.toByteArray();
+      metadata = null;
+      if (metadataType == 'x') {
+        readPaxRecords(data);
+      } else {
+        String value = nulTerminated(data, 0, data.length);
+        if (metadataType == 'L') {
+          nextPath = value;
+        } else {
+          nextLinkPath = value;
+        }
+      }
+    }
+  }
+
+  /** Reads pax records, each of the form "{length} {key}={value}\n". */
+  private void readPaxRecords(byte[] data) throws IOException {
+    int pos = 0;
+    while (pos < data.length) {
+      int space = pos;
+      while (space < data.length && data[space] != ' ') {
+        space++;
+      }
+      int length;
+      try {
+        length = Integer.parseInt(new String(data, pos, space - pos, UTF_8));
+      } catch (NumberFormatException e) {
+        throw new IOException("Malformed pax header, expanding into " + root, e);
+      }
+      if (length <= space - pos || pos + length > data.length) {
+        throw new IOException("Malformed pax header, expanding into " + root);
+      }
+      String record = new String(data, space + 1, pos + length - space - 2, UTF_8);
+      int equals = record.indexOf('=');
+      if (equals > 0) {
+        String key = record.substring(0, equals);
+        String value = record.substring(equals + 1);
+        if (key.equals("path")) {
+          nextPath = value;
+        } else if (key.equals("linkpath")) {
+          nextLinkPath = value;
+        } else if (key.equals("size")) {
+          nextSize = Long.parseLong(value);
+        }
+      }
+      pos += length;
+    }
+  }
+
+  /** Returns the entry's name, joined to its ustar prefix if it has one. */
+  private String entryName() {
+    String name = parseString(0, 100);
+    if (new String(header, 257, 5, UTF_8).equals("ustar")) {
+      String prefix = parseString(345, 155);
+      if (!prefix.isEmpty()) {
+        return prefix + "/" + name;
+      }
+    }
+    return name;
+  }
+
+  private static String relativePath(String name) {
+    String path = name;
+    while (path.startsWith("./")) {
+      path = path.substring(2);
+    }
+    while (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path.equals(".") ? "" : path;
+  }
+
+  private Path resolve(String relativePath) throws IOException {
+    Path target = root.resolve(relativePath).normalize();
+    if (!target.startsWith(root) || target.equals(root)) {
+      throw new IOException("Tar entry " + relativePath + " is outside of " + root);
+    }
+    if (!symlinks.isEmpty()) {
+      for (Path parent = target.getParent(); !parent.equals(root); parent = parent.getParent()) {
+        if (symlinks.contains(parent)) {
+          throw new IOException("Tar entry " + relativePath + " is under a symbolic link");
+        }
+      }
+    }
+    return target;
+  }
+
+  private void createDirectories(Path directory) throws IOException {
+    if (directories.add(directory)) {
+      Files.createDirectories(directory);
+    }
+  }
+
+  private boolean isZeroBlock() {
+    for (byte b : header) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkChecksum() throws IOException {
+    long expected = parseNumber(148, 8);
+    long actual = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      // The checksum is computed with its own field taken to be spaces.
+      actual += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xff);
+    }
+    if (actual != expected) {
+      throw new IOException("Malformed tar header, expanding into " + root);
+    }
+  }
+
+  private String parseString(int offset, int length) {
+    return nulTerminated(header, offset, length);
+  }
+
+  private static String nulTerminated(byte[] bytes, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && bytes[end] != 0) {
+      end++;
+    }
+    return new String(bytes, offset, end - offset, UTF_8);
+  }
+
+  /** Parses a numeric field, which is either octal text or, for large values, base-256. */
+  private long parseNumber(int offset, int length) throws IOException {
+    if ((header[offset] & 0x80) != 0) {
+      long value = header[offset] & 0x7f;
+      for (int i = offset + 1; i < offset + length; i++) {
+        value = (value << 8) | (header[i] & 0xff);
+      }
+      return value;
+    }
+    int i = offset;
+    int end = offset + length;
+    while (i < end && (header[i] == ' ' || header[i] == 0)) {
+      i++;
+    }
+    long value = 0;
+    for (; i < end && header[i] != ' ' && header[i] != 0; i++) {
+      if (header[i] < '0' || header[i] > '7') {
+        throw new IOException("Malformed tar header, expanding into " + root);
+      }
+      value = (value << 3) + (header[i] - '0');
+    }
+    return value;
+  }
+}
@@ -16,12 +16,14 @@
 package com.google.devtools.moe.client.tools;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableList;
-import com.google.devtools.moe.client.CommandRunner;
-import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.common.io.ByteStreams;
 import com.google.devtools.moe.client.FileSystem;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -29,26 +31,28 @@ import javax.inject.Singleton;
 @Singleton
 public final class TarUtils {
   private final FileSystem filesystem;
-  private final CommandRunner cmd;
 
   @Inject
   @VisibleForTesting
-  public TarUtils(FileSystem filesystem, CommandRunner cmd) {
+  public TarUtils(FileSystem filesystem) {
     this.filesystem = filesystem;
-    this.cmd = cmd;
   }
 
   /**
-   * Expands a the {@code .tar} contents of a {@link File} into a temporary working directory, and
-   * returns a {@link File} object pointing to that working directory.
+   * Expands a the {@code .tar} (or gzipped {@code .tar.gz}) contents of a {@link File} into a
+   * temporary working directory, and returns a {@link File} object pointing to that working
+   * directory.
    */
-  public File expandTar(File tar) throws IOException, CommandException {
+  public File expandTar(File tar) throws IOException {
     File expandedDir = filesystem.getTemporaryDirectory("expanded_tar_");
     filesystem.makeDirs(expandedDir);
-    try {
-      cmd.runCommand(
-          expandedDir.getAbsolutePath(), "tar", ImmutableList.of("-xf", tar.getAbsolutePath()));
-    } catch (CommandRunner.CommandException e) {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(tar.toPath()));
+        TarExtractor extractor = new TarExtractor(expandedDir, filesystem)) {
+      in.mark(2);
+      boolean gzipped = in.read() == 0x1f && in.read() == 0x8b;
+      in.reset();
+      ByteStreams.copy(gzipped ? new GZIPInputStream(in) : in, extractor);
+    } catch (IOException e) {
       filesystem.deleteRecursively(expandedDir);
       throw e;
     }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import com.google.auto.value.AutoValue;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line-based three-way merge built on {@link UnifiedDiff}'s alignment: the changes from a base
+ * text to "yours" are applied to "mine", and where both changed the same or adjacent lines
+ * differently, both versions are kept between conflict markers in the format RCS {@code merge(1)}
+ * writes. Where lines repeat, the changes may be aligned differently than by {@code merge}, so the
+ * result need not match it byte for byte.
+ */
+public final class ThreeWayMerge {
+
+  private ThreeWayMerge() {}
+
+  /** The merged text, and how many conflicts it has. */
+  @AutoValue
+  public abstract static class Result {
+    public abstract String text();
+
+    public abstract int conflicts();
+
+    public boolean hasConflicts() {
+      return conflicts() > 0;
+    }
+  }
+
+  /**
+   * Merges the changes that lead from {@code base} to {@code yours} into {@code mine}.
+   *
+   * @param mineLabel  the label for mine's side of a conflict, usually its file name
+   * @param yoursLabel  the label for yours' side of a conflict, usually its file name
+   */
+  public static Result merge(
+      String mine, String base, String yours, String mineLabel, String yoursLabel) {
+    List<String> baseLines = UnifiedDiff.splitLines(base);
+    List<String> mineLines = UnifiedDiff.splitLines(mine);
+    List<String> yoursLines = UnifiedDiff.splitLines(yours);
+    List<Hunk> mineHunks = hunks(baseLines, mineLines);
+    List<Hunk> yoursHunks = hunks(baseLines, yoursLines);
+
+    StringBuilder out = new StringBuilder(mine.length());
+    int conflicts = 0;
+    int nextMine = 0;
+    int nextYours = 0;
+    // The offsets of mine's and yours' lines from the base's, past the hunks consumed so far.
+    int mineOffset = 0;
+    int yoursOffset = 0;
+    int mineCursor = 0;
+    while (nextMine < mineHunks.size() || nextYours < yoursHunks.size()) {
+      // Grow a block of the base from the first remaining hunk, taking in every hunk of either
+      // side that overlaps or touches it.
+      int low =
+          Math.min(
+              nextMine < mineHunks.size() ? mineHunks.get(nextMine).baseStart : Integer.MAX_VALUE,
+              nextYours < yoursHunks.size()
+                  ? yoursHunks.get(nextYours).baseStart
+                  : Integer.MAX_VALUE);
+      int high = low;
+      int firstMine = nextMine;
+      int firstYours = nextYours;
+      boolean grew = true;
+      while (grew) {
+        grew = false;
+        if (nextMine < mineHunks.size() && mineHunks.get(nextMine).baseStart <= high) {
+          high = Math.max(high, mineHunks.get(nextMine++).baseEnd);
+          grew = true;
+        }
+        if (nextYours < yoursHunks.size() && yoursHunks.get(nextYours).baseStart <= high) {
+          high = Math.max(high, yoursHunks.get(nextYours++).baseEnd);
+          grew = true;
+        }
+      }
+
+      boolean mineChanged = nextMine > firstMine;
+      int mineStart = low + mineOffset;
+      int mineEnd = high + mineOffset;
+      if (mineChanged) {
+        Hunk first = mineHunks.get(firstMine);
+        Hunk last = mineHunks.get(nextMine - 1);
+        mineStart = first.otherStart - (first.baseStart - low);
+        mineEnd = last.otherEnd + (high - last.baseEnd);
+        mineOffset = last.otherEnd - last.baseEnd;
+      }
+      boolean yoursChanged = nextYours > firstYours;
+      int yoursStart = low + yoursOffset;
+      int yoursEnd = high + yoursOffset;
+      if (yoursChanged) {
+        Hunk first = yoursHunks.get(firstYours);
+        Hunk last = yoursHunks.get(nextYours - 1);
+        yoursStart = first.otherStart - (first.baseStart - low);
+        yoursEnd = last.otherEnd + (high - last.baseEnd);
+        yoursOffset = last.otherEnd - last.baseEnd;
+      }
+
+      append(out, mineLines, mineCursor, mineStart);
+      List<String> mineBlock = mineLines.subList(mineStart, mineEnd);
+      List<String> yoursBlock = yoursLines.subList(yoursStart, yoursEnd);
+      if (!yoursChanged || mineBlock.equals(yoursBlock)) {
+        append(out, mineLines, mineStart, mineEnd);
+      } else if (!mineChanged) {
+        append(out, yoursLines, yoursStart, yoursEnd);
+      } else {
+        // The markers follow the lines as they are, even one lacking a newline.
+        out.append("<<<<<<< ").append(mineLabel).append('\n');
+        append(out, mineLines, mineStart, mineEnd);
+        out.append("=======\n");
+        append(out, yoursLines, yoursStart, yoursEnd);
+        out.append(">>>>>>> ").append(yoursLabel).append('\n');
+        conflicts++;
+      }
+      mineCursor = mineEnd;
+    }
+    append(out, mineLines, mineCursor, mineLines.size());
+    return new AutoValue_ThreeWayMerge_Result(out.toString(), conflicts);
+  }
+
+  private static void append(StringBuilder out, List<String> lines, int start, int end) {
+    for (int i = start; i < end; i++) {
+      out.append(lines.get(i));
+    }
+  }
+
+  /** A run of base lines [baseStart, baseEnd) replaced by other lines [otherStart, otherEnd). */
+  private static final class Hunk {
+    final int baseStart;
+    final int baseEnd;
+    final int otherStart;
+    final int otherEnd;
+
+    Hunk(int baseStart, int baseEnd, int otherStart, int otherEnd) {
+      this.baseStart = baseStart;
+      this.baseEnd = baseEnd;
+      this.otherStart = otherStart;
+      this.otherEnd = otherEnd;
+    }
+  }
+
+  /** Returns the changes from base to other, in order. */
+  private static List<Hunk> hunks(List<String> base, List<String> other) {
+    boolean[][] matched = UnifiedDiff.match(base, other);
+    List<Hunk> hunks = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    while (i < base.size() || j < other.size()) {
+      if (i < base.size() && j < other.size() && matched[0][i] && matched[1][j]) {
+        i++;
+        j++;
+        continue;
+      }
+      int baseStart = i;
+      int otherStart = j;
+      while (i < base.size() && !matched[0][i]) {
+        i++;
+      }
+      while (j < other.size() && !matched[1][j]) {
+        j++;
+      }
+      hunks.add(new Hunk(baseStart, i, otherStart, j));
+    }
+    return hunks;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes line diffs with Myers' O(ND) algorithm, and renders them in the unified format of
+ * {@code diff -u}.
+ *
+ * <p>The diff is found with the linear-space refinement of the algorithm, which recursively
+ * splits the problem at the middle of an optimal edit path, so that memory stays proportional to
+ * the size of the inputs however different they are. Common prefixes and suffixes are stripped
+ * first, which keeps the usual small edit to a large file cheap.
+ */
+final class UnifiedDiff {
+  /** Lines of context around each change, as with {@code diff -u}. */
+  static final int CONTEXT_LINES = 3;
+
+  private static final String NO_NEWLINE = "\\ No newline at end of file\n";
+
+  private UnifiedDiff() {}
+
+  /**
+   * Returns the unified diff of two texts, or null if they're equal.
+   *
+   * @param header1 the "---" header line (without the prefix) for the first text
+   * @param header2 the "+++" header line (without the prefix) for the second text
+   */
+  static String diff(String header1, String header2, String text1, String text2) {
+    List<String> lines1 = splitLines(text1);
+    List<String> lines2 = splitLines(text2);
+    boolean[][] matched = match(lines1, lines2);
+    if (isIdentity(matched, lines1.size(), lines2.size())) {
+      return null;
+    }
+    StringBuilder out = new StringBuilder();
+    out.append("--- ").append(header1).append('\n');
+    out.append("+++ ").append(header2).append('\n');
+    appendHunks(out, lines1, lines2, matched[0], matched[1]);
+    return out.toString();
+  }
+
+  /** Splits text into lines, each keeping its '\n' terminator (except maybe the last). */
+  @VisibleForTesting
+  static List<String> splitLines(String text) {
+    List<String> lines = new ArrayList<>();
+    int start = 0;
+    while (start < text.length()) {
+      int end = text.indexOf('\n', start);
+      end = (end < 0) ? text.length() : end + 1;
+      lines.add(text.substring(start, end));
+      start = end;
+    }
+    return lines;
+  }
+
+  /**
+   * Finds a longest common subsequence of two line lists, returning for each list which of its
+   * lines are in it. Where several are equally long, which one is found is unspecified.
+   */
+  static boolean[][] match(List<String> lines1, List<String> lines2) {
+    // Compare small ints rather than strings in the inner loops.
+    Map<String, Integer> ids = new HashMap<>();
+    int[] a = new int[lines1.size()];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = ids.computeIfAbsent(lines1.get(i), line -> ids.size());
+    }
+    int[] b = new int[lines2.size()];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = ids.computeIfAbsent(lines2.get(i), line -> ids.size());
+    }
+    boolean[][] matched = {new boolean[a.length], new boolean[b.length]};
+    new Myers(a, b, matched[0], matched[1]).lcs(0, a.length, 0, b.length);
+    return matched;
+  }
+
+  private static boolean isIdentity(boolean[][] matched, int size1, int size2) {
+    if (size1 != size2) {
+      return false;
+    }
+    for (boolean kept : matched[0]) {
+      if (!kept) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** The linear-space variant of Myers' algorithm, marking the lines of an LCS. */
+  private static final class Myers {
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] matchedA;
+    private final boolean[] matchedB;
+    private final int[] forward;
+    private final int[] backward;
+    private final int offset;
+
+    Myers(int[] a, int[] b, boolean[] matchedA, boolean[] matchedB) {
+      this.a = a;
+      this.b = b;
+      this.matchedA = matchedA;
+      this.matchedB = matchedB;
+      this.offset = (a.length + b.length + 1) / 2 + 1;
+      this.forward = new int[2 * offset + 1];
+      this.backward = new int[2 * offset + 1];
+    }
+
+    void lcs(int aLo, int aHi, int bLo, int bHi) {
+      // Strip the common prefix and suffix.
+      while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+        matchedA[aLo++] = true;
+        matchedB[bLo++] = true;
+      }
+      while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+        matchedA[--aHi] = true;
+        matchedB[--bHi] = true;
+      }
+      if (aLo == aHi || bLo == bHi) {
+        return;
+      }
+
+      // snake = {x, y, u, v}: a run of matches from (x, y) to (u, v), relative to (aLo, bLo).
+      int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+      for (int x = snake[0], y = snake[1]; x < snake[2]; x++, y++) {
+        matchedA[aLo + x] = true;
+        matchedB[bLo + y] = true;
+      }
+      lcs(aLo, aLo + snake[0], bLo, bLo + snake[1]);
+      lcs(aLo + snake[2], aHi, bLo + snake[3], bHi);
+    }
+
+    /**
+     * Finds the middle snake of an optimal edit path, by searching forwards from the start and
+     * backwards from the end until the two searches overlap.
+     */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+      int n = aHi - aLo;
+      int m = bHi - bLo;
+      int delta = n - m;
+      boolean odd = (delta & 1) != 0;
+      int max = (n + m + 1) / 2;
+      // Backward search positions are measured from the end: xr = n - x, on diagonal delta - k.
+      forward[offset + 1] = 0;
+      backward[offset + 1] = 0;
+      for (int d = 0; d <= max; d++) {
+        for (int k = -d; k <= d; k += 2) {
+          int x;
+          if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+            x = forward[offset + k + 1];
+          } else {
+            x = forward[offset + k - 1] + 1;
+          }
+          int y = x - k;
+          int startX = x;
+          int startY = y;
+          while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+            x++;
+            y++;
+          }
+          forward[offset + k] = x;
+          int kr = delta - k;
+          if (odd && kr >= -(d - 1) && kr <= d - 1 && x + backward[offset + kr] >= n) {
+            return new int[] {startX, startY, x, y};
+          }
+        }
+        for (int kr = -d; kr <= d; kr += 2) {
+          int xr;
+          if (kr == -d || (kr != d && backward[offset + kr - 1] < backward[offset + kr + 1])) {
+            xr = backward[offset + kr + 1];
+          } else {
+            xr = backward[offset + kr - 1] + 1;
+          }
+          int yr = xr - kr;
+          int endXr = xr;
+          int endYr = yr;
+          while (xr < n && yr < m && a[aHi - 1 - xr] == b[bHi - 1 - yr]) {
+            xr++;
+            yr++;
+          }
+          backward[offset + kr] = xr;
+          int k = delta - kr;
+          if (!odd && k >= -d && k <= d && xr + forward[offset + k] >= n) {
+            return new int[] {n - xr, m - yr, n - endXr, m - endYr};
+          }
+        }
+      }
+      throw new AssertionError("No middle snake found");
+    }
+  }
+
+  /** Appends the hunks for the unmatched lines, each with up to CONTEXT_LINES of context. */
+  private static void appendHunks(
+      StringBuilder out,
+      List<String> lines1,
+      List<String> lines2,
+      boolean[] matched1,
+      boolean[] matched2) {
+    // Walk both lists in step, collecting each change as [start1, end1, start2, end2].
+    List<int[]> changes = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    while (i < matched1.length || j < matched2.length) {
+      if (i < matched1.length && j < matched2.length && matched1[i] && matched2[j]) {
+        i++;
+        j++;
+        continue;
+      }
+      int start1 = i;
+      int start2 = j;
+      while (i < matched1.length && !matched1[i]) {
+        i++;
+      }
+      while (j < matched2.length && !matched2[j]) {
+        j++;
+      }
+      changes.add(new int[] {start1, i, start2, j});
+    }
+
+    int c = 0;
+    while (c < changes.size()) {
+      // Group changes whose context would overlap or touch into one hunk.
+      int last = c;
+      while (last + 1 < changes.size()
+          && changes.get(last + 1)[0] - changes.get(last)[1] <= 2 * CONTEXT_LINES) {
+        last++;
+      }
+      int[] first = changes.get(c);
+      int[] end = changes.get(last);
+      int hunkStart1 = Math.max(0, first[0] - CONTEXT_LINES);
+      int hunkStart2 = first[2] - (first[0] - hunkStart1);
+      int hunkEnd1 = Math.min(lines1.size(), end[1] + CONTEXT_LINES);
+      int hunkEnd2 = end[3] + (hunkEnd1 - end[1]);
+
+      out.append("@@ -")
+          .append(range(hunkStart1, hunkEnd1))
+          .append(" +")
+          .append(range(hunkStart2, hunkEnd2))
+          .append(" @@\n");
+      int line1 = hunkStart1;
+      int line2 = hunkStart2;
+      for (int[] change : changes.subList(c, last + 1)) {
+        for (; line1 < change[0]; line1++, line2++) {
+          appendLine(out, ' ', lines1.get(line1));
+        }
+        for (; line1 < change[1]; line1++) {
+          appendLine(out, '-', lines1.get(line1));
+        }
+        for (; line2 < change[3]; line2++) {
+          appendLine(out, '+', lines2.get(line2));
+        }
+      }
+      for (; line1 < hunkEnd1; line1++) {
+        appendLine(out, ' ', lines1.get(line1));
+      }
+      c = last + 1;
+    }
+  }
+
+  /** Formats a hunk's line range as diff does: "start,count", "start" if 1, "start-1,0" if 0. */
+  private static String range(int start, int end) {
+    int count = end - start;
+    if (count == 1) {
+      return String.valueOf(start + 1);
+    }
+    return (count == 0 ? start : start + 1) + "," + count;
+  }
+
+  private static void appendLine(StringBuilder out, char prefix, String line) {
+    out.append(prefix).append(line);
+    if (!line.endsWith("\n")) {
+      out.append('\n').append(NO_NEWLINE);
+    }
+  }
+
+  /** Returns the lines of an LCS, for tests. */
+  @VisibleForTesting
+  static List<String> commonLines(List<String> lines1, List<String> lines2) {
+    boolean[] matched1 = match(lines1, lines2)[0];
+    ImmutableList.Builder<String> result = ImmutableList.builder();
+    for (int i = 0; i < matched1.length; i++) {
+      if (matched1[i]) {
+        result.add(lines1.get(i));
+      }
+    }
+    return result.build();
+  }
+}
@@ -27,7 +27,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
-import com.google.devtools.moe.client.Utils;
 import com.google.devtools.moe.client.codebase.Codebase;
 import com.google.devtools.moe.client.config.EditorConfig;
 import com.google.devtools.moe.client.InvalidProject;
@@ -118,7 +117,8 @@ public class RenamingEditor implements Editor, InverseEditor {
       String relativePath = srcFolder.toURI().relativize(srcFile.toURI()).getPath();
       File renamedFile = new File(destFolder, renameFile(relativePath));
       filesystem.makeDirsForFile(renamedFile);
-      filesystem.copyFile(srcFile, renamedFile);
+      // Renaming leaves contents alone, so the renamed file can share the original's storage.
+      filesystem.shareFile(srcFile, renamedFile);
     }
   }
 
@@ -177,11 +177,9 @@ public class RenamingEditor implements Editor, InverseEditor {
   }
 
   private void inverseRenameAndCopy(Codebase input, File destination, Codebase reference) {
-    Set<String> renamedFilenames =
-        Utils.makeFilenamesRelative(filesystem.findFiles(input.root()), input.root());
+    Set<String> renamedFilenames = input.files(filesystem).paths();
     Map<String, String> renamedToReferenceMap =
-        makeRenamedToReferenceMap(
-            Utils.makeFilenamesRelative(filesystem.findFiles(reference.root()), reference.root()));
+        makeRenamedToReferenceMap(reference.files(filesystem).paths());
 
     for (String renamedFilename : renamedFilenames) {
       String inverseRenamedFilename = inverseRename(renamedFilename, renamedToReferenceMap);
@@ -194,7 +192,7 @@ public class RenamingEditor implements Editor, InverseEditor {
     File destFile = new File(destRoot, destFilename);
     try {
       filesystem.makeDirsForFile(destFile);
-      filesystem.copyFile(inputFile, destFile);
+      filesystem.shareFile(inputFile, destFile);
     } catch (IOException e) {
       throw new MoeProblem(e, "%s", e.getMessage());
     }
@@ -108,8 +108,6 @@ public class ScrubbingEditor implements Editor, InverseEditor {
       expandedDir = tarUtils.expandTar(outputTar);
     } catch (IOException e) {
       throw new MoeProblem(e, "Failed to run scrubber on copied content of input codebase");
-    } catch (CommandRunner.CommandException e) {
-      throw new MoeProblem("%s", e.getMessage());
     }
     return Codebase.create(expandedDir, input.projectSpace(), input.expression());
   }
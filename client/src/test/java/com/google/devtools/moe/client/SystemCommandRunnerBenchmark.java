@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the output capture of {@link SystemCommandRunner} against the byte-at-a-time polling
+ * capture it replaced, on processes producing large amounts of output on stdout and stderr.
+ *
+ * <p>Run with {@code bazel run //client/src/test/java/com/google/devtools/moe/client:
+ * SystemCommandRunnerBenchmark -- [bytes...]}. Each size defaults to a series of outputs between
+ * 64KB and 16MB.
+ */
+public final class SystemCommandRunnerBenchmark {
+  private static final int WARMUP_ITERATIONS = 2;
+  private static final int MEASURED_ITERATIONS = 5;
+  private static final String SCRIPT =
+      "print STDOUT ('*' x %1$d); print STDERR ('*' x (%1$d / 16));";
+
+  private SystemCommandRunnerBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    List<Integer> sizes = Lists.newArrayList();
+    for (String arg : args) {
+      sizes.add(Integer.parseInt(arg));
+    }
+    if (sizes.isEmpty()) {
+      sizes.addAll(ImmutableList.of(64 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024));
+    }
+
+    System.out.printf("%12s %16s %16s %8s%n", "bytes", "polling (ms)", "pumped (ms)", "speedup");
+    for (int size : sizes) {
+      List<String> command = ImmutableList.of("perl", "-e", String.format(SCRIPT, size));
+      double polling = measure(command, size, Capture.POLLING);
+      double pumped = measure(command, size, Capture.PUMPED);
+      System.out.printf("%12d %16.1f %16.1f %7.1fx%n", size, polling, pumped, polling / pumped);
+    }
+  }
+
+  private static double measure(List<String> command, int expectedSize, Capture capture)
+      throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      capture.run(command, expectedSize);
+    }
+    long total = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      long start = System.nanoTime();
+      capture.run(command, expectedSize);
+      total += System.nanoTime() - start;
+    }
+    return TimeUnit.NANOSECONDS.toMicros(total) / 1000.0 / MEASURED_ITERATIONS;
+  }
+
+  private enum Capture {
+    /** The previous implementation: poll available() with back-off, boxing every byte. */
+    POLLING {
+      @Override
+      String capture(List<String> command) throws Exception {
+        Process p = new ProcessBuilder(command).start();
+        p.getOutputStream().close();
+        PollingSink stdoutSink = new PollingSink(p.getInputStream());
+        PollingSink stderrSink = new PollingSink(p.getErrorStream());
+        int timeToSleep = 1;
+        while (true) {
+          while (stdoutSink.isAvailable()) {
+            if (stdoutSink.consumeByte()) {
+              timeToSleep = 1;
+            } else {
+              stdoutSink.closeStream();
+            }
+          }
+          while (stderrSink.isAvailable()) {
+            if (stderrSink.consumeByte()) {
+              timeToSleep = 1;
+            } else {
+              stderrSink.closeStream();
+            }
+          }
+          try {
+            p.exitValue();
+            break;
+          } catch (IllegalThreadStateException expected) {
+          }
+          timeToSleep = Math.min(timeToSleep + 1, 500);
+          Thread.sleep(timeToSleep);
+        }
+        if (stdoutSink.isAvailable()) {
+          while (stdoutSink.consumeByte()) {}
+        }
+        if (stderrSink.isAvailable()) {
+          while (stderrSink.consumeByte()) {}
+        }
+        stderrSink.getData();
+        return stdoutSink.getData();
+      }
+    },
+
+    /** The current implementation. */
+    PUMPED {
+      private final SystemCommandRunner runner = new SystemCommandRunner();
+
+      @Override
+      String capture(List<String> command) throws Exception {
+        return runner.runCommand("", command.get(0), command.subList(1, command.size()));
+      }
+    };
+
+    abstract String capture(List<String> command) throws Exception;
+
+    void run(List<String> command, int expectedSize) throws Exception {
+      String stdout = capture(command);
+      if (stdout.length() != expectedSize) {
+        throw new AssertionError(
+            String.format(
+                "%s captured %d bytes, expected %d", this, stdout.length(), expectedSize));
+      }
+    }
+  }
+
+  private static class PollingSink {
+    private final List<Byte> bytes = Lists.newArrayList();
+    private InputStream stream;
+
+    PollingSink(InputStream stream) {
+      this.stream = stream;
+    }
+
+    boolean isAvailable() throws IOException {
+      return stream != null && stream.available() > 0;
+    }
+
+    void closeStream() {
+      stream = null;
+    }
+
+    boolean consumeByte() throws IOException {
+      int data = stream.read();
+      if (data == -1) {
+        return false;
+      }
+      bytes.add((byte) data);
+      return true;
+    }
+
+    String getData() {
+      byte[] byteArray = new byte[bytes.size()];
+      int i = 0;
+      for (Byte b : bytes) {
+        byteArray[i++] = b;
+      }
+      return new String(byteArray, UTF_8);
+    }
+  }
+}
@@ -17,7 +17,18 @@
 package com.google.devtools.moe.client;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.CommandRunner.LineSplittingOutputStream;
+import com.google.devtools.moe.client.CommandRunner.SpooledOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import junit.framework.TestCase;
 
 public class SystemCommandRunnerTest extends TestCase {
@@ -34,6 +45,15 @@ public class SystemCommandRunnerTest extends TestCase {
     assertEquals(0, data.length());
   }
 
+  public void testMultiByteCharactersSurviveBufferBoundaries() throws Exception {
+    // 100k two-byte characters, so reads of any even or odd size will split some of them.
+    String data =
+        c.runCommand(
+            "", "perl", ImmutableList.of("-e", "binmode STDOUT; print (\"\\xc3\\xa9\" x 100000)"));
+    assertEquals(100000, data.length());
+    assertEquals('\u00e9', data.charAt(99999));
+  }
+
   /**
    * Tests that a process with a large stdout and stderr doesn't produce stream contention or
    * deadlock behavior.
@@ -57,4 +77,89 @@ public class SystemCommandRunnerTest extends TestCase {
       assertEquals("stderr length", bytesOutput, expected.stderr.length());
     }
   }
+
+  public void testStreamingDeliversStdoutIncrementally() throws Exception {
+    // The command waits (for up to 10s) for the sink to see its first line before it goes on.
+    File seen = new File(Files.createTempDir(), "seen");
+    String script =
+        "$| = 1; print \"first\\n\";"
+            + " for (1 .. 100) { last if -e $ARGV[0]; select(undef, undef, undef, 0.1); }"
+            + " print -e $ARGV[0] ? \"seen\\n\" : \"not seen\\n\";";
+    ByteArrayOutputStream out =
+        new ByteArrayOutputStream() {
+          @Override
+          public synchronized void write(byte[] bytes, int offset, int length) {
+            super.write(bytes, offset, length);
+            try {
+              seen.createNewFile();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        };
+    c.runCommandStreaming("", "perl", ImmutableList.of("-e", script, seen.getPath()), out);
+    assertEquals("first\nseen\n", out.toString("UTF-8"));
+  }
+
+  public void testStreamingLongStdout() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    c.runCommandStreaming("", "perl", ImmutableList.of("-e", "print (\"*\" x 200000)"), out);
+    assertEquals(200000, out.size());
+  }
+
+  public void testStreamingFailureReportsStderrAndStatus() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      c.runCommandStreaming(
+          "", "perl", ImmutableList.of("-e", "print 'out'; print STDERR 'err'; exit 3"), out);
+      fail("Non-zero return code didn't raise CommandException.");
+    } catch (CommandException expected) {
+      assertEquals(3, expected.returnStatus);
+      assertEquals("", expected.stdout);
+      assertEquals("err", expected.stderr);
+    }
+    assertEquals("out", out.toString("UTF-8"));
+  }
+
+  public void testLinesIncludeUnterminatedLastLine() throws Exception {
+    List<String> lines = new ArrayList<>();
+    c.runCommandForLines(
+        "", "perl", ImmutableList.of("-e", "print \"one\\ntwo\\n\\nthree\""), lines::add);
+    assertEquals(ImmutableList.of("one", "two", "", "three"), lines);
+  }
+
+  public void testLinesSplitOnOtherTerminator() throws Exception {
+    List<String> records = new ArrayList<>();
+    try (LineSplittingOutputStream splitter = new LineSplittingOutputStream('\0', records::add)) {
+      c.runCommandStreaming(
+          "", "perl", ImmutableList.of("-e", "print \"one\\nline\\0two\\0\""), splitter);
+    }
+    assertEquals(ImmutableList.of("one\nline", "two"), records);
+  }
+
+  public void testSpooledOutputSpillsPastThreshold() throws Exception {
+    try (SpooledOutput output =
+        c.runCommandSpooled("", "perl", ImmutableList.of("-e", "print (\"ab\" x 50000)"), 1024)) {
+      assertEquals(100000, output.size());
+      assertTrue(isFileBacked(output));
+      String data = output.asCharSource().read();
+      assertEquals(100000, data.length());
+      assertTrue(data.startsWith("abab"));
+    }
+  }
+
+  public void testSpooledOutputUnderThresholdStaysInMemory() throws Exception {
+    try (SpooledOutput output =
+        c.runCommandSpooled("", "perl", ImmutableList.of("-e", "print (\"ab\" x 500)"), 1024)) {
+      assertEquals(1000, output.size());
+      assertFalse(isFileBacked(output));
+    }
+  }
+
+  /** Returns whether spooled output is read back from a file rather than from memory. */
+  private static boolean isFileBacked(SpooledOutput output) throws IOException {
+    try (InputStream in = output.asByteSource().openStream()) {
+      return in instanceof FileInputStream;
+    }
+  }
 }
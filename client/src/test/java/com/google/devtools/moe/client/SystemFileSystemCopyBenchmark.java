@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways {@link SystemFileSystem} can duplicate a codebase: the stream copy it used to
+ * make, its current kernel-side copy, and sharing files as hard links. For each it reports the
+ * time taken and how many bytes of file contents were newly written.
+ *
+ * <p>Run with {@code bazel run //client/src/test/java/com/google/devtools/moe/client:
+ * SystemFileSystemCopyBenchmark -- [files [bytes per file]]}. The tree defaults to 4000 files of
+ * 16KB each, spread over 100 directories.
+ */
+public final class SystemFileSystemCopyBenchmark {
+  private static final int WARMUP_ITERATIONS = 1;
+  private static final int MEASURED_ITERATIONS = 3;
+
+  private SystemFileSystemCopyBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    int files = (args.length > 0) ? Integer.parseInt(args[0]) : 4000;
+    int bytesPerFile = (args.length > 1) ? Integer.parseInt(args[1]) : 16 * 1024;
+
+    SystemFileSystem filesystem = new SystemFileSystem();
+    File tempDir = Files.createTempDir();
+    try {
+      File src = new File(tempDir, "src");
+      createTree(src, files, bytesPerFile);
+      System.out.printf("%d files, %d bytes in all%n%n", files, (long) files * bytesPerFile);
+      System.out.printf("%-10s %12s %16s%n", "mode", "time (ms)", "bytes written");
+      for (Mode mode : Mode.values()) {
+        File dest = new File(tempDir, mode.name().toLowerCase());
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+          mode.copy(filesystem, src, dest);
+          filesystem.deleteRecursively(dest);
+        }
+        long total = 0;
+        long written = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+          long start = System.nanoTime();
+          mode.copy(filesystem, src, dest);
+          total += System.nanoTime() - start;
+          written = bytesWritten(filesystem, dest);
+          filesystem.deleteRecursively(dest);
+        }
+        System.out.printf(
+            "%-10s %12.1f %16d%n",
+            mode.name().toLowerCase(),
+            TimeUnit.NANOSECONDS.toMicros(total) / 1000.0 / MEASURED_ITERATIONS,
+            written);
+      }
+    } finally {
+      filesystem.deleteRecursively(tempDir);
+    }
+  }
+
+  private static void createTree(File root, int files, int bytesPerFile) throws IOException {
+    Random random = new Random(0);
+    byte[] contents = new byte[bytesPerFile];
+    for (int i = 0; i < files; i++) {
+      random.nextBytes(contents);
+      File file = new File(root, "dir" + (i % 100) + "/file" + i);
+      Files.createParentDirs(file);
+      Files.write(contents, file);
+    }
+  }
+
+  /** Sums the sizes of the files under root which don't share their storage with another. */
+  private static long bytesWritten(SystemFileSystem filesystem, File root) throws IOException {
+    long written = 0;
+    for (File file : filesystem.findFiles(root)) {
+      Object links =
+          java.nio.file.Files.getAttribute(file.toPath(), "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+      if ((Integer) links == 1) {
+        written += file.length();
+      }
+    }
+    return written;
+  }
+
+  private enum Mode {
+    /** The previous implementation of copyFile: Guava's stream copy, per file. */
+    STREAM {
+      @Override
+      void copy(SystemFileSystem filesystem, File src, File dest) throws IOException {
+        for (File file : filesystem.findFiles(src)) {
+          File copy = new File(dest, src.toPath().relativize(file.toPath()).toString());
+          filesystem.makeDirsForFile(copy);
+          Files.copy(file, copy);
+          copy.setExecutable(file.canExecute(), false);
+        }
+      }
+    },
+
+    /** {@link SystemFileSystem#copyDirectory}. */
+    COPY {
+      @Override
+      void copy(SystemFileSystem filesystem, File src, File dest) throws IOException {
+        filesystem.copyDirectory(src, dest);
+      }
+    },
+
+    /** {@link SystemFileSystem#shareDirectory}. */
+    SHARE {
+      @Override
+      void copy(SystemFileSystem filesystem, File src, File dest) throws IOException {
+        filesystem.shareDirectory(src, dest);
+      }
+    };
+
+    abstract void copy(SystemFileSystem filesystem, File src, File dest) throws IOException;
+  }
+}
@@ -22,6 +22,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
 import com.google.devtools.moe.client.Ui.Task;
 import com.google.devtools.moe.client.testing.TestingModule;
@@ -58,6 +59,21 @@ public class SystemFileSystemTest {
         .containsExactly("file", "bar/baz");
   }
 
+  @Test
+  public void testIndexFiles() throws Exception {
+    Files.write("Contents!", touchAndCreate(tempDir, "file"), UTF_8);
+    fs.setExecutable(touchAndCreate(tempDir, "bar/baz"));
+    new File(tempDir, "empty").mkdir();
+    java.nio.file.Files.createSymbolicLink(
+        new File(tempDir, "bar/dangling").toPath(), new File(tempDir, "missing").toPath());
+
+    FileIndex index = fs.indexFiles(tempDir);
+    assertThat(index.paths()).containsExactly("bar/baz", "file").inOrder();
+    assertThat(index.get("file")).isEqualTo(FileIndex.Attributes.create(9, false));
+    assertThat(index.get("bar/baz")).isEqualTo(FileIndex.Attributes.create(0, true));
+    assertThat(fs.indexFiles(new File(tempDir, "missing")).paths()).isEmpty();
+  }
+
   @Test
   public void testFindFilesWithGlob() throws Exception {
     touchAndCreate(tempDir, "foo");
@@ -230,6 +246,66 @@ public class SystemFileSystemTest {
     assertThat(Files.equal(file, copy)).isTrue();
   }
 
+  @Test
+  public void testCopyKeepsExecutable() throws Exception {
+    File file = touchAndCreate(tempDir, "file");
+    File copy = new File(tempDir, "copy");
+    Files.write("Contents!", file, UTF_8);
+    fs.setExecutable(file);
+    fs.copyFile(file, copy);
+    assertThat(Files.toString(copy, UTF_8)).isEqualTo("Contents!");
+    assertThat(copy.canExecute()).isTrue();
+  }
+
+  @Test
+  public void testCopyOntoItself() throws Exception {
+    File file = touchAndCreate(tempDir, "file");
+    Files.write("Contents!", file, UTF_8);
+    fs.copyFile(file, file);
+    assertThat(Files.toString(file, UTF_8)).isEqualTo("Contents!");
+
+    // A file sharing storage with the source gets storage of its own.
+    File shared = new File(tempDir, "shared");
+    fs.shareFile(file, shared);
+    fs.copyFile(file, shared);
+    Files.asCharSink(shared, UTF_8, FileWriteMode.APPEND).write("More");
+    assertThat(Files.toString(shared, UTF_8)).isEqualTo("Contents!More");
+    assertThat(Files.toString(file, UTF_8)).isEqualTo("Contents!");
+  }
+
+  @Test
+  public void testShareFile() throws Exception {
+    File file = touchAndCreate(tempDir, "file");
+    File shared = new File(tempDir, "shared");
+    Files.write("Contents!", file, UTF_8);
+    fs.setExecutable(file);
+    fs.shareFile(file, shared);
+    assertThat(Files.toString(shared, UTF_8)).isEqualTo("Contents!");
+    assertThat(shared.canExecute()).isTrue();
+
+    // Changes through the file system leave the file it was shared with alone.
+    fs.setNonExecutable(shared);
+    assertThat(file.canExecute()).isTrue();
+    fs.write("New contents", shared);
+    assertThat(Files.toString(shared, UTF_8)).isEqualTo("New contents");
+    assertThat(Files.toString(file, UTF_8)).isEqualTo("Contents!");
+
+    fs.shareFile(file, shared);
+    fs.copyFile(touchAndCreate(tempDir, "other"), shared);
+    assertThat(Files.toString(shared, UTF_8)).isEmpty();
+    assertThat(Files.toString(file, UTF_8)).isEqualTo("Contents!");
+  }
+
+  @Test
+  public void testShareDirectory() throws Exception {
+    File src = new File(tempDir, "src");
+    File dest = new File(tempDir, "dest");
+    File file = touchAndCreate(src, "foo/bar");
+    Files.write("Contents!", file, UTF_8);
+    fs.shareDirectory(src, dest);
+    assertThat(Files.toString(new File(dest, "foo/bar"), UTF_8)).isEqualTo("Contents!");
+  }
+
   @Test
   public void testWrite() throws Exception {
     File file = touchAndCreate(tempDir, "file");
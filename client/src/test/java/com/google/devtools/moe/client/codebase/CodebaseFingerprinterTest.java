@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.codebase;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.SystemFileSystem;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
+import com.google.devtools.moe.client.testing.InMemoryFileSystem;
+import java.io.File;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link CodebaseFingerprinter} and {@link Fingerprint}
+ */
+public class CodebaseFingerprinterTest extends TestCase {
+  private final SystemFileSystem filesystem = new SystemFileSystem();
+  private final CodebaseFingerprinter fingerprinter = new CodebaseFingerprinter(filesystem);
+  private File tempDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    tempDir = Files.createTempDir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    filesystem.deleteRecursively(tempDir);
+  }
+
+  public void testSameTreesHaveSameFingerprint() throws Exception {
+    write("1/a/foo", "foo");
+    write("1/bar", "bar");
+    write("2/a/foo", "foo");
+    write("2/bar", "bar");
+    // Directories without files don't count, as FileSystem.findFiles doesn't list them.
+    new File(tempDir, "2/empty/empty").mkdirs();
+
+    assertEquals(fingerprint("1"), fingerprint("2"));
+  }
+
+  public void testDifferingFiles() throws Exception {
+    write("1/same/foo", "foo");
+    write("1/changed/foo", "foo");
+    write("1/changed/bar", "bar");
+    write("1/removed", "removed");
+    write("1/executable", "x");
+    write("2/same/foo", "foo");
+    write("2/changed/foo", "foo");
+    write("2/changed/bar", "BAR");
+    write("2/added/baz", "baz");
+    write("2/executable", "x");
+    filesystem.setExecutable(new File(tempDir, "2/executable"));
+
+    Fingerprint fingerprint1 = fingerprint("1");
+    Fingerprint fingerprint2 = fingerprint("2");
+
+    assertThat(fingerprint1).isNotEqualTo(fingerprint2);
+    assertThat(Fingerprint.differingFiles(fingerprint1, fingerprint2))
+        .containsExactly("added/baz", "changed/bar", "executable", "removed")
+        .inOrder();
+    assertEquals(fingerprint1.find("same"), fingerprint2.find("same"));
+    assertThat(fingerprint1.find("changed/bar").isDirectory()).isFalse();
+    assertNull(fingerprint1.find("changed/bar/nope"));
+  }
+
+  public void testFileReplacedByDirectory() throws Exception {
+    write("1/foo", "foo");
+    write("2/foo/bar", "foo");
+
+    assertThat(Fingerprint.differingFiles(fingerprint("1"), fingerprint("2")))
+        .containsExactly("foo", "foo/bar");
+  }
+
+  public void testHashesCachedBySizeAndModificationTime() throws Exception {
+    File foo = write("1/foo", "foo");
+    long modified = foo.lastModified();
+    Fingerprint before = fingerprint("1");
+
+    // Same size and modification time: the remembered hash is reused.
+    Files.asCharSink(foo, UTF_8).write("bar");
+    foo.setLastModified(modified);
+    assertEquals(before, fingerprint("1"));
+
+    foo.setLastModified(modified - 10_000);
+    assertThat(fingerprint("1")).isNotEqualTo(before);
+  }
+
+  public void testCachedHashesAreBounded() throws Exception {
+    CodebaseFingerprinter oneHash = new CodebaseFingerprinter(filesystem, 1);
+    File foo = write("1/foo", "foo");
+    write("2/bar", "bar");
+    long modified = foo.lastModified();
+    Fingerprint before = oneHash.fingerprint(codebase("1"));
+    oneHash.fingerprint(codebase("2"));
+
+    // The hash of foo was evicted for bar's, so foo is hashed again.
+    Files.asCharSink(foo, UTF_8).write("baz");
+    foo.setLastModified(modified);
+    assertThat(oneHash.fingerprint(codebase("1"))).isNotEqualTo(before);
+  }
+
+  public void testNotLocal() throws Exception {
+    write("1/foo", "foo");
+    CodebaseFingerprinter inMemory =
+        new CodebaseFingerprinter(new InMemoryFileSystem(new Lifetimes(new Ui(System.err))));
+    assertNull(inMemory.fingerprint(codebase("1")));
+  }
+
+  private File write(String path, String contents) throws Exception {
+    File file = new File(tempDir, path);
+    Files.createParentDirs(file);
+    Files.asCharSink(file, UTF_8).write(contents);
+    return file;
+  }
+
+  private Codebase codebase(String path) {
+    return Codebase.create(new File(tempDir, path), "public", new RepositoryExpression(path));
+  }
+
+  private Fingerprint fingerprint(String path) {
+    return fingerprinter.fingerprint(codebase(path));
+  }
+}
@@ -17,25 +17,32 @@
 package com.google.devtools.moe.client.codebase;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.SystemFileSystem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.codebase.CodebaseMerger.MergeResult;
+import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.tools.FileDifference;
 import com.google.devtools.moe.client.tools.FileDifference.ConcreteFileDiffer;
 import com.google.devtools.moe.client.tools.FileDifference.FileDiffer;
+import com.google.devtools.moe.client.tools.FileMerger.InProcessFileMerger;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
@@ -322,8 +329,8 @@ public class CodebaseMergerTest {
     when(fileSystem.exists(origFile)).thenReturn(true);
     when(fileSystem.exists(destFile)).thenReturn(true);
     when(fileSystem.exists(modFile)).thenReturn(true);
-    when(fileSystem.findFiles(new File("dest"))).thenReturn(ImmutableSet.of(destFile));
-    when(fileSystem.findFiles(new File("mod"))).thenReturn(ImmutableSet.of(modFile));
+    when(dest.files(fileSystem)).thenReturn(FileIndex.of("foo"));
+    when(mod.files(fileSystem)).thenReturn(FileIndex.of("foo"));
 
     File mergedFile = new File("merged_codebase_7/foo");
 
@@ -349,4 +356,105 @@ public class CodebaseMergerTest {
         .message("Merged codebase generated at: %s", mergedCodebaseLocation.getAbsolutePath());
     verify(ui).message("%d files merged successfully. No merge conflicts.", 1);
   }
+
+  /**
+   * Test merge(...) when the file is unchanged between orig and mod, which fingerprints show
+   * without diffing or merging: the dest version is kept.
+   */
+  @Test
+  public void testMergeUnmodifiedFile() throws Exception {
+    File tempDir = Files.createTempDir();
+    try {
+      File origRoot = new File(tempDir, "orig");
+      File modRoot = new File(tempDir, "mod");
+      for (File root : ImmutableList.of(origRoot, modRoot)) {
+        Files.createParentDirs(new File(root, "foo"));
+        Files.asCharSink(new File(root, "foo"), UTF_8).write("unchanged");
+      }
+      when(fileSystem.isLocal()).thenReturn(true);
+      when(orig.root()).thenReturn(origRoot);
+      when(mod.root()).thenReturn(modRoot);
+      when(dest.root()).thenReturn(new File("dest"));
+      when(fileSystem.exists(destFile)).thenReturn(true);
+      when(dest.files(fileSystem)).thenReturn(FileIndex.of("foo"));
+      when(mod.files(fileSystem)).thenReturn(FileIndex.of("foo"));
+
+      File mergedFile = new File("merged_codebase_7/foo");
+      CodebaseMerger merger = new CodebaseMerger(ui, fileSystem, cmd, null);
+      MergeResult result = merger.merge(orig, mod, dest);
+
+      assertThat(result.mergedFiles()).containsExactly(mergedFile.getAbsolutePath());
+      assertThat(result.failedFiles()).isEmpty();
+      verify(fileSystem).copyFile(destFile, mergedFile);
+      verifyZeroInteractions(cmd);
+    } finally {
+      new SystemFileSystem().deleteRecursively(tempDir);
+    }
+  }
+
+  /**
+   * Test merge(...) over several threads: every file is merged, and the results are listed in
+   * filename order.
+   */
+  @Test
+  public void testMergeInParallel() throws Exception {
+    File tempDir = Files.createTempDir();
+    try {
+      SystemFileSystem realFileSystem = Mockito.spy(new SystemFileSystem());
+      File mergedRoot = new File(tempDir, "merged");
+      Mockito.doReturn(mergedRoot).when(realFileSystem).getTemporaryDirectory("merged_codebase_");
+
+      File origRoot = new File(tempDir, "orig");
+      File modRoot = new File(tempDir, "mod");
+      File destRoot = new File(tempDir, "dest");
+      List<String> expectedMerged = new ArrayList<>();
+      List<String> expectedFailed = new ArrayList<>();
+      for (int i = 10; i < 50; i++) {
+        String filename = "dir" + (i % 3) + "/file" + i;
+        write(new File(origRoot, filename), "a\nb\nc\nd\n");
+        write(new File(modRoot, filename), "a\nB\nc\nd\n");
+        String mergedPath = new File(mergedRoot, filename).getAbsolutePath();
+        if (i % 4 == 0) {
+          write(new File(destRoot, filename), "a\nb\nc\nD\n");
+          expectedMerged.add(mergedPath);
+        } else if (i % 4 == 1) {
+          write(new File(destRoot, filename), "a\nb2\nc\nd\n");
+          expectedFailed.add(mergedPath);
+        } else {
+          write(new File(destRoot, filename), "a\nb\nc\nd\n");
+          expectedMerged.add(mergedPath);
+        }
+      }
+
+      CodebaseMerger merger =
+          new CodebaseMerger(
+              ui,
+              realFileSystem,
+              new ConcreteFileDiffer(cmd, realFileSystem),
+              new InProcessFileMerger(),
+              new CodebaseFingerprinter(realFileSystem),
+              4);
+      MergeResult result =
+          merger.merge(codebase(origRoot), codebase(modRoot), codebase(destRoot));
+
+      expectedMerged.sort(null);
+      expectedFailed.sort(null);
+      assertThat(result.mergedFiles()).containsExactlyElementsIn(expectedMerged).inOrder();
+      assertThat(result.failedFiles()).containsExactlyElementsIn(expectedFailed).inOrder();
+      assertThat(Files.asCharSource(new File(mergedRoot, "dir0/file12"), UTF_8).read())
+          .isEqualTo("a\nB\nc\nD\n");
+      verifyZeroInteractions(cmd);
+    } finally {
+      new SystemFileSystem().deleteRecursively(tempDir);
+    }
+  }
+
+  private static Codebase codebase(File root) {
+    return Codebase.create(root, "public", new RepositoryExpression(root.getName()));
+  }
+
+  private static void write(File file, String contents) throws Exception {
+    Files.createParentDirs(file);
+    Files.asCharSink(file, UTF_8).write(contents);
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.codebase;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.FileSystem.Lifetime;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.SystemFileSystem;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.Ui.Task;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import java.io.File;
+import java.nio.file.Paths;
+import junit.framework.TestCase;
+
+public class CodebaseSnapshotCacheTest extends TestCase {
+  private final Ui ui = new Ui(System.err);
+  private final Lifetimes lifetimes = new Lifetimes(ui);
+  private File tempDir;
+  private int tempDirs;
+  private final FileSystem filesystem =
+      new SystemFileSystem() {
+        @Override
+        public File getTemporaryDirectory(String prefix, Lifetime lifetime) {
+          return new File(tempDir, prefix + tempDirs++);
+        }
+      };
+  private Task task;
+  private File directory;
+  private File codebase;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    tempDir = Files.createTempDir();
+    directory = new File(tempDir, "cache");
+    codebase = new File(tempDir, "codebase");
+    write(codebase, "README", "readme\n");
+    write(codebase, "src/Foo.java", "class Foo {}\n");
+    task = ui.newTask("test", "Testing");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    task.close();
+    MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    super.tearDown();
+  }
+
+  private static void write(File root, String path, String content) throws Exception {
+    File file = new File(root, path);
+    file.getParentFile().mkdirs();
+    Files.asCharSink(file, UTF_8).write(content);
+  }
+
+  private static String read(File root, String path) throws Exception {
+    return Files.asCharSource(new File(root, path), UTF_8).read();
+  }
+
+  private CodebaseSnapshotCache newCache(long maxBytes) {
+    return new CodebaseSnapshotCache(filesystem, lifetimes, directory, maxBytes);
+  }
+
+  public void testMissThenHit() throws Exception {
+    CodebaseSnapshotCache cache = newCache(CodebaseSnapshotCache.DEFAULT_MAX_BYTES);
+    assertNull(cache.get("key", "snapshot_"));
+
+    cache.put("key", codebase);
+    File snapshot = newCache(CodebaseSnapshotCache.DEFAULT_MAX_BYTES).get("key", "snapshot_");
+
+    assertThat(snapshot).isNotEqualTo(codebase);
+    assertEquals("readme\n", read(snapshot, "README"));
+    assertEquals("class Foo {}\n", read(snapshot, "src/Foo.java"));
+  }
+
+  public void testChangesThroughFileSystemDoNotReachSnapshot() throws Exception {
+    CodebaseSnapshotCache cache = newCache(CodebaseSnapshotCache.DEFAULT_MAX_BYTES);
+    cache.put("key", codebase);
+
+    File first = cache.get("key", "snapshot_");
+    filesystem.write("changed\n", new File(first, "README"));
+    filesystem.write("changed too\n", new File(codebase, "src/Foo.java"));
+
+    File second = cache.get("key", "snapshot_");
+    assertEquals("readme\n", read(second, "README"));
+    assertEquals("class Foo {}\n", read(second, "src/Foo.java"));
+  }
+
+  public void testDiscardsSnapshotModifiedInPlace() throws Exception {
+    CodebaseSnapshotCache cache = newCache(CodebaseSnapshotCache.DEFAULT_MAX_BYTES);
+    cache.put("key", codebase);
+
+    // Bypasses the FileSystem, so changes the snapshot's storage too.
+    Files.asCharSink(new File(codebase, "README"), UTF_8).write("modified in place\n");
+
+    assertNull(cache.get("key", "snapshot_"));
+    assertFalse(new File(directory, "key").exists());
+  }
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    // Room for one codebase (20 bytes) but not two.
+    CodebaseSnapshotCache cache = newCache(30);
+    cache.put("old", codebase);
+    new File(directory, "old.manifest").setLastModified(System.currentTimeMillis() - 60_000);
+
+    cache.put("new", codebase);
+
+    assertNull(cache.get("old", "snapshot_"));
+    assertNotNull(cache.get("new", "snapshot_"));
+  }
+
+  public void testDoesNotCacheOversizedOrSymlinkedCodebases() throws Exception {
+    CodebaseSnapshotCache cache = newCache(10);
+    cache.put("big", codebase);
+    assertNull(cache.get("big", "snapshot_"));
+
+    File linked = new File(tempDir, "linked");
+    write(linked, "README", "readme\n");
+    java.nio.file.Files.createSymbolicLink(
+        linked.toPath().resolve("link"), Paths.get("/etc/passwd"));
+    cache = newCache(CodebaseSnapshotCache.DEFAULT_MAX_BYTES);
+    cache.put("linked", linked);
+    assertNull(cache.get("linked", "snapshot_"));
+  }
+
+  public void testDisabled() throws Exception {
+    assertFalse(CodebaseSnapshotCache.DISABLED.isEnabled());
+    CodebaseSnapshotCache.DISABLED.put("key", codebase);
+    assertNull(CodebaseSnapshotCache.DISABLED.get("key", "snapshot_"));
+  }
+
+  public void testKeyDependsOnContentsAndExportConfig() {
+    RepositoryConfig config = config(ImmutableList.of("\\.svn"));
+    String key = CodebaseSnapshotCache.key(config, "tree1");
+
+    assertEquals(key, CodebaseSnapshotCache.key(config(ImmutableList.of("\\.svn")), "tree1"));
+    assertThat(CodebaseSnapshotCache.key(config, "tree2")).isNotEqualTo(key);
+    assertThat(CodebaseSnapshotCache.key(config(ImmutableList.of()), "tree1"))
+        .isNotEqualTo(key);
+  }
+
+  private static RepositoryConfig config(ImmutableList<String> ignoreFilePatterns) {
+    RepositoryConfig config = mock(RepositoryConfig.class);
+    when(config.getUrl()).thenReturn("https://example.com/repo.git");
+    when(config.getIgnoreFilePatterns()).thenReturn(ignoreFilePatterns);
+    when(config.getCheckoutPaths()).thenReturn(ImmutableList.of());
+    return config;
+  }
+}
@@ -16,8 +16,12 @@
 
 package com.google.devtools.moe.client.codebase;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
+import com.google.devtools.moe.client.testing.InMemoryFileSystem;
 import java.io.File;
 import junit.framework.TestCase;
 
@@ -36,4 +40,18 @@ public class CodebaseTest extends TestCase {
     } catch (MoeProblem expected) {
     }
   }
+
+  public void testFilesAreIndexedOnce() throws Exception {
+    InMemoryFileSystem fs =
+        new InMemoryFileSystem(
+            ImmutableMap.of("/foo/a", "contents", "/foo/b/c", "contents", "/bar/d", "contents"),
+            null);
+    Codebase c = Codebase.create(new File("/foo"), "internal", new RepositoryExpression("foo"));
+
+    FileIndex files = c.files(fs);
+    assertEquals(ImmutableSortedSet.of("a", "b/c"), files.paths());
+    assertSame(files, c.files(fs));
+    // Copies of the codebase are of the same files, so they needn't index them again.
+    assertSame(files, c.copyWithProjectSpace("public").files(null));
+  }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.devtools.moe.client.database;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.config.ProjectConfig;
+import com.google.devtools.moe.client.project.ProjectConfigs;
+import java.io.File;
+import junit.framework.TestCase;
+
+public class CodebaseFingerprintTest extends TestCase {
+
+  public void testConfigDigestCoversConfig() throws Exception {
+    String digest = CodebaseFingerprint.configDigest(config("echo foo"));
+    assertEquals(digest, CodebaseFingerprint.configDigest(config("echo foo")));
+    assertThat(CodebaseFingerprint.configDigest(config("echo bar"))).isNotEqualTo(digest);
+  }
+
+  public void testConfigDigestCoversScriptsRunByShellEditors() throws Exception {
+    File script = new File(Files.createTempDir(), "scrub.sh");
+    Files.asCharSink(script, UTF_8).write("sed -i s/foo/bar/ *\n");
+    ProjectConfig config = config("bash '" + script.getAbsolutePath() + "' --all");
+    String digest = CodebaseFingerprint.configDigest(config);
+
+    Files.asCharSink(script, UTF_8).write("sed -i s/foo/baz/ *\n");
+    assertThat(CodebaseFingerprint.configDigest(config)).isNotEqualTo(digest);
+  }
+
+  private static ProjectConfig config(String command) throws Exception {
+    return ProjectConfigs.parse(
+        "{'name': 'foo', 'repositories': {'public': {'type': 'dummy'}},"
+            + " 'editors': {'shell': {'type': 'shell', 'command_string': \""
+            + command
+            + "\"}}}");
+  }
+}
@@ -101,6 +101,48 @@ public class FileDbTest extends TestCase {
     assertFalse(db.noteMigration(migration));
   }
 
+  public void testNoteFingerprint() throws Exception {
+    FileDb db = parseJson("{}");
+    Revision r1 = Revision.create("r1", "name1");
+    db.noteFingerprint(CodebaseFingerprint.create(r1, "public", "config1", "hash1"));
+    assertEquals("hash1", db.findFingerprint(r1, "public", "config1"));
+    assertNull(db.findFingerprint(r1, "internal", "config1"));
+
+    // A fingerprint of the same codebase replaces the one recorded.
+    db.noteFingerprint(CodebaseFingerprint.create(r1, "public", "config1", "hash2"));
+    assertEquals("hash2", db.findFingerprint(r1, "public", "config1"));
+
+    // Fingerprints made under an older configuration are dropped.
+    Revision r2 = Revision.create("r2", "name1");
+    db.noteFingerprint(CodebaseFingerprint.create(r2, "public", "config2", "hash3"));
+    assertNull(db.findFingerprint(r1, "public", "config1"));
+    assertThat(db.getStorage().fingerprints())
+        .containsExactly(CodebaseFingerprint.create(r2, "public", "config2", "hash3"));
+
+    // And they survive a round trip through the file format.
+    assertEquals(
+        db.getStorage(), GSON.fromJson(GSON.toJson(db.getStorage()), DbStorage.class));
+    assertThat(GSON.toJson(db.getStorage())).contains("\"config_digest\": \"config2\"");
+  }
+
+  public void testNoteFingerprint_keepsLatestPerProjectSpace() throws Exception {
+    FileDb db = parseJson("{}");
+    Revision internal = Revision.create("r0", "internal");
+    db.noteFingerprint(CodebaseFingerprint.create(internal, "internal", "config", "hash"));
+    for (int i = 0; i <= DbStorage.MAX_FINGERPRINTS_PER_PROJECT_SPACE; i++) {
+      Revision revision = Revision.create("r" + i, "internal");
+      db.noteFingerprint(CodebaseFingerprint.create(revision, "public", "config", "hash" + i));
+    }
+
+    assertNull(db.findFingerprint(Revision.create("r0", "internal"), "public", "config"));
+    assertEquals(
+        "hash1", db.findFingerprint(Revision.create("r1", "internal"), "public", "config"));
+    // Other project spaces keep theirs.
+    assertEquals("hash", db.findFingerprint(internal, "internal", "config"));
+    assertThat(db.getStorage().fingerprints())
+        .hasSize(DbStorage.MAX_FINGERPRINTS_PER_PROJECT_SPACE + 1);
+  }
+
   public void testFindEquivalences() throws Exception {
     String dbText =
         Joiner.on("\n")
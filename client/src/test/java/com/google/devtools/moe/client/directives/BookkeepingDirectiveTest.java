@@ -26,8 +26,10 @@ import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Lifetimes;
 import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.CodebaseFingerprinter;
 import com.google.devtools.moe.client.codebase.ExpressionEngine;
 import com.google.devtools.moe.client.database.Bookkeeper;
+import com.google.devtools.moe.client.database.CodebaseFingerprint;
 import com.google.devtools.moe.client.database.Db;
 import com.google.devtools.moe.client.database.DbStorage;
 import com.google.devtools.moe.client.database.FileDb;
@@ -129,7 +131,14 @@ public class BookkeepingDirectiveTest extends TestCase {
         new FileDb(
             DB_FILE.getPath(), storage, new FileDb.Writer(GsonModule.provideGson(), filesystem));
     BookkeepingDirective d =
-        new BookkeepingDirective(new Bookkeeper(context, codebaseDiffer, db, ui, expressionEngine));
+        new BookkeepingDirective(
+            new Bookkeeper(
+                context,
+                codebaseDiffer,
+                db,
+                ui,
+                expressionEngine,
+                new CodebaseFingerprinter(filesystem)));
     d.dbLocation = DB_FILE.getAbsolutePath();
 
     expect(
@@ -152,6 +161,54 @@ public class BookkeepingDirectiveTest extends TestCase {
     assertThat(storage).isEqualTo(expectedDb);
   }
 
+  /**
+   * Bookkeeping for heads whose codebases' fingerprints are already recorded, and equal: no
+   * codebases are created or diffed.
+   */
+  public void testHeadsEquivalent_recordedFingerprints() throws Exception {
+    FileSystem filesystem =
+        new InMemoryFileSystem(
+            ImmutableMap.of(DB_FILE.getPath(), "{\"equivalences\":[], \"migrations\":[]}"),
+            new Lifetimes(new Ui(System.err)));
+    FileDiffer fileDiffer = new ConcreteFileDiffer(cmd, filesystem);
+    CodebaseDiffer codebaseDiffer = new CodebaseDiffer(fileDiffer, filesystem);
+    Repositories repositories =
+        new Repositories(
+            ImmutableSet.<RepositoryType.Factory>of(new DummyRepositoryFactory()));
+    Ui ui = new Ui(stream, filesystem);
+    ExpressionEngine expressionEngine = TestingUtils.expressionEngineWithRepo(ui, filesystem, cmd);
+    InMemoryProjectContextFactory contextFactory =
+        init(new InMemoryProjectContextFactory(expressionEngine, ui, repositories));
+    ProjectContext context = contextFactory.create("moe_config.txt");
+    String configDigest = CodebaseFingerprint.configDigest(context.config());
+    storage.addFingerprint(
+        CodebaseFingerprint.create(Revision.create(1, "int"), "public", configDigest, "abc"));
+    storage.addFingerprint(
+        CodebaseFingerprint.create(Revision.create(1, "pub"), "public", configDigest, "abc"));
+    Db db =
+        new FileDb(
+            DB_FILE.getPath(), storage, new FileDb.Writer(GsonModule.provideGson(), filesystem));
+    BookkeepingDirective d =
+        new BookkeepingDirective(
+            new Bookkeeper(
+                context,
+                codebaseDiffer,
+                db,
+                ui,
+                expressionEngine,
+                new CodebaseFingerprinter(filesystem)));
+    d.dbLocation = DB_FILE.getAbsolutePath();
+
+    // No diff is expected: the codebases don't exist, and would fail to be created.
+    control.replay();
+    assertEquals(0, d.perform());
+    control.verify();
+
+    assertThat(storage.equivalences())
+        .containsExactly(
+            RepositoryEquivalence.create(Revision.create(1, "int"), Revision.create(1, "pub")));
+  }
+
   /**
    * Bookkeeping for codebases different at head and migrated revs.
    */
@@ -178,7 +235,14 @@ public class BookkeepingDirectiveTest extends TestCase {
         new FileDb(
             DB_FILE.getPath(), storage, new FileDb.Writer(GsonModule.provideGson(), filesystem));
     BookkeepingDirective d =
-        new BookkeepingDirective(new Bookkeeper(context, codebaseDiffer, db, ui, expressionEngine));
+        new BookkeepingDirective(
+            new Bookkeeper(
+                context,
+                codebaseDiffer,
+                db,
+                ui,
+                expressionEngine,
+                new CodebaseFingerprinter(filesystem)));
     d.dbLocation = DB_FILE.getAbsolutePath();
 
     expectDiffs();
@@ -222,7 +286,14 @@ public class BookkeepingDirectiveTest extends TestCase {
         new FileDb(
             DB_FILE.getPath(), storage, new FileDb.Writer(GsonModule.provideGson(), filesystem));
     BookkeepingDirective d =
-        new BookkeepingDirective(new Bookkeeper(context, codebaseDiffer, db, ui, expressionEngine));
+        new BookkeepingDirective(
+            new Bookkeeper(
+                context,
+                codebaseDiffer,
+                db,
+                ui,
+                expressionEngine,
+                new CodebaseFingerprinter(filesystem)));
     d.dbLocation = DB_FILE.getAbsolutePath();
 
     expectDiffs();
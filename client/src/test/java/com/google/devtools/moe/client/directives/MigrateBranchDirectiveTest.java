@@ -64,4 +64,31 @@ public class MigrateBranchDirectiveTest extends TestCase {
             Revision.create("7", "foo_fork"),
             Revision.create("8", "foo_fork"));
   }
+
+  public void testBranchRevision_branchWithoutParentHead() {
+    DummyRevisionHistory parentBranch =
+        DummyRevisionHistory.builder()
+            .name("foo")
+            .permissive(false) // strict
+            .add("1", AUTHOR, "rev 1", new DateTime(13600000L))
+            .add("2", AUTHOR, "rev 2", new DateTime(23600000L), "1")
+            .add("3", AUTHOR, "rev 3", new DateTime(33600000L), "2")
+            .build();
+
+    // A fork which never fetched the parent's head ("3"), so has to be compared by walking both.
+    DummyRevisionHistory branch =
+        DummyRevisionHistory.builder()
+            .name("foo_fork")
+            .permissive(false) // strict
+            .add("1", AUTHOR, "rev 1", new DateTime(13600000L))
+            .add("2", AUTHOR, "rev 2", new DateTime(23600000L), "1")
+            .add("5", AUTHOR, "rev 5", new DateTime(53600000L), "2")
+            .add("6", AUTHOR, "rev 6", new DateTime(63600000L), "5")
+            .build();
+    List<Revision> revisions = findRevisionsToMigrate(ui, branch, parentBranch);
+
+    assertThat(revisions)
+        .containsExactly(Revision.create("5", "foo_fork"), Revision.create("6", "foo_fork"))
+        .inOrder();
+  }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.codebase.Codebase;
+import com.google.devtools.moe.client.codebase.CodebaseSnapshotCache;
 import com.google.devtools.moe.client.codebase.LocalWorkspace;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import com.google.devtools.moe.client.repositories.Revision;
@@ -102,4 +103,48 @@ public class AbstractDvcsCodebaseCreatorTest extends TestCase {
 
     control.verify();
   }
+
+  public void testCreate_cachedSnapshot() throws Exception {
+    String givenRev = "givenrev";
+    File snapshotDir = new File("/tmp/snapshot_mockrepo_" + givenRev);
+    CodebaseSnapshotCache snapshots =
+        new CodebaseSnapshotCache(null, null, null, 0) {
+          @Override
+          public boolean isEnabled() {
+            return true;
+          }
+
+          @Override
+          public File get(String key, String tempDirPrefix) {
+            assertEquals(CodebaseSnapshotCache.key(mockRepoConfig, "treehash"), key);
+            return snapshotDir;
+          }
+        };
+    AbstractDvcsCodebaseCreator cachingCreator =
+        new AbstractDvcsCodebaseCreator(
+            null, mockFS, Suppliers.ofInstance(mockRepo), mockRevHistory, "public", snapshots) {
+          @Override
+          protected LocalWorkspace cloneAtLocalRoot(String localroot) {
+            throw new UnsupportedOperationException();
+          }
+        };
+
+    expect(mockRevHistory.findHighestRevision(givenRev))
+        .andReturn(Revision.create(givenRev, MOCK_REPO_NAME));
+    expect(mockRepo.contentId(givenRev)).andReturn("treehash");
+    expect(mockRepo.getRepositoryName()).andReturn(MOCK_REPO_NAME);
+    expect(mockRepoConfig.getUrl()).andReturn("https://example.com/repo.git").anyTimes();
+    expect(mockRepoConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.<String>of());
+    expect(mockRepoConfig.getCheckoutPaths()).andReturn(ImmutableList.<String>of()).anyTimes();
+
+    control.replay();
+
+    // The snapshot is handed out as is: nothing is archived or filtered.
+    Codebase codebase = cachingCreator.create(ImmutableMap.of("revision", givenRev));
+
+    assertEquals(snapshotDir, codebase.root());
+    assertEquals("mockrepo(revision=" + givenRev + ")", codebase.expression().toString());
+
+    control.verify();
+  }
 }
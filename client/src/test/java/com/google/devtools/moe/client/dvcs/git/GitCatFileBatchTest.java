@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import com.google.devtools.moe.client.dvcs.git.GitCatFileBatch.GitObject;
+import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import java.io.File;
+import junit.framework.TestCase;
+
+/** Tests {@link GitCatFileBatch} against a real, throwaway git repository. */
+public class GitCatFileBatchTest extends TestCase {
+  private final SystemCommandRunner cmd = new SystemCommandRunner();
+  private File repo;
+
+  @Override
+  protected void setUp() throws Exception {
+    repo = Files.createTempDir();
+    git("init", "-q");
+    commit("first");
+    commit("second\n\nbody");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    cmd.runCommand("", "rm", ImmutableList.of("-rf", repo.getAbsolutePath()));
+  }
+
+  private void commit(String message) throws CommandException {
+    git(
+        "-c", "user.name=Foo Bar", "-c", "user.email=foo@example.com",
+        "commit", "-q", "--allow-empty", "-m", message);
+  }
+
+  private String git(String... args) throws CommandException {
+    return cmd.runCommand(repo.getAbsolutePath(), "git", ImmutableList.copyOf(args));
+  }
+
+  public void testReadsSeveralObjectsFromOneProcess() throws Exception {
+    try (GitCatFileBatch batch = new GitCatFileBatch(repo)) {
+      GitObject head = batch.read("HEAD^{commit}");
+      assertEquals(git("rev-parse", "HEAD").trim(), head.id());
+      assertEquals("commit", head.type());
+      assertThat(head.content()).endsWith("\n\nsecond\n\nbody\n");
+
+      GitObject parent = batch.read("HEAD~1");
+      assertEquals(git("rev-parse", "HEAD~1").trim(), parent.id());
+      assertThat(head.content()).contains("parent " + parent.id() + "\n");
+    }
+  }
+
+  public void testMissingObjectIsNull() throws Exception {
+    try (GitCatFileBatch batch = new GitCatFileBatch(repo)) {
+      assertNull(batch.read("no_such_branch"));
+      // The process is still usable after a miss.
+      assertEquals("commit", batch.read("HEAD").type());
+    }
+  }
+
+  public void testMetadataMatchesGitLog() throws Exception {
+    try (GitCatFileBatch batch = new GitCatFileBatch(repo)) {
+      GitClonedRepository clone =
+          new GitClonedRepository(cmd, null, "repo", null, repo.getAbsolutePath(), null) {
+            @Override
+            String runGitCommand(String... args) throws CommandException {
+              return git(args);
+            }
+
+            @Override
+            synchronized GitCatFileBatch catFileBatch() {
+              return batch;
+            }
+          };
+      Revision head = Revision.create(git("rev-parse", "HEAD").trim(), "repo");
+
+      RevisionMetadata forked =
+          new GitRevisionHistory(Suppliers.ofInstance(clone), false).createMetadata(head);
+      RevisionMetadata batched =
+          new GitRevisionHistory(Suppliers.ofInstance(clone), true).createMetadata(head);
+
+      assertEquals(forked, batched);
+      assertEquals(
+          new GitRevisionHistory(Suppliers.ofInstance(clone), false).findHighestRevision("HEAD~1"),
+          new GitRevisionHistory(Suppliers.ofInstance(clone), true).findHighestRevision("HEAD~1"));
+    }
+  }
+}
@@ -16,17 +16,24 @@
 
 package com.google.devtools.moe.client.dvcs.git;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.FileSystem.Lifetime;
 import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import com.google.devtools.moe.client.SystemFileSystem;
 import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.Ui.Task;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import java.io.File;
+import java.io.OutputStream;
 import java.util.List;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
@@ -108,6 +115,99 @@ public class GitClonedRepositoryTest extends TestCase {
     }
   }
 
+  public void testCloneLocallyFrom() throws Exception {
+    testSparse = ImmutableList.of("test/path/*");
+    String writerCloneTempDir = "/tmp/git_clone_mockrepo_67890";
+    mockConfig();
+    expectCloneLocally();
+    expect(mockFS.getTemporaryDirectory(EasyMock.eq("git_clone_mockrepo_"), EasyMock.anyObject()))
+        .andReturn(new File(writerCloneTempDir));
+    expect(
+            cmd.runCommand(
+                "",
+                "git",
+                ImmutableList.of(
+                    "clone", "--local", "--no-checkout", "-q", localCloneTempDir,
+                    writerCloneTempDir)))
+        .andReturn("");
+    expect(
+            cmd.runCommand(
+                writerCloneTempDir,
+                "git",
+                ImmutableList.of("remote", "set-url", "origin", repositoryURL)))
+        .andReturn("");
+    expect(
+            cmd.runCommand(
+                writerCloneTempDir,
+                "git",
+                ImmutableList.of(
+                    "fetch", "-q", localCloneTempDir,
+                    "+refs/remotes/origin/*:refs/remotes/origin/*")))
+        .andReturn("");
+    expect(
+            cmd.runCommand(
+                writerCloneTempDir,
+                "git",
+                ImmutableList.of("config", "core.sparseCheckout", "true")))
+        .andReturn("");
+    mockFS.write("test/path/*\n", new File(writerCloneTempDir + "/.git/info/sparse-checkout"));
+    expect(cmd.runCommand(writerCloneTempDir, "git", ImmutableList.of("checkout", "-f", "-q")))
+        .andReturn("");
+
+    control.replay();
+    GitClonedRepository headClone =
+        new GitClonedRepository(cmd, mockFS, repositoryName, repositoryConfig, lifetimes);
+    headClone.cloneLocallyAtHead(Lifetimes.persistent());
+    GitClonedRepository writerClone =
+        new GitClonedRepository(cmd, mockFS, repositoryName, repositoryConfig, lifetimes);
+    writerClone.cloneLocallyFrom(headClone, Lifetimes.persistent());
+    assertEquals(writerCloneTempDir, writerClone.getLocalTempDir().getAbsolutePath());
+    control.verify();
+  }
+
+  public void testArchiveAtRevision_sparse() throws Exception {
+    testSparse = ImmutableList.of("/lib/", "test/path/*", "!test/path/skip/");
+    File archiveDir = new File("/tmp/git_archive_mockrepo_abc_12345");
+    mockConfig();
+    expect(repositoryConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.of()).anyTimes();
+    expectCloneLocally();
+    expect(
+            mockFS.getTemporaryDirectory(
+                EasyMock.eq("git_archive_mockrepo_abc_"), EasyMock.anyObject()))
+        .andReturn(archiveDir);
+    mockFS.makeDirs(archiveDir);
+    // Only paths which exist are archived, and from this clone rather than a new one.
+    expect(
+            cmd.runCommand(
+                localCloneTempDir,
+                "git",
+                ImmutableList.of("ls-tree", "--name-only", "-z", "abc", "--", "lib", "test/path")))
+        .andReturn("test/path\0");
+    cmd.runCommandStreaming(
+        EasyMock.eq(localCloneTempDir),
+        EasyMock.eq("git"),
+        EasyMock.eq(ImmutableList.of("archive", "--format=tar", "abc", "--", "test/path")),
+        EasyMock.anyObject());
+    expectLastCall()
+        .andAnswer(
+            () -> {
+              // An empty tar is two blocks of zeros.
+              ((OutputStream) EasyMock.getCurrentArguments()[3]).write(new byte[1024]);
+              return null;
+            });
+
+    control.replay();
+    Ui ui = new Ui(System.err);
+    GitClonedRepository repo =
+        new GitClonedRepository(
+            cmd, mockFS, repositoryName, repositoryConfig, new Lifetimes(ui));
+    repo.cloneLocallyAtHead(Lifetimes.persistent());
+    try (Task task = ui.newTask("archive", "Archiving")) {
+      assertEquals(archiveDir, repo.archiveAtRevision("abc"));
+    }
+    control.verify();
+  }
+
   private void runTestCloneLocally() throws Exception {
     mockConfig();
     expectCloneLocally();
@@ -148,6 +248,42 @@ public class GitClonedRepositoryTest extends TestCase {
     runTestCloneLocally();
   }
 
+  public void testCloneLocally_mirror() throws Exception {
+    File mirrorObjects = new File("/cache/moe/git_mirrors/abc.git/objects");
+    GitMirrorCache mirrors =
+        new GitMirrorCache(cmd, null) {
+          @Override
+          public File objectsFor(String repositoryUrl) {
+            assertEquals(repositoryURL, repositoryUrl);
+            return mirrorObjects;
+          }
+        };
+    mockConfig();
+    expect(mockFS.getTemporaryDirectory(EasyMock.eq("git_clone_mockrepo_"), EasyMock.anyObject()))
+        .andReturn(new File(localCloneTempDir));
+    expect(cmd.runCommand("", "git", ImmutableList.of("init", localCloneTempDir))).andReturn("");
+    expect(
+            cmd.runCommand(
+                localCloneTempDir,
+                "git",
+                ImmutableList.of("remote", "add", "origin", repositoryURL)))
+        .andReturn("");
+    // The clone borrows the mirror's objects before fetching.
+    mockFS.write(
+        mirrorObjects.getAbsolutePath() + "\n",
+        new File(localCloneTempDir + "/.git/objects/info/alternates"));
+    expect(cmd.runCommand(localCloneTempDir, "git", ImmutableList.of("fetch", "--tags")))
+        .andReturn("");
+    expect(cmd.runCommand(localCloneTempDir, "git", ImmutableList.of("pull", "origin", "master")))
+        .andReturn("");
+
+    control.replay();
+    GitClonedRepository repo =
+        new GitClonedRepository(cmd, mockFS, repositoryName, repositoryConfig, lifetimes, mirrors);
+    repo.cloneLocallyAtHead(Lifetimes.persistent());
+    control.verify();
+  }
+
   public void testUpdateToRevId_nonHeadRevId() throws Exception {
     mockConfig();
 
@@ -233,4 +369,63 @@ public class GitClonedRepositoryTest extends TestCase {
     repo.updateToRevision(updateRevId);
     control.verify();
   }
+
+  /**
+   * Clones a real repository whose last two commits have the same tree, with the given
+   * .gitattributes, and returns the content IDs of those commits, then their hashes.
+   */
+  private List<String> contentIdsOfCommitsWithSameTree(String gitattributes) throws Exception {
+    SystemCommandRunner realCmd = new SystemCommandRunner();
+    File root = Files.createTempDir();
+    try {
+      File upstream = new File(root, "upstream");
+      realCmd.runCommand("", "git", ImmutableList.of("init", "-q", upstream.getAbsolutePath()));
+      String dir = upstream.getAbsolutePath();
+      realCmd.runCommand(dir, "git", ImmutableList.of("symbolic-ref", "HEAD", "refs/heads/master"));
+      Files.asCharSink(new File(upstream, ".gitattributes"), UTF_8).write(gitattributes);
+      Files.asCharSink(new File(upstream, "VERSION"), UTF_8).write("$Format:%H$\n");
+      realCmd.runCommand(dir, "git", ImmutableList.of("add", "."));
+      for (String message : ImmutableList.of("first", "second")) {
+        realCmd.runCommand(
+            dir,
+            "git",
+            ImmutableList.of(
+                "-c", "user.name=Foo Bar", "-c", "user.email=foo@example.com",
+                "commit", "-q", "--allow-empty", "-m", message));
+      }
+      mockConfig();
+      control.replay();
+      FileSystem filesystem =
+          new SystemFileSystem() {
+            @Override
+            public File getTemporaryDirectory(String prefix, Lifetime lifetime) {
+              return new File(root, "clone");
+            }
+          };
+      GitClonedRepository repo =
+          new GitClonedRepository(
+              realCmd, filesystem, repositoryName, repositoryConfig, dir, lifetimes);
+      repo.cloneLocallyAtHead(Lifetimes.persistent());
+      return ImmutableList.of(
+          repo.contentId("HEAD~1"),
+          repo.contentId("HEAD"),
+          repo.runGitCommand("rev-parse", "HEAD~1").trim(),
+          repo.runGitCommand("rev-parse", "HEAD").trim());
+    } finally {
+      realCmd.runCommand("", "rm", ImmutableList.of("-rf", root.getAbsolutePath()));
+    }
+  }
+
+  public void testContentId_sameTree() throws Exception {
+    List<String> ids = contentIdsOfCommitsWithSameTree("*.txt text\n");
+    assertEquals(ids.get(0), ids.get(1));
+    assertFalse(ids.get(0).equals(ids.get(2)));
+  }
+
+  /** git archive expands export-subst placeholders from the commit, so the tree isn't enough. */
+  public void testContentId_exportSubst() throws Exception {
+    List<String> ids = contentIdsOfCommitsWithSameTree("VERSION export-subst\n");
+    assertEquals(ids.get(2), ids.get(0));
+    assertEquals(ids.get(3), ids.get(1));
+  }
 }
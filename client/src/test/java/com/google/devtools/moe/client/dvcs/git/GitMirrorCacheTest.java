@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import java.io.File;
+import junit.framework.TestCase;
+
+/** Tests {@link GitMirrorCache} against real, throwaway git repositories. */
+public class GitMirrorCacheTest extends TestCase {
+  private final SystemCommandRunner cmd = new SystemCommandRunner();
+  private File root;
+  private File upstream;
+  private String upstreamUrl;
+  private File cacheDirectory;
+
+  @Override
+  protected void setUp() throws Exception {
+    root = Files.createTempDir();
+    upstream = new File(root, "upstream");
+    upstreamUrl = "file://" + upstream.getAbsolutePath();
+    cacheDirectory = new File(root, "cache");
+    git(root, "init", "-q", upstream.getAbsolutePath());
+    commit("first");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    cmd.runCommand("", "rm", ImmutableList.of("-rf", root.getAbsolutePath()));
+  }
+
+  private String commit(String message) throws CommandException {
+    git(
+        upstream,
+        "-c", "user.name=Foo Bar", "-c", "user.email=foo@example.com",
+        "commit", "-q", "--allow-empty", "-m", message);
+    return git(upstream, "rev-parse", "HEAD").trim();
+  }
+
+  private String git(File dir, String... args) throws CommandException {
+    return cmd.runCommand(dir.getAbsolutePath(), "git", ImmutableList.copyOf(args));
+  }
+
+  private boolean hasCommit(File objects, String id) {
+    try {
+      git(objects.getParentFile(), "cat-file", "-e", id + "^{commit}");
+      return true;
+    } catch (CommandException e) {
+      return false;
+    }
+  }
+
+  public void testCreatesMirror() throws Exception {
+    String head = git(upstream, "rev-parse", "HEAD").trim();
+    GitMirrorCache cache = new GitMirrorCache(cmd, cacheDirectory);
+
+    File objects = cache.objectsFor(upstreamUrl);
+
+    assertEquals(new File(cache.mirrorFor(upstreamUrl), "objects"), objects);
+    assertTrue(hasCommit(objects, head));
+    assertEquals("never", git(objects.getParentFile(), "config", "gc.pruneExpire").trim());
+  }
+
+  public void testUpdatesMirrorOncePerRun() throws Exception {
+    new GitMirrorCache(cmd, cacheDirectory).objectsFor(upstreamUrl);
+    String second = commit("second");
+
+    GitMirrorCache cache = new GitMirrorCache(cmd, cacheDirectory);
+    File objects = cache.objectsFor(upstreamUrl);
+    assertTrue(hasCommit(objects, second));
+
+    String third = commit("third");
+    assertEquals(objects, cache.objectsFor(upstreamUrl));
+    assertFalse(hasCommit(objects, third));
+  }
+
+  public void testMirrorsOnlyBranchesAndTags() throws Exception {
+    String tagged = commit("tagged");
+    git(upstream, "tag", "v1");
+    String pullRequest = commit("pull request");
+    git(upstream, "update-ref", "refs/pull/1/head", pullRequest);
+    git(upstream, "reset", "-q", "--hard", tagged);
+    git(upstream, "checkout", "-q", "-b", "other");
+    String other = commit("other");
+
+    File objects = new GitMirrorCache(cmd, cacheDirectory).objectsFor(upstreamUrl);
+
+    assertTrue(hasCommit(objects, tagged));
+    assertTrue(hasCommit(objects, other));
+    assertFalse(hasCommit(objects, pullRequest));
+    assertEquals(tagged, git(objects.getParentFile(), "rev-parse", "v1^{commit}").trim());
+  }
+
+  public void testUnreachableUrlHasNoMirror() throws Exception {
+    GitMirrorCache cache = new GitMirrorCache(cmd, cacheDirectory);
+    assertNull(cache.objectsFor("file://" + new File(root, "missing").getAbsolutePath()));
+    // The failed clone is cleaned up.
+    assertEquals(0, cacheDirectory.list((dir, name) -> name.contains(".partial")).length);
+  }
+
+  public void testLocalDirectoriesAreNotMirrored() throws Exception {
+    GitMirrorCache cache = new GitMirrorCache(cmd, cacheDirectory);
+    assertNull(cache.objectsFor(upstream.getAbsolutePath()));
+    assertNull(GitMirrorCache.DISABLED.objectsFor(upstreamUrl));
+  }
+
+  public void testClonesBorrowMirrorObjects() throws Exception {
+    GitMirrorCache cache = new GitMirrorCache(cmd, cacheDirectory);
+    String head = git(upstream, "rev-parse", "HEAD").trim();
+    File objects = cache.objectsFor(upstreamUrl);
+
+    File clone = new File(root, "clone");
+    git(root, "init", "-q", clone.getAbsolutePath());
+    Files.asCharSink(new File(clone, ".git/objects/info/alternates"), UTF_8)
+        .write(objects.getAbsolutePath() + "\n");
+    git(clone, "remote", "add", "origin", upstreamUrl);
+    git(clone, "fetch", "-q", "--tags");
+
+    assertTrue(hasCommit(new File(clone, ".git/objects"), head));
+    // Everything came from the mirror, so the clone's own object store is empty.
+    assertEquals("0", git(clone, "count-objects").split(" ")[0]);
+  }
+}
@@ -25,6 +25,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.CommandRunner.LineConsumer;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.database.DbStorage;
 import com.google.devtools.moe.client.database.FileDb;
@@ -38,6 +39,7 @@ import com.google.devtools.moe.client.repositories.RevisionHistory.SearchType;
 import com.google.devtools.moe.client.repositories.RevisionMetadata;
 import com.google.devtools.moe.client.testing.DummyDb;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
@@ -149,6 +151,115 @@ public class GitRevisionHistoryTest extends TestCase {
     control.verify();
   }
 
+  public void testGetMetadataBatch() throws Exception {
+    GitClonedRepository mockRepo = mockClonedRepo(repositoryName);
+
+    mockRepo.runGitCommandForNulTerminated(
+        EasyMock.eq(
+            ImmutableList.of(
+                "log",
+                "-z",
+                "--max-count=16",
+                "--format=" + LOG_FORMAT_ALL_METADATA,
+                "--ignore-missing",
+                "3",
+                "--")),
+        EasyMock.anyObject(LineConsumer.class));
+    expectOutputRecords(
+        METADATA_JOINER.join("3", "foo@google.com", GIT_COMMIT_DATE, "2", "third\n"),
+        METADATA_JOINER.join("2", "bar@google.com", GIT_COMMIT_DATE, "", "second\n"));
+
+    control.replay();
+
+    GitRevisionHistory rh = new GitRevisionHistory(Suppliers.ofInstance(mockRepo), true);
+    Map<Revision, RevisionMetadata> result =
+        rh.getMetadataBatch(ImmutableList.of(Revision.create(3, repositoryName)), 16);
+    assertThat(result.keySet())
+        .containsExactly(Revision.create(3, repositoryName), Revision.create(2, repositoryName))
+        .inOrder();
+    RevisionMetadata third = result.get(Revision.create(3, repositoryName));
+    assertEquals("foo@google.com", third.author());
+    // Entries read the same as from a single-revision git log, which newline-terminates them.
+    assertEquals("third\n\n", third.description());
+    assertThat(third.parents()).containsExactly(Revision.create(2, repositoryName));
+    assertThat(result.get(Revision.create(2, repositoryName)).parents()).isEmpty();
+
+    control.verify();
+  }
+
+  public void testFindAncestorsExcluding() throws Exception {
+    GitClonedRepository mockRepo = mockClonedRepo(repositoryName);
+
+    expect(mockRepo.runGitCommand("rev-parse", "--verify", "--quiet", "1^{commit}"))
+        .andReturn("1\n");
+    mockRepo.runGitCommandForLines(
+        EasyMock.eq(ImmutableList.of("rev-list", "--topo-order", "--reverse", "3", "^1", "--")),
+        EasyMock.anyObject(LineConsumer.class));
+    expectOutputRecords("2", "3");
+    expect(mockRepo.runGitCommand("rev-parse", "--verify", "--quiet", "4^{commit}"))
+        .andThrow(new CommandException("git", ImmutableList.of("rev-parse"), "", "", 1));
+
+    control.replay();
+
+    GitRevisionHistory rh = new GitRevisionHistory(Suppliers.ofInstance(mockRepo));
+    assertThat(
+            rh.findAncestorsExcluding(
+                Revision.create(3, repositoryName), Revision.create(1, repositoryName)))
+        .containsExactly(Revision.create(2, repositoryName), Revision.create(3, repositoryName))
+        .inOrder();
+    assertNull(
+        rh.findAncestorsExcluding(
+            Revision.create(3, repositoryName), Revision.create(4, repositoryName)));
+
+    control.verify();
+  }
+
+  /** Has the last, mocked, command hand the given records to its {@link LineConsumer}. */
+  private static void expectOutputRecords(String... records) {
+    EasyMock.expectLastCall()
+        .andAnswer(
+            () -> {
+              LineConsumer consumer = (LineConsumer) EasyMock.getCurrentArguments()[1];
+              for (String record : records) {
+                consumer.accept(record);
+              }
+              return null;
+            });
+  }
+
+  public void testParseCommitObject() throws CommandException {
+    GitRevisionHistory rh =
+        new GitRevisionHistory(Suppliers.ofInstance(mockClonedRepo(repositoryName)), true);
+
+    control.replay();
+    RevisionMetadata rm =
+        rh.parseCommitObject(
+            GitCatFileBatch.GitObject.create(
+                "1",
+                "commit",
+                "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+                    + "parent 2\n"
+                    + "parent 3\n"
+                    + "author foo@google.com <foo@google.com> "
+                    + (DATE.getMillis() / 1000)
+                    + " -0700\n"
+                    + "committer bar <bar@google.com> 1341838800 +0000\n"
+                    + "gpgsig -----BEGIN PGP SIGNATURE-----\n"
+                    + " parent 4\n"
+                    + " -----END PGP SIGNATURE-----\n"
+                    + "\n"
+                    + "desc with \n\nmultiple lines\n"));
+    control.verify();
+
+    assertEquals("1", rm.id());
+    assertEquals("foo@google.com", rm.author());
+    assertThat(rm.date()).isEquivalentAccordingToCompareTo(DATE);
+    assertEquals("desc with \n\nmultiple lines\n\n", rm.description());
+    assertThat(rm.parents())
+        .containsExactly(Revision.create(2, repositoryName), Revision.create(3, repositoryName))
+        .inOrder();
+  }
+
   public void testParseMetadata_multiLine() throws CommandException {
     GitRevisionHistory rh =
         new GitRevisionHistory(Suppliers.ofInstance(mockClonedRepo(repositoryName)));
@@ -19,8 +19,8 @@ package com.google.devtools.moe.client.dvcs.git;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.codebase.Codebase;
@@ -66,12 +66,12 @@ public class GitWriterTest extends TestCase {
   public void testPutCodebase_emptyCodebase() throws Exception {
     expect(mockRepoConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.<String>of());
     // Define the files in the codebase and in the writer (git repo).
-    expect(mockFs.findFiles(codebaseRoot)).andReturn(ImmutableSet.<File>of());
-    expect(mockFs.findFiles(writerRoot))
+    expect(mockFs.indexFiles(codebaseRoot)).andReturn(FileIndex.of());
+    expect(mockFs.indexFiles(writerRoot))
         .andReturn(
-            ImmutableSet.<File>of(
+            FileIndex.of(
                 // Doesn't seem to matter that much what we return here, other than .git.
-                new File(writerRoot, ".git/branches")));
+                ".git/branches"));
 
     // Expect no other mockFs calls from GitWriter.putFile().
 
@@ -88,9 +88,8 @@ public class GitWriterTest extends TestCase {
   public void testPutCodebase_addFile() throws Exception {
     expect(mockRepoConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.<String>of());
 
-    expect(mockFs.findFiles(codebaseRoot))
-        .andReturn(ImmutableSet.<File>of(new File(codebaseRoot, "file1")));
-    expect(mockFs.findFiles(writerRoot)).andReturn(ImmutableSet.<File>of());
+    expect(mockFs.indexFiles(codebaseRoot)).andReturn(FileIndex.of("file1"));
+    expect(mockFs.indexFiles(writerRoot)).andReturn(FileIndex.of());
 
     expect(mockFs.exists(new File(codebaseRoot, "file1"))).andReturn(true);
     expect(mockFs.exists(new File(writerRoot, "file1"))).andReturn(false);
@@ -110,10 +109,8 @@ public class GitWriterTest extends TestCase {
   public void testPutCodebase_editFile() throws Exception {
     expect(mockRepoConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.<String>of());
 
-    expect(mockFs.findFiles(codebaseRoot))
-        .andReturn(ImmutableSet.<File>of(new File(codebaseRoot, "file1")));
-    expect(mockFs.findFiles(writerRoot))
-        .andReturn(ImmutableSet.<File>of(new File(writerRoot, "file1")));
+    expect(mockFs.indexFiles(codebaseRoot)).andReturn(FileIndex.of("file1"));
+    expect(mockFs.indexFiles(writerRoot)).andReturn(FileIndex.of("file1"));
 
     expect(mockFs.exists(new File(codebaseRoot, "file1"))).andReturn(true);
     expect(mockFs.exists(new File(writerRoot, "file1"))).andReturn(true);
@@ -133,9 +130,8 @@ public class GitWriterTest extends TestCase {
   public void testPutCodebase_removeFile() throws Exception {
     expect(mockRepoConfig.getIgnoreFilePatterns()).andReturn(ImmutableList.<String>of());
 
-    expect(mockFs.findFiles(codebaseRoot)).andReturn(ImmutableSet.<File>of());
-    expect(mockFs.findFiles(writerRoot))
-        .andReturn(ImmutableSet.<File>of(new File(writerRoot, "file1")));
+    expect(mockFs.indexFiles(codebaseRoot)).andReturn(FileIndex.of());
+    expect(mockFs.indexFiles(writerRoot)).andReturn(FileIndex.of("file1"));
 
     expect(mockFs.exists(new File(codebaseRoot, "file1"))).andReturn(false);
     expect(mockFs.exists(new File(writerRoot, "file1"))).andReturn(true);
@@ -154,13 +150,13 @@ public class GitWriterTest extends TestCase {
     expect(mockRepoConfig.getIgnoreFilePatterns())
         .andReturn(ImmutableList.of("^.*ignored_\\w+\\.txt$"));
 
-    expect(mockFs.findFiles(codebaseRoot)).andReturn(ImmutableSet.<File>of());
-    expect(mockFs.findFiles(writerRoot))
+    expect(mockFs.indexFiles(codebaseRoot)).andReturn(FileIndex.of());
+    expect(mockFs.indexFiles(writerRoot))
         .andReturn(
-            ImmutableSet.<File>of(
-                new File(writerRoot, ".git/branches"),
-                new File(writerRoot, "not_really_ignored_dir/file1"),
-                new File(writerRoot, "included_dir/ignored_file.txt")));
+            FileIndex.of(
+                ".git/branches",
+                "not_really_ignored_dir/file1",
+                "included_dir/ignored_file.txt"));
 
     expect(mockFs.exists(new File(codebaseRoot, "not_really_ignored_dir/file1"))).andReturn(false);
     expect(mockFs.exists(new File(writerRoot, "not_really_ignored_dir/file1"))).andReturn(true);
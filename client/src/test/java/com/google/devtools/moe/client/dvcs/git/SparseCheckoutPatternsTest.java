@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.git;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import junit.framework.TestCase;
+
+public class SparseCheckoutPatternsTest extends TestCase {
+
+  private static SparseCheckoutPatterns parse(String... patterns) {
+    return SparseCheckoutPatterns.parse(ImmutableList.copyOf(patterns));
+  }
+
+  public void testDirectoryMatchesEverythingBeneathIt() {
+    SparseCheckoutPatterns sparse = parse("/src/");
+    assertTrue(sparse.apply("src/Foo.java"));
+    assertTrue(sparse.apply("src/main/Foo.java"));
+    assertFalse(sparse.apply("src"));
+    assertFalse(sparse.apply("test/src/Foo.java"));
+    assertFalse(sparse.apply("srcs/Foo.java"));
+    assertThat(sparse.literalPrefixes()).containsExactly("src");
+  }
+
+  public void testWildcards() {
+    SparseCheckoutPatterns sparse = parse("test/path/*", "docs/**/*.md", "/a?c/[xy]z");
+    assertTrue(sparse.apply("test/path/file"));
+    assertTrue(sparse.apply("test/path/sub/file"));
+    assertFalse(sparse.apply("test/pathological"));
+    assertTrue(sparse.apply("docs/README.md"));
+    assertTrue(sparse.apply("docs/a/b/README.md"));
+    assertFalse(sparse.apply("docs/README.txt"));
+    assertTrue(sparse.apply("abc/yz"));
+    assertFalse(sparse.apply("abc/zz"));
+    // A wildcard in the first component leaves nothing to narrow the archive to.
+    assertThat(sparse.literalPrefixes()).isEmpty();
+    assertThat(parse("test/path/*", "docs/**/*.md").literalPrefixes())
+        .containsExactly("docs", "test/path")
+        .inOrder();
+  }
+
+  public void testUnanchoredPatternMatchesAtAnyDepth() {
+    SparseCheckoutPatterns sparse = parse("*.java");
+    assertTrue(sparse.apply("Foo.java"));
+    assertTrue(sparse.apply("a/b/Foo.java"));
+    assertFalse(sparse.apply("a/b/Foo.javac"));
+    // Selected paths may be anywhere, so there is nothing to narrow the archive to.
+    assertThat(sparse.literalPrefixes()).isEmpty();
+  }
+
+  public void testLastMatchWins() {
+    SparseCheckoutPatterns sparse = parse("/*", "!/third_party/", "/third_party/keep/");
+    assertTrue(sparse.apply("README"));
+    assertTrue(sparse.apply("src/Foo.java"));
+    assertFalse(sparse.apply("third_party/lib/x.c"));
+    assertTrue(sparse.apply("third_party/keep/y.c"));
+  }
+
+  public void testDeepestMatchingLevelDecides() {
+    // The file itself matches, so the negated directory above it isn't consulted.
+    SparseCheckoutPatterns sparse = parse("*.java", "!src/");
+    assertTrue(sparse.apply("src/a.java"));
+    assertTrue(sparse.apply("src/gen/b.java"));
+    assertFalse(sparse.apply("src/README"));
+
+    // src/gen matches only the negated pattern, which decides before src is looked at.
+    sparse = parse("!src/gen/", "src/");
+    assertFalse(sparse.apply("src/gen/b.java"));
+    assertTrue(sparse.apply("src/a.java"));
+  }
+
+  public void testNestedPrefixesAreMerged() {
+    assertThat(parse("/a/b/", "/a/", "/a-b/", "/a2/").literalPrefixes())
+        .containsExactly("a", "a-b", "a2");
+  }
+}
@@ -16,10 +16,14 @@
 
 package com.google.devtools.moe.client.dvcs.hg;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.FileSystem.Lifetime;
@@ -28,6 +32,7 @@ import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.config.RepositoryConfig;
 import java.io.File;
 import junit.framework.TestCase;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
 
@@ -84,4 +89,49 @@ public class HgClonedRepositoryTest extends TestCase {
 
     control.verify();
   }
+
+  public void testCommandServerClosedWhenCloneIsCleanedUp() throws Exception {
+    // A stand-in for hg whose only use is as a command server.
+    File binDir = Files.createTempDir();
+    File serverScript = new File(binDir, "server.pl");
+    Files.asCharSink(serverScript, UTF_8).write(HgCommandServerTest.FAKE_SERVER);
+    File hg = new File(binDir, "hg");
+    Files.asCharSink(hg, UTF_8).write("#!/bin/sh\nexec perl " + serverScript.getPath() + "\n");
+    assertTrue(hg.setExecutable(true));
+    File cloneDir = Files.createTempDir();
+
+    expect(repositoryConfig.getUrl()).andReturn(repositoryURL).anyTimes();
+    expect(repositoryConfig.getBranch()).andReturn(Optional.<String>absent()).anyTimes();
+    Capture<Lifetime> cloneLifetime = new Capture<>();
+    expect(
+            mockFS.getTemporaryDirectory(
+                eq("hg_clone_" + repositoryName + "_"), capture(cloneLifetime)))
+        .andReturn(cloneDir);
+    expect(
+            cmd.runCommand(
+                null,
+                hg.getPath(),
+                ImmutableList.of("clone", repositoryURL, cloneDir.getAbsolutePath())))
+        .andReturn("");
+    control.replay();
+
+    boolean[] taskDone = {false};
+    HgClonedRepository repo =
+        new HgClonedRepository(
+            cmd, mockFS, hg, repositoryName, repositoryConfig, repositoryURL, lifetimes, true);
+    repo.cloneLocallyAtHead(() -> taskDone[0]);
+    String serverPid = repo.runHgCommand(cloneDir, ImmutableList.of("pid"));
+    control.verify();
+
+    assertFalse(cloneLifetime.getValue().shouldCleanUp());
+    assertTrue(isRunning(serverPid));
+
+    taskDone[0] = true;
+    assertTrue(cloneLifetime.getValue().shouldCleanUp());
+    assertFalse(isRunning(serverPid));
+  }
+
+  private static boolean isRunning(String pid) throws Exception {
+    return new ProcessBuilder("kill", "-0", pid).start().waitFor() == 0;
+  }
 }
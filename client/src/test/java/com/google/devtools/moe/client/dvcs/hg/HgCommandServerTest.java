@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.hg;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import junit.framework.TestCase;
+
+/**
+ * Tests the command server protocol of {@link HgCommandServer} against a scripted stand-in for
+ * {@code hg serve --cmdserver pipe}.
+ */
+public class HgCommandServerTest extends TestCase {
+  static final String FAKE_SERVER =
+      Joiner.on('\n')
+          .join(
+              "binmode STDIN; binmode STDOUT; $| = 1;",
+              "sub frame { print $_[0] . pack('N', length $_[1]) . $_[1]; }",
+              "sub result { print 'r' . pack('N', 4) . pack('N', $_[0]); }",
+              "frame('o', \"capabilities: getencoding runcommand\\nencoding: UTF-8\\npid: $$\");",
+              "while (defined(my $request = <STDIN>)) {",
+              "  die \"bad request $request\" unless $request eq \"runcommand\\n\";",
+              "  read(STDIN, my $length, 4);",
+              "  read(STDIN, my $args, unpack('N', $length));",
+              "  my @args = split(/\\0/, $args, -1);",
+              "  if ($args[0] eq 'pid') { frame('o', $$); result(0); next; }",
+              "  if ($args[0] eq 'fail') {",
+              "    frame('o', 'partial'); frame('e', \"abort: failed\\n\"); result(255); next;",
+              "  }",
+              "  if ($args[0] eq 'prompt') {",
+              "    print 'L' . pack('N', 4096);",
+              "    read(STDIN, my $answer, 4);",
+              "    frame('o', 'input length ' . unpack('N', $answer)); result(0); next;",
+              "  }",
+              "  frame('d', 'ignored debug output');",
+              "  frame('o', join('|', @args));",
+              "  frame('o', \"\\n\");",
+              "  result(0);",
+              "}");
+
+  private HgCommandServer server;
+
+  @Override
+  protected void setUp() throws Exception {
+    server =
+        new HgCommandServer(
+            "hg", Files.createTempDir(), ImmutableList.of("perl", "-e", FAKE_SERVER));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.close();
+  }
+
+  public void testRunCommandCollectsOutputFrames() throws Exception {
+    assertEquals(
+        "log|--rev=tip|--template={node}\n",
+        server.runCommand(ImmutableList.of("log", "--rev=tip", "--template={node}")));
+  }
+
+  public void testCommandsShareOneServer() throws Exception {
+    String pid = server.runCommand(ImmutableList.of("pid"));
+    server.runCommand(ImmutableList.of("status"));
+    assertEquals(pid, server.runCommand(ImmutableList.of("pid")));
+  }
+
+  public void testNonZeroResultThrows() throws Exception {
+    try {
+      server.runCommand(ImmutableList.of("fail", "now"));
+      fail("Non-zero result didn't raise CommandException.");
+    } catch (CommandException expected) {
+      assertEquals(255, expected.returnStatus);
+      assertEquals("hg", expected.cmd);
+      assertEquals(ImmutableList.of("fail", "now"), expected.args);
+      assertEquals("partial", expected.stdout);
+      assertEquals("abort: failed\n", expected.stderr);
+    }
+    // The server is still usable afterwards.
+    assertEquals("status\n", server.runCommand(ImmutableList.of("status")));
+  }
+
+  public void testInputRequestsAreAnsweredWithEndOfFile() throws Exception {
+    assertEquals("input length 0", server.runCommand(ImmutableList.of("prompt")));
+  }
+}
@@ -37,6 +37,7 @@ import com.google.devtools.moe.client.repositories.RevisionMetadata;
 import com.google.devtools.moe.client.testing.DummyDb;
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
@@ -157,6 +158,41 @@ public class HgRevisionHistoryTest extends TestCase {
     control.verify();
   }
 
+  public void testGetMetadataBatch() throws Exception {
+    HgClonedRepository mockRepo = mockClonedRepo(MOCK_REPO_NAME);
+
+    expect(
+            mockRepo.runHgCommand(
+                new File(CLONE_TEMP_DIR),
+                ImmutableList.of(
+                    "log",
+                    "--rev=reverse(ancestors('3'))",
+                    "--limit=16",
+                    "--template={node|escape} < {author|escape} < "
+                        + "{date|isodate|escape} < {desc|escape} < "
+                        + "{parents|stringify|escape}\n<\n",
+                    "--debug")))
+        .andReturn(
+            "3 < uid@google.com < " + HG_COMMIT_DATE + " < multi\nline < 2:2 -1:0000\n<\n"
+                + "2 < uid@google.com < " + HG_COMMIT_DATE + " < second < -1:0000 -1:0000\n<\n");
+
+    control.replay();
+
+    HgRevisionHistory revHistory =
+        new HgRevisionHistory(cmd, HG_CMD, Suppliers.ofInstance(mockRepo), true);
+    Map<Revision, RevisionMetadata> result =
+        revHistory.getMetadataBatch(ImmutableList.of(Revision.create(3, MOCK_REPO_NAME)), 16);
+    assertThat(result.keySet())
+        .containsExactly(Revision.create(3, MOCK_REPO_NAME), Revision.create(2, MOCK_REPO_NAME))
+        .inOrder();
+    RevisionMetadata third = result.get(Revision.create(3, MOCK_REPO_NAME));
+    assertEquals("multi\nline", third.description());
+    assertThat(third.parents()).containsExactly(Revision.create(2, MOCK_REPO_NAME));
+    assertThat(result.get(Revision.create(2, MOCK_REPO_NAME)).parents()).isEmpty();
+
+    control.verify();
+  }
+
   public void testGetEscapedMetadata() throws Exception {
     HgClonedRepository mockRepo = mockClonedRepo(MOCK_REPO_NAME);
 
@@ -19,8 +19,8 @@ package com.google.devtools.moe.client.dvcs.hg;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.Ui;
 import com.google.devtools.moe.client.codebase.Codebase;
@@ -70,14 +70,14 @@ public class HgWriterTest extends TestCase {
   public void testPutCodebase_emptyCodebase() throws Exception {
 
     // Define the files in the codebase and in the writer (hg repo).
-    expect(mockFs.findFiles(CODEBASE_ROOT)).andReturn(ImmutableSet.<File>of());
-    expect(mockFs.findFiles(WRITER_ROOT))
+    expect(mockFs.indexFiles(CODEBASE_ROOT)).andReturn(FileIndex.of());
+    expect(mockFs.indexFiles(WRITER_ROOT))
         .andReturn(
-            ImmutableSet.<File>of(
-                new File(WRITER_ROOT, ".hg"),
-                new File(WRITER_ROOT, ".hgignore"),
-                new File(WRITER_ROOT, ".hg/branch"),
-                new File(WRITER_ROOT, ".hg/cache/tags")));
+            FileIndex.of(
+                ".hg",
+                ".hgignore",
+                ".hg/branch",
+                ".hg/cache/tags"));
 
     // Expect no other mockFs calls from HgWriter.putFile().
 
@@ -93,9 +93,8 @@ public class HgWriterTest extends TestCase {
 
   public void testPutCodebase_addFile() throws Exception {
 
-    expect(mockFs.findFiles(CODEBASE_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(CODEBASE_ROOT, "file1")));
-    expect(mockFs.findFiles(WRITER_ROOT)).andReturn(ImmutableSet.<File>of());
+    expect(mockFs.indexFiles(CODEBASE_ROOT)).andReturn(FileIndex.of("file1"));
+    expect(mockFs.indexFiles(WRITER_ROOT)).andReturn(FileIndex.of());
 
     expect(mockFs.exists(new File(CODEBASE_ROOT, "file1"))).andReturn(true);
     expect(mockFs.exists(new File(WRITER_ROOT, "file1"))).andReturn(false);
@@ -116,10 +115,8 @@ public class HgWriterTest extends TestCase {
 
   public void testPutCodebase_editFile() throws Exception {
 
-    expect(mockFs.findFiles(CODEBASE_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(CODEBASE_ROOT, "file1")));
-    expect(mockFs.findFiles(WRITER_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(WRITER_ROOT, "file1")));
+    expect(mockFs.indexFiles(CODEBASE_ROOT)).andReturn(FileIndex.of("file1"));
+    expect(mockFs.indexFiles(WRITER_ROOT)).andReturn(FileIndex.of("file1"));
 
     expect(mockFs.exists(new File(CODEBASE_ROOT, "file1"))).andReturn(true);
     expect(mockFs.exists(new File(WRITER_ROOT, "file1"))).andReturn(true);
@@ -139,9 +136,8 @@ public class HgWriterTest extends TestCase {
 
   public void testPutCodebase_removeFile() throws Exception {
 
-    expect(mockFs.findFiles(CODEBASE_ROOT)).andReturn(ImmutableSet.<File>of());
-    expect(mockFs.findFiles(WRITER_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(WRITER_ROOT, "file1")));
+    expect(mockFs.indexFiles(CODEBASE_ROOT)).andReturn(FileIndex.of());
+    expect(mockFs.indexFiles(WRITER_ROOT)).andReturn(FileIndex.of("file1"));
 
     expect(mockFs.exists(new File(CODEBASE_ROOT, "file1"))).andReturn(false);
     expect(mockFs.exists(new File(WRITER_ROOT, "file1"))).andReturn(true);
@@ -159,10 +155,8 @@ public class HgWriterTest extends TestCase {
   }
 
   public void testPutCodebase_editFileWithMetadata() throws Exception {
-    expect(mockFs.findFiles(CODEBASE_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(CODEBASE_ROOT, "file1")));
-    expect(mockFs.findFiles(WRITER_ROOT))
-        .andReturn(ImmutableSet.<File>of(new File(WRITER_ROOT, "file1")));
+    expect(mockFs.indexFiles(CODEBASE_ROOT)).andReturn(FileIndex.of("file1"));
+    expect(mockFs.indexFiles(WRITER_ROOT)).andReturn(FileIndex.of("file1"));
 
     expect(mockFs.exists(new File(CODEBASE_ROOT, "file1"))).andReturn(true);
     expect(mockFs.exists(new File(WRITER_ROOT, "file1"))).andReturn(true);
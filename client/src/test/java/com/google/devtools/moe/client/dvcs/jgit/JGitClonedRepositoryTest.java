@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import java.io.File;
+import junit.framework.TestCase;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+public class JGitClonedRepositoryTest extends TestCase {
+  private final JGitTestRepository origin = new JGitTestRepository();
+
+  public JGitClonedRepositoryTest() throws Exception {}
+
+  public void testArchiveAtRevision() throws Exception {
+    RevCommit first = origin.commitFile("src/a.txt", "a", "first");
+    origin.writeFile("bin/run.sh", "#!/bin/sh\n").setExecutable(true);
+    origin.commit("bin/run.sh", "second");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+
+    File head = clone.archiveAtRevision(null);
+    assertEquals("a", Files.asCharSource(new File(head, "src/a.txt"), UTF_8).read());
+    assertTrue(new File(head, "bin/run.sh").canExecute());
+    assertFalse(new File(head, "src/a.txt").canExecute());
+    assertFalse(new File(head, ".git").exists());
+
+    File old = clone.archiveAtRevision(first.getName());
+    assertTrue(new File(old, "src/a.txt").exists());
+    assertFalse(new File(old, "bin").exists());
+  }
+
+  public void testArchiveHonorsCheckoutPaths() throws Exception {
+    origin.commitFile("src/a.txt", "a", "first");
+    origin.commitFile("docs/b.txt", "b", "second");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config("/src/"));
+
+    File archive = clone.archiveAtRevision(null);
+    assertTrue(new File(archive, "src/a.txt").exists());
+    assertFalse(new File(archive, "docs").exists());
+  }
+
+  public void testArchiveHonorsGlobAndNegatedCheckoutPaths() throws Exception {
+    origin.writeFile("src/a.java", "a");
+    origin.writeFile("src/gen/b.java", "b");
+    origin.writeFile("lib/c.txt", "c");
+    origin.writeFile("lib/d.java", "d");
+    origin.writeFile("e.txt", "e");
+    origin.commit(".", "first");
+    JGitClonedRepository clone =
+        origin.cloneAtHead(JGitTestRepository.config("/src/", "!/src/gen/", "/lib/*.txt"));
+
+    File archive = clone.archiveAtRevision(null);
+    assertTrue(new File(archive, "src/a.java").exists());
+    assertFalse(new File(archive, "src/gen").exists());
+    assertTrue(new File(archive, "lib/c.txt").exists());
+    assertFalse(new File(archive, "lib/d.java").exists());
+    assertFalse(new File(archive, "e.txt").exists());
+  }
+
+  public void testContentIdIsTheTreeHash() throws Exception {
+    RevCommit first = origin.commitFile("a.txt", "a", "first");
+    RevCommit second = origin.commitFile("b.txt", "b", "second");
+    RevCommit empty = origin.git.commit().setMessage("no changes").setAllowEmpty(true).call();
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+
+    String secondTree = clone.contentId(second.getName());
+    assertEquals(second.getTree().getName(), secondTree);
+    assertEquals(secondTree, clone.contentId(empty.getName()));
+    assertThat(clone.contentId(first.getName())).isNotEqualTo(secondTree);
+    assertNull(clone.contentId("0123456789012345678901234567890123456789"));
+  }
+
+  public void testUpdateToRevisionBranchesFromOlderRevisions() throws Exception {
+    RevCommit first = origin.commitFile("a.txt", "a", "first");
+    origin.commitFile("b.txt", "b", "second");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+
+    clone.updateToRevision(first.getName());
+
+    assertThat(clone.git().getRepository().getBranch())
+        .isEqualTo(JGitClonedRepository.MOE_MIGRATIONS_BRANCH_PREFIX + first.getName());
+    assertFalse(new File(clone.getLocalTempDir(), "b.txt").exists());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Suppliers;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.repositories.Revision;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import junit.framework.TestCase;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+public class JGitRevisionHistoryTest extends TestCase {
+  private final JGitTestRepository origin = new JGitTestRepository();
+  private RevCommit first;
+  private RevCommit second;
+  private JGitRevisionHistory history;
+
+  public JGitRevisionHistoryTest() throws Exception {}
+
+  @Override
+  protected void setUp() throws Exception {
+    first = origin.commitFile("a.txt", "a", "first");
+    second = origin.commitFile("b.txt", "b", "second\n\nbody");
+    history =
+        new JGitRevisionHistory(
+            Suppliers.ofInstance(origin.cloneAtHead(JGitTestRepository.config())));
+  }
+
+  public void testFindHighestRevision() {
+    assertEquals(Revision.create(second.getName(), "myrepo"), history.findHighestRevision(null));
+    assertEquals(
+        Revision.create(first.getName(), "myrepo"), history.findHighestRevision("HEAD~1"));
+  }
+
+  public void testFindHighestRevision_nonExistentRevisionThrows() {
+    try {
+      history.findHighestRevision("bogusHash");
+      fail("Unknown revision didn't fail");
+    } catch (MoeProblem expected) {
+    }
+  }
+
+  public void testGetMetadata() {
+    RevisionMetadata result = history.getMetadata(Revision.create(second.getName(), "myrepo"));
+    assertEquals(second.getName(), result.id());
+    assertEquals("Foo Bar", result.author());
+    assertEquals(second.getAuthorIdent().getWhen().getTime(), result.date().getMillis());
+    assertEquals("second\n\nbody\n", result.description());
+    assertThat(result.parents()).containsExactly(Revision.create(first.getName(), "myrepo"));
+  }
+
+  public void testGetMetadata_missingRevision() {
+    assertNull(
+        history.createMetadata(
+            Revision.create("0123456789012345678901234567890123456789", "myrepo")));
+  }
+
+  public void testFindAncestorsExcluding() throws Exception {
+    RevCommit third = origin.commitFile("c.txt", "c", "third");
+    history =
+        new JGitRevisionHistory(
+            Suppliers.ofInstance(origin.cloneAtHead(JGitTestRepository.config())));
+
+    assertThat(
+            history.findAncestorsExcluding(
+                Revision.create(third.getName(), "myrepo"),
+                Revision.create(first.getName(), "myrepo")))
+        .containsExactly(
+            Revision.create(second.getName(), "myrepo"), Revision.create(third.getName(), "myrepo"))
+        .inOrder();
+    assertNull(
+        history.findAncestorsExcluding(
+            Revision.create(third.getName(), "myrepo"),
+            Revision.create("0123456789012345678901234567890123456789", "myrepo")));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.Lifetimes;
+import com.google.devtools.moe.client.SystemFileSystem;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import java.io.File;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/** An origin repository, created with JGit in a temporary directory, for tests to clone. */
+final class JGitTestRepository {
+  static final PersonIdent AUTHOR = new PersonIdent("Foo Bar", "foo@example.com");
+
+  final File root = Files.createTempDir();
+  final Git git;
+
+  JGitTestRepository() throws Exception {
+    git = Git.init().setDirectory(root).call();
+  }
+
+  /** Returns a config for a "jgit" repository on the master branch. */
+  static RepositoryConfig config(String... checkoutPaths) {
+    RepositoryConfig config = mock(RepositoryConfig.class);
+    when(config.getType()).thenReturn("jgit");
+    when(config.getBranch()).thenReturn(Optional.absent());
+    when(config.getProjectSpace()).thenReturn("public");
+    when(config.getIgnoreFilePatterns()).thenReturn(ImmutableList.<String>of());
+    when(config.getCheckoutPaths()).thenReturn(ImmutableList.copyOf(checkoutPaths));
+    return config;
+  }
+
+  /** Writes the given file and commits it, with the given message. */
+  RevCommit commitFile(String path, String contents, String message) throws Exception {
+    writeFile(path, contents);
+    return commit(path, message);
+  }
+
+  /** Stages the given path and commits, with the given message. */
+  RevCommit commit(String path, String message) throws Exception {
+    git.add().addFilepattern(path).call();
+    return git.commit().setMessage(message).setAuthor(AUTHOR).setCommitter(AUTHOR).call();
+  }
+
+  /** Writes the given file, without committing it. */
+  File writeFile(String path, String contents) throws Exception {
+    File file = new File(root, path);
+    Files.createParentDirs(file);
+    Files.asCharSink(file, UTF_8).write(contents);
+    return file;
+  }
+
+  /**
+   * Returns a clone of this repository, named "myrepo", checked out at master. Archives are
+   * created in a task which is left open, and not cleaned up.
+   */
+  JGitClonedRepository cloneAtHead(RepositoryConfig config) {
+    Ui ui = new Ui(System.err);
+    Lifetimes lifetimes = new Lifetimes(ui);
+    ui.newTask("test", "Testing");
+    JGitClonedRepository clone =
+        new JGitClonedRepository(
+            new SystemFileSystem(), "myrepo", config, root.getAbsolutePath(), lifetimes);
+    clone.cloneLocallyAtHead(lifetimes.currentTask());
+    return clone;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.dvcs.jgit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.devtools.moe.client.SystemFileSystem;
+import com.google.devtools.moe.client.Ui;
+import com.google.devtools.moe.client.codebase.Codebase;
+import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
+import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import java.io.File;
+import junit.framework.TestCase;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+public class JGitWriterTest extends TestCase {
+  private static final DateTime DATE = new DateTime(2012, 7, 9, 6, 0, DateTimeZone.UTC);
+
+  private final JGitTestRepository origin = new JGitTestRepository();
+
+  public JGitWriterTest() throws Exception {}
+
+  public void testPutCodebaseCommitsAdditionsModificationsAndRemovals() throws Exception {
+    origin.commitFile("keep.txt", "old", "first");
+    RevCommit head = origin.commitFile("gone.txt", "bye", "second");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+    JGitWriter writer = new JGitWriter(clone, new SystemFileSystem(), new Ui(System.err));
+
+    File codebaseRoot = Files.createTempDir();
+    Files.asCharSink(new File(codebaseRoot, "keep.txt"), UTF_8).write("new");
+    new File(codebaseRoot, "dir").mkdir();
+    Files.asCharSink(new File(codebaseRoot, "dir/added.txt"), UTF_8).write("hi");
+    Codebase codebase =
+        Codebase.create(codebaseRoot, "public", new RepositoryExpression("otherrepo"));
+
+    writer.putCodebase(
+        codebase,
+        RevisionMetadata.builder()
+            .id("1")
+            .author("Baz Quux <baz@example.com>")
+            .date(DATE)
+            .description("migrated change")
+            .build());
+
+    RevCommit commit = clone.parseCommit("HEAD");
+    assertThat(commit.getParents()).asList().containsExactly(head);
+    assertEquals("migrated change", commit.getFullMessage());
+    assertEquals("Baz Quux", commit.getAuthorIdent().getName());
+    assertEquals("baz@example.com", commit.getAuthorIdent().getEmailAddress());
+    assertEquals(DATE.getMillis(), commit.getAuthorIdent().getWhen().getTime());
+    assertTrue(clone.git().status().call().isClean());
+
+    File archive = clone.archiveAtRevision(null);
+    assertEquals("new", Files.asCharSource(new File(archive, "keep.txt"), UTF_8).read());
+    assertEquals("hi", Files.asCharSource(new File(archive, "dir/added.txt"), UTF_8).read());
+    assertFalse(new File(archive, "gone.txt").exists());
+  }
+
+  public void testPutCodebaseWithoutMetadataOnlyStages() throws Exception {
+    RevCommit head = origin.commitFile("a.txt", "a", "first");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+    JGitWriter writer = new JGitWriter(clone, new SystemFileSystem(), new Ui(System.err));
+
+    File codebaseRoot = Files.createTempDir();
+    Files.asCharSink(new File(codebaseRoot, "a.txt"), UTF_8).write("changed");
+    writer.putCodebase(
+        Codebase.create(codebaseRoot, "public", new RepositoryExpression("otherrepo")), null);
+
+    assertEquals(head, clone.parseCommit("HEAD"));
+    assertThat(clone.git().status().call().getChanged()).containsExactly("a.txt");
+  }
+
+  public void testPutCodebaseAddsFilesTheDestinationIgnores() throws Exception {
+    origin.commitFile(".gitignore", "*.log\n", "first");
+    JGitClonedRepository clone = origin.cloneAtHead(JGitTestRepository.config());
+    JGitWriter writer = new JGitWriter(clone, new SystemFileSystem(), new Ui(System.err));
+
+    File codebaseRoot = Files.createTempDir();
+    Files.asCharSink(new File(codebaseRoot, "build.log"), UTF_8).write("log");
+    writer.putCodebase(
+        Codebase.create(codebaseRoot, "public", new RepositoryExpression("otherrepo")),
+        RevisionMetadata.builder()
+            .id("1")
+            .author("Baz Quux <baz@example.com>")
+            .date(DATE)
+            .description("migrated change")
+            .build());
+
+    File archive = clone.archiveAtRevision(null);
+    assertEquals("log", Files.asCharSource(new File(archive, "build.log"), UTF_8).read());
+    assertTrue(clone.git().status().call().isClean());
+  }
+}
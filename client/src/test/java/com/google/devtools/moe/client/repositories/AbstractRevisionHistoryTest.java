@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.moe.client.MoeProblem;
+import com.google.devtools.moe.client.config.RepositoryConfig;
+import com.google.devtools.moe.client.repositories.RevisionHistory.SearchType;
+import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+
+public class AbstractRevisionHistoryTest extends TestCase {
+  private static final int HEAD = 40;
+
+  /** A linear history 1 <- 2 <- ... <- head, which reads ancestry ranges in one query. */
+  private static class LinearHistory extends AbstractRevisionHistory {
+    final List<String> queries = new ArrayList<>();
+    final int head;
+
+    LinearHistory() {
+      this(HEAD, RepositoryConfig.DEFAULT_MAX_REVISIONS_TO_SEARCH);
+    }
+
+    LinearHistory(int head, int maxRevisionsToSearch) {
+      super(RevisionMetadataCache.DISABLED, "", maxRevisionsToSearch);
+      this.head = head;
+    }
+
+    @Override
+    public Revision findHighestRevision(String revId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected RevisionMetadata createMetadata(Revision revision) {
+      queries.add("metadata " + revision.revId());
+      return metadata(Integer.parseInt(revision.revId()));
+    }
+
+    @Override
+    protected List<RevisionMetadata> createMetadataBatch(List<Revision> revisions, int limit) {
+      queries.add("batch " + revisions + " limit " + limit);
+      ImmutableList.Builder<RevisionMetadata> result = ImmutableList.builder();
+      int start = Integer.parseInt(revisions.get(0).revId());
+      for (int i = start; i > 0 && i > start - limit; i--) {
+        result.add(metadata(i));
+      }
+      return result.build();
+    }
+
+    @Override
+    protected FieldParsingResult parseFields(RevisionMetadata metadata) {
+      return RevisionMetadata.legacyFieldParser(metadata.description());
+    }
+
+    @Override
+    protected List<Revision> findHeadRevisions() {
+      return ImmutableList.of(Revision.create(head, "repo"));
+    }
+  }
+
+  private static RevisionMetadata metadata(int id) {
+    RevisionMetadata.Builder builder =
+        RevisionMetadata.builder()
+            .id(String.valueOf(id))
+            .author("author")
+            .date(new DateTime(id * 1000L))
+            .description("revision " + id);
+    if (id > 1) {
+      builder.withParents(Revision.create(id - 1, "repo"));
+    }
+    return builder.build();
+  }
+
+  private static RevisionMatcher<List<Revision>> matching(final int id) {
+    return new RevisionMatcher<List<Revision>>() {
+      @Override
+      public boolean matches(Revision revision) {
+        return revision.revId().equals(String.valueOf(id));
+      }
+
+      @Override
+      public List<Revision> makeResult(RevisionGraph nonMatching, List<Revision> matching) {
+        return ImmutableList.copyOf(nonMatching.getBreadthFirstHistory());
+      }
+    };
+  }
+
+  public void testSearchReadsAncestryInGrowingWindows() {
+    LinearHistory history = new LinearHistory();
+
+    List<Revision> result = history.findRevisions(null, matching(1), SearchType.LINEAR);
+
+    assertThat(result).hasSize(HEAD - 1);
+    assertEquals(Revision.create(HEAD, "repo"), result.get(0));
+    assertEquals(Revision.create(2, "repo"), result.get(HEAD - 2));
+    assertThat(history.queries)
+        .containsExactly("batch [repo{40}] limit 16", "batch [repo{24}] limit 32")
+        .inOrder();
+  }
+
+  public void testShortSearchReadsOneWindow() {
+    LinearHistory history = new LinearHistory();
+
+    List<Revision> result = history.findRevisions(null, matching(HEAD - 2), SearchType.BRANCHED);
+
+    assertThat(result)
+        .containsExactly(Revision.create(HEAD, "repo"), Revision.create(HEAD - 1, "repo"))
+        .inOrder();
+    assertThat(history.queries).containsExactly("batch [repo{40}] limit 16");
+  }
+
+  public void testDeepSearch() {
+    // Far more revisions than searches used to be limited to.
+    LinearHistory history = new LinearHistory(5000, 0);
+
+    List<Revision> result = history.findRevisions(null, matching(1), SearchType.LINEAR);
+
+    assertThat(result).hasSize(4999);
+    // Windows grow to 512 revisions, so the search takes a handful of queries.
+    assertThat(history.queries).hasSize(14);
+  }
+
+  public void testSearchBudget() {
+    LinearHistory history = new LinearHistory(HEAD, 10);
+    try {
+      history.findRevisions(null, matching(1), SearchType.LINEAR);
+      fail("Expected the search to exceed its budget");
+    } catch (MoeProblem expected) {
+      assertThat(expected).hasMessageThat().contains("within 10 revisions");
+    }
+
+    // Without a budget, a search goes as far as it has to.
+    history = new LinearHistory(HEAD, 0);
+    assertThat(history.findRevisions(null, matching(1), SearchType.LINEAR)).hasSize(HEAD - 1);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.LinkedHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.devtools.moe.client.repositories.RevisionHistory.SearchType;
+import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+
+public class CachingRevisionHistoryTest extends TestCase {
+  private static final Revision R1 = Revision.create(1, "repo");
+  private static final Revision R2 = Revision.create(2, "repo");
+  private static final Revision R3 = Revision.create(3, "repo");
+
+  /** A linear history 1 <- 2 <- 3 which counts the queries that reach it. */
+  private static class CountingHistory extends AbstractRevisionHistory {
+    final Multiset<String> queries = LinkedHashMultiset.create();
+    final Map<Revision, RevisionMetadata> commits =
+        ImmutableMap.of(
+            R1, metadata(R1),
+            R2, metadata(R2, R1),
+            R3, metadata(R3, R2));
+
+    @Override
+    public Revision findHighestRevision(String revId) {
+      queries.add("highest " + revId);
+      return revId == null ? R3 : Revision.create(revId, "repo");
+    }
+
+    @Override
+    protected RevisionMetadata createMetadata(Revision revision) {
+      queries.add("metadata " + revision.revId());
+      return commits.get(revision);
+    }
+
+    @Override
+    protected FieldParsingResult parseFields(RevisionMetadata metadata) {
+      return RevisionMetadata.legacyFieldParser(metadata.description());
+    }
+
+    @Override
+    protected List<Revision> findHeadRevisions() {
+      return ImmutableList.of(R3);
+    }
+  }
+
+  private static RevisionMetadata metadata(Revision revision, Revision... parents) {
+    return RevisionMetadata.builder()
+        .id(revision.revId())
+        .author("author")
+        .date(new DateTime(0))
+        .description("description")
+        .withParents(parents)
+        .build();
+  }
+
+  private final CountingHistory delegate = new CountingHistory();
+  private final CachingRevisionHistory history = new CachingRevisionHistory(delegate);
+
+  public void testMetadataIsMemoized() {
+    assertEquals(metadata(R2, R1), history.getMetadata(R2));
+    assertEquals(metadata(R2, R1), history.getMetadata(R2));
+
+    assertEquals(1, delegate.queries.count("metadata 2"));
+    assertEquals(1, history.hitCount());
+    assertEquals(1, history.missCount());
+  }
+
+  public void testMissingMetadataIsMemoized() {
+    Revision unknown = Revision.create(4, "repo");
+    assertNull(history.getMetadata(unknown));
+    assertNull(history.getMetadata(unknown));
+
+    assertEquals(1, delegate.queries.count("metadata 4"));
+  }
+
+  public void testHighestRevisionIsMemoized() {
+    assertEquals(R3, history.findHighestRevision(null));
+    assertEquals(R3, history.findHighestRevision(null));
+    // A resolved head also answers lookups of its own ID.
+    assertEquals(R3, history.findHighestRevision("3"));
+    assertEquals(R2, history.findHighestRevision("2"));
+
+    assertThat(delegate.queries).containsExactly("highest null", "highest 2");
+    assertEquals(2, history.hitCount());
+    assertEquals(2, history.missCount());
+  }
+
+  public void testSearchesShareMetadata() {
+    RevisionMatcher<List<Revision>> matchR1 =
+        new RevisionMatcher<List<Revision>>() {
+          @Override
+          public boolean matches(Revision revision) {
+            return revision.equals(R1);
+          }
+
+          @Override
+          public List<Revision> makeResult(RevisionGraph nonMatching, List<Revision> matching) {
+            return ImmutableList.copyOf(nonMatching.getBreadthFirstHistory());
+          }
+        };
+
+    assertThat(history.findRevisions(null, matchR1, SearchType.LINEAR))
+        .containsExactly(R3, R2)
+        .inOrder();
+    assertThat(history.findRevisions(R3, matchR1, SearchType.BRANCHED))
+        .containsExactly(R3, R2)
+        .inOrder();
+    history.getMetadata(R2);
+
+    assertEquals(1, delegate.queries.count("metadata 3"));
+    assertEquals(1, delegate.queries.count("metadata 2"));
+    assertEquals(3, history.hitCount());
+  }
+}
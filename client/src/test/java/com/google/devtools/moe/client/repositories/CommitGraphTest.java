@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import junit.framework.TestCase;
+
+public class CommitGraphTest extends TestCase {
+  private static Revision rev(String id) {
+    return Revision.create(id, "repo");
+  }
+
+  /**
+   * <pre>
+   *   1 - 2 - 4 - 5
+   *     \   /
+   *       3         (6 is the unknown parent of 1)
+   * </pre>
+   */
+  private static CommitGraph diamond() {
+    return CommitGraph.builder()
+        .addCommit(rev("5"), ImmutableList.of(rev("4")))
+        .addCommit(rev("4"), ImmutableList.of(rev("2"), rev("3")))
+        .addCommit(rev("3"), ImmutableList.of(rev("1")))
+        .addCommit(rev("2"), ImmutableList.of(rev("1")))
+        .addCommit(rev("1"), ImmutableList.of(rev("6")))
+        .build();
+  }
+
+  public void testIndexing() {
+    CommitGraph graph = diamond();
+    assertEquals(6, graph.size());
+    int four = graph.indexOf(rev("4"));
+    assertEquals(rev("4"), graph.revision(four));
+    assertEquals(2, graph.parentCount(four));
+    assertEquals(rev("3"), graph.revision(graph.parent(four, 1)));
+    assertEquals(-1, graph.indexOf(rev("7")));
+
+    // "6" is only known as a parent, so is a boundary of the graph.
+    assertTrue(graph.contains(rev("1")));
+    assertFalse(graph.contains(rev("6")));
+    assertEquals(0, graph.parentCount(graph.indexOf(rev("6"))));
+  }
+
+  public void testAddCommitTwiceFails() {
+    CommitGraph.Builder builder = CommitGraph.builder().addCommit(rev("1"), ImmutableList.of());
+    try {
+      builder.addCommit(rev("1"), ImmutableList.of());
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testGenerations() {
+    CommitGraph graph = diamond();
+    assertEquals(1, graph.generation(graph.indexOf(rev("6"))));
+    assertEquals(2, graph.generation(graph.indexOf(rev("1"))));
+    assertEquals(3, graph.generation(graph.indexOf(rev("3"))));
+    assertEquals(4, graph.generation(graph.indexOf(rev("4"))));
+    assertEquals(5, graph.generation(graph.indexOf(rev("5"))));
+  }
+
+  public void testIsAncestor() {
+    CommitGraph graph = diamond();
+    assertTrue(graph.isAncestor(rev("3"), rev("5")));
+    assertTrue(graph.isAncestor(rev("6"), rev("5")));
+    assertTrue(graph.isAncestor(rev("4"), rev("4")));
+    assertFalse(graph.isAncestor(rev("3"), rev("2")));
+    assertFalse(graph.isAncestor(rev("5"), rev("1")));
+    assertFalse(graph.isAncestor(rev("7"), rev("5")));
+  }
+
+  public void testBreadthFirst() {
+    assertThat(diamond().breadthFirst(ImmutableList.of(rev("5"))))
+        .containsExactly(rev("5"), rev("4"), rev("2"), rev("3"), rev("1"))
+        .inOrder();
+    assertThat(diamond().breadthFirst(ImmutableList.of(rev("6")))).isEmpty();
+  }
+
+  public void testTopologicalOrder() {
+    assertThat(diamond().topologicalOrder(rev("5")))
+        .containsExactly(rev("1"), rev("2"), rev("3"), rev("4"), rev("5"))
+        .inOrder();
+  }
+
+  public void testAncestorsExcluding() {
+    assertThat(diamond().ancestorsExcluding(rev("5"), rev("2")))
+        .containsExactly(rev("3"), rev("4"), rev("5"))
+        .inOrder();
+    assertThat(diamond().ancestorsExcluding(rev("2"), rev("5"))).isEmpty();
+  }
+
+  public void testDeepLinearHistory() {
+    CommitGraph.Builder builder = CommitGraph.builder();
+    builder.addCommit(rev("0"), ImmutableList.of());
+    for (int i = 1; i < 100000; i++) {
+      builder.addCommit(rev("" + i), ImmutableList.of(rev("" + (i - 1))));
+    }
+    CommitGraph graph = builder.build();
+    assertEquals(100000, graph.generation(graph.indexOf(rev("99999"))));
+    assertTrue(graph.isAncestor(rev("0"), rev("99999")));
+    assertThat(graph.ancestorsExcluding(rev("99999"), rev("99997")))
+        .containsExactly(rev("99998"), rev("99999"))
+        .inOrder();
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.repositories;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.devtools.moe.client.repositories.RevisionMetadata.FieldParsingResult;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+public class RevisionMetadataCacheTest extends TestCase {
+  private static final String URL = "https://example.com/repo.git";
+
+  private File directory;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    directory = Files.createTempDirectory("metadata_cache").toFile();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MoreFiles.deleteRecursively(directory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    super.tearDown();
+  }
+
+  private RevisionMetadataCache newCache() {
+    return new RevisionMetadataCache(
+        directory, RevisionMetadataCache.DEFAULT_MAX_BYTES_PER_REPOSITORY);
+  }
+
+  private static RevisionMetadata metadata(String id, String... parents) {
+    RevisionMetadata.Builder builder =
+        RevisionMetadata.builder()
+            .id(id)
+            .author("Foo Bar <foo@example.com>")
+            .date(new DateTime(1357990705000L, DateTimeZone.forOffsetHours(-8)))
+            .description("description of " + id);
+    for (String parent : parents) {
+      builder.parentsBuilder().add(Revision.create(parent, "original"));
+    }
+    return builder.build();
+  }
+
+  public void testRoundTripsAcrossInstances() {
+    RevisionMetadata metadata =
+        metadata("abc", "p1", "p2").toBuilder()
+            .author(null)
+            .description(Strings.repeat("long description ", 10000))
+            .build();
+    newCache().put(URL, metadata);
+
+    RevisionMetadata cached = newCache().get(URL, Revision.create("abc", "repo"));
+    assertEquals(metadata.description(), cached.description());
+    assertNull(cached.author());
+    assertEquals(metadata.date(), cached.date());
+    // Parents belong to the repository the revision was requested from.
+    assertThat(cached.parents())
+        .containsExactly(Revision.create("p1", "repo"), Revision.create("p2", "repo"))
+        .inOrder();
+  }
+
+  public void testFieldsRoundTrip() throws Exception {
+    RevisionMetadata.Builder builder = metadata("abc").toBuilder();
+    builder.fieldsBuilder().put("KEY", "value").put("KEY", "other");
+    RevisionMetadata metadata = builder.build();
+
+    RevisionMetadata decoded =
+        RevisionMetadataCache.decode(RevisionMetadataCache.encode(metadata), "repo");
+    assertEquals(metadata.fields(), decoded.fields());
+  }
+
+  public void testRepositoriesAreSeparate() {
+    RevisionMetadataCache cache = newCache();
+    cache.put(URL, metadata("abc"));
+
+    assertNull(cache.get("https://example.com/other.git", Revision.create("abc", "repo")));
+    assertNull(newCache().get("https://example.com/other.git", Revision.create("abc", "repo")));
+  }
+
+  public void testDisabledCacheHoldsNothing() {
+    RevisionMetadataCache.DISABLED.put(URL, metadata("abc"));
+    assertNull(RevisionMetadataCache.DISABLED.get(URL, Revision.create("abc", "repo")));
+  }
+
+  public void testIgnoresTornRecord() throws Exception {
+    RevisionMetadataCache cache = newCache();
+    cache.put(URL, metadata("abc"));
+    try (OutputStream out = new FileOutputStream(cache.fileFor(URL), true)) {
+      out.write(new byte[] {0, 0, 1, 0, 42}); // A 256-byte record, cut off after one byte.
+    }
+
+    RevisionMetadataCache reloaded = newCache();
+    assertEquals(metadata("abc"), reloaded.get(URL, Revision.create("abc", "original")));
+    assertNull(reloaded.get(URL, Revision.create("def", "original")));
+
+    // The torn record is cut off, so records appended after it can be read back.
+    reloaded.put(URL, metadata("def"));
+    assertEquals(metadata("def"), newCache().get(URL, Revision.create("def", "original")));
+  }
+
+  public void testCompactsToNewestRecords() {
+    RevisionMetadataCache cache = new RevisionMetadataCache(directory, 4096);
+    for (int i = 0; i < 100; i++) {
+      cache.put(URL, metadata("rev" + i));
+      assertThat(cache.fileFor(URL).length()).isAtMost(4096L);
+    }
+
+    RevisionMetadataCache reloaded = new RevisionMetadataCache(directory, 4096);
+    assertNotNull(reloaded.get(URL, Revision.create("rev99", "repo")));
+    assertNull(reloaded.get(URL, Revision.create("rev0", "repo")));
+
+    // A file grown past a (since lowered) limit is compacted when loaded.
+    reloaded = new RevisionMetadataCache(directory, 1024);
+    assertNotNull(reloaded.get(URL, Revision.create("rev99", "repo")));
+    assertThat(reloaded.fileFor(URL).length()).isAtMost(512L + 64);
+  }
+
+  /** A history over a single revision, "abc", which counts calls to createMetadata. */
+  private static class OneRevisionHistory extends AbstractRevisionHistory {
+    int created;
+
+    OneRevisionHistory(RevisionMetadataCache cache) {
+      super(cache, URL);
+    }
+
+    @Override
+    public Revision findHighestRevision(String revId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected RevisionMetadata createMetadata(Revision revision) {
+      created++;
+      return revision.revId().equals("abc") || revision.revId().equals("HEAD")
+          ? metadata("abc")
+          : null;
+    }
+
+    @Override
+    protected FieldParsingResult parseFields(RevisionMetadata metadata) {
+      FieldParsingResult.Builder result = FieldParsingResult.builder();
+      result.description("parsed");
+      result.fieldsBuilder().put("PARSED", "true");
+      return result.build();
+    }
+
+    @Override
+    protected List<Revision> findHeadRevisions() {
+      return ImmutableList.of(Revision.create("abc", "repo"));
+    }
+  }
+
+  public void testHistoryConsultsCacheBeforeCreatingMetadata() {
+    OneRevisionHistory first = new OneRevisionHistory(newCache());
+    assertEquals("parsed", first.getMetadata(Revision.create("abc", "repo")).description());
+    assertEquals(1, first.created);
+
+    OneRevisionHistory second = new OneRevisionHistory(newCache());
+    RevisionMetadata metadata = second.getMetadata(Revision.create("abc", "repo"));
+    assertEquals(0, second.created);
+    // Fields are parsed from the cached raw metadata, not stored in the cache.
+    assertEquals("parsed", metadata.description());
+    assertThat(metadata.fields()).containsEntry("PARSED", "true");
+    assertThat(newCache().get(URL, Revision.create("abc", "repo")).fields()).isEmpty();
+  }
+
+  public void testHistoryDoesNotCacheSymbolicRevisions() {
+    RevisionMetadataCache cache = newCache();
+    OneRevisionHistory history = new OneRevisionHistory(cache);
+    history.getMetadata(Revision.create("HEAD", "repo"));
+    history.getMetadata(Revision.create("missing", "repo"));
+
+    assertNull(cache.get(URL, Revision.create("HEAD", "repo")));
+    history.getMetadata(Revision.create("HEAD", "repo"));
+    history.getMetadata(Revision.create("missing", "repo"));
+    assertEquals(4, history.created);
+  }
+}
@@ -31,16 +31,16 @@ import com.google.devtools.moe.client.GsonModule;
 import com.google.devtools.moe.client.repositories.Revision;
 import com.google.devtools.moe.client.repositories.RevisionHistory.SearchType;
 import com.google.devtools.moe.client.repositories.RevisionMetadata;
+import com.google.devtools.moe.client.repositories.RevisionMetadataCache;
 import com.google.devtools.moe.client.testing.DummyDb;
+import java.util.ArrayList;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Map;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 public class SvnRevisionHistoryTest extends TestCase {
   // Svn actually follows the spec!
@@ -130,6 +130,101 @@ public class SvnRevisionHistoryTest extends TestCase {
     assertEquals(ImmutableList.of(), rs.get(1).parents());
   }
 
+  public void testGetMetadataBatch() throws Exception {
+    final List<List<String>> commands = new ArrayList<>();
+    // The ranged log is spooled through CommandRunner's default streaming methods, which the mock
+    // control would intercept, so this uses a fake runner instead.
+    CommandRunner fakeCommandRunner =
+        new CommandRunner() {
+          @Override
+          public String runCommand(String workingDirectory, String command, List<String> args) {
+            return runCommandWithFullOutput(workingDirectory, command, args).getStdout();
+          }
+
+          @Override
+          public CommandOutput runCommandWithFullOutput(
+              String workingDirectory, String command, List<String> args) {
+            commands.add(ImmutableList.<String>builder().add(command).addAll(args).build());
+            return new CommandOutput(
+                "<log><logentry revision=\"5\"><msg>five</msg></logentry>"
+                    + "<logentry revision=\"4\"><msg>four</msg></logentry>"
+                    + "<logentry revision=\"3\"><msg>three</msg></logentry></log>",
+                "");
+          }
+        };
+
+    SvnRevisionHistory history =
+        new SvnRevisionHistory(
+            "internal_svn",
+            "http://foo/svn/trunk/",
+            new SvnUtil(fakeCommandRunner),
+            RevisionMetadataCache.DISABLED,
+            true);
+    Map<Revision, RevisionMetadata> result =
+        history.getMetadataBatch(ImmutableList.of(Revision.create(5, "internal_svn")), 2);
+
+    assertThat(commands)
+        .containsExactly(
+            ImmutableList.of(
+                "svn",
+                "--no-auth-cache",
+                "log",
+                "--xml",
+                "-l",
+                "3",
+                "-r",
+                "5:1",
+                "http://foo/svn/trunk/"));
+    // The extra entry only supplies the last entry's parent.
+    assertThat(result.keySet())
+        .containsExactly(Revision.create(5, "internal_svn"), Revision.create(4, "internal_svn"))
+        .inOrder();
+    assertThat(result.get(Revision.create(4, "internal_svn")).parents())
+        .containsExactly(Revision.create(3, "internal_svn"));
+  }
+
+  /**
+   * Tests that a branch's history doesn't take a trunk revision it lacks for the branch revision
+   * svn log answers with in its place.
+   */
+  public void testFindAncestorsExcluding_revisionNotOnBranch() {
+    CommandRunner fakeCommandRunner =
+        new CommandRunner() {
+          @Override
+          public String runCommand(String workingDirectory, String command, List<String> args) {
+            return runCommandWithFullOutput(workingDirectory, command, args).getStdout();
+          }
+
+          @Override
+          public CommandOutput runCommandWithFullOutput(
+              String workingDirectory, String command, List<String> args) {
+            // The branch was copied at r100 and changed at r101 and r105; trunk's head is r110.
+            String range = args.get(args.indexOf("-r") + 1);
+            String log =
+                range.startsWith("110:") || range.startsWith("105:")
+                    ? "<logentry revision=\"105\"><msg>b</msg></logentry>"
+                        + "<logentry revision=\"101\"><msg>a</msg></logentry>"
+                    : range.startsWith("101:")
+                        ? "<logentry revision=\"101\"><msg>a</msg></logentry>"
+                            + "<logentry revision=\"100\"><msg>copy</msg></logentry>"
+                        : "<logentry revision=\"100\"><msg>copy</msg></logentry>";
+            return new CommandOutput("<log>" + log + "</log>", "");
+          }
+        };
+    SvnRevisionHistory history =
+        new SvnRevisionHistory(
+            "internal_svn", "http://foo/svn/branches/b/", new SvnUtil(fakeCommandRunner));
+
+    assertNull(
+        history.findAncestorsExcluding(
+            Revision.create(105, "internal_svn"), Revision.create(110, "internal_svn")));
+    assertThat(
+            history.findAncestorsExcluding(
+                Revision.create(105, "internal_svn"), Revision.create(100, "internal_svn")))
+        .containsExactly(Revision.create(101, "internal_svn"), Revision.create(105, "internal_svn"))
+        .inOrder();
+  }
+
   public void testGetMetadata() {
     try {
       expect(
@@ -173,57 +268,26 @@ public class SvnRevisionHistoryTest extends TestCase {
     control.verify();
   }
 
-  /**
-   * Tests parsing of this SVN log entry:
-   *
-   * <pre>{@code
-   * <logentry>
-   *   <author>user</author>
-   *   <text/>
-   *   <date>yyyy-mm-dd</date>
-   *   <msg>description</msg>
-   * </logentry>
-   * }</pre>
-   */
-  public void testParseMetadataNodeList() throws Exception {
-    Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-
-    Element logEntry = doc.createElement("logentry");
-    doc.appendChild(logEntry);
-
-    Element author = doc.createElement("author");
-    author.appendChild(doc.createTextNode("user"));
-    logEntry.appendChild(author);
-
-    // The XML parser often throws in random child nodes like this.
-    logEntry.appendChild(doc.createElement("text"));
-
-    Element date = doc.createElement("date");
-    date.appendChild(doc.createTextNode(SVN_COMMIT_DATE));
-    logEntry.appendChild(date);
-
-    Element msg = doc.createElement("msg");
-    msg.appendChild(doc.createTextNode("description"));
-    logEntry.appendChild(msg);
-
+  /** Tests that elements other than the author, date and message are skipped. */
+  public void testParseMetadata_otherElements() {
     SvnRevisionHistory history =
         new SvnRevisionHistory("internal_svn", "http://foo/svn/trunk/", null);
-    RevisionMetadata result =
-        history.parseMetadataNodeList(
-            "7",
-            doc.getElementsByTagName("logentry").item(0).getChildNodes(),
-            ImmutableList.of(Revision.create(6, "internal")));
-
-    RevisionMetadata expected =
-        RevisionMetadata.builder()
-            .id("7")
-            .author("user")
-            .date(DATE)
-            .description("description")
-            .withParents(Revision.create(6, "internal"))
-            .build();
-
-    assertThat(result).isEqualTo(expected);
+    List<RevisionMetadata> rs =
+        history.parseMetadata(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<log>\n"
+                + "<logentry revision=\"7\">\n<author>user</author>\n<text/>\n"
+                + "<date>"
+                + SVN_COMMIT_DATE
+                + "</date>\n"
+                + "<paths><path action=\"M\">/trunk/foo</path></paths>\n"
+                + "<msg>description &amp; more</msg>\n</logentry>\n</log>\n");
+
+    assertThat(rs).hasSize(1);
+    assertEquals("7", rs.get(0).id());
+    assertEquals("user", rs.get(0).author());
+    assertThat(rs.get(0).date()).isEquivalentAccordingToCompareTo(DATE);
+    assertEquals("description & more", rs.get(0).description());
+    assertThat(rs.get(0).parents()).isEmpty();
   }
 
   public void testFindNewRevisions() {
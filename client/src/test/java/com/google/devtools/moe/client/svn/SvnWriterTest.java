@@ -20,9 +20,9 @@ import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.Ui;
@@ -99,8 +99,8 @@ public class SvnWriterTest extends TestCase {
   }
 
   public void testPutEmptyCodebase() throws Exception {
-    expect(fileSystem.findFiles(f("/codebase"))).andReturn(ImmutableSet.<File>of());
-    expect(fileSystem.findFiles(f("/writer"))).andReturn(ImmutableSet.<File>of(f("/writer/.svn/")));
+    expect(fileSystem.indexFiles(f("/codebase"))).andReturn(FileIndex.of());
+    expect(fileSystem.indexFiles(f("/writer"))).andReturn(FileIndex.of(".svn"));
 
     control.replay();
     Codebase c =
@@ -226,8 +226,8 @@ public class SvnWriterTest extends TestCase {
   }
 
   public void testPutEmptyCodebaseWithMetadata() throws Exception {
-    expect(fileSystem.findFiles(f("/codebase"))).andReturn(ImmutableSet.<File>of());
-    expect(fileSystem.findFiles(f("/writer"))).andReturn(ImmutableSet.<File>of(f("/writer/.svn/")));
+    expect(fileSystem.indexFiles(f("/codebase"))).andReturn(FileIndex.of());
+    expect(fileSystem.indexFiles(f("/writer"))).andReturn(FileIndex.of(".svn"));
 
     File script = new File("/writer/svn_commit.sh");
     fileSystem.write(
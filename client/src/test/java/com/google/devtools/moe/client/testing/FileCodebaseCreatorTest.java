@@ -19,8 +19,9 @@ package com.google.devtools.moe.client.testing;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.devtools.moe.client.CommandRunner;
-import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.MoeProblem;
 import com.google.devtools.moe.client.codebase.Codebase;
@@ -28,7 +29,6 @@ import com.google.devtools.moe.client.codebase.CodebaseCreationError;
 import com.google.devtools.moe.client.tools.TarUtils;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
@@ -37,9 +37,26 @@ import org.easymock.IMocksControl;
 public class FileCodebaseCreatorTest extends TestCase {
   private final IMocksControl control = EasyMock.createControl();
   private final FileSystem mockfs = control.createMock(FileSystem.class);
-  private final CommandRunner mockcmd = EasyMock.createMock(CommandRunner.class);
   private final FileCodebaseCreator creator =
-      new FileCodebaseCreator(mockfs, new TarUtils(mockfs, mockcmd));
+      new FileCodebaseCreator(mockfs, new TarUtils(mockfs));
+  private File tempDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    tempDir = Files.createTempDir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  /** Writes an empty tar archive, which is two blocks of zeros. */
+  private File emptyTar() throws IOException {
+    File tar = new File(tempDir, "bar.tar");
+    Files.write(new byte[1024], tar);
+    return tar;
+  }
 
   private void expectDirCopy(File src, File dest) throws Exception {
     expect(mockfs.exists(EasyMock.eq(src))).andReturn(true);
@@ -148,26 +165,17 @@ public class FileCodebaseCreatorTest extends TestCase {
   }
 
   /** Tests whether the getCodebasePath() method works with a .tar. */
-  public void testGetCodebasePathWithKnownFile()
-      throws CodebaseCreationError, IOException, CommandException {
-    String filePath = "/foo/bar.tar";
-    File fileFolder = new File(filePath);
+  public void testGetCodebasePathWithKnownFile() throws CodebaseCreationError, IOException {
+    File fileFolder = emptyTar();
 
     expect(mockfs.exists(EasyMock.eq(fileFolder))).andReturn(true);
     expect(mockfs.isDirectory(EasyMock.eq(fileFolder))).andReturn(false);
     expect(mockfs.isFile(EasyMock.eq(fileFolder))).andReturn(true);
-    expect(mockfs.getTemporaryDirectory(EasyMock.<String>anyObject())).andReturn(new File("sth"));
+    expect(mockfs.getTemporaryDirectory(EasyMock.<String>anyObject()))
+        .andReturn(new File(tempDir, "sth"));
     mockfs.makeDirs(EasyMock.<File>anyObject());
     EasyMock.expectLastCall().atLeastOnce();
 
-    expect(
-            mockcmd.runCommand(
-                EasyMock.<String>anyObject(),
-                EasyMock.<String>anyObject(),
-                EasyMock.<List<String>>anyObject()))
-        .andReturn(null);
-    EasyMock.replay(mockcmd);
-
     control.replay();
     File codebasePath = creator.getCodebasePath(fileFolder);
     control.verify();
@@ -182,23 +190,17 @@ public class FileCodebaseCreatorTest extends TestCase {
    * @throws Exception
    */
   public void testExpandToDirectory() throws Exception {
-    String filePath = "/foo/bar.tar";
-    File file = new File(filePath);
+    File file = emptyTar();
+    File expanded = new File(tempDir, "test");
 
-    expect(mockfs.getTemporaryDirectory(EasyMock.<String>anyObject())).andReturn(new File("/test"));
+    expect(mockfs.getTemporaryDirectory(EasyMock.<String>anyObject())).andReturn(expanded);
     mockfs.makeDirs(EasyMock.<File>anyObject());
     EasyMock.expectLastCall().once();
-    expect(
-            mockcmd.runCommand(
-                EasyMock.<String>anyObject(),
-                EasyMock.<String>anyObject(),
-                EasyMock.<List<String>>anyObject()))
-        .andReturn(null);
     control.replay();
     // Run the .expandToDirectory method.
     File directory = creator.expandToDirectory(file);
     assertNotNull(directory);
-    assertEquals("/test", directory.toString());
+    assertEquals(expanded, directory);
 
     control.verify();
   }
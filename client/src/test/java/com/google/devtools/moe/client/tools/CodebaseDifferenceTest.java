@@ -17,12 +17,17 @@
 package com.google.devtools.moe.client.tools;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.codebase.Codebase;
+import com.google.devtools.moe.client.codebase.CodebaseFingerprinter;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
 import com.google.devtools.moe.client.tools.FileDifference.Comparison;
 import java.io.File;
@@ -39,8 +44,8 @@ public class CodebaseDifferenceTest extends TestCase {
   private final FileDifference.FileDiffer fileDiffer = mock(FileDifference.FileDiffer.class);
 
   public void testSame() throws Exception {
-    when(filesystem.findFiles(new File("/1"))).thenReturn(ImmutableSet.of(f1));
-    when(filesystem.findFiles(new File("/2"))).thenReturn(ImmutableSet.of(f2));
+    when(filesystem.indexFiles(new File("/1"))).thenReturn(FileIndex.of("foo"));
+    when(filesystem.indexFiles(new File("/2"))).thenReturn(FileIndex.of("foo"));
     when(fileDiffer.diffFiles("foo", f1, f2))
         .thenReturn(FileDifference.create("foo", f1, f2, Comparison.SAME, Comparison.SAME, null));
 
@@ -50,8 +55,8 @@ public class CodebaseDifferenceTest extends TestCase {
   }
 
   public void testDifferent() throws Exception {
-    when(filesystem.findFiles(new File("/1"))).thenReturn(ImmutableSet.of(f1));
-    when(filesystem.findFiles(new File("/2"))).thenReturn(ImmutableSet.of(f2));
+    when(filesystem.indexFiles(new File("/1"))).thenReturn(FileIndex.of("foo"));
+    when(filesystem.indexFiles(new File("/2"))).thenReturn(FileIndex.of("foo"));
     when(fileDiffer.diffFiles("foo", f1, f2))
         .thenReturn(FileDifference.create("foo", f1, f2, Comparison.ONLY1, Comparison.SAME, null));
 
@@ -59,4 +64,43 @@ public class CodebaseDifferenceTest extends TestCase {
 
     assertThat(d.areDifferent()).named("areDifferent").isTrue();
   }
+
+  public void testFindDifference_equivalent() throws Exception {
+    String[] files = new String[100];
+    for (int i = 0; i < 100; i++) {
+      files[i] = "file" + i;
+    }
+    when(filesystem.indexFiles(new File("/1"))).thenReturn(FileIndex.of(files));
+    when(filesystem.indexFiles(new File("/2"))).thenReturn(FileIndex.of(files));
+    when(fileDiffer.diffFiles(anyString(), any(File.class), any(File.class)))
+        .thenAnswer(
+            invocation ->
+                FileDifference.create(
+                    invocation.getArgument(0),
+                    invocation.getArgument(1),
+                    invocation.getArgument(2),
+                    Comparison.SAME,
+                    Comparison.SAME,
+                    null));
+
+    CodebaseDiffer differ =
+        new CodebaseDiffer(fileDiffer, filesystem, new CodebaseFingerprinter(filesystem), 4);
+    assertThat(differ.findDifference(c1, c2)).isNull();
+    verify(fileDiffer).diffFiles("file99", new File("/1/file99"), new File("/2/file99"));
+  }
+
+  public void testFindDifference_stopsAtDifference() throws Exception {
+    File g1 = new File("/1/goo");
+    File g2 = new File("/2/goo");
+    when(filesystem.indexFiles(new File("/1"))).thenReturn(FileIndex.of("foo", "goo"));
+    when(filesystem.indexFiles(new File("/2"))).thenReturn(FileIndex.of("foo", "goo"));
+    when(fileDiffer.diffFiles("foo", f1, f2))
+        .thenReturn(FileDifference.create("foo", f1, f2, Comparison.SAME, Comparison.ONLY2, null));
+
+    CodebaseDiffer differ =
+        new CodebaseDiffer(fileDiffer, filesystem, new CodebaseFingerprinter(filesystem), 1);
+    assertThat(differ.findDifference(c1, c2))
+        .isEqualTo("foo is executable only in the second codebase");
+    verify(fileDiffer, never()).diffFiles("goo", g1, g2);
+  }
 }
@@ -16,14 +16,21 @@
 
 package com.google.devtools.moe.client.tools;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 import com.google.devtools.moe.client.CommandRunner;
 import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import com.google.devtools.moe.client.SystemFileSystem;
 import com.google.devtools.moe.client.tools.FileDifference.Comparison;
 import com.google.devtools.moe.client.tools.FileDifference.ConcreteFileDiffer;
+import com.google.devtools.moe.client.tools.FileDifference.InProcessFileDiffer;
 import java.io.File;
+import java.util.Random;
 import junit.framework.TestCase;
 import org.easymock.EasyMock;
 import org.easymock.IMocksControl;
@@ -173,4 +180,141 @@ public class FileDifferenceTest extends TestCase {
     control.verify();
     assertFalse(d.isDifferent());
   }
+
+  public void testInProcessMatchesDiff() throws Exception {
+    File dir = Files.createTempDir();
+    try {
+      assertSameAsDiff(dir, "one\ntwo\nthree\n", "one\n2\nthree\n");
+      assertSameAsDiff(dir, "no newline", "no newline\n");
+      assertSameAsDiff(dir, "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\nl\nm\nn\n",
+          "a\nB\nc\nd\ne\nf\ng\nh\ni\nj\nk\nL\nm\nn\nappended\n");
+      assertSameAsDiff(dir, "shared\nlines\n", null);
+      assertSameAsDiff(dir, null, "new\nfile");
+      assertSameAsDiff(dir, "text\n", "bin\0ary\n");
+      assertSameAsDiff(dir, "", null);
+      assertSameAsDiff(dir, "same\n", "same\n");
+    } finally {
+      new SystemFileSystem().deleteRecursively(dir);
+    }
+  }
+
+  public void testInProcessDiffOfRepeatedLines() throws Exception {
+    File dir = Files.createTempDir();
+    try {
+      assertEquals(
+          "@@ -1,5 +1,5 @@\n-a\n b\n a\n b\n a\n+b\n",
+          hunks(inProcessDiff(dir, "a\nb\na\nb\na\n", "b\na\nb\na\nb\n")));
+      assertEquals(
+          "@@ -1,4 +1,3 @@\n a\n-a\n b\n b\n",
+          hunks(inProcessDiff(dir, "a\na\nb\nb\n", "a\nb\nb\n")));
+    } finally {
+      new SystemFileSystem().deleteRecursively(dir);
+    }
+  }
+
+  /**
+   * Checks that patch(1) applies the in-process differ's diffs of random texts. Lines are drawn
+   * from only a few values, so that there are many equally good alignments to choose between.
+   */
+  public void testInProcessDiffAppliesWithPatch() throws Exception {
+    File dir = Files.createTempDir();
+    try {
+      Random random = new Random(13);
+      File patch = new File(dir, "patch");
+      File patched = new File(dir, "patched");
+      for (int trial = 0; trial < 300; trial++) {
+        String content1 = randomText(random);
+        String content2 = randomText(random);
+        String diff = inProcessDiff(dir, content1, content2);
+        if (diff == null) {
+          assertEquals(content1, content2);
+          continue;
+        }
+        write(patch, diff);
+        new SystemCommandRunner()
+            .runCommand(
+                dir.getAbsolutePath(),
+                "patch",
+                ImmutableList.of(
+                    "-s",
+                    "-o",
+                    patched.getAbsolutePath(),
+                    new File(dir, "1/foo").getAbsolutePath(),
+                    patch.getAbsolutePath()));
+        assertEquals(
+            content1 + " / " + content2,
+            content2,
+            Files.asCharSource(patched, ISO_8859_1).read());
+      }
+    } finally {
+      new SystemFileSystem().deleteRecursively(dir);
+    }
+  }
+
+  public void testInProcessPreservesBytes() throws Exception {
+    File dir = Files.createTempDir();
+    try {
+      // Latin-1, which isn't valid UTF-8.
+      assertSameAsDiff(dir, "caf\u00e9\nna\u00efve\n", "caf\u00e8\nna\u00efve\n");
+    } finally {
+      new SystemFileSystem().deleteRecursively(dir);
+    }
+  }
+
+  private static String randomText(Random random) {
+    StringBuilder text = new StringBuilder();
+    int lines = random.nextInt(20);
+    for (int i = 0; i < lines; i++) {
+      text.append((char) ('a' + random.nextInt(4))).append('\n');
+    }
+    return text.toString();
+  }
+
+  /** Returns the in-process differ's content diff of files with the given contents. */
+  private static String inProcessDiff(File dir, String content1, String content2)
+      throws Exception {
+    File file1 = new File(dir, "1/foo");
+    File file2 = new File(dir, "2/foo");
+    write(file1, content1);
+    write(file2, content2);
+    return new InProcessFileDiffer(new SystemFileSystem())
+        .diffFiles("foo", file1, file2)
+        .contentDiff();
+  }
+
+  /** Returns a unified diff without its "---" and "+++" header lines, which hold timestamps. */
+  private static String hunks(String diff) {
+    return diff.substring(diff.indexOf('\n', diff.indexOf('\n') + 1) + 1);
+  }
+
+  /**
+   * Checks that the in-process differ's content diff is exactly diff -N -u's output, for contents
+   * whose changes are unambiguous, so that only the format is compared. Contents are written, and
+   * diff's output read, as ISO-8859-1, so each char is one byte.
+   */
+  private static void assertSameAsDiff(File dir, String content1, String content2)
+      throws Exception {
+    File file1 = new File(dir, "1/foo");
+    File file2 = new File(dir, "2/foo");
+    write(file1, content1);
+    write(file2, content2);
+
+    Process diff =
+        new ProcessBuilder("diff", "-N", "-u", file1.getAbsolutePath(), file2.getAbsolutePath())
+            .start();
+    String expected = new String(ByteStreams.toByteArray(diff.getInputStream()), ISO_8859_1);
+    diff.waitFor();
+    FileDifference d =
+        new InProcessFileDiffer(new SystemFileSystem()).diffFiles("foo", file1, file2);
+    assertEquals(expected.isEmpty() ? null : expected, d.contentDiff());
+  }
+
+  private static void write(File file, String content) throws Exception {
+    if (content == null) {
+      file.delete();
+    } else {
+      Files.createParentDirs(file);
+      Files.asCharSink(file, ISO_8859_1).write(content);
+    }
+  }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.devtools.moe.client.CommandRunner.CommandException;
+import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import com.google.devtools.moe.client.SystemFileSystem;
+import com.google.devtools.moe.client.Utils;
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+/** Tests {@link TarExtractor}, mostly against the output of {@code git archive}. */
+public class TarExtractorTest extends TestCase {
+  private final FileSystem fileSystem = new SystemFileSystem();
+  private final SystemCommandRunner cmd = new SystemCommandRunner();
+  private File tempDir;
+  private File repo;
+  private File destination;
+
+  @Override
+  protected void setUp() throws Exception {
+    tempDir = Files.createTempDir();
+    repo = new File(tempDir, "repo");
+    destination = new File(tempDir, "destination");
+    destination.mkdirs();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  private void write(String path, String content) throws IOException {
+    File file = new File(repo, path);
+    file.getParentFile().mkdirs();
+    Files.asCharSink(file, UTF_8).write(content);
+  }
+
+  private String git(String... args) throws CommandException {
+    return cmd.runCommand(repo.getAbsolutePath(), "git", ImmutableList.copyOf(args));
+  }
+
+  private String read(String path) throws IOException {
+    return Files.asCharSource(new File(destination, path), UTF_8).read();
+  }
+
+  public void testExtractsGitArchiveAsItStreams() throws Exception {
+    // Long enough that git archive records the path in a pax header.
+    String longName = Strings.repeat("long_directory_name/", 8) + "file.txt";
+    // Over a block, and not a multiple of one, so data and padding span writes.
+    String bigContent = Strings.repeat("0123456789abcdef", 1000) + "tail\n";
+    repo.mkdirs();
+    git("init", "-q");
+    write("README", "readme\n");
+    write("src/big.txt", bigContent);
+    write("bin/run.sh", "#!/bin/sh\n");
+    fileSystem.setExecutable(new File(repo, "bin/run.sh"));
+    write(longName, "deep\n");
+    write("ignored/secret.txt", "secret\n");
+    write("src/Foo.java~", "backup\n");
+    git("add", ".");
+    git("-c", "user.name=Foo Bar", "-c", "user.email=foo@example.com", "commit", "-q", "-m", "a");
+
+    try (TarExtractor extractor =
+        new TarExtractor(
+            destination,
+            Utils.nonMatchingPredicateFromRes(ImmutableList.of("^ignored/", "~$")),
+            fileSystem)) {
+      cmd.runCommandStreaming(
+          repo.getAbsolutePath(),
+          "git",
+          ImmutableList.of("archive", "--format=tar", "HEAD"),
+          extractor);
+    }
+
+    assertEquals("readme\n", read("README"));
+    assertEquals(bigContent, read("src/big.txt"));
+    assertEquals("deep\n", read(longName));
+    assertTrue(new File(destination, "bin/run.sh").canExecute());
+    assertFalse(new File(destination, "README").canExecute());
+    // Filtered files are never written.
+    assertFalse(new File(destination, "ignored/secret.txt").exists());
+    assertFalse(new File(destination, "src/Foo.java~").exists());
+  }
+
+  public void testByteAtATime() throws Exception {
+    repo.mkdirs();
+    write("a/b.txt", "b\n");
+    File tar = new File(tempDir, "a.tar");
+    cmd.runCommand(
+        repo.getAbsolutePath(), "tar", ImmutableList.of("-cf", tar.getAbsolutePath(), "a"));
+
+    try (TarExtractor extractor = new TarExtractor(destination, fileSystem)) {
+      for (byte b : Files.toByteArray(tar)) {
+        extractor.write(b);
+      }
+    }
+
+    assertEquals("b\n", read("a/b.txt"));
+  }
+
+  public void testRejectsEntriesOutsideDestination() throws Exception {
+    try (TarExtractor extractor = new TarExtractor(destination, fileSystem)) {
+      extractor.write(header("../escaped.txt"));
+      fail("Extracted an entry outside of the destination.");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("outside");
+    }
+    assertFalse(new File(tempDir, "escaped.txt").exists());
+  }
+
+  public void testHardLinksOnlyToExtractedFiles() throws Exception {
+    File outside = new File(tempDir, "outside.txt");
+    Files.asCharSink(outside, UTF_8).write("outside\n");
+    try (TarExtractor extractor = new TarExtractor(destination, fileSystem)) {
+      extractor.write(header("a.txt"));
+      extractor.write(header("b.txt", '1', "a.txt"));
+      extractor.write(header("link", '2', outside.getAbsolutePath()));
+      extractor.write(header("copy.txt", '1', "link"));
+      fail("Copied the target of a symbolic link.");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("not a regular file");
+    }
+    assertTrue(new File(destination, "b.txt").isFile());
+    assertFalse(new File(destination, "copy.txt").exists());
+  }
+
+  public void testRejectsGarbage() throws Exception {
+    try (TarExtractor extractor = new TarExtractor(destination, fileSystem)) {
+      extractor.write(Strings.repeat("not a tar ", 100).getBytes(UTF_8));
+      fail("Extracted something which isn't a tar.");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("Malformed");
+    }
+  }
+
+  /** Returns a ustar header for an empty regular file with the given name. */
+  private static byte[] header(String name) {
+    return header(name, '0', "");
+  }
+
+  /** Returns a ustar header for an empty entry of the given type, name and link name. */
+  private static byte[] header(String name, char type, String linkName) {
+    byte[] header = new byte[512];
+    put(header, 0, name);
+    put(header, 100, "0000644");
+    put(header, 124, "00000000000");
+    put(header, 148, "        ");
+    header[156] = (byte) type;
+    put(header, 157, linkName);
+    put(header, 257, "ustar");
+    put(header, 263, "00");
+    int checksum = 0;
+    for (byte b : header) {
+      checksum += b & 0xff;
+    }
+    put(header, 148, String.format("%06o", checksum));
+    header[154] = 0;
+    return header;
+  }
+
+  private static void put(byte[] header, int offset, String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    System.arraycopy(bytes, 0, header, offset, bytes.length);
+  }
+}
@@ -16,33 +16,112 @@
 
 package com.google.devtools.moe.client.tools;
 
-import static org.easymock.EasyMock.expect;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.devtools.moe.client.CommandRunner;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 import com.google.devtools.moe.client.FileSystem;
+import com.google.devtools.moe.client.SystemCommandRunner;
+import com.google.devtools.moe.client.SystemFileSystem;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import junit.framework.TestCase;
-import org.easymock.EasyMock;
-import org.easymock.IMocksControl;
 
 public class TarUtilsTest extends TestCase {
-  private final IMocksControl control = EasyMock.createControl();
-  private final CommandRunner cmd = control.createMock(CommandRunner.class);
-  private final FileSystem fileSystem = control.createMock(FileSystem.class);
-  private final TarUtils tarUtils = new TarUtils(fileSystem, cmd);
+  private final SystemCommandRunner cmd = new SystemCommandRunner();
+  private File tempDir;
+  private final FileSystem fileSystem =
+      new SystemFileSystem() {
+        @Override
+        public File getTemporaryDirectory(String prefix) {
+          return new File(tempDir, prefix + "1");
+        }
+      };
+  private final TarUtils tarUtils = new TarUtils(fileSystem);
+  private File source;
+  private String longName;
+
+  @Override
+  protected void setUp() throws Exception {
+    tempDir = Files.createTempDir();
+    source = new File(tempDir, "source");
+    // Longer than the 100 characters a plain ustar header has room for.
+    longName = Strings.repeat("long_directory_name/", 8) + "file.txt";
+    write("README", "readme\n");
+    write("bin/run.sh", "#!/bin/sh\n");
+    fileSystem.setExecutable(new File(source, "bin/run.sh"));
+    write(longName, "deep\n");
+    java.nio.file.Files.createSymbolicLink(source.toPath().resolve("link"), Paths.get("README"));
+    new File(source, "empty").mkdirs();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    MoreFiles.deleteRecursively(tempDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  private void write(String path, String content) throws Exception {
+    File file = new File(source, path);
+    file.getParentFile().mkdirs();
+    Files.asCharSink(file, UTF_8).write(content);
+  }
+
+  private void assertExpanded(File expanded) throws Exception {
+    assertEquals("readme\n", Files.asCharSource(new File(expanded, "README"), UTF_8).read());
+    assertEquals("deep\n", Files.asCharSource(new File(expanded, longName), UTF_8).read());
+    assertTrue(new File(expanded, "bin/run.sh").canExecute());
+    assertFalse(new File(expanded, "README").canExecute());
+    Path link = expanded.toPath().resolve("link");
+    assertTrue(java.nio.file.Files.isSymbolicLink(link));
+    assertEquals("README", java.nio.file.Files.readSymbolicLink(link).toString());
+    assertTrue(new File(expanded, "empty").isDirectory());
+  }
 
   public void testExpandTar() throws Exception {
-    fileSystem.makeDirs(new File("/dummy/path/45.expanded"));
-    expect(fileSystem.getTemporaryDirectory("expanded_tar_"))
-        .andReturn(new File("/dummy/path/45.expanded"));
-    expect(
-            cmd.runCommand(
-                "/dummy/path/45.expanded", "tar", ImmutableList.of("-xf", "/dummy/path/45.tar")))
-        .andReturn("");
-    control.replay();
-    File expanded = tarUtils.expandTar(new File("/dummy/path/45.tar"));
-    assertEquals(new File("/dummy/path/45.expanded"), expanded);
-    control.verify();
+    File tar = new File(tempDir, "source.tar");
+    cmd.runCommand(
+        source.getAbsolutePath(), "tar", ImmutableList.of("-cf", tar.getAbsolutePath(), "."));
+
+    File expanded = tarUtils.expandTar(tar);
+    try {
+      assertExpanded(expanded);
+    } finally {
+      fileSystem.deleteRecursively(expanded);
+    }
+  }
+
+  public void testExpandGzippedTar() throws Exception {
+    File tar = new File(tempDir, "source.tar.gz");
+    cmd.runCommand(
+        source.getAbsolutePath(), "tar", ImmutableList.of("-czf", tar.getAbsolutePath(), "."));
+
+    File expanded = tarUtils.expandTar(tar);
+    try {
+      assertExpanded(expanded);
+    } finally {
+      fileSystem.deleteRecursively(expanded);
+    }
+  }
+
+  public void testExpandTruncatedTarFails() throws Exception {
+    File tar = new File(tempDir, "source.tar");
+    cmd.runCommand(
+        source.getAbsolutePath(), "tar", ImmutableList.of("-cf", tar.getAbsolutePath(), "."));
+    byte[] bytes = Files.toByteArray(tar);
+    Files.write(Arrays.copyOf(bytes, 700), tar);
+
+    try {
+      tarUtils.expandTar(tar);
+      fail("Expanded a truncated tar.");
+    } catch (IOException expected) {
+      assertThat(expected).hasMessageThat().contains("Truncated");
+    }
   }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class ThreeWayMergeTest extends TestCase {
+
+  public void testNonOverlappingChanges() {
+    ThreeWayMerge.Result result =
+        ThreeWayMerge.merge("a\nB\nc\nd\ne\n", "a\nb\nc\nd\ne\n", "a\nb\nc\nD\ne\n", "m", "y");
+    assertEquals("a\nB\nc\nD\ne\n", result.text());
+    assertFalse(result.hasConflicts());
+  }
+
+  public void testIdenticalChanges() {
+    ThreeWayMerge.Result result =
+        ThreeWayMerge.merge("a\nB\nc\n", "a\nb\nc\n", "a\nB\nc\n", "m", "y");
+    assertEquals("a\nB\nc\n", result.text());
+    assertFalse(result.hasConflicts());
+  }
+
+  public void testConflict() {
+    ThreeWayMerge.Result result =
+        ThreeWayMerge.merge("a\nB\nc\n", "a\nb\nc\n", "a\nX\nc\n", "m", "y");
+    assertEquals("a\n<<<<<<< m\nB\n=======\nX\n>>>>>>> y\nc\n", result.text());
+    assertEquals(1, result.conflicts());
+  }
+
+  public void testAdjacentChangesConflict() {
+    ThreeWayMerge.Result result =
+        ThreeWayMerge.merge("a\nB\nc\nd\n", "a\nb\nc\nd\n", "a\nb\nC\nd\n", "m", "y");
+    assertEquals("a\n<<<<<<< m\nB\nc\n=======\nb\nC\n>>>>>>> y\nd\n", result.text());
+  }
+
+  public void testRepeatedLines() {
+    // Both delete the leading "b"; mine adds a "c" and yours changes the last line.
+    ThreeWayMerge.Result result =
+        ThreeWayMerge.merge(
+            "a\nb\nc\na\nb\nb\nc\n", "b\na\nb\na\nb\nb\nc\n", "a\nb\na\nb\nb\nb\n", "m", "y");
+    assertEquals("a\nb\nc\na\nb\nb\nb\n", result.text());
+    assertFalse(result.hasConflicts());
+  }
+
+  public void testInsertionsAtEitherEnd() {
+    ThreeWayMerge.Result result = ThreeWayMerge.merge("x\na\nb\n", "a\nb\n", "a\nb\ny\n", "m", "y");
+    assertEquals("x\na\nb\ny\n", result.text());
+    assertFalse(result.hasConflicts());
+  }
+
+  public void testConflictWithoutFinalNewline() {
+    ThreeWayMerge.Result result = ThreeWayMerge.merge("a\nB\nc", "a\nb\nc", "a\nb\nC", "m", "y");
+    // The markers follow the lines as they are, so the file's bytes are all kept.
+    assertEquals("a\n<<<<<<< m\nB\nc=======\nb\nC>>>>>>> y\n", result.text());
+    assertEquals(1, result.conflicts());
+  }
+
+  /**
+   * Checks properties of merges of random edits which hold however the changes are aligned.
+   * Lines are drawn from only a few values, so that there are many equally good alignments.
+   */
+  public void testRandomMerges() {
+    Random random = new Random(17);
+    for (int trial = 0; trial < 1000; trial++) {
+      String base = randomText(random, 12);
+      String mine = edit(random, base);
+      String yours = edit(random, base);
+      String message = base + " / " + mine + " / " + yours;
+
+      // Merging no changes, or the same changes, changes nothing.
+      assertEquals(message, mine, ThreeWayMerge.merge(mine, base, base, "m", "y").text());
+      assertEquals(message, mine, ThreeWayMerge.merge(mine, base, mine, "m", "y").text());
+      // Changes merged into an unchanged file are taken as they are.
+      assertEquals(message, yours, ThreeWayMerge.merge(base, base, yours, "m", "y").text());
+
+      // Conflicts, and only conflicts, are marked.
+      ThreeWayMerge.Result result = ThreeWayMerge.merge(mine, base, yours, "m", "y");
+      if (result.hasConflicts()) {
+        assertTrue(message, result.text().contains("<<<<<<< m\n"));
+        assertTrue(message, result.text().contains(">>>>>>> y\n"));
+      } else {
+        assertFalse(message, result.text().contains("<<<<<<<"));
+      }
+    }
+  }
+
+  private static String randomText(Random random, int maxLines) {
+    StringBuilder text = new StringBuilder();
+    int lines = random.nextInt(maxLines);
+    for (int i = 0; i < lines; i++) {
+      text.append(random.nextInt(4)).append('\n');
+    }
+    return text.toString();
+  }
+
+  /** Replaces, inserts or deletes a few random runs of lines. */
+  private static String edit(Random random, String text) {
+    ImmutableList<String> lines = ImmutableList.copyOf(UnifiedDiff.splitLines(text));
+    StringBuilder edited = new StringBuilder();
+    for (String line : lines) {
+      int choice = random.nextInt(8);
+      if (choice == 0) {
+        continue;
+      } else if (choice == 1) {
+        edited.append(randomText(random, 3));
+      } else if (choice == 2) {
+        edited.append(line, 0, line.length() - 1).append("*\n");
+        continue;
+      }
+      edited.append(line);
+    }
+    return edited.toString();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.moe.client.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class UnifiedDiffTest extends TestCase {
+
+  public void testSplitLines() {
+    assertThat(UnifiedDiff.splitLines("a\nb\n")).containsExactly("a\n", "b\n").inOrder();
+    assertThat(UnifiedDiff.splitLines("a\n\nb")).containsExactly("a\n", "\n", "b").inOrder();
+    assertThat(UnifiedDiff.splitLines("")).isEmpty();
+  }
+
+  public void testIdenticalTextsHaveNoDiff() {
+    assertNull(UnifiedDiff.diff("a", "b", "same\ntext\n", "same\ntext\n"));
+  }
+
+  public void testDiff() {
+    assertEquals(
+        "--- a\n"
+            + "+++ b\n"
+            + "@@ -1,3 +1,3 @@\n"
+            + " one\n"
+            + "-two\n"
+            + "+2\n"
+            + " three\n",
+        UnifiedDiff.diff("a", "b", "one\ntwo\nthree\n", "one\n2\nthree\n"));
+  }
+
+  public void testDistantChangesMakeSeparateHunks() {
+    StringBuilder before = new StringBuilder();
+    for (int i = 1; i <= 20; i++) {
+      before.append(i).append('\n');
+    }
+    String after = before.toString().replace("\n2\n", "\ntwo\n").replace("\n19\n", "\nnineteen\n");
+
+    assertEquals(
+        "--- a\n"
+            + "+++ b\n"
+            + "@@ -1,5 +1,5 @@\n"
+            + " 1\n"
+            + "-2\n"
+            + "+two\n"
+            + " 3\n"
+            + " 4\n"
+            + " 5\n"
+            + "@@ -16,5 +16,5 @@\n"
+            + " 16\n"
+            + " 17\n"
+            + " 18\n"
+            + "-19\n"
+            + "+nineteen\n"
+            + " 20\n",
+        UnifiedDiff.diff("a", "b", before.toString(), after));
+  }
+
+  public void testEmptyRanges() {
+    assertEquals(
+        "--- a\n+++ b\n@@ -0,0 +1 @@\n+new\n", UnifiedDiff.diff("a", "b", "", "new\n"));
+    assertEquals(
+        "--- a\n+++ b\n@@ -1,2 +0,0 @@\n-old\n-er\n\\ No newline at end of file\n",
+        UnifiedDiff.diff("a", "b", "old\ner", ""));
+  }
+
+  /** Checks the common lines found are a longest common subsequence, against a simple DP. */
+  public void testFindsLongestCommonSubsequence() {
+    Random random = new Random(42);
+    for (int trial = 0; trial < 500; trial++) {
+      List<String> a = randomLines(random);
+      List<String> b = randomLines(random);
+      List<String> common = UnifiedDiff.commonLines(a, b);
+      assertTrue(isSubsequence(common, a));
+      assertTrue(isSubsequence(common, b));
+      assertEquals(a + " / " + b, lcsLength(a, b), common.size());
+    }
+  }
+
+  private static List<String> randomLines(Random random) {
+    List<String> lines = new ArrayList<>();
+    int size = random.nextInt(30);
+    for (int i = 0; i < size; i++) {
+      lines.add((char) ('a' + random.nextInt(4)) + "\n");
+    }
+    return ImmutableList.copyOf(lines);
+  }
+
+  private static boolean isSubsequence(List<String> sub, List<String> list) {
+    int i = 0;
+    for (String line : list) {
+      if (i < sub.size() && sub.get(i).equals(line)) {
+        i++;
+      }
+    }
+    return i == sub.size();
+  }
+
+  private static int lcsLength(List<String> a, List<String> b) {
+    int[][] lengths = new int[a.size() + 1][b.size() + 1];
+    for (int i = 1; i <= a.size(); i++) {
+      for (int j = 1; j <= b.size(); j++) {
+        lengths[i][j] =
+            a.get(i - 1).equals(b.get(j - 1))
+                ? lengths[i - 1][j - 1] + 1
+                : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+      }
+    }
+    return lengths[a.size()][b.size()];
+  }
+}
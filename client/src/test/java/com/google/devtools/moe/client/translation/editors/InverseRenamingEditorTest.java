@@ -20,7 +20,7 @@ import static com.google.devtools.moe.client.config.EditorType.renamer;
 import static org.easymock.EasyMock.expect;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
+import com.google.devtools.moe.client.FileIndex;
 import com.google.devtools.moe.client.FileSystem;
 import com.google.devtools.moe.client.codebase.Codebase;
 import com.google.devtools.moe.client.codebase.expressions.RepositoryExpression;
@@ -57,16 +57,16 @@ public class InverseRenamingEditorTest extends TestCase {
 
     expect(mockFs.getTemporaryDirectory("inverse_rename_run_")).andReturn(new File("/output"));
 
-    expect(mockFs.findFiles(new File("/input")))
+    expect(mockFs.indexFiles(new File("/input")))
         .andReturn(
-            ImmutableSet.of(
-                new File("/input/toplevel.txt"),
-                new File("/input/public_root/1.txt"),
-                new File("/input/public_root/new.txt"),
-                new File("/input/public_root/inner1/inner2/innernew.txt")));
+            FileIndex.of(
+                "toplevel.txt",
+                "public_root/1.txt",
+                "public_root/new.txt",
+                "public_root/inner1/inner2/innernew.txt"));
 
-    expect(mockFs.findFiles(new File("/destination")))
-        .andReturn(ImmutableSet.of(new File("/destination/internal_root/1.txt")));
+    expect(mockFs.indexFiles(new File("/destination")))
+        .andReturn(FileIndex.of("internal_root/1.txt"));
 
     expectCopy(mockFs, "/input/toplevel.txt", "/output/toplevel.txt");
     expectCopy(mockFs, "/input/public_root/1.txt", "/output/internal_root/1.txt");
@@ -86,6 +86,6 @@ public class InverseRenamingEditorTest extends TestCase {
 
   private void expectCopy(FileSystem mockFs, String srcPath, String destPath) throws IOException {
     mockFs.makeDirsForFile(new File(destPath));
-    mockFs.copyFile(new File(srcPath), new File(destPath));
+    mockFs.shareFile(new File(srcPath), new File(destPath));
   }
 }